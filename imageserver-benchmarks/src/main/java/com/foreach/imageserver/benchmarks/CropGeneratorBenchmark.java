@@ -0,0 +1,154 @@
+package com.foreach.imageserver.benchmarks;
+
+import com.foreach.imageserver.core.business.*;
+import com.foreach.imageserver.core.managers.ImageModificationManager;
+import com.foreach.imageserver.core.services.CropGeneratorImpl;
+import com.foreach.imageserver.core.services.CropGeneratorUtilImpl;
+import com.foreach.imageserver.core.services.ImageResolutionServiceImpl;
+import com.foreach.imageserver.dto.ImageModificationDto;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Determining the crop of a variant that has no registered modification: the crop is generated from the
+ * modifications registered for other resolutions of the same image.
+ *
+ * @author Arne Vandamme
+ * @since 6.3.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CropGeneratorBenchmark
+{
+	/**
+	 * Number of modifications registered for the image.
+	 */
+	@Param({ "0", "3", "20" })
+	private int modificationCount;
+
+	private CropGeneratorImpl cropGenerator;
+	private Image image;
+	private ImageContext context;
+	private ImageResolution sameRatio, otherRatio;
+
+	@Setup
+	public void createGenerator() {
+		image = new Image();
+		image.setId( 1L );
+		image.setImageProfileId( 1L );
+		image.setDimensions( new Dimensions( 4000, 2000 ) );
+
+		context = new ImageContext();
+		context.setId( 1L );
+
+		List<ImageResolution> resolutions = new ArrayList<>();
+		List<ImageModification> modifications = new ArrayList<>();
+		for ( int i = 0; i < modificationCount; i++ ) {
+			int size = 400 + i * 100;
+			ImageResolution resolution = InMemoryResolutionManager.resolution( i + 10, i % 2 == 0 ? size : size * 2, size );
+			resolutions.add( resolution );
+
+			ImageModification modification = new ImageModification();
+			modification.setImageId( image.getId() );
+			modification.setContextId( i % 3 == 0 ? 2L : context.getId() );
+			modification.setResolutionId( resolution.getId() );
+			modification.setCrop( new Crop( i * 10, i * 5, resolution.getWidth(), resolution.getHeight() ) );
+			modifications.add( modification );
+		}
+
+		sameRatio = InMemoryResolutionManager.resolution( 1L, 1000, 500 );
+		otherRatio = InMemoryResolutionManager.resolution( 2L, 600, 600 );
+		resolutions.add( sameRatio );
+		resolutions.add( otherRatio );
+
+		InMemoryResolutionManager resolutionManager = new InMemoryResolutionManager( resolutions );
+		ImageResolutionServiceImpl imageResolutionService = new ImageResolutionServiceImpl();
+		imageResolutionService.setImageResolutionManager( resolutionManager );
+
+		cropGenerator = new CropGeneratorImpl();
+		cropGenerator.setCropGeneratorUtil( new CropGeneratorUtilImpl() );
+		cropGenerator.setImageModificationManager( new RegisteredModifications( modifications ) );
+		cropGenerator.setImageProfileManager( ( imageProfileId, contextId, resolutionId ) -> null );
+		cropGenerator.setImageResolutionManager( resolutionManager );
+		cropGenerator.setImageResolutionService( imageResolutionService );
+	}
+
+	@Benchmark
+	public ImageModificationDto sameAspectRatio() {
+		return cropGenerator.buildModificationDto( image, context, sameRatio );
+	}
+
+	@Benchmark
+	public ImageModificationDto otherAspectRatio() {
+		return cropGenerator.buildModificationDto( image, context, otherRatio );
+	}
+
+	/**
+	 * Modifications of a single image, none of them for the requested resolution.
+	 */
+	private static class RegisteredModifications implements ImageModificationManager
+	{
+		private final List<ImageModification> modifications;
+
+		RegisteredModifications( List<ImageModification> modifications ) {
+			this.modifications = new ArrayList<>( modifications );
+		}
+
+		@Override
+		public ImageModification getById( long imageId, long contextId, long imageResolutionId ) {
+			for ( ImageModification modification : modifications ) {
+				if ( modification.getImageId() == imageId && modification.getContextId() == contextId
+						&& modification.getResolutionId() == imageResolutionId ) {
+					return modification;
+				}
+			}
+			return null;
+		}
+
+		@Override
+		public List<ImageModification> getModifications( long imageId, long contextId ) {
+			List<ImageModification> forContext = new ArrayList<>();
+			for ( ImageModification modification : modifications ) {
+				if ( modification.getImageId() == imageId && modification.getContextId() == contextId ) {
+					forContext.add( modification );
+				}
+			}
+			return forContext;
+		}
+
+		@Override
+		public List<ImageModification> getAllModifications( long imageId ) {
+			return modifications;
+		}
+
+		@Override
+		public void insert( ImageModification imageModification ) {
+			modifications.add( imageModification );
+		}
+
+		@Override
+		public void update( ImageModification imageModification ) {
+			modifications.replaceAll(
+					existing -> existing.getContextId() == imageModification.getContextId()
+							&& existing.getResolutionId() == imageModification.getResolutionId() ? imageModification : existing
+			);
+		}
+
+		@Override
+		public boolean hasModification( long imageId ) {
+			return !modifications.isEmpty();
+		}
+
+		@Override
+		public void deleteModifications( long imageId ) {
+			modifications.clear();
+		}
+	}
+}
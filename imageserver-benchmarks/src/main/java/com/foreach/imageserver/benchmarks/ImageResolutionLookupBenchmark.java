@@ -0,0 +1,67 @@
+package com.foreach.imageserver.benchmarks;
+
+import com.foreach.imageserver.core.business.ImageResolution;
+import com.foreach.imageserver.core.services.ImageContextServiceImpl;
+import com.foreach.imageserver.math.AspectRatio;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Resolving the registered resolution of a view request, using an already built resolution index.
+ *
+ * @author Arne Vandamme
+ * @since 6.3.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ImageResolutionLookupBenchmark
+{
+	private static final int[][] RATIOS = { { 16, 9 }, { 4, 3 }, { 1, 1 }, { 3, 2 } };
+
+	/**
+	 * Number of resolutions registered for the context.
+	 */
+	@Param({ "10", "200" })
+	private int resolutionCount;
+
+	private ImageContextServiceImpl contextService;
+	private AspectRatio aspectRatio;
+	private int width, height;
+
+	@Setup
+	public void registerResolutions() {
+		List<ImageResolution> resolutions = new ArrayList<>( resolutionCount );
+		for ( int i = 0; i < resolutionCount; i++ ) {
+			int[] ratio = RATIOS[i % RATIOS.length];
+			int resolutionWidth = 100 + ( i / RATIOS.length ) * 40;
+			resolutions.add( InMemoryResolutionManager.resolution( i + 1, resolutionWidth, resolutionWidth * ratio[1] / ratio[0] ) );
+		}
+
+		contextService = new ImageContextServiceImpl();
+		ReflectionTestUtils.setField( contextService, "imageResolutionManager", new InMemoryResolutionManager( resolutions ) );
+
+		// the last registered resolution, so a linear search would be the slowest
+		ImageResolution last = resolutions.get( resolutions.size() - 1 );
+		width = last.getWidth();
+		height = last.getHeight();
+		aspectRatio = new AspectRatio( "16/9" );
+	}
+
+	@Benchmark
+	public ImageResolution byDimensions() {
+		return contextService.getImageResolution( 1L, width, height );
+	}
+
+	@Benchmark
+	public ImageResolution byAspectRatio() {
+		return contextService.getImageResolution( 1L, aspectRatio, width / 2 );
+	}
+}
@@ -0,0 +1,43 @@
+package com.foreach.imageserver.benchmarks;
+
+import org.openjdk.jmh.Main;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks, accepting the regular JMH command line options.
+ * Unless specified otherwise, results are written as JSON to {@code jmh-result.json} and the allocation
+ * rate of every benchmark is measured, so results of different versions can be compared offline.
+ * <p/>
+ * Example: {@code java -jar target/benchmarks.jar ImageUrlBenchmark -rff imageserver-6.3.0.json}
+ *
+ * @author Arne Vandamme
+ * @since 6.3.0
+ */
+public class ImageServerBenchmarks
+{
+	public static void main( String[] args ) throws Exception {
+		CommandLineOptions commandLine = new CommandLineOptions( args );
+
+		if ( commandLine.shouldHelp() || commandLine.shouldList() || commandLine.shouldListWithParams()
+				|| commandLine.shouldListProfilers() || commandLine.shouldListResultFormats() ) {
+			Main.main( args );
+			return;
+		}
+
+		ChainedOptionsBuilder options = new OptionsBuilder().parent( commandLine );
+
+		if ( !commandLine.getResultFormat().hasValue() ) {
+			options.resultFormat( ResultFormatType.JSON );
+		}
+		if ( commandLine.getProfilers().isEmpty() ) {
+			options.addProfiler( GCProfiler.class );
+		}
+
+		new Runner( options.build() ).run();
+	}
+}
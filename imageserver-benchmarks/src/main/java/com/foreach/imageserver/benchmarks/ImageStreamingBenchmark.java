@@ -0,0 +1,197 @@
+package com.foreach.imageserver.benchmarks;
+
+import com.foreach.across.modules.filemanager.services.FileManagerImpl;
+import com.foreach.across.modules.filemanager.services.LocalFileRepository;
+import com.foreach.imageserver.core.ImageServerCoreModuleSettings;
+import com.foreach.imageserver.core.annotations.ImageServerController;
+import com.foreach.imageserver.core.business.*;
+import com.foreach.imageserver.core.config.StoreSettings.LocalVariantsSettings;
+import com.foreach.imageserver.core.config.VariantCacheSettings;
+import com.foreach.imageserver.core.controllers.ImageStreamingController;
+import com.foreach.imageserver.core.managers.ImageContextManager;
+import com.foreach.imageserver.core.managers.ImageManager;
+import com.foreach.imageserver.core.rest.services.ImageRestServiceImpl;
+import com.foreach.imageserver.core.services.*;
+import com.foreach.imageserver.core.transformers.SimpleImageSource;
+import lombok.RequiredArgsConstructor;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerMapping;
+
+import javax.servlet.http.HttpServletResponse;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.Date;
+import java.util.EnumSet;
+import java.util.concurrent.TimeUnit;
+
+import static com.foreach.imageserver.core.config.ServicesConfiguration.IMAGESERVER_ORIGINALS_REPOSITORY;
+import static com.foreach.imageserver.core.config.ServicesConfiguration.IMAGESERVER_VARIANTS_REPOSITORY;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+
+/**
+ * Streaming an existing variant through the view endpoint, from the request mapping up to the response body,
+ * with the variant either in the in-memory variant cache or only in the variants repository on disk.
+ * The request goes through the real rest and image services: resolution lookup, entity tag and variant lookup
+ * are included.  Only the image and context managers are stubbed, the database is left out.
+ * <p/>
+ * Requests are executed using {@link MockMvc}, without servlet container.  A variant on disk is copied to the
+ * response: the container never announces sendfile support.  {@link #viewSendfile()} sets the sendfile request
+ * attribute as Tomcat would, the file is then handed to the container and only that hand-off is measured,
+ * not the transfer of the file.
+ *
+ * @author Arne Vandamme
+ * @since 6.3.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ImageStreamingBenchmark
+{
+	private static final String VIEW_URL = "/view?iid=photo&context=website&width=640&height=360";
+	private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+	private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+
+	@Param
+	private VariantLocation variantLocation;
+
+	private File folder;
+	private MockMvc mockMvc;
+	private String eTag;
+
+	@Setup
+	public void createController() throws Exception {
+		folder = Files.createTempDirectory( "imageserver-benchmarks" ).toFile();
+
+		FileManagerImpl fileManager = new FileManagerImpl();
+		fileManager.registerRepository(
+				LocalFileRepository.builder().repositoryId( IMAGESERVER_ORIGINALS_REPOSITORY ).rootFolder( folder + "/originals" ).build()
+		);
+		fileManager.registerRepository(
+				LocalFileRepository.builder().repositoryId( IMAGESERVER_VARIANTS_REPOSITORY ).rootFolder( folder + "/variants" ).build()
+		);
+
+		VariantCacheSettings cacheSettings = new VariantCacheSettings();
+		cacheSettings.setMaxSize( variantLocation.cacheSize );
+
+		// the variants of the image are not registered and never removed: no context service or variant file manager needed
+		DefaultImageFileDescriptorFactory fileDescriptorFactory = new DefaultImageFileDescriptorFactory();
+		ImageStoreServiceImpl imageStoreService = new ImageStoreServiceImpl(
+				fileManager, null, fileDescriptorFactory, new ImageVariantCache( cacheSettings ),
+				new ImageVariantLocalStore( new LocalVariantsSettings(), fileManager ), null
+		);
+
+		Image image = new Image();
+		image.setId( 1L );
+		image.setExternalId( "photo" );
+		image.setImageType( ImageType.JPEG );
+		image.setDateCreated( new Date() );
+		image.setOriginalPath( "2024/01/01" );
+		image.setVariantPath( "2024/01/01" );
+
+		ImageContext context = new ImageContext();
+		context.setId( 1L );
+		context.setCode( "website" );
+
+		ImageResolution resolution = InMemoryResolutionManager.resolution( 1L, 640, 360 );
+		resolution.setAllowedOutputTypes( EnumSet.of( ImageType.JPEG ) );
+
+		ImageVariant variant = new ImageVariant();
+		variant.setOutputType( ImageType.JPEG );
+
+		byte[] data;
+		try (InputStream is = ImageStreamingBenchmark.class.getResourceAsStream( "/fixtures/photo.jpg" )) {
+			data = IOUtils.toByteArray( is );
+		}
+		imageStoreService.storeOriginalImage( image, data );
+		imageStoreService.storeVariantImage( image, context, resolution, variant, new SimpleImageSource( ImageType.JPEG, data ) );
+
+		// stub only: invocations are not recorded
+		ImageManager imageManager = mock( ImageManager.class, withSettings().stubOnly() );
+		when( imageManager.getByExternalId( image.getExternalId() ) ).thenReturn( image );
+		when( imageManager.getModificationVersion( image.getId() ) ).thenReturn( image.getModificationVersion() );
+
+		ImageContextManager contextManager = mock( ImageContextManager.class, withSettings().stubOnly() );
+		when( contextManager.getByCode( context.getCode() ) ).thenReturn( context );
+
+		ImageContextServiceImpl contextService = new ImageContextServiceImpl();
+		ReflectionTestUtils.setField( contextService, "contextManager", contextManager );
+		ReflectionTestUtils.setField( contextService, "imageResolutionManager", new InMemoryResolutionManager( Collections.singletonList( resolution ) ) );
+
+		ImageServiceImpl imageService = new ImageServiceImpl();
+		ReflectionTestUtils.setField( imageService, "imageManager", imageManager );
+		ReflectionTestUtils.setField( imageService, "imageStoreService", imageStoreService );
+		ReflectionTestUtils.setField( imageService, "settings", new ImageServerCoreModuleSettings() );
+
+		ImageRestServiceImpl imageRestService = new ImageRestServiceImpl();
+		ReflectionTestUtils.setField( imageRestService, "contextService", contextService );
+		ReflectionTestUtils.setField( imageRestService, "imageService", imageService );
+		ReflectionTestUtils.setField( imageRestService, "imageStoreService", imageStoreService );
+		ReflectionTestUtils.setField( imageRestService, "imageFileDescriptorFactory", fileDescriptorFactory );
+
+		ImageStreamingController controller = new ImageStreamingController( "access-token", false );
+		ReflectionTestUtils.setField( controller, "imageRestService", imageRestService );
+
+		mockMvc = MockMvcBuilders.standaloneSetup( controller )
+		                         .setCustomHandlerMapping( () -> new RequestMappingHandlerMapping()
+		                         {
+			                         @Override
+			                         protected boolean isHandler( Class<?> beanType ) {
+				                         return AnnotatedElementUtils.hasAnnotation( beanType, ImageServerController.class );
+			                         }
+		                         } )
+		                         .build();
+
+		MockHttpServletResponse response = mockMvc.perform( get( VIEW_URL ) ).andReturn().getResponse();
+		if ( response.getStatus() != HttpServletResponse.SC_OK ) {
+			throw new IllegalStateException( "Variant could not be viewed: " + response.getStatus() );
+		}
+		eTag = response.getHeader( HttpHeaders.ETAG );
+	}
+
+	@TearDown
+	public void deleteFolder() throws IOException {
+		FileUtils.deleteDirectory( folder );
+	}
+
+	@Benchmark
+	public int view() throws Exception {
+		return mockMvc.perform( get( VIEW_URL ) )
+		              .andReturn().getResponse().getContentAsByteArray().length;
+	}
+
+	@Benchmark
+	public Object viewSendfile() throws Exception {
+		return mockMvc.perform( get( VIEW_URL ).requestAttr( SENDFILE_SUPPORT, Boolean.TRUE ) )
+		              .andReturn().getRequest().getAttribute( SENDFILE_FILENAME );
+	}
+
+	@Benchmark
+	public int viewNotModified() throws Exception {
+		return mockMvc.perform( get( VIEW_URL ).header( HttpHeaders.IF_NONE_MATCH, eTag ) )
+		              .andReturn().getResponse().getStatus();
+	}
+
+	@RequiredArgsConstructor
+	public enum VariantLocation
+	{
+		MEMORY( 16 * 1024 * 1024L ),
+		DISK( 0L );
+
+		private final long cacheSize;
+	}
+}
@@ -0,0 +1,167 @@
+package com.foreach.imageserver.benchmarks;
+
+import com.foreach.imageserver.core.business.Dimensions;
+import com.foreach.imageserver.core.business.ImageType;
+import com.foreach.imageserver.core.config.TransformersSettings;
+import com.foreach.imageserver.core.services.DtoUtil;
+import com.foreach.imageserver.core.services.ImageTransformScheduler;
+import com.foreach.imageserver.core.services.ImageTransformServiceImpl;
+import com.foreach.imageserver.core.transformers.ImageAttributes;
+import com.foreach.imageserver.core.transformers.ImageSource;
+import com.foreach.imageserver.core.transformers.ImageTransformUtils;
+import com.foreach.imageserver.core.transformers.SimpleImageSource;
+import com.foreach.imageserver.core.transformers.SpillingImageSource;
+import com.foreach.imageserver.core.transformers.imagemagick.GraphicsMagickPooledTransformCommandExecutor;
+import com.foreach.imageserver.core.transformers.imagemagick.GraphicsMagickWorkerPool;
+import com.foreach.imageserver.core.transformers.imagemagick.ImageMagickTransformCommandExecutor;
+import com.foreach.imageserver.core.transformers.java2d.Java2DTransformCommandExecutor;
+import com.foreach.imageserver.dto.CropDto;
+import com.foreach.imageserver.dto.ImageTransformDto;
+import com.github.geko444.im4java.process.ProcessStarter;
+import lombok.RequiredArgsConstructor;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.output.NullOutputStream;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Creating a variant from an original with each of the transform executors, from decoding the original up to
+ * the encoded variant.  The external executors use the binaries in the folder set by system property
+ * {@code imageserver.benchmarks.imageMagickPath} (default {@code /usr/bin/}), combinations for which the
+ * binaries are not installed fail without affecting the other benchmarks.
+ *
+ * @author Arne Vandamme
+ * @since 6.3.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ImageTransformBenchmark
+{
+	@Param
+	private Executor executor;
+
+	@Param
+	private Fixture fixture;
+
+	private ImageTransformServiceImpl transformService;
+	private GraphicsMagickWorkerPool workerPool;
+
+	private ImageSource original;
+	private ImageAttributes attributes;
+	private List<ImageTransformDto> thumbnail, cropAndResize;
+
+	@Setup
+	public void createTransformService() throws IOException {
+		TransformersSettings settings = new TransformersSettings();
+		transformService = new ImageTransformServiceImpl( settings, new ImageTransformScheduler( settings ), new ImageTransformUtils() );
+
+		String path = System.getProperty( "imageserver.benchmarks.imageMagickPath", "/usr/bin/" );
+		ProcessStarter.setGlobalSearchPath( new File( path ).getAbsolutePath() );
+
+		switch ( executor ) {
+			case JAVA2D:
+				Java2DTransformCommandExecutor java2d = new Java2DTransformCommandExecutor();
+				java2d.setDefaultQuality( 85 );
+				transformService.setCommandExecutors( Collections.singletonList( java2d ) );
+				break;
+			case IMAGEMAGICK:
+				transformService.setCommandExecutors( Collections.singletonList( imageMagick( new ImageMagickTransformCommandExecutor() ) ) );
+				break;
+			case GRAPHICSMAGICK:
+				System.setProperty( "im4java.useGM", "true" );
+				transformService.setCommandExecutors( Collections.singletonList( imageMagick( new ImageMagickTransformCommandExecutor() ) ) );
+				break;
+			case GRAPHICSMAGICK_POOL:
+				workerPool = new GraphicsMagickWorkerPool( new File( path, "gm" ).getAbsolutePath(), 1, 500, 300_000L );
+				transformService.setCommandExecutors( Collections.singletonList( imageMagick( new GraphicsMagickPooledTransformCommandExecutor( workerPool ) ) ) );
+				break;
+		}
+
+		byte[] data;
+		try (InputStream is = ImageTransformBenchmark.class.getResourceAsStream( "/fixtures/" + fixture.fileName )) {
+			data = IOUtils.toByteArray( is );
+		}
+		original = new SimpleImageSource( fixture.imageType, data );
+		attributes = new ImageAttributes( fixture.imageType, fixture.dimensions, 1 );
+
+		int width = fixture.dimensions.getWidth();
+		int height = fixture.dimensions.getHeight();
+		int square = Math.min( width, height );
+
+		thumbnail = Collections.singletonList(
+				ImageTransformDto.builder().width( 320 ).height( 320 * height / width ).outputType( DtoUtil.toDto( fixture.imageType ) ).build()
+		);
+		cropAndResize = Collections.singletonList(
+				ImageTransformDto.builder()
+				                 .crop( new CropDto( ( width - square ) / 2, ( height - square ) / 2, square, square ) )
+				                 .width( 600 )
+				                 .height( 600 )
+				                 .outputType( DtoUtil.toDto( fixture.imageType ) )
+				                 .build()
+		);
+	}
+
+	@TearDown
+	public void shutdown() {
+		if ( workerPool != null ) {
+			workerPool.shutdown();
+		}
+	}
+
+	@Benchmark
+	public long thumbnail() throws IOException {
+		return write( transformService.transform( original, attributes, thumbnail ) );
+	}
+
+	@Benchmark
+	public long cropAndResize() throws IOException {
+		return write( transformService.transform( original, attributes, cropAndResize ) );
+	}
+
+	private static ImageMagickTransformCommandExecutor imageMagick( ImageMagickTransformCommandExecutor executor ) {
+		executor.setDefaultQuality( 85 );
+		executor.setDefaultDpi( 300 );
+		executor.setFilter( "Box" );
+		return executor;
+	}
+
+	private static long write( ImageSource variant ) throws IOException {
+		try (InputStream is = variant.getImageStream()) {
+			return IOUtils.copyLarge( is, NullOutputStream.NULL_OUTPUT_STREAM );
+		}
+		finally {
+			if ( variant instanceof SpillingImageSource ) {
+				( (SpillingImageSource) variant ).release();
+			}
+		}
+	}
+
+	public enum Executor
+	{
+		JAVA2D,
+		IMAGEMAGICK,
+		GRAPHICSMAGICK,
+		GRAPHICSMAGICK_POOL
+	}
+
+	@RequiredArgsConstructor
+	public enum Fixture
+	{
+		PHOTO( "photo.jpg", ImageType.JPEG, new Dimensions( 1920, 1080 ) ),
+		TRANSPARENT( "transparent.png", ImageType.PNG, new Dimensions( 1224, 1584 ) );
+
+		private final String fileName;
+		private final ImageType imageType;
+		private final Dimensions dimensions;
+	}
+}
@@ -0,0 +1,62 @@
+package com.foreach.imageserver.benchmarks;
+
+import com.foreach.imageserver.client.Md5ImageRequestHashBuilder;
+import com.foreach.imageserver.client.RemoteImageServerClient;
+import com.foreach.imageserver.dto.DimensionsDto;
+import com.foreach.imageserver.dto.ImageResolutionDto;
+import com.foreach.imageserver.dto.ImageTypeDto;
+import com.foreach.imageserver.dto.ImageVariantDto;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Building image urls and request hashes on the client side, done for every image on a rendered page.
+ * Run with the GC profiler (default) to compare the bytes allocated per url.
+ *
+ * @author Arne Vandamme
+ * @since 6.3.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ImageUrlBenchmark
+{
+	private final ImageResolutionDto resolution = new ImageResolutionDto( 640, 480 );
+	private final ImageVariantDto variant = new ImageVariantDto( ImageTypeDto.JPEG, new DimensionsDto( 1280, 960 ) );
+
+	private Md5ImageRequestHashBuilder hashBuilder;
+	private RemoteImageServerClient client;
+	private RemoteImageServerClient hashingClient;
+
+	@Setup
+	public void createClients() {
+		hashBuilder = new Md5ImageRequestHashBuilder( "benchmark-token" );
+		client = new RemoteImageServerClient( "https://images.example.com/resources", "access-token" );
+		hashingClient = new RemoteImageServerClient( "https://images.example.com/resources", "access-token" );
+		hashingClient.setImageRequestHashBuilder( hashBuilder );
+	}
+
+	@Benchmark
+	public String calculateHash() {
+		return hashBuilder.calculateHash( "website", null, resolution, variant );
+	}
+
+	@Benchmark
+	public String imageUrl() {
+		return client.imageUrl( "article-123456", "website", resolution, variant );
+	}
+
+	@Benchmark
+	public String imageUrlWithHash() {
+		return hashingClient.imageUrl( "article-123456", "website", resolution, variant );
+	}
+
+	@Benchmark
+	public String imageUrlForSize() {
+		return client.imageUrl( "article-123456", "website", ImageTypeDto.PNG, "640x480" );
+	}
+}
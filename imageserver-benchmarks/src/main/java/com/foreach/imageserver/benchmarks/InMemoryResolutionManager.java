@@ -0,0 +1,71 @@
+package com.foreach.imageserver.benchmarks;
+
+import com.foreach.imageserver.core.business.ImageResolution;
+import com.foreach.imageserver.core.managers.ImageResolutionIndex;
+import com.foreach.imageserver.core.managers.ImageResolutionManager;
+
+import java.util.*;
+
+/**
+ * Resolutions of a single context, the index is only rebuilt when a resolution is saved, like it would be cached
+ * by the real manager.
+ *
+ * @author Arne Vandamme
+ * @since 6.3.0
+ */
+class InMemoryResolutionManager implements ImageResolutionManager
+{
+	private final List<ImageResolution> resolutions;
+	private final Map<Long, ImageResolution> byId = new HashMap<>();
+	private ImageResolutionIndex index;
+
+	InMemoryResolutionManager( Collection<ImageResolution> resolutions ) {
+		this.resolutions = new ArrayList<>( resolutions );
+		resolutions.forEach( resolution -> byId.put( resolution.getId(), resolution ) );
+		index = new ImageResolutionIndex( resolutions );
+	}
+
+	@Override
+	public Optional<ImageResolution> getById( long resolutionId ) {
+		return Optional.ofNullable( byId.get( resolutionId ) );
+	}
+
+	@Override
+	public List<ImageResolution> getForContext( long contextId ) {
+		return resolutions;
+	}
+
+	@Override
+	public ImageResolutionIndex getIndexForContext( long contextId ) {
+		return index;
+	}
+
+	@Override
+	public Collection<ImageResolution> getAllResolutions() {
+		return resolutions;
+	}
+
+	@Override
+	public void saveResolution( ImageResolution resolution ) {
+		if ( byId.put( resolution.getId(), resolution ) == null ) {
+			resolutions.add( resolution );
+		}
+		else {
+			resolutions.replaceAll( existing -> Objects.equals( existing.getId(), resolution.getId() ) ? resolution : existing );
+		}
+		index = new ImageResolutionIndex( resolutions );
+	}
+
+	@Override
+	public ImageResolution getByDimensions( int width, int height ) {
+		return index.getByDimensions( width, height );
+	}
+
+	static ImageResolution resolution( long id, int width, int height ) {
+		ImageResolution resolution = new ImageResolution();
+		resolution.setId( id );
+		resolution.setWidth( width );
+		resolution.setHeight( height );
+		return resolution;
+	}
+}
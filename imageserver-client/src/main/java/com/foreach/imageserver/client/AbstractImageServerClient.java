@@ -23,6 +23,8 @@ public abstract class AbstractImageServerClient implements ImageServerClient
 
 	private String imageServerUrl;
 
+	private volatile ImageUrlTemplate viewUrlTemplate;
+
 	protected AbstractImageServerClient( String imageServerUrl ) {
 		this.imageServerUrl = imageServerUrl;
 	}
@@ -110,24 +112,24 @@ public abstract class AbstractImageServerClient implements ImageServerClient
 			throw new IllegalArgumentException( "Request does not contain an imageResolution or size" );
 		}
 
-		MultiValueMap<String, String> queryParams = new LinkedMultiValueMap<>();
-		queryParams.set( "iid", imageId );
-		queryParams.set( "context", StringUtils.defaultString( context ) );
+		ImageUrlTemplate template = viewUrlTemplate();
+		StringBuilder url = template.start( "iid", imageId );
+		template.append( url, "context", StringUtils.defaultString( context ) );
 
 		if ( imageResolution != null ) {
-			addQueryParams( queryParams, imageResolution );
+			appendQueryParams( template, url, imageResolution );
 		}
 		if ( size != null && size.length > 0 ) {
-			queryParams.set( "size", StringUtils.join( size, "," ) );
+			template.append( url, "size", size.length == 1 ? StringUtils.defaultString( size[0] ) : StringUtils.join( size, "," ) );
 		}
 
-		addQueryParams( queryParams, imageVariant );
-		hashBuilder().ifPresent(
-				hb -> queryParams.set(
-						"hash",
-						hb.calculateHash( context, null, imageResolution, imageVariant, size )
-				) );
-		return buildUri( ENDPOINT_IMAGE_VIEW, queryParams ).toString();
+		appendQueryParams( template, url, imageVariant );
+
+		ImageRequestHashBuilder requestHashBuilder = hashBuilder().orElse( null );
+		if ( requestHashBuilder != null ) {
+			template.append( url, "hash", requestHashBuilder.calculateHash( context, null, imageResolution, imageVariant, size ) );
+		}
+		return url.toString();
 	}
 
 	@Override
@@ -152,21 +154,60 @@ public abstract class AbstractImageServerClient implements ImageServerClient
 			LOG.warn( "Null parameters not allowed -- imageId={}, context={}, ratio={}, imageVariant={}", imageId,
 			          context, ratio, imageVariant );
 		}
-		MultiValueMap<String, String> queryParams = new LinkedMultiValueMap<>();
-		queryParams.set( "iid", imageId );
-		queryParams.set( "context", StringUtils.defaultString( context ) );
-		queryParams.set( "ratio", ratio );
-		queryParams.set( "width", Integer.toString( screenWidth ) );
-		addQueryParams( queryParams, imageVariant );
-
-		hashBuilder().ifPresent(
-				hb -> queryParams.set(
-						"hash",
-						hb.calculateHash( context, ratio, new ImageResolutionDto( screenWidth, 0 ), imageVariant )
-				)
-		);
-
-		return buildUri( ENDPOINT_IMAGE_VIEW, queryParams ).toString();
+		ImageUrlTemplate template = viewUrlTemplate();
+		StringBuilder url = template.start( "iid", imageId );
+		template.append( url, "context", StringUtils.defaultString( context ) );
+		template.append( url, "ratio", ratio );
+		template.append( url, "width", screenWidth );
+		appendQueryParams( template, url, imageVariant );
+
+		ImageRequestHashBuilder requestHashBuilder = hashBuilder().orElse( null );
+		if ( requestHashBuilder != null ) {
+			template.append(
+					url,
+					"hash",
+					requestHashBuilder.calculateHash( context, ratio, new ImageResolutionDto( screenWidth, 0 ), imageVariant )
+			);
+		}
+
+		return url.toString();
+	}
+
+	/**
+	 * The url of the view endpoint is only built once, image urls append their parameters directly.
+	 * The template is rebuilt if the image server url has been modified.
+	 */
+	private ImageUrlTemplate viewUrlTemplate() {
+		ImageUrlTemplate template = viewUrlTemplate;
+		if ( template == null || !template.isFor( imageServerUrl ) ) {
+			String serverUrl = imageServerUrl;
+			template = new ImageUrlTemplate(
+					serverUrl, buildUri( ENDPOINT_IMAGE_VIEW, new LinkedMultiValueMap<>(), serverUrl ).toString()
+			);
+			viewUrlTemplate = template;
+		}
+		return template;
+	}
+
+	private void appendQueryParams( ImageUrlTemplate template, StringBuilder url, ImageResolutionDto imageResolution ) {
+		if ( imageResolution.getWidth() != 0 ) {
+			template.append( url, "width", imageResolution.getWidth() );
+		}
+		if ( imageResolution.getHeight() != 0 ) {
+			template.append( url, "height", imageResolution.getHeight() );
+		}
+	}
+
+	private void appendQueryParams( ImageUrlTemplate template, StringBuilder url, ImageVariantDto imageVariant ) {
+		ImageTypeDto imageTypeDto = imageVariant.getImageType();
+		if ( imageTypeDto != null ) {
+			template.append( url, "imageType", imageTypeDto.toString() );
+		}
+		DimensionsDto boundaries = imageVariant.getBoundaries();
+		if ( boundaries != null ) {
+			template.append( url, "boundaries.width", boundaries.getWidth() );
+			template.append( url, "boundaries.height", boundaries.getHeight() );
+		}
 	}
 
 	protected URI buildUri( String path, MultiValueMap<String, String> queryParams ) {
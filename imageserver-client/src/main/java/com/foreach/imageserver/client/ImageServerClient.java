@@ -3,10 +3,12 @@ package com.foreach.imageserver.client;
 import com.foreach.imageserver.dto.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.core.io.Resource;
+import org.springframework.util.StreamUtils;
 
+import java.io.IOException;
 import java.io.InputStream;
-import java.util.Date;
-import java.util.List;
+import java.util.*;
 
 public interface ImageServerClient
 {
@@ -82,6 +84,38 @@ public interface ImageServerClient
 
 	InputStream imageStream( String imageId, ImageModificationDto imageModificationDto, ImageVariantDto imageVariant );
 
+	/**
+	 * Open a stream on the variant of an image without reading the entire image in memory first.
+	 * Depending on the implementation the stream reads directly from a connection that is only released
+	 * when the stream is closed: the stream must always be closed.
+	 * The default implementation returns {@link #imageStream(String, String, ImageResolutionDto, ImageVariantDto)}.
+	 *
+	 * @param imageId         external id of the image
+	 * @param context         code of the context
+	 * @param imageResolution resolution of the variant
+	 * @param imageVariant    variant to get
+	 * @return stream that must be closed
+	 */
+	default InputStream openImageStream( String imageId,
+	                                     String context,
+	                                     ImageResolutionDto imageResolution,
+	                                     ImageVariantDto imageVariant ) {
+		return imageStream( imageId, context, imageResolution, imageVariant );
+	}
+
+	/**
+	 * Open a stream on an image rendered with the modification, without reading the entire image in memory first.
+	 * The stream must always be closed, see {@link #openImageStream(String, String, ImageResolutionDto, ImageVariantDto)}.
+	 *
+	 * @param imageId              external id of the image
+	 * @param imageModificationDto modification to render
+	 * @param imageVariant         variant to get
+	 * @return stream that must be closed
+	 */
+	default InputStream openImageStream( String imageId, ImageModificationDto imageModificationDto, ImageVariantDto imageVariant ) {
+		return imageStream( imageId, imageModificationDto, imageVariant );
+	}
+
 	InputStream imageStream( byte[] imageData,
 	                         ImageModificationDto imageModificationDto,
 	                         ImageVariantDto imageVariant );
@@ -94,6 +128,28 @@ public interface ImageServerClient
 
 	ImageInfoDto loadImage( String imageId, byte[] imageBytes, Date imageDate, boolean replaceExisting );
 
+	/**
+	 * Load an image without holding all image data in memory, the resource is streamed to the image server.
+	 * The default implementation reads all data in memory and loads it as a byte array.
+	 * Use an {@link org.springframework.core.io.InputStreamResource} to load an image from an {@link InputStream}.
+	 *
+	 * @param imageId         external id of the image
+	 * @param imageData       resource with the image data
+	 * @param imageDate       creation date of the image, current date if {@code null}
+	 * @param replaceExisting true if an existing image with the same id should be replaced
+	 * @return info of the image created
+	 */
+	default ImageInfoDto loadImage( String imageId, Resource imageData, Date imageDate, boolean replaceExisting ) {
+		byte[] imageBytes;
+		try (InputStream is = imageData.getInputStream()) {
+			imageBytes = StreamUtils.copyToByteArray( is );
+		}
+		catch ( IOException ioe ) {
+			throw new ImageServerException( ioe );
+		}
+		return loadImage( imageId, imageBytes, imageDate, replaceExisting );
+	}
+
 	/**
 	 * Delete an image entirely from the image server.
 	 *
@@ -114,6 +170,33 @@ public interface ImageServerClient
 	 */
 	ImageInfoDto imageInfo( String imageId );
 
+	/**
+	 * Fetch the information of multiple images in a single request.  The default implementation
+	 * fetches the information of every image separately.
+	 *
+	 * @param imageIds external image ids
+	 * @return image information dto for every distinct image id in the same order, also for images that do not exist
+	 */
+	default List<ImageInfoDto> imageInfo( Collection<String> imageIds ) {
+		List<ImageInfoDto> imageInfos = new ArrayList<>();
+		for ( String imageId : new LinkedHashSet<>( imageIds ) ) {
+			imageInfos.add( imageInfo( imageId ) );
+		}
+		return imageInfos;
+	}
+
+	/**
+	 * @param imageIds external image ids
+	 * @return for every distinct image id, true if the image exists
+	 */
+	default Map<String, Boolean> imageExists( Collection<String> imageIds ) {
+		Map<String, Boolean> existing = new LinkedHashMap<>();
+		for ( ImageInfoDto imageInfo : imageInfo( imageIds ) ) {
+			existing.put( imageInfo.getExternalId(), imageInfo.isExisting() );
+		}
+		return existing;
+	}
+
 	/**
 	 * Get info about image without saving the image.
 	 *
@@ -0,0 +1,107 @@
+package com.foreach.imageserver.client;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Objects;
+
+/**
+ * Precompiled url for a single image server endpoint: the server and path part is built once,
+ * query parameters are appended directly to a {@link StringBuilder}.
+ * <p/>
+ * Parameter values are quoted the same way as a {@link java.net.URI} created from non-encoded
+ * {@link org.springframework.web.util.UriComponents}, so the generated urls are identical to those
+ * built with a {@link org.springframework.web.util.UriComponentsBuilder}.  Values that do not
+ * require quoting are appended as-is, without intermediate objects.
+ *
+ * @author Arne Vandamme
+ * @since 6.3.0
+ */
+final class ImageUrlTemplate
+{
+	private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+
+	// ASCII characters that are legal in the query component of a java.net.URI
+	private static final boolean[] LEGAL = new boolean[128];
+
+	static {
+		String legal = "abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789-_.!~*'();/?:@&=+$,[]";
+		for ( int i = 0; i < legal.length(); i++ ) {
+			LEGAL[legal.charAt( i )] = true;
+		}
+	}
+
+	private final String serverUrl;
+	private final String prefix;
+
+	ImageUrlTemplate( String serverUrl, String endpointUrl ) {
+		this.serverUrl = serverUrl;
+		this.prefix = endpointUrl + ( endpointUrl.indexOf( '?' ) >= 0 ? '&' : '?' );
+	}
+
+	/**
+	 * @return true if this template was built for the server url
+	 */
+	boolean isFor( String serverUrl ) {
+		return Objects.equals( this.serverUrl, serverUrl );
+	}
+
+	/**
+	 * Start a new url with the first query parameter.
+	 * A {@code null} value results in only the parameter name being added, for all parameters.
+	 *
+	 * @return builder with the endpoint url and parameter, other parameters can be appended
+	 */
+	StringBuilder start( String name, String value ) {
+		StringBuilder url = new StringBuilder( prefix.length() + 128 ).append( prefix ).append( name );
+		if ( value != null ) {
+			appendQuoted( url.append( '=' ), value );
+		}
+		return url;
+	}
+
+	StringBuilder append( StringBuilder url, String name, String value ) {
+		url.append( '&' ).append( name );
+		if ( value != null ) {
+			appendQuoted( url.append( '=' ), value );
+		}
+		return url;
+	}
+
+	StringBuilder append( StringBuilder url, String name, int value ) {
+		return url.append( '&' ).append( name ).append( '=' ).append( value );
+	}
+
+	static void appendQuoted( StringBuilder url, String value ) {
+		int length = value.length();
+		int safe = 0;
+		while ( safe < length && isLegal( value.charAt( safe ) ) ) {
+			safe++;
+		}
+		url.append( value, 0, safe );
+
+		for ( int i = safe; i < length; i++ ) {
+			char c = value.charAt( i );
+			if ( isLegal( c ) ) {
+				url.append( c );
+			}
+			else if ( c < 0x80 ) {
+				appendEscaped( url, (byte) c );
+			}
+			else {
+				for ( byte b : String.valueOf( c ).getBytes( StandardCharsets.UTF_8 ) ) {
+					appendEscaped( url, b );
+				}
+			}
+		}
+	}
+
+	private static boolean isLegal( char c ) {
+		if ( c < 0x80 ) {
+			return LEGAL[c];
+		}
+		return !Character.isSpaceChar( c ) && !Character.isISOControl( c );
+	}
+
+	private static void appendEscaped( StringBuilder url, byte b ) {
+		url.append( '%' ).append( HEX[( b >> 4 ) & 0x0F] ).append( HEX[b & 0x0F] );
+	}
+}
@@ -4,7 +4,9 @@ import com.foreach.imageserver.dto.ImageResolutionDto;
 import com.foreach.imageserver.dto.ImageVariantDto;
 import lombok.NonNull;
 import org.apache.commons.lang3.StringUtils;
-import org.springframework.util.DigestUtils;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 
 /**
  * Default implementation of {@link ImageRequestHashBuilder} that calculates a uses an MD5
@@ -14,6 +16,8 @@ import org.springframework.util.DigestUtils;
  */
 public class Md5ImageRequestHashBuilder implements ImageRequestHashBuilder
 {
+	private static final ThreadLocal<HashState> STATE = ThreadLocal.withInitial( HashState::new );
+
 	private final String hashToken;
 
 	/**
@@ -33,20 +37,31 @@ public class Md5ImageRequestHashBuilder implements ImageRequestHashBuilder
 	                             ImageResolutionDto imageResolution,
 	                             ImageVariantDto imageVariant,
 	                             String... size ) {
-		StringBuilder buffer = new StringBuilder( hashToken )
-				.append( context )
-				.append( StringUtils.defaultString( ratio ) )
-				.append( StringUtils.join( size ) );
+		HashState state = STATE.get();
+		StringBuilder buffer = state.buffer;
+		buffer.setLength( 0 );
+		buffer.append( hashToken )
+		      .append( context )
+		      .append( StringUtils.defaultString( ratio ) );
 
-		if ( imageResolution != null ) {
-			buffer.append( "res" ).append( imageResolution.getWidth() ).append( imageResolution.getHeight() );
+		if ( size != null ) {
+			for ( String s : size ) {
+				if ( s != null ) {
+					buffer.append( s );
+				}
+			}
 		}
 		else {
-			buffer.append( "res" );
+			buffer.append( (String) null );
+		}
+
+		buffer.append( "res" );
+		if ( imageResolution != null ) {
+			buffer.append( imageResolution.getWidth() ).append( imageResolution.getHeight() );
 		}
 
+		buffer.append( "var" );
 		if ( imageVariant != null ) {
-			buffer.append( "var" );
 			if ( imageVariant.getImageType() != null ) {
 				buffer.append( imageVariant.getImageType() );
 			}
@@ -55,10 +70,66 @@ public class Md5ImageRequestHashBuilder implements ImageRequestHashBuilder
 						append( imageVariant.getBoundaries().getHeight() );
 			}
 		}
-		else {
-			buffer.append( "var" );
+
+		return state.md5Hex();
+	}
+
+	/**
+	 * Per-thread buffers and digest, hashes are calculated for every image url that is generated.
+	 */
+	private static final class HashState
+	{
+		private static final char[] HEX = "0123456789abcdef".toCharArray();
+		private static final int MAX_BUFFER_SIZE = 4096;
+
+		private final StringBuilder buffer = new StringBuilder( 256 );
+		private final MessageDigest digest;
+		private final char[] hex = new char[32];
+		private byte[] bytes = new byte[256];
+
+		HashState() {
+			try {
+				digest = MessageDigest.getInstance( "MD5" );
+			}
+			catch ( NoSuchAlgorithmException nsae ) {
+				throw new IllegalStateException( "MD5 algorithm not available", nsae );
+			}
 		}
 
-		return DigestUtils.md5DigestAsHex( buffer.toString().getBytes() );
+		String md5Hex() {
+			int length = buffer.length();
+			boolean ascii = true;
+			if ( bytes.length < length ) {
+				bytes = new byte[length];
+			}
+			for ( int i = 0; i < length && ascii; i++ ) {
+				char c = buffer.charAt( i );
+				ascii = c < 0x80;
+				bytes[i] = (byte) c;
+			}
+
+			digest.reset();
+			if ( ascii ) {
+				digest.update( bytes, 0, length );
+			}
+			else {
+				// same bytes as before: the platform default encoding
+				digest.update( buffer.toString().getBytes() );
+			}
+
+			byte[] md5 = digest.digest();
+			for ( int i = 0; i < md5.length; i++ ) {
+				hex[i * 2] = HEX[( md5[i] >> 4 ) & 0x0F];
+				hex[i * 2 + 1] = HEX[md5[i] & 0x0F];
+			}
+
+			if ( buffer.capacity() > MAX_BUFFER_SIZE ) {
+				buffer.setLength( 0 );
+				buffer.trimToSize();
+				bytes = new byte[256];
+			}
+
+			return new String( hex );
+		}
 	}
 }
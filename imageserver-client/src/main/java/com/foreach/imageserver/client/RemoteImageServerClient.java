@@ -7,24 +7,36 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.Resource;
 import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpMethod;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.http.client.MultipartBodyBuilder;
+import org.springframework.util.ClassUtils;
 import org.springframework.util.LinkedMultiValueMap;
 import org.springframework.util.MultiValueMap;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.ResponseErrorHandler;
 import org.springframework.web.client.RestTemplate;
 
 import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
 import java.io.InputStream;
 import java.net.URI;
-import java.util.Date;
-import java.util.List;
-import java.util.Map;
+import java.util.*;
 
 import static org.springframework.util.Assert.notNull;
 
 /**
  * Represents a client for a remote ImageServer endpoint.
+ * <p/>
+ * If Apache HttpClient is on the classpath and no {@link RestTemplate} is provided, a pooled HTTP client using
+ * the default {@link RemoteImageServerConnectionSettings} is created.  The {@code imageStream()} methods read the
+ * entire image in memory and release the connection before returning.  The streams returned by
+ * {@link #openImageStream(String, String, ImageResolutionDto, ImageVariantDto)} read directly from the connection
+ * and must always be closed.
  */
 public class RemoteImageServerClient extends AbstractImageServerClient
 {
@@ -32,8 +44,18 @@ public class RemoteImageServerClient extends AbstractImageServerClient
 	private final String imageServerAccessToken;
 	private RestTemplate restTemplate;
 
+	private static final boolean HTTP_CLIENT_PRESENT =
+			ClassUtils.isPresent( "org.apache.http.impl.client.HttpClients", RemoteImageServerClient.class.getClassLoader() );
+
 	public RemoteImageServerClient( String imageServerEndpoint, String imageServerAccessToken ) {
-		this( imageServerEndpoint, imageServerAccessToken, new RestTemplate() );
+		this( imageServerEndpoint, imageServerAccessToken,
+		      HTTP_CLIENT_PRESENT ? new RemoteImageServerConnectionSettings().createRestTemplate() : new RestTemplate() );
+	}
+
+	public RemoteImageServerClient( String imageServerEndpoint,
+	                                String imageServerAccessToken,
+	                                RemoteImageServerConnectionSettings connectionSettings ) {
+		this( imageServerEndpoint, imageServerAccessToken, connectionSettings.createRestTemplate() );
 	}
 
 	public RemoteImageServerClient( String imageServerEndpoint, String imageServerAccessToken, RestTemplate restTemplate ) {
@@ -64,6 +86,21 @@ public class RemoteImageServerClient extends AbstractImageServerClient
 	                                String context,
 	                                ImageResolutionDto imageResolution,
 	                                ImageVariantDto imageVariant ) {
+		return new ByteArrayInputStream( httpGet( ENDPOINT_IMAGE_VIEW, viewParams( imageId, context, imageResolution, imageVariant ), byte[].class ) );
+	}
+
+	@Override
+	public InputStream openImageStream( String imageId,
+	                                    String context,
+	                                    ImageResolutionDto imageResolution,
+	                                    ImageVariantDto imageVariant ) {
+		return httpGetStream( ENDPOINT_IMAGE_VIEW, viewParams( imageId, context, imageResolution, imageVariant ) );
+	}
+
+	private MultiValueMap<String, String> viewParams( String imageId,
+	                                                  String context,
+	                                                  ImageResolutionDto imageResolution,
+	                                                  ImageVariantDto imageVariant ) {
 		if ( StringUtils.isBlank( imageId ) || context == null || imageResolution == null || imageVariant == null ) {
 			LOG.warn(
 					"Null parameters not allowed - ImageServerClientImpl#imageStream: imageId={}, context={}, imageResolution={}, imageVariant={}",
@@ -82,13 +119,26 @@ public class RemoteImageServerClient extends AbstractImageServerClient
 				)
 		);
 
-		return new ByteArrayInputStream( httpGet( ENDPOINT_IMAGE_VIEW, queryParams, byte[].class ) );
+		return queryParams;
 	}
 
 	@Override
 	public InputStream imageStream( String imageId,
 	                                ImageModificationDto imageModificationDto,
 	                                ImageVariantDto imageVariant ) {
+		return new ByteArrayInputStream( httpGet( ENDPOINT_IMAGE_RENDER, renderParams( imageId, imageModificationDto, imageVariant ), byte[].class ) );
+	}
+
+	@Override
+	public InputStream openImageStream( String imageId,
+	                                    ImageModificationDto imageModificationDto,
+	                                    ImageVariantDto imageVariant ) {
+		return httpGetStream( ENDPOINT_IMAGE_RENDER, renderParams( imageId, imageModificationDto, imageVariant ) );
+	}
+
+	private MultiValueMap<String, String> renderParams( String imageId,
+	                                                    ImageModificationDto imageModificationDto,
+	                                                    ImageVariantDto imageVariant ) {
 		if ( StringUtils.isBlank( imageId ) || imageModificationDto == null || imageVariant == null ) {
 			LOG.warn(
 					"Null parameters not allowed - ImageServerClientImpl#imageStream: imageId={}, imageModificationDto={}, imageResolution={}, imageVariant={}",
@@ -101,7 +151,7 @@ public class RemoteImageServerClient extends AbstractImageServerClient
 		addQueryParams( queryParams, imageModificationDto );
 		addQueryParams( queryParams, imageVariant );
 
-		return new ByteArrayInputStream( httpGet( ENDPOINT_IMAGE_RENDER, queryParams, byte[].class ) );
+		return queryParams;
 	}
 
 	@Override
@@ -119,7 +169,7 @@ public class RemoteImageServerClient extends AbstractImageServerClient
 		addQueryParams( queryParams, imageModificationDto );
 		addQueryParams( queryParams, imageVariant );
 
-		MultiValueMap<String, Object> bodyParts = getImageDataAsBody( imageData );
+		MultiValueMap<String, ?> bodyParts = getImageDataAsBody( imageData );
 
 		return new ByteArrayInputStream( httpPost( ENDPOINT_IMAGE_RENDER, queryParams, bodyParts, byte[].class ) );
 	}
@@ -141,11 +191,20 @@ public class RemoteImageServerClient extends AbstractImageServerClient
 
 	@Override
 	public ImageInfoDto loadImage( String imageId, byte[] imageBytes, Date imageDate, boolean replaceExisting ) {
+		if ( imageBytes == null || imageBytes.length == 0 ) {
+			throw new ImageServerException( "Unable to load an image with empty byte data." );
+		}
+
+		return loadImage( imageId, new ByteArrayResource( imageBytes ), imageDate, replaceExisting );
+	}
+
+	@Override
+	public ImageInfoDto loadImage( String imageId, Resource imageData, Date imageDate, boolean replaceExisting ) {
 		if ( StringUtils.isBlank( imageId ) ) {
 			throw new ImageServerException( "You must specify an imageId when loading an image." );
 		}
-		if ( imageBytes == null || imageBytes.length == 0 ) {
-			throw new ImageServerException( "Unable to load an image with empty byte data." );
+		if ( imageData == null ) {
+			throw new ImageServerException( "Unable to load an image without image data." );
 		}
 
 		MultiValueMap<String, String> queryParams = new LinkedMultiValueMap<>();
@@ -156,29 +215,30 @@ public class RemoteImageServerClient extends AbstractImageServerClient
 			queryParams.set( "imageTimestamp", Long.toString( imageDate.getTime() ) );
 		}
 
-		MultiValueMap<String, Object> bodyParts = getImageDataAsBody( imageBytes );
+		MultiValueMap<String, ?> bodyParts = getImageDataAsBody( imageData );
 
 		try {
 			return httpPost( ENDPOINT_IMAGE_LOAD, queryParams, bodyParts, ResponseTypes.IMAGE_INFO );
 		}
 		catch ( RuntimeException e ) {
 			LOG.error(
-					"Loading image caused exception - ImageServerClientImpl#loadImage: imageId={}, imageBytes={}, imageDate={}",
-					LogHelper.flatten( imageId, imageBytes.length, imageDate ) );
+					"Loading image caused exception - ImageServerClientImpl#loadImage: imageId={}, imageData={}, imageDate={}",
+					LogHelper.flatten( imageId, imageData.getDescription(), imageDate ) );
 			throw e;
 		}
 	}
 
-	private MultiValueMap<String, Object> getImageDataAsBody( final byte[] imageBytes ) {
-		MultiValueMap<String, Object> bodyParts = new LinkedMultiValueMap<>();
-		bodyParts.set( "imageData", new ByteArrayResource( imageBytes )
-		{
-			@Override
-			public String getFilename() {
-				return "imageData";
-			}
-		} );
-		return bodyParts;
+	private MultiValueMap<String, ?> getImageDataAsBody( final byte[] imageBytes ) {
+		return getImageDataAsBody( new ByteArrayResource( imageBytes ) );
+	}
+
+	/**
+	 * The resource is written as a multipart file, without reading it into memory first.
+	 */
+	private MultiValueMap<String, ?> getImageDataAsBody( Resource imageData ) {
+		MultipartBodyBuilder bodyBuilder = new MultipartBodyBuilder();
+		bodyBuilder.part( "imageData", imageData ).filename( "imageData" );
+		return bodyBuilder.build();
 	}
 
 	@Override
@@ -215,12 +275,27 @@ public class RemoteImageServerClient extends AbstractImageServerClient
 		return httpGet( ENDPOINT_IMAGE_INFO, queryParams, ResponseTypes.IMAGE_INFO );
 	}
 
+	@Override
+	public List<ImageInfoDto> imageInfo( Collection<String> imageIds ) {
+		if ( imageIds.isEmpty() ) {
+			return Collections.emptyList();
+		}
+
+		MultiValueMap<String, String> queryParams = new LinkedMultiValueMap<>();
+		queryParams.set( "token", imageServerAccessToken );
+
+		MultiValueMap<String, String> bodyParts = new LinkedMultiValueMap<>();
+		bodyParts.put( "iid", new ArrayList<>( imageIds ) );
+
+		return httpPost( ENDPOINT_IMAGE_INFO, queryParams, bodyParts, ResponseTypes.IMAGE_INFO_LIST );
+	}
+
 	@Override
 	public ImageInfoDto imageInfo( byte[] imageBytes ) {
 		MultiValueMap<String, String> queryParams = new LinkedMultiValueMap<>();
 		queryParams.set( "token", imageServerAccessToken );
 
-		MultiValueMap<String, Object> bodyParts = getImageDataAsBody( imageBytes );
+		MultiValueMap<String, ?> bodyParts = getImageDataAsBody( imageBytes );
 
 		return httpPost( ENDPOINT_IMAGE_INFO, queryParams, bodyParts, ResponseTypes.IMAGE_INFO );
 	}
@@ -300,6 +375,40 @@ public class RemoteImageServerClient extends AbstractImageServerClient
 		return httpPost( ENDPOINT_IMAGE_CONVERT, queryParams, new HttpEntity<>( convertDto ), ResponseTypes.IMAGE_CONVERT );
 	}
 
+	/**
+	 * Execute a GET request and return the response body as a stream that reads directly from the connection.
+	 * The response is released when the stream is closed.
+	 */
+	protected InputStream httpGetStream( String path, MultiValueMap<String, String> queryParams ) {
+		URI url = buildUri( path, queryParams );
+		ClientHttpResponse response = null;
+
+		try {
+			response = restTemplate.getRequestFactory().createRequest( url, HttpMethod.GET ).execute();
+
+			ResponseErrorHandler errorHandler = restTemplate.getErrorHandler();
+			if ( errorHandler.hasError( response ) ) {
+				errorHandler.handleError( url, HttpMethod.GET, response );
+			}
+
+			return new ResponseInputStream( response );
+		}
+		catch ( IOException ioe ) {
+			closeQuietly( response );
+			throw new ResourceAccessException( "I/O error on GET request for \"" + url + "\": " + ioe.getMessage(), ioe );
+		}
+		catch ( RuntimeException e ) {
+			closeQuietly( response );
+			throw e;
+		}
+	}
+
+	private static void closeQuietly( ClientHttpResponse response ) {
+		if ( response != null ) {
+			response.close();
+		}
+	}
+
 	protected <T> T httpGet( String path, MultiValueMap<String, String> queryParams, Class<T> responseType ) {
 		URI url = buildUri( path, queryParams );
 		HttpEntity<?> request = new HttpEntity<MultiValueMap<?, ?>>( new LinkedMultiValueMap<String, String>() );
@@ -382,6 +491,29 @@ public class RemoteImageServerClient extends AbstractImageServerClient
 		return body.getResult();
 	}
 
+	/**
+	 * Response body that closes the response when closed, releasing the connection.
+	 */
+	private static final class ResponseInputStream extends FilterInputStream
+	{
+		private final ClientHttpResponse response;
+
+		ResponseInputStream( ClientHttpResponse response ) throws IOException {
+			super( response.getBody() );
+			this.response = response;
+		}
+
+		@Override
+		public void close() throws IOException {
+			try {
+				super.close();
+			}
+			finally {
+				response.close();
+			}
+		}
+	}
+
 	private static final class ResponseTypes
 	{
 		private static final ParameterizedTypeReference<JsonResponse<List<ImageResolutionDto>>> RESOLUTIONS =
@@ -400,6 +532,10 @@ public class RemoteImageServerClient extends AbstractImageServerClient
 				new ParameterizedTypeReference<JsonResponse<ImageInfoDto>>()
 				{
 				};
+		private static final ParameterizedTypeReference<JsonResponse<List<ImageInfoDto>>> IMAGE_INFO_LIST =
+				new ParameterizedTypeReference<JsonResponse<List<ImageInfoDto>>>()
+				{
+				};
 		private static final ParameterizedTypeReference<JsonResponse<ImageConvertResultDto>> IMAGE_CONVERT =
 				new ParameterizedTypeReference<JsonResponse<ImageConvertResultDto>>()
 				{
@@ -0,0 +1,117 @@
+package com.foreach.imageserver.client;
+
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.web.client.RestTemplate;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Connection settings for the pooled HTTP client used by a {@link RemoteImageServerClient}.
+ * Creating the {@link RestTemplate} requires Apache HttpClient on the classpath.
+ *
+ * @author Arne Vandamme
+ * @see RemoteImageServerClient#RemoteImageServerClient(String, String, RemoteImageServerConnectionSettings)
+ * @since 6.3.0
+ */
+public class RemoteImageServerConnectionSettings
+{
+	private int maxConnections = 20;
+	private int connectTimeout = 5000;
+	private int connectionRequestTimeout = 5000;
+	private int readTimeout = 60000;
+	private long keepAlive = 30000;
+
+	/**
+	 * @return maximum number of simultaneous connections to the image server
+	 */
+	public int getMaxConnections() {
+		return maxConnections;
+	}
+
+	public void setMaxConnections( int maxConnections ) {
+		this.maxConnections = maxConnections;
+	}
+
+	/**
+	 * @return milliseconds to wait for a connection to be established
+	 */
+	public int getConnectTimeout() {
+		return connectTimeout;
+	}
+
+	public void setConnectTimeout( int connectTimeout ) {
+		this.connectTimeout = connectTimeout;
+	}
+
+	/**
+	 * @return milliseconds to wait for a connection from the pool, if all connections are in use
+	 */
+	public int getConnectionRequestTimeout() {
+		return connectionRequestTimeout;
+	}
+
+	public void setConnectionRequestTimeout( int connectionRequestTimeout ) {
+		this.connectionRequestTimeout = connectionRequestTimeout;
+	}
+
+	/**
+	 * @return milliseconds to wait for data from the image server, generating a variant can take a while
+	 */
+	public int getReadTimeout() {
+		return readTimeout;
+	}
+
+	public void setReadTimeout( int readTimeout ) {
+		this.readTimeout = readTimeout;
+	}
+
+	/**
+	 * @return maximum number of milliseconds an idle connection is kept open for reuse,
+	 * a shorter keep-alive returned by the image server takes precedence
+	 */
+	public long getKeepAlive() {
+		return keepAlive;
+	}
+
+	public void setKeepAlive( long keepAlive ) {
+		this.keepAlive = keepAlive;
+	}
+
+	/**
+	 * Create a {@link RestTemplate} backed by a pooled Apache HttpClient using these settings.
+	 * Request bodies are not buffered, uploads are streamed to the image server.
+	 *
+	 * @return rest template
+	 */
+	public RestTemplate createRestTemplate() {
+		PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager();
+		connectionManager.setMaxTotal( maxConnections );
+		connectionManager.setDefaultMaxPerRoute( maxConnections );
+
+		RequestConfig requestConfig = RequestConfig.custom()
+		                                           .setConnectTimeout( connectTimeout )
+		                                           .setConnectionRequestTimeout( connectionRequestTimeout )
+		                                           .setSocketTimeout( readTimeout )
+		                                           .build();
+
+		CloseableHttpClient httpClient = HttpClients.custom()
+		                                            .setConnectionManager( connectionManager )
+		                                            .setDefaultRequestConfig( requestConfig )
+		                                            .setKeepAliveStrategy( ( response, context ) -> {
+			                                            long duration = DefaultConnectionKeepAliveStrategy.INSTANCE.getKeepAliveDuration( response, context );
+			                                            return duration > 0 ? Math.min( duration, keepAlive ) : keepAlive;
+		                                            } )
+		                                            .evictIdleConnections( keepAlive, TimeUnit.MILLISECONDS )
+		                                            .build();
+
+		HttpComponentsClientHttpRequestFactory requestFactory = new HttpComponentsClientHttpRequestFactory( httpClient );
+		requestFactory.setBufferRequestBody( false );
+
+		return new RestTemplate( requestFactory );
+	}
+}
@@ -9,7 +9,14 @@ public enum ImageTypeDto
 	EPS( "eps" ),
 	PDF( "pdf" ),
 	TIFF( "tif" ),
-	BMP( "bmp" );
+	BMP( "bmp" ),
+	WEBP( "webp" ),
+	AVIF( "avif" ),
+	/**
+	 * Not an actual image type: the image server selects the most efficient output type
+	 * accepted by the requester (WebP or AVIF), using the default output type as fallback.
+	 */
+	AUTO( "auto" );
 
 	private String extension;
 
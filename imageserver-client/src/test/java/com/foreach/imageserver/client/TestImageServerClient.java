@@ -0,0 +1,67 @@
+package com.foreach.imageserver.client;
+
+import com.foreach.imageserver.dto.ImageInfoDto;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.InputStreamResource;
+import org.springframework.core.io.Resource;
+
+import java.io.ByteArrayInputStream;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+/**
+ * Default implementations of {@link ImageServerClient}.
+ *
+ * @author Arne Vandamme
+ * @since 6.3.0
+ */
+public class TestImageServerClient
+{
+	private static final byte[] DATA = "image data".getBytes();
+
+	private final ImageServerClient imageServerClient = mock( ImageServerClient.class, CALLS_REAL_METHODS );
+
+	@Test
+	public void imageInfoIsFetchedForEveryDistinctImageId() {
+		ImageInfoDto one = imageInfo( "one" );
+		ImageInfoDto two = imageInfo( "two" );
+		doReturn( one ).when( imageServerClient ).imageInfo( "one" );
+		doReturn( two ).when( imageServerClient ).imageInfo( "two" );
+
+		List<ImageInfoDto> imageInfos = imageServerClient.imageInfo( Arrays.asList( "two", "one", "two" ) );
+
+		assertEquals( Arrays.asList( two, one ), imageInfos );
+		verify( imageServerClient, times( 1 ) ).imageInfo( "two" );
+	}
+
+	@Test
+	public void resourceIsLoadedAsByteArray() {
+		ImageInfoDto imageInfo = imageInfo( "one" );
+		Date imageDate = new Date();
+		doReturn( imageInfo ).when( imageServerClient ).loadImage( "one", DATA, imageDate, true );
+
+		assertSame( imageInfo, imageServerClient.loadImage( "one", new InputStreamResource( new ByteArrayInputStream( DATA ) ), imageDate, true ) );
+	}
+
+	@Test
+	public void unreadableResourceIsNotLoaded() {
+		Resource resource = new FileSystemResource( "does-not-exist.jpg" );
+
+		assertThrows( ImageServerException.class, () -> imageServerClient.loadImage( "one", resource, null, false ) );
+		verify( imageServerClient, never() ).loadImage( anyString(), any( byte[].class ), any(), anyBoolean() );
+	}
+
+	private ImageInfoDto imageInfo( String externalId ) {
+		ImageInfoDto imageInfo = new ImageInfoDto();
+		imageInfo.setExternalId( externalId );
+		return imageInfo;
+	}
+}
@@ -6,6 +6,7 @@ import com.foreach.imageserver.dto.ImageTypeDto;
 import com.foreach.imageserver.dto.ImageVariantDto;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.springframework.util.DigestUtils;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -80,6 +81,17 @@ public class TestMd5ImageRequestHashBuilder
 		assertEquals( "efb552c12c1d878a9ff603d3e0dc283a", hash );
 	}
 
+	@Test
+	public void sizesAndNonAsciiParametersAreHashedAsConcatenatedString() {
+		assertEquals( DigestUtils.md5DigestAsHex( "testONLINE100x200200x400resvar".getBytes() ),
+		              hashBuilder.calculateHash( "ONLINE", null, null, null, "100x200", null, "200x400" ) );
+		assertEquals( DigestUtils.md5DigestAsHex( "testcontexté3/2res10000varPNG".getBytes() ),
+		              hashBuilder.calculateHash( "contexté", "3/2", new ImageResolutionDto( 1000, 0 ),
+		                                         new ImageVariantDto( ImageTypeDto.PNG ) ) );
+		assertEquals( DigestUtils.md5DigestAsHex( "testONLINEnullresvar".getBytes() ),
+		              hashBuilder.calculateHash( "ONLINE", null, null, null, (String[]) null ) );
+	}
+
 	@Test
 	public void otherTokenResultsInDifferentHash() {
 		Md5ImageRequestHashBuilder otherHashBuilder = new Md5ImageRequestHashBuilder( "other" );
@@ -8,21 +8,29 @@ import org.junit.jupiter.api.Test;
 import org.springframework.http.HttpMethod;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
+import org.springframework.core.io.InputStreamResource;
 import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
 import org.springframework.mock.http.client.MockClientHttpRequest;
 import org.springframework.mock.http.client.MockClientHttpResponse;
 import org.springframework.test.util.ReflectionTestUtils;
 import org.springframework.test.web.client.MockRestServiceServer;
+import org.springframework.util.StreamUtils;
+import org.springframework.web.client.HttpClientErrorException;
 import org.springframework.web.client.RestTemplate;
+import org.springframework.web.util.UriComponentsBuilder;
 
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
 import java.net.URI;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.*;
 
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.startsWith;
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
 import static org.mockito.internal.verification.VerificationModeFactory.times;
 import static org.springframework.test.web.client.match.MockRestRequestMatchers.*;
+import static org.springframework.test.web.client.response.MockRestResponseCreators.withStatus;
 import static org.springframework.test.web.client.response.MockRestResponseCreators.withSuccess;
 
 /**
@@ -139,6 +147,28 @@ public class TestRemoteImageServerClient
 				url );
 	}
 
+	@Test
+	public void hashBuilderProvidedBySubclassIsUsed() {
+		ImageRequestHashBuilder hashBuilder = mock( ImageRequestHashBuilder.class );
+		RemoteImageServerClient client = new RemoteImageServerClient( "http://localhost:8078", "standalone-access-token" )
+		{
+			@Override
+			protected Optional<ImageRequestHashBuilder> hashBuilder() {
+				return Optional.of( hashBuilder );
+			}
+		};
+
+		when( hashBuilder.calculateHash( "ONLINE", null, new ImageResolutionDto( 1000, 2000 ), new ImageVariantDto( ImageTypeDto.TIFF ) ) )
+				.thenReturn( "one" );
+		assertEquals( "http://localhost:8078/view?iid=10&context=ONLINE&width=1000&height=2000&imageType=TIFF&hash=one",
+		              client.imageUrl( "10", "ONLINE", 1000, 2000, ImageTypeDto.TIFF ) );
+
+		when( hashBuilder.calculateHash( "TABLET", "3/2", new ImageResolutionDto( 200, 0 ), new ImageVariantDto( ImageTypeDto.JPEG ) ) )
+				.thenReturn( "two" );
+		assertEquals( "http://localhost:8078/view?iid=10&context=TABLET&ratio=3/2&width=200&imageType=JPEG&hash=two",
+		              client.imageUrl( "10", "TABLET", "3/2", 200, new ImageVariantDto( ImageTypeDto.JPEG ) ) );
+	}
+
 	@Test
 	public void imageUrlWithOutImageTypeWillReturnImageTypeOfOriginal() {
 		String url = imageServerClient.imageUrl( "10", "ONLINE", 1000, 2000 );
@@ -192,6 +222,30 @@ public class TestRemoteImageServerClient
 				url );
 	}
 
+	@Test
+	public void imageUrlQuotesParametersLikeUriComponents() {
+		String[] values = { "internal:1", "a b", "100%", "é-ü", "x&y=z#q", "<tag>|{}", "tab\tnew\nline", "\u00a0\u2028" };
+
+		for ( String value : values ) {
+			String expected = UriComponentsBuilder.fromHttpUrl( "http://localhost:8078" ).path( "/" ).path( "view" )
+			                                      .queryParam( "iid", value )
+			                                      .queryParam( "context", value )
+			                                      .queryParam( "size", value )
+			                                      .build().toUri().toString();
+			assertEquals( expected, imageServerClient.imageUrl( value, value, value ) );
+		}
+	}
+
+	@Test
+	public void imageUrlUsesModifiedImageServerUrl() {
+		assertEquals( "http://localhost:8078/view?iid=10&context=ONLINE&width=1000&height=2000",
+		              imageServerClient.imageUrl( "10", "ONLINE", 1000, 2000 ) );
+
+		imageServerClient.setImageServerUrl( "https://images.example.com/resources/" );
+		assertEquals( "https://images.example.com/resources/view?iid=10&context=ONLINE&width=1000&height=2000",
+		              imageServerClient.imageUrl( "10", "ONLINE", 1000, 2000 ) );
+	}
+
 	@Test
 	public void registerImageModificationsUsesPost() {
 		List<ImageModificationDto> imageModificationDtoList = new ArrayList<>();
@@ -242,4 +296,99 @@ public class TestRemoteImageServerClient
 
 		imageServerClient.registerImageModifications( "4938", "ONLINE", imageModificationDtoList );
 	}
+
+	@Test
+	public void imageInfoForMultipleImagesUsesSingleRequest() {
+		mockRestServiceServer.expect( requestTo( "http://localhost:8078/api/image/details?token=standalone-access-token" ) )
+		                     .andExpect( method( HttpMethod.POST ) )
+		                     .andExpect( content().string( "iid=one&iid=two" ) )
+		                     .andRespond( withSuccess(
+				                     "{\"result\":[{\"externalId\":\"one\",\"existing\":true},{\"externalId\":\"two\",\"existing\":false}], \"success\":\"true\"}",
+				                     MediaType.APPLICATION_JSON ) );
+
+		Map<String, Boolean> existing = imageServerClient.imageExists( Arrays.asList( "one", "two" ) );
+		assertEquals( 2, existing.size() );
+		assertTrue( existing.get( "one" ) );
+		assertFalse( existing.get( "two" ) );
+
+		mockRestServiceServer.verify();
+	}
+
+	@Test
+	public void imageInfoForNoImagesDoesNotSendRequest() {
+		assertTrue( imageServerClient.imageInfo( Collections.<String>emptyList() ).isEmpty() );
+		mockRestServiceServer.verify();
+	}
+
+	@Test
+	public void imageStreamReadsFromResponse() throws Exception {
+		mockRestServiceServer.expect( requestTo( startsWith( "http://localhost:8078/view?iid=10&context=ONLINE" ) ) )
+		                     .andExpect( method( HttpMethod.GET ) )
+		                     .andRespond( withSuccess( new byte[] { 1, 2, 3 }, MediaType.IMAGE_PNG ) );
+
+		try (InputStream stream = imageServerClient.imageStream( "10", "ONLINE", 100, 200, ImageTypeDto.PNG )) {
+			assertArrayEquals( new byte[] { 1, 2, 3 }, StreamUtils.copyToByteArray( stream ) );
+		}
+		mockRestServiceServer.verify();
+	}
+
+	@Test
+	public void imageStreamIsReadInMemory() {
+		mockRestServiceServer.expect( requestTo( startsWith( "http://localhost:8078/view?iid=10&context=ONLINE" ) ) )
+		                     .andRespond( withSuccess( new byte[] { 1, 2, 3 }, MediaType.IMAGE_PNG ) );
+
+		assertTrue( imageServerClient.imageStream( "10", "ONLINE", 100, 200, ImageTypeDto.PNG ) instanceof ByteArrayInputStream );
+		mockRestServiceServer.verify();
+	}
+
+	@Test
+	public void openImageStreamReadsFromResponse() throws Exception {
+		mockRestServiceServer.expect( requestTo( startsWith( "http://localhost:8078/view?iid=10&context=ONLINE" ) ) )
+		                     .andExpect( method( HttpMethod.GET ) )
+		                     .andRespond( withSuccess( new byte[] { 1, 2, 3 }, MediaType.IMAGE_PNG ) );
+
+		try (InputStream stream = imageServerClient.openImageStream( "10", "ONLINE", new ImageResolutionDto( 100, 200 ), new ImageVariantDto( ImageTypeDto.PNG ) )) {
+			assertFalse( stream instanceof ByteArrayInputStream );
+			assertArrayEquals( new byte[] { 1, 2, 3 }, StreamUtils.copyToByteArray( stream ) );
+		}
+		mockRestServiceServer.verify();
+	}
+
+	@Test
+	public void openImageStreamThrowsExceptionOnErrorResponse() {
+		mockRestServiceServer.expect( requestTo( startsWith( "http://localhost:8078/view?iid=10" ) ) )
+		                     .andRespond( withStatus( HttpStatus.NOT_FOUND ) );
+
+		assertThrows( HttpClientErrorException.class,
+		              () -> imageServerClient.openImageStream( "10", "ONLINE", new ImageResolutionDto( 100, 200 ), new ImageVariantDto( ImageTypeDto.PNG ) ) );
+	}
+
+	@Test
+	public void imageStreamThrowsExceptionOnErrorResponse() {
+		mockRestServiceServer.expect( requestTo( startsWith( "http://localhost:8078/view?iid=10" ) ) )
+		                     .andRespond( withStatus( HttpStatus.NOT_FOUND ) );
+
+		assertThrows( HttpClientErrorException.class, () -> imageServerClient.imageStream( "10", "ONLINE", 100, 200, ImageTypeDto.PNG ) );
+	}
+
+	@Test
+	public void loadImageFromResourceUsesMultipartFile() {
+		mockRestServiceServer.expect( requestTo(
+				"http://localhost:8078/api/image/load?token=standalone-access-token&iid=10&replaceExisting=true" ) )
+		                     .andExpect( method( HttpMethod.POST ) )
+		                     .andExpect( content().string( containsString( "name=\"imageData\"; filename=\"imageData\"" ) ) )
+		                     .andExpect( content().string( containsString( "image-data" ) ) )
+		                     .andRespond( withSuccess( "{\"result\":{\"externalId\":\"10\",\"existing\":true}, \"success\":\"true\"}",
+		                                               MediaType.APPLICATION_JSON ) );
+
+		InputStreamResource imageData = new InputStreamResource( new ByteArrayInputStream( "image-data".getBytes() ) );
+		assertTrue( imageServerClient.loadImage( "10", imageData, null, true ).isExisting() );
+		mockRestServiceServer.verify();
+	}
+
+	@Test
+	public void connectionSettingsCreatePooledRestTemplate() {
+		RestTemplate pooled = new RemoteImageServerConnectionSettings().createRestTemplate();
+		assertTrue( pooled.getRequestFactory() instanceof HttpComponentsClientHttpRequestFactory );
+	}
 }
@@ -1,8 +1,11 @@
 package com.foreach.imageserver.core;
 
+import com.foreach.imageserver.core.config.PregenerationSettings;
 import com.foreach.imageserver.core.config.StoreSettings;
 import com.foreach.imageserver.core.config.StreamingSettings;
+import com.foreach.imageserver.core.config.TileSettings;
 import com.foreach.imageserver.core.config.TransformersSettings;
+import com.foreach.imageserver.core.config.VariantCacheSettings;
 import lombok.Data;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 
@@ -83,6 +86,9 @@ public class ImageServerCoreModuleSettings
 	private StreamingSettings streaming = new StreamingSettings();
 	private StoreSettings store = new StoreSettings();
 	private TransformersSettings transformers = new TransformersSettings();
+	private PregenerationSettings pregeneration = new PregenerationSettings();
+	private VariantCacheSettings variantCache = new VariantCacheSettings();
+	private TileSettings tiles = new TileSettings();
 
 	public boolean isStrictMode() {
 		return getStrictMode();
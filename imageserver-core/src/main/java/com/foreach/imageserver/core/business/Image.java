@@ -68,6 +68,33 @@ public class Image extends SettableIdBasedEntity<Image>
 	@Column(name = "variant_path")
 	private String variantPath;
 
+	/**
+	 * Incremented every time the modifications of the image are changed.
+	 * Together with the id it identifies the content of the variants of the image.
+	 */
+	@Column(name = "modification_version")
+	private long modificationVersion;
+
+	/**
+	 * Last time the modifications of the image were changed, null if never.
+	 */
+	@Column(name = "modified")
+	private Date dateModified;
+
+	/**
+	 * SHA-256 hash of the original, only set if the original is stored content-addressed and
+	 * can be shared with other images having the same hash.
+	 */
+	@Column(name = "content_hash")
+	private String contentHash;
+
+	/**
+	 * True if every variant file stored for the image is registered as an {@link ImageVariantFile}.
+	 * False for images saved before variant files were registered, their variants are searched for instead.
+	 */
+	@Column(name = "variants_registered")
+	private boolean variantsRegistered;
+
 	@Transient
 	private boolean temporaryImage;
 
@@ -80,6 +107,16 @@ public class Image extends SettableIdBasedEntity<Image>
 		}
 	}
 
+	/**
+	 * @return last time the image or its modifications were changed
+	 */
+	public Date getLastModified() {
+		if ( dateCreated == null ) {
+			return dateModified;
+		}
+		return dateModified != null && dateModified.after( dateCreated ) ? dateModified : dateCreated;
+	}
+
 	@Override
 	public boolean equals( Object o ) {
 		if ( this == o ) {
@@ -0,0 +1,189 @@
+package com.foreach.imageserver.core.business;
+
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.NonNull;
+import org.apache.commons.lang3.StringUtils;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Layout of the tiles of an image for deep zoom viewers, using the Deep Zoom Image (DZI) conventions.
+ * The highest level has the dimensions of the original image, every lower level halves the dimensions
+ * (rounded up), down to level 0 which is a single pixel.  Every level is divided in square tiles of a fixed size,
+ * starting at the top left corner, the tiles on the right and bottom edges can be smaller.  Tiles do not overlap.
+ * <p/>
+ * A pyramid is immutable and can be serialized to a DZI descriptor.
+ *
+ * @author Arne Vandamme
+ * @since 6.3.0
+ */
+@Getter
+@EqualsAndHashCode
+public final class ImageTilePyramid
+{
+	private static final Pattern DESCRIPTOR = Pattern.compile(
+			"Format=\"(\\w+)\".*TileSize=\"(\\d+)\".*<Size Width=\"(\\d+)\" Height=\"(\\d+)\"", Pattern.DOTALL
+	);
+
+	/**
+	 * Width of the original image.
+	 */
+	private final int width;
+
+	/**
+	 * Height of the original image.
+	 */
+	private final int height;
+
+	/**
+	 * Width and height of a single tile.
+	 */
+	private final int tileSize;
+
+	/**
+	 * Image type of the tiles.
+	 */
+	private final ImageType tileType;
+
+	public ImageTilePyramid( int width, int height, int tileSize, @NonNull ImageType tileType ) {
+		if ( width < 1 || height < 1 || tileSize < 1 ) {
+			throw new IllegalArgumentException( "Image dimensions and tile size must be positive" );
+		}
+
+		this.width = width;
+		this.height = height;
+		this.tileSize = tileSize;
+		this.tileType = tileType;
+	}
+
+	/**
+	 * @return highest level, having the dimensions of the original image
+	 */
+	public int getMaxLevel() {
+		return 32 - Integer.numberOfLeadingZeros( Math.max( width, height ) - 1 );
+	}
+
+	/**
+	 * @return width of the image at that level
+	 */
+	public int getLevelWidth( int level ) {
+		return scale( width, level );
+	}
+
+	/**
+	 * @return height of the image at that level
+	 */
+	public int getLevelHeight( int level ) {
+		return scale( height, level );
+	}
+
+	/**
+	 * @return number of tile columns at that level
+	 */
+	public int getColumns( int level ) {
+		return ( getLevelWidth( level ) + tileSize - 1 ) / tileSize;
+	}
+
+	/**
+	 * @return number of tile rows at that level
+	 */
+	public int getRows( int level ) {
+		return ( getLevelHeight( level ) + tileSize - 1 ) / tileSize;
+	}
+
+	/**
+	 * @return total number of tiles over all levels
+	 */
+	public int getTileCount() {
+		int count = 0;
+		for ( int level = 0; level <= getMaxLevel(); level++ ) {
+			count += getColumns( level ) * getRows( level );
+		}
+		return count;
+	}
+
+	/**
+	 * @return true if the tile is part of the pyramid
+	 */
+	public boolean hasTile( int level, int column, int row ) {
+		return level >= 0 && level <= getMaxLevel()
+				&& column >= 0 && column < getColumns( level )
+				&& row >= 0 && row < getRows( level );
+	}
+
+	/**
+	 * Get the area of the original image covered by a tile.
+	 *
+	 * @return crop in original image coordinates
+	 */
+	public Crop getTileCrop( int level, int column, int row ) {
+		long factor = 1L << ( getMaxLevel() - level );
+		int x = (int) Math.min( width, column * tileSize * factor );
+		int y = (int) Math.min( height, row * tileSize * factor );
+		return new Crop( x, y, (int) Math.min( width - x, tileSize * factor ), (int) Math.min( height - y, tileSize * factor ) );
+	}
+
+	/**
+	 * Get the dimensions of a tile, only tiles on the right or bottom edge are smaller than the tile size.
+	 *
+	 * @return dimensions of the tile image
+	 */
+	public Dimensions getTileDimensions( int level, int column, int row ) {
+		return new Dimensions(
+				Math.min( tileSize, getLevelWidth( level ) - column * tileSize ),
+				Math.min( tileSize, getLevelHeight( level ) - row * tileSize )
+		);
+	}
+
+	private int scale( int size, int level ) {
+		if ( level < 0 || level > getMaxLevel() ) {
+			throw new IllegalArgumentException( "Level " + level + " is not part of the pyramid" );
+		}
+		long factor = 1L << ( getMaxLevel() - level );
+		return (int) ( ( size + factor - 1 ) / factor );
+	}
+
+	/**
+	 * @return DZI descriptor
+	 */
+	public String serialize() {
+		return serialize( null );
+	}
+
+	/**
+	 * @param tilesUrl url of the folder holding the levels of the pyramid, null if the viewer should derive it from the descriptor url
+	 * @return DZI descriptor
+	 */
+	public String serialize( String tilesUrl ) {
+		return "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+				+ "<Image xmlns=\"http://schemas.microsoft.com/deepzoom/2008\" Format=\"" + tileType.getExtension()
+				+ "\" Overlap=\"0\" TileSize=\"" + tileSize + "\""
+				+ ( tilesUrl != null ? " Url=\"" + StringUtils.replaceEach( tilesUrl, new String[] { "&", "\"", "<" }, new String[] { "&amp;", "&quot;", "&lt;" } ) + "\"" : "" ) + ">\n"
+				+ "  <Size Width=\"" + width + "\" Height=\"" + height + "\"/>\n"
+				+ "</Image>\n";
+	}
+
+	/**
+	 * Parse a DZI descriptor created by {@link #serialize()}.
+	 *
+	 * @param descriptor DZI descriptor
+	 * @return pyramid
+	 */
+	public static ImageTilePyramid parse( @NonNull String descriptor ) {
+		Matcher matcher = DESCRIPTOR.matcher( descriptor );
+		if ( !matcher.find() ) {
+			throw new IllegalArgumentException( "Not a valid tile pyramid descriptor" );
+		}
+
+		ImageType tileType = ImageType.getForExtension( "." + matcher.group( 1 ) );
+		if ( tileType == null ) {
+			throw new IllegalArgumentException( "Unknown tile format: " + matcher.group( 1 ) );
+		}
+
+		return new ImageTilePyramid(
+				Integer.parseInt( matcher.group( 3 ) ), Integer.parseInt( matcher.group( 4 ) ), Integer.parseInt( matcher.group( 2 ) ), tileType
+		);
+	}
+}
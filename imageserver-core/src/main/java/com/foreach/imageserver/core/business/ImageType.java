@@ -14,7 +14,9 @@ public enum ImageType implements IdLookup<Integer>, BitFlag
 	     "application/eps", "application/x-eps" ),
 	PDF( 32, "application/pdf", "pdf", false, true, "application/x-pdf" ),
 	TIFF( 64, "image/tiff", "tif", false, false ),
-	BMP( 128, "image/bmp", "bmp", false, false, "image/x-windows-bmp" );
+	BMP( 128, "image/bmp", "bmp", false, false, "image/x-windows-bmp" ),
+	WEBP( 256, "image/webp", "webp", true, false ),
+	AVIF( 512, "image/avif", "avif", true, false );
 
 	private final int id;
 	private final String contentType, extension;
@@ -90,6 +92,8 @@ public enum ImageType implements IdLookup<Integer>, BitFlag
 			case EPS:
 			case PNG:
 			case BMP:
+			case WEBP:
+			case AVIF:
 				return PNG;
 			default:
 				return JPEG;
@@ -0,0 +1,65 @@
+package com.foreach.imageserver.core.business;
+
+import com.foreach.across.modules.filemanager.business.FileDescriptor;
+import com.foreach.imageserver.core.config.ImageSchemaConfiguration;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import javax.persistence.Column;
+import javax.persistence.EmbeddedId;
+import javax.persistence.Entity;
+import javax.persistence.Table;
+import java.io.Serializable;
+import java.util.Objects;
+
+/**
+ * A variant file that has been stored for an image, along with its size in bytes.
+ * Every variant file is a separate record, so nodes storing variants of the same image do not interfere.
+ *
+ * @author Arne Vandamme
+ * @since 6.3.0
+ */
+@Entity
+@Table(name = ImageSchemaConfiguration.TABLE_IMAGE_VARIANT_FILE)
+@Getter
+@Setter
+@NoArgsConstructor
+public class ImageVariantFile implements Serializable
+{
+	@EmbeddedId
+	private ImageVariantFileId id = new ImageVariantFileId();
+
+	@Column(name = "file_size")
+	private long fileSize;
+
+	public ImageVariantFile( long imageId, FileDescriptor file, long fileSize ) {
+		this.id = new ImageVariantFileId( imageId, file.getUri() );
+		this.fileSize = fileSize;
+	}
+
+	public long getImageId() {
+		return id.getImageId();
+	}
+
+	public FileDescriptor getFile() {
+		return FileDescriptor.of( id.getFileUri() );
+	}
+
+	@Override
+	public boolean equals( Object o ) {
+		if ( this == o ) {
+			return true;
+		}
+		if ( o == null || getClass() != o.getClass() ) {
+			return false;
+		}
+		ImageVariantFile that = (ImageVariantFile) o;
+		return fileSize == that.fileSize && Objects.equals( id, that.id );
+	}
+
+	@Override
+	public int hashCode() {
+		return Objects.hash( id, fileSize );
+	}
+}
@@ -0,0 +1,46 @@
+package com.foreach.imageserver.core.business;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import javax.persistence.Column;
+import javax.persistence.Embeddable;
+import java.io.Serializable;
+import java.util.Objects;
+
+/**
+ * @author Arne Vandamme
+ * @since 6.3.0
+ */
+@Embeddable
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class ImageVariantFileId implements Serializable
+{
+	@Column(name = "image_id")
+	private long imageId;
+	@Column(name = "file_uri")
+	private String fileUri;
+
+	@Override
+	public boolean equals( Object o ) {
+		if ( this == o ) {
+			return true;
+		}
+		if ( o == null || getClass() != o.getClass() ) {
+			return false;
+		}
+		ImageVariantFileId that = (ImageVariantFileId) o;
+		return imageId == that.imageId &&
+				Objects.equals( fileUri, that.fileUri );
+	}
+
+	@Override
+	public int hashCode() {
+		return Objects.hash( imageId, fileUri );
+	}
+}
@@ -0,0 +1,78 @@
+package com.foreach.imageserver.core.business;
+
+import com.foreach.across.modules.filemanager.business.FileDescriptor;
+import lombok.EqualsAndHashCode;
+import lombok.NonNull;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Inventory of the variant files that have been stored for an image, along with their size in bytes.
+ * Built from the {@link ImageVariantFile} records of the image.
+ * <p/>
+ * A manifest is immutable, modifications return a new instance.
+ *
+ * @author Arne Vandamme
+ * @since 6.3.0
+ */
+@EqualsAndHashCode
+public class ImageVariantManifest
+{
+	public static final ImageVariantManifest EMPTY = new ImageVariantManifest( Collections.emptyMap() );
+
+	private final Map<FileDescriptor, Long> variants;
+
+	private ImageVariantManifest( Map<FileDescriptor, Long> variants ) {
+		this.variants = Collections.unmodifiableMap( variants );
+	}
+
+	/**
+	 * @return variant files with their size in bytes
+	 */
+	public Map<FileDescriptor, Long> getVariants() {
+		return variants;
+	}
+
+	/**
+	 * @return total size in bytes of all variant files
+	 */
+	public long getTotalSize() {
+		return variants.values().stream().mapToLong( Long::longValue ).sum();
+	}
+
+	public boolean isEmpty() {
+		return variants.isEmpty();
+	}
+
+	/**
+	 * @param variant file to add
+	 * @param size    of the file in bytes
+	 * @return manifest including the variant file, the same instance if nothing changed
+	 */
+	public ImageVariantManifest withVariant( @NonNull FileDescriptor variant, long size ) {
+		Long current = variants.get( variant );
+		if ( current != null && current == size ) {
+			return this;
+		}
+
+		Map<FileDescriptor, Long> updated = new LinkedHashMap<>( variants );
+		updated.put( variant, size );
+		return new ImageVariantManifest( updated );
+	}
+
+	/**
+	 * @param variant file to remove
+	 * @return manifest without the variant file, the same instance if nothing changed
+	 */
+	public ImageVariantManifest withoutVariant( @NonNull FileDescriptor variant ) {
+		if ( !variants.containsKey( variant ) ) {
+			return this;
+		}
+
+		Map<FileDescriptor, Long> updated = new LinkedHashMap<>( variants );
+		updated.remove( variant );
+		return new ImageVariantManifest( updated );
+	}
+}
@@ -15,8 +15,10 @@ import com.foreach.imageserver.core.services.ImageService;
 import com.foreach.imageserver.dto.*;
 import org.apache.commons.lang3.StringUtils;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.Resource;
 
 import java.io.InputStream;
+import java.util.Collection;
 import java.util.Date;
 import java.util.List;
 
@@ -138,6 +140,12 @@ public class LocalImageServerClient extends AbstractImageServerClient implements
 		return DtoUtil.toDto( image );
 	}
 
+	@Override
+	public ImageInfoDto loadImage( String imageId, Resource imageData, Date imageDate, boolean replaceExisting ) {
+		Image image = imageService.saveImage( imageId, imageData, imageDate != null ? imageDate : new Date(), replaceExisting );
+		return DtoUtil.toDto( image );
+	}
+
 	@Override
 	public boolean deleteImage( String imageId ) {
 		return imageService.deleteImage( imageId );
@@ -163,6 +171,11 @@ public class LocalImageServerClient extends AbstractImageServerClient implements
 		return DtoUtil.toDto( image );
 	}
 
+	@Override
+	public List<ImageInfoDto> imageInfo( Collection<String> imageIds ) {
+		return DtoUtil.toDto( imageIds, imageService.getByExternalIds( imageIds ) );
+	}
+
 	@Override
 	public ImageInfoDto imageInfo( byte[] imageBytes ) {
 		Image image = imageService.loadImageData( imageBytes );
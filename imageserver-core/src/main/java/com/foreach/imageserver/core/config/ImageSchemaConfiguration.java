@@ -14,6 +14,7 @@ public class ImageSchemaConfiguration extends SchemaConfiguration
 	public static final String TABLE_IMAGE_MODIFICATION = "img_image_modification";
 	public static final String TABLE_IMAGE_PROFILE = "img_image_profile";
 	public static final String TABLE_IMAGE_PROFILE_MODIFICATION = "img_image_profile_modification";
+	public static final String TABLE_IMAGE_VARIANT_FILE = "img_image_variant_file";
 
 	public ImageSchemaConfiguration() {
 		super( Arrays.asList( new SchemaObject( "table.context", TABLE_CONTEXT ),
@@ -22,7 +23,8 @@ public class ImageSchemaConfiguration extends SchemaConfiguration
 		                      new SchemaObject( "table.image_resolution", TABLE_IMAGE_RESOLUTION ),
 		                      new SchemaObject( "table.image_modification", TABLE_IMAGE_MODIFICATION ),
 		                      new SchemaObject( "table.image_profile", TABLE_IMAGE_PROFILE ),
-		                      new SchemaObject( "table.image_profile_modification", TABLE_IMAGE_PROFILE_MODIFICATION )
+		                      new SchemaObject( "table.image_profile_modification", TABLE_IMAGE_PROFILE_MODIFICATION ),
+		                      new SchemaObject( "table.image_variant_file", TABLE_IMAGE_VARIANT_FILE )
 		       )
 		);
 	}
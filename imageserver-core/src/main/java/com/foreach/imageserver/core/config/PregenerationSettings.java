@@ -0,0 +1,25 @@
+package com.foreach.imageserver.core.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Data
+@ConfigurationProperties("image-server-core.pregeneration")
+public class PregenerationSettings
+{
+	/**
+	 * Number of threads generating the variants of pregenerate resolutions.  Every resolution of an image
+	 * is a separate task, so the resolutions of a single image are generated in parallel.
+	 * <p/>
+	 * Type: int, default 2
+	 */
+	private Integer workers = 2;
+
+	/**
+	 * Maximum number of tasks waiting to be executed.  Pregeneration requests that do not fit in the queue
+	 * are rejected and should be retried later.
+	 * <p/>
+	 * Type: int, default 10000
+	 */
+	private Integer queueCapacity = 10000;
+}
@@ -13,4 +13,50 @@ public class StoreSettings
 	 * Root location of the image store.
 	 */
 	private File folder;
+
+	/**
+	 * Should identical originals be stored only once.  The SHA-256 hash of every new original is calculated,
+	 * an image with the same hash as an existing image shares the original of that image.
+	 */
+	private boolean deduplicateOriginals = false;
+
+	/**
+	 * Number of seconds a cached image is used before its modification version is compared with the database.
+	 * Another instance changing the modifications of an image only evicts the image from its own cache.
+	 * If the version has changed, the image and its modifications are evicted from the cache of this instance as well.
+	 * If 0, cached images are used until they expire.
+	 */
+	private int versionCheckInterval = 30;
+
+	/**
+	 * Local disk tier in front of the variants repository.
+	 */
+	private LocalVariantsSettings localVariants = new LocalVariantsSettings();
+
+	@Data
+	public static class LocalVariantsSettings
+	{
+		/**
+		 * Local folder holding the most recently used variants.  New variants are written to this folder first
+		 * and uploaded to the variants repository in the background.  If not set, the local tier is disabled.
+		 * <p/>
+		 * Type: file, default none
+		 */
+		private File folder;
+
+		/**
+		 * Maximum number of bytes of variants kept in the local folder.  Variants that have not been
+		 * uploaded yet are never removed.
+		 * <p/>
+		 * Type: long, default 10737418240 (10 GB)
+		 */
+		private Long maxSize = 10L * 1024 * 1024 * 1024;
+
+		/**
+		 * Number of threads uploading new variants to the variants repository.
+		 * <p/>
+		 * Type: int, default 2
+		 */
+		private Integer uploadWorkers = 2;
+	}
 }
@@ -0,0 +1,52 @@
+package com.foreach.imageserver.core.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Data
+@ConfigurationProperties("image-server-core.tiles")
+public class TileSettings
+{
+	/**
+	 * Should deep zoom tiles be generated for large originals.
+	 * <p/>
+	 * Type: boolean, default false
+	 */
+	private Boolean enabled = false;
+
+	/**
+	 * Minimum number of pixels of an original image for tiles to be generated.
+	 * <p/>
+	 * Type: long, default 10000000
+	 */
+	private Long minimumPixels = 10_000_000L;
+
+	/**
+	 * Width and height of a single tile.
+	 * <p/>
+	 * Type: int, default 512
+	 */
+	private Integer tileSize = 512;
+
+	/**
+	 * Number of threads generating tiles in the background.
+	 * <p/>
+	 * Type: int, default 1
+	 */
+	private Integer workers = 1;
+
+	/**
+	 * Maximum number of images waiting for their tiles to be generated.
+	 * <p/>
+	 * Type: int, default 1000
+	 */
+	private Integer queueCapacity = 1000;
+
+	/**
+	 * Number of seconds tiles can be cached by browsers, tiles never change once generated.
+	 * The url of a tile includes the id of the image, the tile descriptor is only cached for a short time.
+	 * <p/>
+	 * Type: int, default 31536000 (1 year)
+	 */
+	private Integer maxBrowserCacheSeconds = 31536000;
+}
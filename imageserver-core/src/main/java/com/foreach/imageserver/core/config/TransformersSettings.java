@@ -1,7 +1,10 @@
 package com.foreach.imageserver.core.config;
 
+import com.foreach.imageserver.core.transformers.SpillingImageSource;
 import com.foreach.imageserver.core.transformers.imagemagick.ImageMagickSettings;
+import lombok.AllArgsConstructor;
 import lombok.Data;
+import lombok.NoArgsConstructor;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 
 @Data
@@ -15,8 +18,85 @@ public class TransformersSettings
 	 */
 	private Integer concurrentLimit = 10;
 
+	/**
+	 * Maximum number of bytes of a transformed image that is kept in memory.
+	 * Larger images are buffered in a temporary file instead.
+	 * <p/>
+	 * Type: int, default 1048576 (1 MB)
+	 */
+	private Integer outputMemoryThreshold = SpillingImageSource.DEFAULT_MEMORY_THRESHOLD;
+
+	/**
+	 * Suggested number of seconds after which a client should retry a request that failed because
+	 * the transform could not be started within the maximum queue wait of its lane.
+	 * <p/>
+	 * Type: int, default 5
+	 */
+	private Integer retryAfter = 5;
+
+	/**
+	 * Maximum number of seconds a request waits for a variant that is already being generated by another request.
+	 * Set to 0 to wait until the generation is done.
+	 * <p/>
+	 * Type: int, default 60
+	 */
+	private Integer maxVariantWait = 60;
+
+	/**
+	 * Maximum number of threads generating images requested by a view or render request, which releases
+	 * the request thread while the image is being generated.  If all threads are busy, the image is generated
+	 * in the request thread.  Set to 0 to always generate images in the request thread.
+	 * <p/>
+	 * Type: int, default 20
+	 */
+	private Integer asyncWorkers = 20;
+
+	/**
+	 * Scheduling of transforms for images being viewed.
+	 */
+	private LaneSettings interactiveLane = new LaneSettings( 6, null, 10 );
+
+	/**
+	 * Scheduling of transforms for images rendered using the API.
+	 */
+	private LaneSettings apiLane = new LaneSettings( 3, null, 30 );
+
+	/**
+	 * Scheduling of transforms for pregeneration and conversion.
+	 */
+	private LaneSettings backgroundLane = new LaneSettings( 1, 5, 0 );
+
 	/**
 	 * Settings related to the imagemagick transformer
 	 */
 	private ImageMagickSettings imageMagick = new ImageMagickSettings();
+
+	@Data
+	@NoArgsConstructor
+	@AllArgsConstructor
+	public static class LaneSettings
+	{
+		/**
+		 * Relative share of the transform slots this lane gets when multiple lanes have transforms waiting.
+		 * <p/>
+		 * Type: int
+		 */
+		private Integer weight;
+
+		/**
+		 * Maximum number of transforms of this lane that can be busy at the same time.
+		 * If not set, the lane can use all concurrent transform slots.
+		 * <p/>
+		 * Type: int
+		 */
+		private Integer concurrentLimit;
+
+		/**
+		 * Maximum number of seconds a transform waits for a slot, before it fails.
+		 * If 0, a transform waits until a slot is available.
+		 * <p/>
+		 * Type: int
+		 */
+		private Integer maxQueueWait;
+	}
 }
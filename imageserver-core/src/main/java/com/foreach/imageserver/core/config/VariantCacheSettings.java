@@ -0,0 +1,39 @@
+package com.foreach.imageserver.core.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Data
+@ConfigurationProperties("image-server-core.variant-cache")
+public class VariantCacheSettings
+{
+	/**
+	 * Maximum number of bytes of variant images kept in memory.  Set to 0 to disable the cache.
+	 * <p/>
+	 * Type: long, default 67108864 (64 MB)
+	 */
+	private Long maxSize = 64L * 1024 * 1024;
+
+	/**
+	 * Maximum number of bytes of a single variant image, larger variants are never cached.
+	 * <p/>
+	 * Type: int, default 524288 (512 KB)
+	 */
+	private Integer maxEntrySize = 512 * 1024;
+
+	/**
+	 * Number of seconds a variant that does not exist is remembered as missing.
+	 * The entry is removed as soon as the variant is stored by this instance.
+	 * <p/>
+	 * Type: int, default 10
+	 */
+	private Integer missingVariantTtl = 10;
+
+	/**
+	 * Number of seconds a variant is kept in memory at most.  Limits how long a variant that was removed
+	 * by another instance is still served.  Set to 0 to keep variants until they are evicted or invalidated.
+	 * <p/>
+	 * Type: int, default 300
+	 */
+	private Integer variantTtl = 300;
+}
@@ -84,12 +84,18 @@ public class WebConfiguration
 		return new ImageResolutionController( accessToken() );
 	}
 
+	@Bean
+	public ImageTransformStatisticsController imageTransformStatisticsController() {
+		return new ImageTransformStatisticsController( accessToken() );
+	}
+
 	@Bean
 	public ImageStreamingController imageStreamingController() {
 		ImageStreamingController imageStreamingController =
 				new ImageStreamingController( accessToken(), settings.isStrictMode() );
 		imageStreamingController.setMaxCacheAgeInSeconds( settings.getStreaming().getMaxBrowserCacheSeconds() );
 		imageStreamingController.setAkamaiCacheMaxAge( settings.getStreaming().getAkamaiCacheMaxAge() );
+		imageStreamingController.setTileCacheAgeInSeconds( settings.getTiles().getMaxBrowserCacheSeconds() );
 		imageStreamingController.setProvideStackTrace( settings.getStreaming().getProvideStackTrace() );
 		return imageStreamingController;
 	}
@@ -1,9 +1,13 @@
 package com.foreach.imageserver.core.controllers;
 
+import com.foreach.imageserver.core.services.exceptions.ImagePregenerationQueueFullException;
+import com.foreach.imageserver.core.services.exceptions.ImageTransformQueueTimeoutException;
 import com.foreach.imageserver.dto.JsonResponse;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.ResponseBody;
 import org.springframework.web.bind.annotation.ResponseStatus;
@@ -43,6 +47,30 @@ public abstract class BaseImageAPIController
 		return jsonResponse;
 	}
 
+	/**
+	 * A transform could not be started in time, the client should retry later.
+	 */
+	@ExceptionHandler(ImageTransformQueueTimeoutException.class)
+	@ResponseBody
+	public ResponseEntity<JsonResponse> handleQueueTimeout( HttpServletRequest req, ImageTransformQueueTimeoutException exception ) {
+		LOG.warn( exception.getMessage() );
+		return ResponseEntity.status( HttpStatus.SERVICE_UNAVAILABLE )
+		                     .header( HttpHeaders.RETRY_AFTER, String.valueOf( exception.getRetryAfterSeconds() ) )
+		                     .body( error( exception.getMessage() ) );
+	}
+
+	/**
+	 * Pregeneration could not be queued, the client should retry later.
+	 */
+	@ExceptionHandler(ImagePregenerationQueueFullException.class)
+	@ResponseBody
+	public ResponseEntity<JsonResponse> handlePregenerationQueueFull( HttpServletRequest req, ImagePregenerationQueueFullException exception ) {
+		LOG.warn( exception.getMessage() );
+		return ResponseEntity.status( HttpStatus.SERVICE_UNAVAILABLE )
+		                     .header( HttpHeaders.RETRY_AFTER, String.valueOf( exception.getRetryAfterSeconds() ) )
+		                     .body( error( exception.getMessage() ) );
+	}
+
 	/**
 	 * Make sure that for controller methods that fail with an exception, we still return some pretty json
 	 */
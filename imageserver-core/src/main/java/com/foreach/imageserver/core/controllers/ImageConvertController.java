@@ -2,6 +2,7 @@ package com.foreach.imageserver.core.controllers;
 
 import com.foreach.imageserver.core.annotations.ImageServerController;
 import com.foreach.imageserver.core.services.ImageService;
+import com.foreach.imageserver.core.services.ImageTransformLane;
 import com.foreach.imageserver.dto.ImageConvertDto;
 import com.foreach.imageserver.dto.JsonResponse;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -49,6 +50,6 @@ public class ImageConvertController extends BaseImageAPIController
 			return error( "Access denied." );
 		}
 
-		return success( imageService.convertImageToTargets( convertDto ) );
+		return success( ImageTransformLane.execute( ImageTransformLane.BACKGROUND, () -> imageService.convertImageToTargets( convertDto ) ) );
 	}
 }
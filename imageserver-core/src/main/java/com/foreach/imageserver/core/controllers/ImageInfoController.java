@@ -11,6 +11,8 @@ import org.springframework.web.bind.ServletRequestDataBinder;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.support.ByteArrayMultipartFileEditor;
 
+import java.util.List;
+
 import static com.foreach.imageserver.core.controllers.ImageInfoController.IMAGE_INFO_PATH;
 
 /**
@@ -58,6 +60,21 @@ public class ImageInfoController extends BaseImageAPIController
 		}
 	}
 
+	/**
+	 * Info for multiple images in a single request, the external ids should be sent as form parameters.
+	 * Returns an info dto for every distinct external id, in the order requested.
+	 */
+	@PostMapping(params = "iid")
+	@ResponseBody
+	public JsonResponse infoForImages( @RequestParam(value = "token", required = true) String accessToken,
+	                                   @RequestParam(value = "iid", required = true) List<String> externalIds ) {
+		if ( !this.accessToken.equals( accessToken ) ) {
+			return error( "Access denied." );
+		}
+
+		return success( DtoUtil.toDto( externalIds, imageService.getByExternalIds( externalIds ) ) );
+	}
+
 	@PostMapping
 	@ResponseBody
 	public JsonResponse infoForUploadedImage( @RequestParam(value = "token", required = true) String accessToken,
@@ -7,15 +7,16 @@ import com.foreach.imageserver.core.rest.response.PregenerateResolutionsResponse
 import com.foreach.imageserver.core.rest.services.ImageRestService;
 import com.foreach.imageserver.core.services.DtoUtil;
 import com.foreach.imageserver.core.services.ImageContextService;
+import com.foreach.imageserver.core.services.ImagePregenerationService;
 import com.foreach.imageserver.core.services.ImageService;
 import com.foreach.imageserver.dto.JsonResponse;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.web.bind.ServletRequestDataBinder;
 import org.springframework.web.bind.annotation.*;
-import org.springframework.web.multipart.support.ByteArrayMultipartFileEditor;
+import org.springframework.web.multipart.MultipartFile;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
 import java.util.List;
 
@@ -25,6 +26,7 @@ public class ImageLoadController extends BaseImageAPIController
 	public static final String LOAD_IMAGE_PATH = "/api/image/load";
 	public static final String CONTEXT_LIST = "/api/context/list";
 	public static final String IMAGE_PREGENERATE = "/api/image/pregenerate";
+	public static final String IMAGE_PREGENERATE_STATUS = "/api/image/pregenerate/status";
 
 	@Autowired
 	private ImageService imageService;
@@ -35,15 +37,13 @@ public class ImageLoadController extends BaseImageAPIController
 	@Autowired
 	private ImageContextService contextService;
 
+	@Autowired
+	private ImagePregenerationService imagePregenerationService;
+
 	public ImageLoadController( String accessToken ) {
 		super( accessToken );
 	}
 
-	@InitBinder
-	public void initBinder( ServletRequestDataBinder binder ) {
-		binder.registerCustomEditor( byte[].class, new ByteArrayMultipartFileEditor() );
-	}
-
 	@RequestMapping(value = CONTEXT_LIST, method = RequestMethod.GET)
 	@ResponseBody
 	public JsonResponse listContexts( @RequestParam(value = "token", required = true) String accessToken ) {
@@ -65,7 +65,7 @@ public class ImageLoadController extends BaseImageAPIController
 	@ResponseBody
 	public JsonResponse load( @RequestParam(value = "token", required = true) String accessToken,
 	                          @RequestParam(value = "iid", required = true) String externalId,
-	                          @RequestParam(value = "imageData", required = true) byte[] imageData,
+	                          @RequestParam(value = "imageData", required = true) MultipartFile imageData,
 	                          @RequestParam(value = "imageTimestamp", required = false) Long imageTimestamp,
 	                          @RequestParam(value = "replaceExisting", required = false, defaultValue = "false") boolean replaceExisting ) {
 		if ( !this.accessToken.equals( accessToken ) ) {
@@ -99,5 +99,29 @@ public class ImageLoadController extends BaseImageAPIController
 
 		return success( response.getImageResolutions() );
 	}
-}
 
+	/**
+	 * Status of the pregeneration queue, or the number of pregeneration tasks still pending for a single image.
+	 * Can be polled by ingest pipelines to throttle pregeneration requests.
+	 */
+	@RequestMapping(value = IMAGE_PREGENERATE_STATUS, method = RequestMethod.GET)
+	@ResponseBody
+	public JsonResponse pregenerateStatus( @RequestParam(value = "token", required = true) String accessToken,
+	                                       @RequestParam(value = "iid", required = false) String externalId ) {
+		if ( !this.accessToken.equals( accessToken ) ) {
+			return error( "Access denied." );
+		}
+
+		if ( externalId == null ) {
+			return success( imagePregenerationService.getStatistics() );
+		}
+
+		Image image = imageService.getByExternalId( externalId );
+
+		if ( image == null ) {
+			return error( "Image does not exist." );
+		}
+
+		return success( Collections.singletonMap( "pendingTasks", imagePregenerationService.getPendingTasks( image ) ) );
+	}
+}
@@ -4,15 +4,22 @@ import com.foreach.imageserver.client.ImageRequestHashBuilder;
 import com.foreach.imageserver.core.annotations.ImageServerController;
 import com.foreach.imageserver.core.business.Image;
 import com.foreach.imageserver.core.business.ImageResolution;
+import com.foreach.imageserver.core.business.ImageTilePyramid;
+import com.foreach.imageserver.core.business.ImageType;
 import com.foreach.imageserver.core.config.WebConfiguration;
 import com.foreach.imageserver.core.rest.request.ViewImageRequest;
 import com.foreach.imageserver.core.rest.response.ViewImageResponse;
 import com.foreach.imageserver.core.rest.services.ImageRestService;
+import com.foreach.imageserver.core.services.DtoUtil;
 import com.foreach.imageserver.core.services.ImageService;
+import com.foreach.imageserver.core.services.ImageTileService;
+import com.foreach.imageserver.core.services.ImageTransformLane;
+import com.foreach.imageserver.core.services.exceptions.ImageTransformQueueTimeoutException;
 import com.foreach.imageserver.core.transformers.ImageSource;
 import com.foreach.imageserver.dto.ImageAspectRatioDto;
 import com.foreach.imageserver.dto.ImageModificationDto;
 import com.foreach.imageserver.dto.ImageResolutionDto;
+import com.foreach.imageserver.dto.ImageTypeDto;
 import com.foreach.imageserver.dto.ImageVariantDto;
 import com.foreach.imageserver.logging.LogHelper;
 import org.apache.commons.io.IOUtils;
@@ -23,28 +30,41 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
 import org.springframework.web.bind.ServletRequestDataBinder;
 import org.springframework.web.bind.annotation.InitBinder;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
 import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.context.request.ServletWebRequest;
 import org.springframework.web.multipart.support.ByteArrayMultipartFileEditor;
+import org.springframework.web.servlet.ModelAndView;
+import org.springframework.web.servlet.View;
 
+import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
-import java.util.Date;
-import java.util.Locale;
-import java.util.TimeZone;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.BiPredicate;
 
 @ImageServerController
 public class ImageStreamingController
 {
 	public static final String VIEW_PATH = "/view";
 	public static final String RENDER_PATH = "/api/image/render";
+	public static final String TILES_PATH = "/api/image/tiles";
 
 	private static final Logger LOG = LoggerFactory.getLogger( ImageStreamingController.class );
 	private static final FastDateFormat fastDateFormat =
@@ -59,12 +79,27 @@ public class ImageStreamingController
 	public static final String RESOLUTION_SEPARATOR = ",";
 	public static final String WIDTH_HEIGHT_SEPARATOR = "x";
 
+	// request attributes for serving a file using sendfile (Tomcat)
+	private static final String SENDFILE_SUPPORT_ATTRIBUTE = "org.apache.tomcat.sendfile.support";
+	private static final String SENDFILE_FILENAME_ATTRIBUTE = "org.apache.tomcat.sendfile.filename";
+	private static final String SENDFILE_START_ATTRIBUTE = "org.apache.tomcat.sendfile.start";
+	private static final String SENDFILE_END_ATTRIBUTE = "org.apache.tomcat.sendfile.end";
+
+	// smaller files are copied, same default as the Tomcat DefaultServlet
+	private static final long SENDFILE_MIN_SIZE = 48 * 1024;
+
+	// suggested delay before requesting a tile pyramid that is being generated
+	private static final int TILES_RETRY_AFTER_SECONDS = 10;
+
 	@Autowired
 	private ImageRestService imageRestService;
 
 	@Autowired
 	private ImageService imageService;
 
+	@Autowired
+	private ImageTileService imageTileService;
+
 	@Autowired(required = false)
 	@Qualifier(WebConfiguration.IMAGE_REQUEST_HASH_BUILDER)
 	private ImageRequestHashBuilder hashBuilder;
@@ -74,6 +109,7 @@ public class ImageStreamingController
 
 	private boolean provideStackTrace = false;
 	private int maxCacheAgeInSeconds = 30;
+	private int tileCacheAgeInSeconds = 31536000;
 
 	private String akamaiCacheMaxAge = "";
 
@@ -94,17 +130,22 @@ public class ImageStreamingController
 		this.akamaiCacheMaxAge = akamaiCacheMaxAge;
 	}
 
+	public void setTileCacheAgeInSeconds( int tileCacheAgeInSeconds ) {
+		this.tileCacheAgeInSeconds = tileCacheAgeInSeconds;
+	}
+
 	@InitBinder
 	public void initBinder( ServletRequestDataBinder binder ) {
 		binder.registerCustomEditor( byte[].class, new ByteArrayMultipartFileEditor() );
 	}
 
 	@RequestMapping(value = RENDER_PATH, method = RequestMethod.GET)
-	public void render( @RequestParam(value = "token", required = true) String accessToken,
-	                    @RequestParam(value = "iid", required = true) String externalId,
-	                    ImageModificationDto imageModificationDto,
-	                    ImageVariantDto imageVariantDto,
-	                    HttpServletResponse response ) {
+	public CompletableFuture<ModelAndView> render( @RequestParam(value = "token", required = true) String accessToken,
+	                                               @RequestParam(value = "iid", required = true) String externalId,
+	                                               ImageModificationDto imageModificationDto,
+	                                               ImageVariantDto imageVariantDto,
+	                                               HttpServletRequest request,
+	                                               HttpServletResponse response ) {
 
 		if ( !this.accessToken.equals( accessToken ) ) {
 			error( response, HttpStatus.FORBIDDEN, "Access denied." );
@@ -114,16 +155,19 @@ public class ImageStreamingController
 		renderImageRequest.setExternalId( externalId );
 		renderImageRequest.setImageModificationDto( imageModificationDto );
 		renderImageRequest.setImageVariantDto( imageVariantDto );
+		renderImageRequest.setNotModifiedCallback( notModifiedCallback( request ) );
+		negotiateOutputType( request, response, renderImageRequest );
 
-		render( response, renderImageRequest );
+		return render( request, response, renderImageRequest );
 	}
 
 	@RequestMapping(value = RENDER_PATH, method = RequestMethod.POST)
-	public void renderProvidedImage( @RequestParam(value = "token", required = true) String accessToken,
-	                                 @RequestParam(value = "imageData", required = true) byte[] imageData,
-	                                 ImageModificationDto imageModificationDto,
-	                                 ImageVariantDto imageVariantDto,
-	                                 HttpServletResponse response ) {
+	public CompletableFuture<ModelAndView> renderProvidedImage( @RequestParam(value = "token", required = true) String accessToken,
+	                                                            @RequestParam(value = "imageData", required = true) byte[] imageData,
+	                                                            ImageModificationDto imageModificationDto,
+	                                                            ImageVariantDto imageVariantDto,
+	                                                            HttpServletRequest request,
+	                                                            HttpServletResponse response ) {
 
 		if ( !this.accessToken.equals( accessToken ) ) {
 			error( response, HttpStatus.FORBIDDEN, "Access denied." );
@@ -133,35 +177,182 @@ public class ImageStreamingController
 		renderImageRequest.setImageData( imageData );
 		renderImageRequest.setImageModificationDto( imageModificationDto );
 		renderImageRequest.setImageVariantDto( imageVariantDto );
+		negotiateOutputType( request, response, renderImageRequest );
+
+		return render( request, response, renderImageRequest );
+	}
+
+	/**
+	 * Deep zoom descriptor of an image.  If the tiles of a tileable image do not exist yet, their generation is
+	 * queued and a 503 is returned, the client should retry later.
+	 * <p/>
+	 * The descriptor points to the tiles of the current image using its id: the tiles of an image that is replaced
+	 * under the same external id have different urls.  Only the descriptor itself has to be cached for a short time.
+	 */
+	@RequestMapping(value = TILES_PATH + "/{externalId:.+}.dzi", method = RequestMethod.GET)
+	public void tilePyramid( @RequestParam(value = "token") String accessToken,
+	                         @PathVariable("externalId") String externalId,
+	                         HttpServletRequest request,
+	                         HttpServletResponse response ) {
+		if ( !this.accessToken.equals( accessToken ) ) {
+			error( response, HttpStatus.FORBIDDEN, "Access denied." );
+			return;
+		}
+
+		Image image = imageService.getByExternalId( externalId );
+		if ( image == null ) {
+			error( response, HttpStatus.NOT_FOUND, "No such image." );
+			return;
+		}
+
+		Optional<ImageTilePyramid> pyramid = imageTileService.getTilePyramid( image );
+		if ( pyramid.isPresent() ) {
+			byte[] descriptor = pyramid.get().serialize( getTilesUrl( request, image ) ).getBytes( StandardCharsets.UTF_8 );
+			response.setStatus( HttpStatus.OK.value() );
+			response.setContentType( MediaType.APPLICATION_XML_VALUE );
+			response.setContentLength( descriptor.length );
+			setCacheHeaders( response, maxCacheAgeInSeconds );
+			try (OutputStream responseStream = response.getOutputStream()) {
+				responseStream.write( descriptor );
+			}
+			catch ( IOException ioe ) {
+				LOG.error( "IOExeption in tilePyramid", ioe );
+			}
+		}
+		else if ( imageTileService.submit( image ) ) {
+			response.setHeader( HttpHeaders.RETRY_AFTER, String.valueOf( TILES_RETRY_AFTER_SECONDS ) );
+			error( response, HttpStatus.SERVICE_UNAVAILABLE, "Tiles are being generated." );
+		}
+		else {
+			error( response, HttpStatus.NOT_FOUND, "No tiles for image." );
+		}
+	}
+
+	/**
+	 * Url of the folder holding the levels of the tile pyramid of the image: {@code <externalId>/<imageId>_files/}
+	 * next to the descriptor.
+	 */
+	private static String getTilesUrl( HttpServletRequest request, Image image ) {
+		String descriptorUrl = request.getRequestURL().toString();
+		int fileName = descriptorUrl.lastIndexOf( '/' ) + 1;
+		return descriptorUrl.substring( 0, fileName ) + StringUtils.removeEnd( descriptorUrl.substring( fileName ), ".dzi" )
+				+ "/" + image.getId() + "_files/";
+	}
+
+	/**
+	 * Single deep zoom tile of a specific image, as referred to by the descriptor.  The tile never changes.
+	 */
+	@RequestMapping(value = TILES_PATH + "/{externalId:.+}/{imageId:\\d+}_files/{level:\\d+}/{column:\\d+}_{row:\\d+}.{extension:\\w+}",
+			method = RequestMethod.GET)
+	public void tile( @RequestParam(value = "token") String accessToken,
+	                  @PathVariable("externalId") String externalId,
+	                  @PathVariable("imageId") long imageId,
+	                  @PathVariable("level") int level,
+	                  @PathVariable("column") int column,
+	                  @PathVariable("row") int row,
+	                  @PathVariable("extension") String extension,
+	                  HttpServletRequest request,
+	                  HttpServletResponse response ) {
+		renderTile( accessToken, externalId, imageId, level, column, row, extension, request, response, tileCacheAgeInSeconds );
+	}
+
+	/**
+	 * Single deep zoom tile of the current image, for viewers that derive the tile urls from the descriptor url.
+	 * Cached only for a short time, as the image can be replaced.
+	 */
+	@RequestMapping(value = TILES_PATH + "/{externalId:.+}_files/{level:\\d+}/{column:\\d+}_{row:\\d+}.{extension:\\w+}", method = RequestMethod.GET)
+	public void currentTile( @RequestParam(value = "token") String accessToken,
+	                         @PathVariable("externalId") String externalId,
+	                         @PathVariable("level") int level,
+	                         @PathVariable("column") int column,
+	                         @PathVariable("row") int row,
+	                         @PathVariable("extension") String extension,
+	                         HttpServletRequest request,
+	                         HttpServletResponse response ) {
+		renderTile( accessToken, externalId, null, level, column, row, extension, request, response, maxCacheAgeInSeconds );
+	}
+
+	private void renderTile( String accessToken,
+	                         String externalId,
+	                         Long imageId,
+	                         int level,
+	                         int column,
+	                         int row,
+	                         String extension,
+	                         HttpServletRequest request,
+	                         HttpServletResponse response,
+	                         int cacheAgeInSeconds ) {
+		if ( !this.accessToken.equals( accessToken ) ) {
+			error( response, HttpStatus.FORBIDDEN, "Access denied." );
+			return;
+		}
+
+		ImageType tileType = ImageType.getForExtension( "." + extension );
+		Image image = tileType != null ? imageService.getByExternalId( externalId ) : null;
+		if ( image != null && imageId != null && !imageId.equals( image.getId() ) ) {
+			// tile of an image that has been replaced
+			image = null;
+		}
+		ImageSource tile = image != null ? imageTileService.getTile( image, level, column, row, tileType ) : null;
 
-		render( response, renderImageRequest );
+		if ( tile == null ) {
+			error( response, HttpStatus.NOT_FOUND, "No such tile." );
+		}
+		else {
+			renderImageSource( tile, request, response, cacheAgeInSeconds );
+		}
 	}
 
-	private void render( HttpServletResponse response, ViewImageRequest renderImageRequest ) {
-		ViewImageResponse renderImageResponse = imageRestService.renderImage( renderImageRequest );
+	private CompletableFuture<ModelAndView> render( HttpServletRequest request, HttpServletResponse response, ViewImageRequest renderImageRequest ) {
+		CompletableFuture<ViewImageResponse> renderImageResponse;
+		try {
+			renderImageResponse = ImageTransformLane.execute( ImageTransformLane.API, () -> imageRestService.renderImageAsync( renderImageRequest ) );
+		}
+		catch ( RuntimeException e ) {
+			renderImageResponse = failed( e );
+		}
+
+		return respond( renderImageResponse, request, response, this::writeRenderResponse );
+	}
 
-		if ( renderImageResponse.isImageDoesNotExist() ) {
+	private void writeRenderResponse( CompletableFuture<ViewImageResponse> imageResponse, HttpServletRequest request, HttpServletResponse response ) {
+		ViewImageResponse renderImageResponse;
+		try {
+			renderImageResponse = join( imageResponse );
+		}
+		catch ( ImageTransformQueueTimeoutException qte ) {
+			serviceUnavailable( response, qte );
+			return;
+		}
+
+		if ( renderImageResponse.isNotModified() ) {
+			notModified( response, renderImageResponse );
+		}
+		else if ( renderImageResponse.isImageDoesNotExist() ) {
 			error( response, HttpStatus.NOT_FOUND, "No such image." );
 		}
 		else if ( renderImageResponse.isFailed() ) {
 			error( response, HttpStatus.NOT_FOUND, "Could not create variant." );
 		}
 		else {
-			renderImageSource( renderImageResponse.getImageSource(), response );
+			setValidators( response, renderImageResponse );
+			renderImageSource( renderImageResponse.getImageSource(), request, response );
 		}
 	}
 
 	@RequestMapping(value = VIEW_PATH, method = RequestMethod.GET)
-	public void view( @RequestParam(value = "iid") String externalId,
-	                  @RequestParam(value = "context") String contextCode,
-	                  ImageAspectRatioDto aspectRatioDto,
-	                  ImageResolutionDto imageResolutionDto,
-	                  ImageVariantDto imageVariantDto,
-	                  String size,
-	                  @RequestParam(value = "hash", required = false) String securityHash,
-	                  HttpServletResponse response ) {
+	public CompletableFuture<ModelAndView> view( @RequestParam(value = "iid") String externalId,
+	                                             @RequestParam(value = "context") String contextCode,
+	                                             ImageAspectRatioDto aspectRatioDto,
+	                                             ImageResolutionDto imageResolutionDto,
+	                                             ImageVariantDto imageVariantDto,
+	                                             String size,
+	                                             @RequestParam(value = "hash", required = false) String securityHash,
+	                                             HttpServletRequest request,
+	                                             HttpServletResponse response ) {
 		// TODO Make sure we only rely on objects that can be long-term cached for retrieving the image.
 
+		CompletableFuture<ViewImageResponse> viewImageResponse;
 		try {
 			ViewImageRequest viewImageRequest = new ViewImageRequest();
 			viewImageRequest.setExternalId( externalId );
@@ -170,6 +361,8 @@ public class ImageStreamingController
 
 			viewImageRequest.setImageResolutionDto( determineImageResolution( externalId, imageResolutionDto, size ) );
 			viewImageRequest.setImageAspectRatioDto( aspectRatioDto );
+			viewImageRequest.setNotModifiedCallback( notModifiedCallback( request ) );
+			negotiateOutputType( request, response, viewImageRequest );
 
 			if ( !strictMode && securityHash != null && hashBuilder != null ) {
 				viewImageRequest.setSecurityCheckCallback( () -> {
@@ -183,9 +376,34 @@ public class ImageStreamingController
 				} );
 			}
 
-			ViewImageResponse viewImageResponse = imageRestService.viewImage( viewImageRequest );
+			viewImageResponse = ImageTransformLane.execute(
+					ImageTransformLane.INTERACTIVE, () -> imageRestService.viewImageAsync( viewImageRequest )
+			);
+		}
+		catch ( RuntimeException e ) {
+			viewImageResponse = failed( e );
+		}
 
-			if ( viewImageResponse.isImageDoesNotExist() ) {
+		return respond(
+				viewImageResponse, request, response,
+				( imageResponse, req, rsp ) -> writeViewResponse( imageResponse, externalId, contextCode, imageResolutionDto, imageVariantDto, req, rsp )
+		);
+	}
+
+	private void writeViewResponse( CompletableFuture<ViewImageResponse> imageResponse,
+	                                String externalId,
+	                                String contextCode,
+	                                ImageResolutionDto imageResolutionDto,
+	                                ImageVariantDto imageVariantDto,
+	                                HttpServletRequest request,
+	                                HttpServletResponse response ) {
+		try {
+			ViewImageResponse viewImageResponse = join( imageResponse );
+
+			if ( viewImageResponse.isNotModified() ) {
+				notModified( response, viewImageResponse );
+			}
+			else if ( viewImageResponse.isImageDoesNotExist() ) {
 				error( response, HttpStatus.NOT_FOUND, "No such image." );
 			}
 			else if ( viewImageResponse.isContextDoesNotExist() ) {
@@ -205,11 +423,15 @@ public class ImageStreamingController
 				error( response, HttpStatus.NOT_FOUND, "Could not create variant." );
 			}
 			else {
-				renderImageSource( viewImageResponse.getImageSource(), response );
+				setValidators( response, viewImageResponse );
+				renderImageSource( viewImageResponse.getImageSource(), request, response );
 			}
 
 		}
-		catch ( Exception e ) { // fail-safe to avoid that stack traces are shown when an unexpected exception occurs
+		catch ( ImageTransformQueueTimeoutException qte ) {
+			serviceUnavailable( response, qte );
+		}
+		catch ( RuntimeException e ) { // fail-safe to avoid that stack traces are shown when an unexpected exception occurs
 			// log the exception context and either send a clean error (in production) or rethrow the exception (anywhere else)
 			LOG.error(
 					"Retrieving image variant caused exception - ImageStreamingController#view: externalId={}, contextCode={}, imageResolutionDto={}, imageVariantDto={}",
@@ -224,6 +446,46 @@ public class ImageStreamingController
 		}
 	}
 
+	/**
+	 * Writes the response as soon as the image response is available.  If it is available immediately
+	 * (variant exists, not modified, error) the response is written directly and {@code null} is returned.
+	 * Otherwise the request is handled asynchronously: the request thread is released while the variant is being
+	 * generated, and the response is written by the returned view when the request is dispatched again.
+	 */
+	private static CompletableFuture<ModelAndView> respond( CompletableFuture<ViewImageResponse> imageResponse,
+	                                                        HttpServletRequest request,
+	                                                        HttpServletResponse response,
+	                                                        ResponseWriter responseWriter ) {
+		if ( imageResponse.isDone() ) {
+			responseWriter.write( imageResponse, request, response );
+			return null;
+		}
+
+		View view = ( model, req, rsp ) -> responseWriter.write( imageResponse, req, rsp );
+		return imageResponse.handle( ( result, failure ) -> new ModelAndView( view ) );
+	}
+
+	private static ViewImageResponse join( CompletableFuture<ViewImageResponse> imageResponse ) {
+		try {
+			return imageResponse.join();
+		}
+		catch ( CompletionException ce ) {
+			if ( ce.getCause() instanceof RuntimeException ) {
+				throw (RuntimeException) ce.getCause();
+			}
+			if ( ce.getCause() instanceof Error ) {
+				throw (Error) ce.getCause();
+			}
+			throw ce;
+		}
+	}
+
+	private static CompletableFuture<ViewImageResponse> failed( RuntimeException e ) {
+		CompletableFuture<ViewImageResponse> future = new CompletableFuture<>();
+		future.completeExceptionally( e );
+		return future;
+	}
+
 	private ImageResolutionDto determineImageResolution( String externalId,
 	                                                     ImageResolutionDto imageresolution,
 	                                                     String size ) {
@@ -261,6 +523,72 @@ public class ImageStreamingController
 		}
 	}
 
+	/**
+	 * Checks the validators of the image against the conditional headers (If-None-Match, If-Modified-Since) of the request.
+	 * The response is not modified, the validators are only sent along with the image.
+	 */
+	private static BiPredicate<String, Long> notModifiedCallback( HttpServletRequest request ) {
+		return new ServletWebRequest( request )::checkNotModified;
+	}
+
+	/**
+	 * If the output type should be selected by the image server, registers the image types explicitly accepted
+	 * by the requester.  The response depends on the Accept header in that case, also for caches.
+	 */
+	private static void negotiateOutputType( HttpServletRequest request, HttpServletResponse response, ViewImageRequest imageRequest ) {
+		ImageVariantDto imageVariantDto = imageRequest.getImageVariantDto();
+		if ( imageVariantDto != null && imageVariantDto.getImageType() == ImageTypeDto.AUTO ) {
+			response.setHeader( HttpHeaders.VARY, HttpHeaders.ACCEPT );
+			imageRequest.setAcceptedOutputTypes( acceptedOutputTypes( request.getHeader( HttpHeaders.ACCEPT ) ) );
+		}
+	}
+
+	/**
+	 * Wildcards are ignored: a requester accepting {@code image/*} does not necessarily support every image type.
+	 */
+	private static Set<ImageTypeDto> acceptedOutputTypes( String accept ) {
+		Set<ImageTypeDto> imageTypes = EnumSet.noneOf( ImageTypeDto.class );
+
+		if ( StringUtils.isNotBlank( accept ) ) {
+			try {
+				for ( MediaType mediaType : MediaType.parseMediaTypes( accept ) ) {
+					if ( !mediaType.isWildcardType() && !mediaType.isWildcardSubtype() && mediaType.getQualityValue() > 0 ) {
+						ImageType imageType = ImageType.getForContentType( mediaType.getType() + "/" + mediaType.getSubtype() );
+						if ( imageType != null ) {
+							imageTypes.add( DtoUtil.toDto( imageType ) );
+						}
+					}
+				}
+			}
+			catch ( InvalidMediaTypeException imte ) {
+				LOG.debug( "Ignoring invalid Accept header: {}", accept );
+			}
+		}
+
+		return imageTypes;
+	}
+
+	private void notModified( HttpServletResponse response, ViewImageResponse imageResponse ) {
+		response.setStatus( HttpStatus.NOT_MODIFIED.value() );
+		setValidators( response, imageResponse );
+		setCacheHeaders( response, maxCacheAgeInSeconds );
+	}
+
+	private static void setValidators( HttpServletResponse response, ViewImageResponse imageResponse ) {
+		if ( imageResponse.getETag() != null ) {
+			response.setHeader( HttpHeaders.ETAG, imageResponse.getETag() );
+		}
+		if ( imageResponse.getLastModified() != null ) {
+			response.setDateHeader( HttpHeaders.LAST_MODIFIED, imageResponse.getLastModified() );
+		}
+	}
+
+	private static void serviceUnavailable( HttpServletResponse response, ImageTransformQueueTimeoutException qte ) {
+		LOG.warn( "Unable to create variant in time, server too busy: {}", qte.getMessage() );
+		response.setHeader( HttpHeaders.RETRY_AFTER, String.valueOf( qte.getRetryAfterSeconds() ) );
+		error( response, HttpStatus.SERVICE_UNAVAILABLE, "Server too busy." );
+	}
+
 	private static void error( HttpServletResponse response, HttpStatus status, String errorMessage ) {
 		response.setStatus( status.value() );
 		response.setContentType( "text/plain" );
@@ -277,22 +605,28 @@ public class ImageStreamingController
 		}
 	}
 
-	private void renderImageSource( ImageSource imageSource, HttpServletResponse response ) {
-		response.setStatus( HttpStatus.OK.value() );
-		response.setContentType( imageSource.getImageType().getContentType() );
+	private void renderImageSource( ImageSource imageSource, HttpServletRequest request, HttpServletResponse response ) {
+		renderImageSource( imageSource, request, response, maxCacheAgeInSeconds );
+	}
 
-		if ( maxCacheAgeInSeconds > 0 ) {
-			response.setHeader( "Cache-Control", String.format( "max-age=%d", maxCacheAgeInSeconds ) );
-			response.setHeader( "Expires",
-			                    fastDateFormat.format( DateUtils.addSeconds( new Date(), maxCacheAgeInSeconds ) ) );
-		}
-		if ( akamaiCacheMaxAge != null && !akamaiCacheMaxAge.isEmpty() ) {
-			response.setHeader( AKAMAI_EDGE_CONTROL_HEADER, AKAMAI_CACHE_MAX_AGE + akamaiCacheMaxAge );
-		}
+	private void renderImageSource( ImageSource imageSource, HttpServletRequest request, HttpServletResponse response, int cacheAgeInSeconds ) {
+		try {
+			Optional<Path> imageFile = imageSource.getImageFile();
+			long contentLength = imageFile.isPresent() ? Files.size( imageFile.get() ) : -1;
 
-		try (InputStream is = imageSource.getImageStream()) {
-			try (OutputStream responseStream = response.getOutputStream()) {
-				IOUtils.copy( is, responseStream );
+			response.setStatus( HttpStatus.OK.value() );
+			response.setContentType( imageSource.getImageType().getContentType() );
+			setCacheHeaders( response, cacheAgeInSeconds );
+
+			if ( imageFile.isPresent() ) {
+				writeImageFile( imageFile.get(), contentLength, request, response );
+			}
+			else {
+				try (InputStream is = imageSource.getImageStream()) {
+					try (OutputStream responseStream = response.getOutputStream()) {
+						IOUtils.copy( is, responseStream );
+					}
+				}
 			}
 		}
 		catch ( IOException ioe ) {
@@ -300,4 +634,40 @@ public class ImageStreamingController
 			error( response, HttpStatus.INTERNAL_SERVER_ERROR, ioe.getMessage() );
 		}
 	}
+
+	/**
+	 * Lets the servlet container send the file directly from the file system (sendfile) if it supports it,
+	 * else copies the file to the response without an intermediate buffer per request.
+	 */
+	private static void writeImageFile( Path imageFile, long contentLength, HttpServletRequest request, HttpServletResponse response ) throws IOException {
+		response.setContentLengthLong( contentLength );
+
+		if ( contentLength >= SENDFILE_MIN_SIZE && Boolean.TRUE.equals( request.getAttribute( SENDFILE_SUPPORT_ATTRIBUTE ) ) ) {
+			request.setAttribute( SENDFILE_FILENAME_ATTRIBUTE, imageFile.toAbsolutePath().toString() );
+			request.setAttribute( SENDFILE_START_ATTRIBUTE, 0L );
+			request.setAttribute( SENDFILE_END_ATTRIBUTE, contentLength );
+		}
+		else {
+			try (OutputStream responseStream = response.getOutputStream()) {
+				Files.copy( imageFile, responseStream );
+			}
+		}
+	}
+
+	private void setCacheHeaders( HttpServletResponse response, int cacheAgeInSeconds ) {
+		if ( cacheAgeInSeconds > 0 ) {
+			response.setHeader( "Cache-Control", String.format( "max-age=%d", cacheAgeInSeconds ) );
+			response.setHeader( "Expires",
+			                    fastDateFormat.format( DateUtils.addSeconds( new Date(), cacheAgeInSeconds ) ) );
+		}
+		if ( akamaiCacheMaxAge != null && !akamaiCacheMaxAge.isEmpty() ) {
+			response.setHeader( AKAMAI_EDGE_CONTROL_HEADER, AKAMAI_CACHE_MAX_AGE + akamaiCacheMaxAge );
+		}
+	}
+
+	@FunctionalInterface
+	private interface ResponseWriter
+	{
+		void write( CompletableFuture<ViewImageResponse> imageResponse, HttpServletRequest request, HttpServletResponse response );
+	}
 }
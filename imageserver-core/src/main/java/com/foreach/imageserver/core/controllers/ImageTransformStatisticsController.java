@@ -0,0 +1,40 @@
+package com.foreach.imageserver.core.controllers;
+
+import com.foreach.imageserver.core.annotations.ImageServerController;
+import com.foreach.imageserver.core.services.ImageTransformScheduler;
+import com.foreach.imageserver.dto.JsonResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseBody;
+
+/**
+ * Exposes the queue depth and wait time statistics of every transform lane.
+ *
+ * @author Arne Vandamme
+ * @since 6.3.0
+ */
+@ImageServerController
+@RequestMapping(ImageTransformStatisticsController.TRANSFORM_STATISTICS_PATH)
+public class ImageTransformStatisticsController extends BaseImageAPIController
+{
+	public static final String TRANSFORM_STATISTICS_PATH = "/api/transform/statistics";
+
+	@Autowired
+	private ImageTransformScheduler imageTransformScheduler;
+
+	public ImageTransformStatisticsController( String accessToken ) {
+		super( accessToken );
+	}
+
+	@GetMapping
+	@ResponseBody
+	public JsonResponse statistics( @RequestParam(value = "token") String accessToken ) {
+		if ( !this.accessToken.equals( accessToken ) ) {
+			return error( "Access denied." );
+		}
+
+		return success( imageTransformScheduler.getStatistics() );
+	}
+}
@@ -7,7 +7,6 @@ import com.foreach.across.core.installers.InstallerRunCondition;
 import com.foreach.imageserver.core.business.Image;
 import com.foreach.imageserver.core.services.ImageService;
 import lombok.RequiredArgsConstructor;
-import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -15,7 +14,6 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.env.Environment;
 import org.springframework.core.io.Resource;
 
-import java.io.InputStream;
 import java.util.Date;
 
 @Installer(description = "Installs the 404 dummy image", phase = InstallerPhase.AfterContextBootstrap, version = 1,
@@ -42,9 +40,7 @@ public class Image404Installer
 			if ( image == null ) {
 				LOG.info( "Installing default 404 image under key {}", fallbackImageKey );
 
-				try (InputStream is = resource.getInputStream()) {
-					imageService.saveImage( fallbackImageKey, IOUtils.toByteArray( is ), new Date(), false );
-				}
+				imageService.saveImage( fallbackImageKey, resource, new Date(), false );
 			}
 		}
 	}
@@ -4,7 +4,7 @@ import com.foreach.across.core.annotations.Installer;
 import com.foreach.across.core.installers.AcrossLiquibaseInstaller;
 import com.foreach.imageserver.core.config.ImageSchemaConfiguration;
 
-@Installer(description = "Creates ImageServer core initial schema.", version = 11)
+@Installer(description = "Creates ImageServer core initial schema.", version = 14)
 public class InitialSchemaInstaller extends AcrossLiquibaseInstaller
 {
 	public InitialSchemaInstaller() {
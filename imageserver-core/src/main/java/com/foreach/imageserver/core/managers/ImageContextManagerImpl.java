@@ -7,6 +7,7 @@ import lombok.RequiredArgsConstructor;
 import org.springframework.beans.BeanUtils;
 import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.cache.annotation.Cacheable;
+import org.springframework.cache.annotation.Caching;
 import org.springframework.stereotype.Repository;
 
 import java.util.Collection;
@@ -32,7 +33,10 @@ public class ImageContextManagerImpl implements ImageContextManager
 	}
 
 	@Override
-	@CacheEvict(value = CACHE_NAME, allEntries = true)
+	@Caching(evict = {
+			@CacheEvict(value = CACHE_NAME, allEntries = true),
+			@CacheEvict(value = ImageResolutionManagerImpl.CACHE_NAME, allEntries = true)
+	})
 	public void save( ImageContextDto contextDto ) {
 		ImageContext context;
 
@@ -2,6 +2,8 @@ package com.foreach.imageserver.core.managers;
 
 import com.foreach.imageserver.core.business.Image;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 public interface ImageManager
@@ -10,7 +12,42 @@ public interface ImageManager
 
 	Image getByExternalId( String externalId );
 
+	/**
+	 * Fetch multiple images at once, bypassing the cache.  Images that do not exist are not returned.
+	 *
+	 * @param externalIds external ids of the images
+	 * @return images found, in no particular order
+	 */
+	List<Image> getByExternalIds( Collection<String> externalIds );
+
+	/**
+	 * Fetch an image sharing the original with the given content hash, bypassing the cache.
+	 * The image returned is locked until the end of the current transaction, it can not be deleted
+	 * by another transaction in the meantime.  Must be called within a transaction.
+	 *
+	 * @param contentHash SHA-256 hash of the original
+	 * @return any image with that content hash, null if there is none
+	 */
+	Image getByContentHash( String contentHash );
+
+	/**
+	 * Fetch the current modification version of an image, bypassing the cache.
+	 *
+	 * @param imageId id of the image
+	 * @return modification version, null if the image does not exist
+	 */
+	Long getModificationVersion( long imageId );
+
+	/**
+	 * Remove an image from the cache, the next lookup will fetch it again.
+	 *
+	 * @param image to remove
+	 */
+	void evict( Image image );
+
 	void insert( Image image );
 
+	void update( Image image );
+
 	void delete( Image image );
 }
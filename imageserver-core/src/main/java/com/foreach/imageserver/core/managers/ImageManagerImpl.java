@@ -9,7 +9,7 @@ import org.springframework.cache.annotation.Cacheable;
 import org.springframework.cache.annotation.Caching;
 import org.springframework.stereotype.Repository;
 
-import java.util.Optional;
+import java.util.*;
 
 @Repository
 @RequiredArgsConstructor
@@ -17,6 +17,9 @@ public class ImageManagerImpl implements ImageManager
 {
 	private static final String CACHE_NAME = "images";
 
+	// some databases limit the number of parameters in a single IN clause
+	private static final int MAX_IDS_PER_QUERY = 500;
+
 	private final ImageRepository imageRepository;
 	private final HibernateSessionHolder hibernateSessionHolder;
 
@@ -35,11 +38,62 @@ public class ImageManagerImpl implements ImageManager
 		return imageRepository.getByExternalId( externalId );
 	}
 
+	@Override
+	public List<Image> getByExternalIds( Collection<String> externalIds ) {
+		List<String> ids = new ArrayList<>( new LinkedHashSet<>( externalIds ) );
+		List<Image> images = new ArrayList<>( ids.size() );
+
+		for ( int i = 0; i < ids.size(); i += MAX_IDS_PER_QUERY ) {
+			images.addAll( imageRepository.getByExternalIdIn( ids.subList( i, Math.min( ids.size(), i + MAX_IDS_PER_QUERY ) ) ) );
+		}
+
+		return images;
+	}
+
+	@Override
+	public Image getByContentHash( String contentHash ) {
+		return imageRepository.findFirstByContentHash( contentHash );
+	}
+
+	@Override
+	public Long getModificationVersion( long imageId ) {
+		return imageRepository.getModificationVersion( imageId );
+	}
+
+	@Override
+	@Caching(evict = {
+			@CacheEvict(
+					value = CACHE_NAME,
+					key = "T(com.foreach.imageserver.core.managers.ImageManagerImpl).byExternalIdKey(#image.externalId)"
+			),
+			@CacheEvict(
+					value = CACHE_NAME,
+					key = "T(com.foreach.imageserver.core.managers.ImageManagerImpl).byIdKey(#image.id)"
+			)
+	})
+	public void evict( Image image ) {
+	}
+
 	@Override
 	public void insert( Image image ) {
 		imageRepository.create( image );
 	}
 
+	@Override
+	@Caching(evict = {
+			@CacheEvict(
+					value = CACHE_NAME,
+					key = "T(com.foreach.imageserver.core.managers.ImageManagerImpl).byExternalIdKey(#image.externalId)"
+			),
+			@CacheEvict(
+					value = CACHE_NAME,
+					key = "T(com.foreach.imageserver.core.managers.ImageManagerImpl).byIdKey(#image.id)"
+			)
+	})
+	public void update( Image image ) {
+		imageRepository.update( image );
+	}
+
 	@Override
 	@Caching(evict = {
 			@CacheEvict(
@@ -0,0 +1,102 @@
+package com.foreach.imageserver.core.managers;
+
+import com.foreach.imageserver.core.business.ImageResolution;
+import com.foreach.imageserver.math.AspectRatio;
+import lombok.NonNull;
+
+import java.util.*;
+
+/**
+ * Immutable lookup structure for the resolutions of a single context.  Built once when the resolutions
+ * are loaded, so that matching a requested resolution does not require iterating or sorting all resolutions.
+ * <p/>
+ * Resolutions are indexed on their exact dimensions, and per aspect ratio sorted on width for nearest-match lookups.
+ * If multiple resolutions have the same dimensions, the first one in the original order is returned.
+ *
+ * @author Arne Vandamme
+ * @see ImageResolutionManager#getIndexForContext(long)
+ * @since 6.3.0
+ */
+public final class ImageResolutionIndex
+{
+	private final List<ImageResolution> resolutions;
+	private final Map<Long, ImageResolution> byDimensions;
+	private final Map<AspectRatio, RatioResolutions> byAspectRatio;
+
+	public ImageResolutionIndex( @NonNull Collection<ImageResolution> resolutions ) {
+		this.resolutions = Collections.unmodifiableList( new ArrayList<>( resolutions ) );
+
+		Map<Long, ImageResolution> dimensions = new HashMap<>( resolutions.size() * 2 );
+		Map<AspectRatio, List<ImageResolution>> ratios = new HashMap<>();
+
+		for ( ImageResolution resolution : resolutions ) {
+			dimensions.putIfAbsent( key( resolution.getWidth(), resolution.getHeight() ), resolution );
+			ratios.computeIfAbsent( resolution.getDimensions().fetchAspectRatio(), ratio -> new ArrayList<>() ).add( resolution );
+		}
+
+		Map<AspectRatio, RatioResolutions> sortedRatios = new HashMap<>( ratios.size() * 2 );
+		ratios.forEach( ( ratio, list ) -> sortedRatios.put( ratio, new RatioResolutions( list ) ) );
+
+		byDimensions = dimensions;
+		byAspectRatio = sortedRatios;
+	}
+
+	/**
+	 * @return all resolutions in their original order
+	 */
+	public List<ImageResolution> getResolutions() {
+		return resolutions;
+	}
+
+	/**
+	 * @return resolution with exactly these dimensions or {@code null} if none
+	 */
+	public ImageResolution getByDimensions( int width, int height ) {
+		return byDimensions.get( key( width, height ) );
+	}
+
+	/**
+	 * Find the smallest resolution with the aspect ratio that is at least as wide as requested.
+	 * If there is none, the largest resolution with the aspect ratio is returned.
+	 *
+	 * @return resolution or {@code null} if there are no resolutions with the aspect ratio
+	 */
+	public ImageResolution getByAspectRatio( AspectRatio aspectRatio, int width ) {
+		RatioResolutions candidates = byAspectRatio.get( aspectRatio );
+		return candidates != null ? candidates.getClosest( width ) : null;
+	}
+
+	private static long key( int width, int height ) {
+		return ( (long) width << 32 ) | ( height & 0xFFFFFFFFL );
+	}
+
+	private static final class RatioResolutions
+	{
+		private final ImageResolution[] resolutions;
+		private final int[] widths;
+
+		RatioResolutions( List<ImageResolution> list ) {
+			// stable sort: resolutions of the same width keep their original order
+			list.sort( Comparator.comparingInt( ImageResolution::getWidth ) );
+			resolutions = list.toArray( new ImageResolution[0] );
+			widths = new int[resolutions.length];
+			for ( int i = 0; i < resolutions.length; i++ ) {
+				widths[i] = resolutions[i].getWidth();
+			}
+		}
+
+		ImageResolution getClosest( int width ) {
+			int low = 0, high = widths.length;
+			while ( low < high ) {
+				int middle = ( low + high ) >>> 1;
+				if ( widths[middle] < width ) {
+					low = middle + 1;
+				}
+				else {
+					high = middle;
+				}
+			}
+			return resolutions[Math.min( low, resolutions.length - 1 )];
+		}
+	}
+}
@@ -12,6 +12,14 @@ public interface ImageResolutionManager
 
 	List<ImageResolution> getForContext( long contextId );
 
+	/**
+	 * Get the lookup index for all resolutions of a context.  The index is rebuilt whenever a resolution is saved.
+	 *
+	 * @param contextId id of the context
+	 * @return index, never {@code null}
+	 */
+	ImageResolutionIndex getIndexForContext( long contextId );
+
 	Collection<ImageResolution> getAllResolutions();
 
 	void saveResolution( ImageResolution resolution );
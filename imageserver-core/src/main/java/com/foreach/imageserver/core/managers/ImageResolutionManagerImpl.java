@@ -16,7 +16,7 @@ import java.util.Optional;
 @RequiredArgsConstructor
 public class ImageResolutionManagerImpl implements ImageResolutionManager
 {
-	private static final String CACHE_NAME = "imageResolutions";
+	static final String CACHE_NAME = "imageResolutions";
 
 	private final ImageResolutionRepository imageResolutionRepository;
 
@@ -37,6 +37,12 @@ public class ImageResolutionManagerImpl implements ImageResolutionManager
 		return Collections.unmodifiableList( imageResolutionRepository.getForContext( contextId ) );
 	}
 
+	@Override
+	@Cacheable(value = CACHE_NAME, key = "'indexForContext-'+#contextId")
+	public ImageResolutionIndex getIndexForContext( long contextId ) {
+		return new ImageResolutionIndex( imageResolutionRepository.getForContext( contextId ) );
+	}
+
 	@Override
 	public Collection<ImageResolution> getAllResolutions() {
 		return Collections.unmodifiableCollection( imageResolutionRepository.findAll() );
@@ -0,0 +1,26 @@
+package com.foreach.imageserver.core.managers;
+
+import com.foreach.across.modules.filemanager.business.FileDescriptor;
+import com.foreach.imageserver.core.business.ImageVariantFile;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * @author Arne Vandamme
+ * @since 6.3.0
+ */
+public interface ImageVariantFileManager
+{
+	List<ImageVariantFile> getVariantFiles( long imageId );
+
+	/**
+	 * Registers the variant file in a separate transaction.  Fails with a
+	 * {@link org.springframework.dao.DataIntegrityViolationException} if the same file is registered concurrently.
+	 *
+	 * @param variantFile to register
+	 */
+	void save( ImageVariantFile variantFile );
+
+	void delete( long imageId, Collection<FileDescriptor> files );
+}
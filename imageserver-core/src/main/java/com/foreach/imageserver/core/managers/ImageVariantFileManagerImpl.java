@@ -0,0 +1,52 @@
+package com.foreach.imageserver.core.managers;
+
+import com.foreach.across.modules.filemanager.business.FileDescriptor;
+import com.foreach.imageserver.core.business.ImageVariantFile;
+import com.foreach.imageserver.core.repositories.ImageVariantFileRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Variant files are not cached: they are registered by every node storing a variant, and must all be
+ * known to the node removing the variants of an image.
+ *
+ * @author Arne Vandamme
+ * @since 6.3.0
+ */
+@Repository
+@RequiredArgsConstructor
+public class ImageVariantFileManagerImpl implements ImageVariantFileManager
+{
+	// keeps the number of parameters of a single delete statement within database limits
+	private static final int DELETE_BATCH_SIZE = 500;
+
+	private final ImageVariantFileRepository imageVariantFileRepository;
+
+	@Override
+	public List<ImageVariantFile> getVariantFiles( long imageId ) {
+		return Collections.unmodifiableList( imageVariantFileRepository.getVariantFiles( imageId ) );
+	}
+
+	@Override
+	@Transactional(propagation = Propagation.REQUIRES_NEW)
+	public void save( ImageVariantFile variantFile ) {
+		imageVariantFileRepository.save( variantFile );
+	}
+
+	@Override
+	@Transactional
+	public void delete( long imageId, Collection<FileDescriptor> files ) {
+		List<String> fileUris = files.stream().map( FileDescriptor::getUri ).collect( Collectors.toList() );
+
+		for ( int i = 0; i < fileUris.size(); i += DELETE_BATCH_SIZE ) {
+			imageVariantFileRepository.deleteVariantFiles( imageId, fileUris.subList( i, Math.min( fileUris.size(), i + DELETE_BATCH_SIZE ) ) );
+		}
+	}
+}
@@ -4,13 +4,30 @@ import com.foreach.across.modules.hibernate.jpa.repositories.IdBasedEntityJpaRep
 import com.foreach.imageserver.core.business.Image;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.time.FastDateFormat;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import javax.persistence.LockModeType;
+import java.util.Collection;
 import java.util.Date;
+import java.util.List;
 
 public interface ImageRepository extends IdBasedEntityJpaRepository<Image>
 {
 	Image getByExternalId( String externalId );
 
+	List<Image> getByExternalIdIn( Collection<String> externalIds );
+
+	@Query("select i.modificationVersion from Image i where i.id = :imageId")
+	Long getModificationVersion( @Param("imageId") long imageId );
+
+	/**
+	 * Locks the image returned until the end of the current transaction.
+	 */
+	@Lock(LockModeType.PESSIMISTIC_WRITE)
+	Image findFirstByContentHash( String contentHash );
+
 	default void update( Image object ) {
 		setPath( object );
 		save( object );
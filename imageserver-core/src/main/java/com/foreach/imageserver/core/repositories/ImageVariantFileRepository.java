@@ -0,0 +1,21 @@
+package com.foreach.imageserver.core.repositories;
+
+import com.foreach.imageserver.core.business.ImageVariantFile;
+import com.foreach.imageserver.core.business.ImageVariantFileId;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.Collection;
+import java.util.List;
+
+public interface ImageVariantFileRepository extends JpaRepository<ImageVariantFile, ImageVariantFileId>
+{
+	@Query("select f from ImageVariantFile f where f.id.imageId = :imageId")
+	List<ImageVariantFile> getVariantFiles( @Param("imageId") long imageId );
+
+	@Modifying
+	@Query("delete from ImageVariantFile f where f.id.imageId = :imageId and f.id.fileUri in :fileUris")
+	int deleteVariantFiles( @Param("imageId") long imageId, @Param("fileUris") Collection<String> fileUris );
+}
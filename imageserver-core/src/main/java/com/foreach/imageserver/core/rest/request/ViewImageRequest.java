@@ -3,11 +3,15 @@ package com.foreach.imageserver.core.rest.request;
 import com.foreach.imageserver.dto.ImageAspectRatioDto;
 import com.foreach.imageserver.dto.ImageModificationDto;
 import com.foreach.imageserver.dto.ImageResolutionDto;
+import com.foreach.imageserver.dto.ImageTypeDto;
 import com.foreach.imageserver.dto.ImageVariantDto;
 import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.Setter;
 
+import java.util.Collections;
+import java.util.Set;
+import java.util.function.BiPredicate;
 import java.util.function.BooleanSupplier;
 
 /**
@@ -22,6 +26,11 @@ public class ViewImageRequest extends ImageRequest
 	private ImageVariantDto imageVariantDto;
 	private ImageAspectRatioDto imageAspectRatioDto;
 	private byte[] imageData;
+	/**
+	 * Image types explicitly accepted by the requester, used to select the output type
+	 * if {@link ImageTypeDto#AUTO} is requested.
+	 */
+	private Set<ImageTypeDto> acceptedOutputTypes = Collections.emptySet();
 	private Boolean securityCheckPassed;
 	/**
 	 * -- SETTER --
@@ -31,6 +40,15 @@ public class ViewImageRequest extends ImageRequest
 	 */
 	@Getter(AccessLevel.NONE)
 	private BooleanSupplier securityCheckCallback;
+	/**
+	 * -- SETTER --
+	 * Set the callback method that checks if the requester already has the current version of the image,
+	 * given the ETag and last modified timestamp (in milliseconds) of the image.
+	 *
+	 * @param notModifiedCallback callback method
+	 */
+	@Getter(AccessLevel.NONE)
+	private BiPredicate<String, Long> notModifiedCallback;
 
 	/**
 	 * Checks if this request has passed the security callback set by {@link #setSecurityCheckCallback(BooleanSupplier)}.
@@ -46,4 +64,16 @@ public class ViewImageRequest extends ImageRequest
 
 		return securityCheckPassed;
 	}
+
+	/**
+	 * Checks if the requester already has the current version of the image, using the callback set by
+	 * {@link #setNotModifiedCallback(BiPredicate)}.  Called before the image is retrieved.
+	 *
+	 * @param eTag         strong entity tag of the image
+	 * @param lastModified timestamp (in milliseconds) the image was last modified
+	 * @return true if the image does not need to be returned
+	 */
+	public boolean isNotModified( String eTag, long lastModified ) {
+		return notModifiedCallback != null && notModifiedCallback.test( eTag, lastModified );
+	}
 }
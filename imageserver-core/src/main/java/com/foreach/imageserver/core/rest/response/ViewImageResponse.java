@@ -17,6 +17,27 @@ public class ViewImageResponse extends ImageResponse
 	@Setter
 	private ImageSource imageSource;
 
+	/**
+	 * Strong entity tag of the image, null if the image can not be validated.
+	 */
+	@Getter
+	@Setter
+	private String eTag;
+
+	/**
+	 * Timestamp (in milliseconds) the image was last modified, null if the image can not be validated.
+	 */
+	@Getter
+	@Setter
+	private Long lastModified;
+
+	/**
+	 * True if the requester already has the current version of the image, no image source is set in that case.
+	 */
+	@Getter
+	@Setter
+	private boolean notModified;
+
 	public ViewImageResponse() {
 	}
 
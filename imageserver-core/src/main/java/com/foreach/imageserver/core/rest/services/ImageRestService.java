@@ -6,6 +6,8 @@ import com.foreach.imageserver.core.rest.request.RegisterModificationRequest;
 import com.foreach.imageserver.core.rest.request.ViewImageRequest;
 import com.foreach.imageserver.core.rest.response.*;
 
+import java.util.concurrent.CompletableFuture;
+
 /**
  * @author Arne Vandamme
  */
@@ -20,6 +22,15 @@ public interface ImageRestService
 	 */
 	ViewImageResponse renderImage( ViewImageRequest request );
 
+	/**
+	 * Same as {@link #renderImage(ViewImageRequest)} but the image is rendered without blocking the current thread.
+	 * Failures that can be determined without rendering are returned as an already completed future.
+	 *
+	 * @param request containing the parameters of the image
+	 * @return future completing with the response
+	 */
+	CompletableFuture<ViewImageResponse> renderImageAsync( ViewImageRequest request );
+
 	/**
 	 * Returns the image matching the request parameters, only if the image passes the
 	 * security checks.  Either the resolution requested must match one of the registered
@@ -31,6 +42,16 @@ public interface ImageRestService
 	 */
 	ViewImageResponse viewImage( ViewImageRequest request );
 
+	/**
+	 * Same as {@link #viewImage(ViewImageRequest)} but without blocking the current thread if the variant
+	 * has to be generated.  If the variant exists, or the request fails before the variant is retrieved,
+	 * the future is already completed.
+	 *
+	 * @param request containing the parameters of the image
+	 * @return future completing with the response
+	 */
+	CompletableFuture<ViewImageResponse> viewImageAsync( ViewImageRequest request );
+
 	PregenerateResolutionsResponse pregenerateResolutions( String imageId );
 
 	ListModificationsResponse listModifications( ListModificationsRequest request );
@@ -14,8 +14,12 @@ import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.util.DigestUtils;
 
+import java.nio.charset.StandardCharsets;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Predicate;
 
 /**
  * @author Arne Vandamme
@@ -27,6 +31,9 @@ public class ImageRestServiceImpl implements ImageRestService
 	// explicit logging of requested images that do not exist
 	private static final Logger LOG_IMAGE_NOT_FOUND = LoggerFactory.getLogger( Image.class );
 
+	// output types that can be negotiated, in order of preference
+	private static final List<ImageType> NEGOTIABLE_OUTPUT_TYPES = Arrays.asList( ImageType.AVIF, ImageType.WEBP );
+
 	@Autowired
 	private ImageContextService contextService;
 
@@ -39,6 +46,18 @@ public class ImageRestServiceImpl implements ImageRestService
 	@Autowired
 	private ImageStoreService imageStoreService;
 
+	@Autowired
+	private ImagePregenerationService imagePregenerationService;
+
+	@Autowired
+	private ImageFileDescriptorFactory imageFileDescriptorFactory;
+
+	@Autowired
+	private ImageTransformExecutor imageTransformExecutor;
+
+	@Autowired
+	private ImageTransformService imageTransformService;
+
 	private String fallbackImageKey;
 
 	public void setFallbackImageKey( String fallbackImageKey ) {
@@ -47,6 +66,15 @@ public class ImageRestServiceImpl implements ImageRestService
 
 	@Override
 	public ViewImageResponse renderImage( ViewImageRequest request ) {
+		return renderImage( request, false ).join();
+	}
+
+	@Override
+	public CompletableFuture<ViewImageResponse> renderImageAsync( ViewImageRequest request ) {
+		return renderImage( request, true );
+	}
+
+	private CompletableFuture<ViewImageResponse> renderImage( ViewImageRequest request, boolean async ) {
 		ViewImageResponse response = new ViewImageResponse( request );
 
 		Image image = getImage( request );
@@ -55,28 +83,42 @@ public class ImageRestServiceImpl implements ImageRestService
 		if ( image == null ) {
 			response.setImageDoesNotExist( true );
 		}
+		else if ( !image.isTemporaryImage()
+				&& isNotModified( request, response, renderETag( image, request.getImageModificationDto(),
+				                                                 imageVariant( request, image, outputType -> true ) ), image ) ) {
+			response.setNotModified( true );
+		}
+		else if ( async ) {
+			return imageTransformExecutor.submit( () -> renderImage( request, response, image ) );
+		}
 		else {
-			ImageSource imageSource = imageService.generateModification(
-					image,
-					request.getImageModificationDto(),
-					imageVariant( image, request.getImageVariantDto() )
-			);
+			return CompletableFuture.completedFuture( renderImage( request, response, image ) );
+		}
 
-			if ( imageSource == null ) {
-				response.setFailed( true );
-			}
-			else {
-				response.setImageSource( imageSource );
-			}
+		return CompletableFuture.completedFuture( response );
+	}
 
-			if ( image.isTemporaryImage() ) {
-				LOG.trace( "Deleting temporary image: {}", image );
-				try {
-					imageStoreService.removeOriginal( image );
-				}
-				catch ( Exception e ) {
-					LOG.warn( "Exception deleting temporary image {}", image, e );
-				}
+	private ViewImageResponse renderImage( ViewImageRequest request, ViewImageResponse response, Image image ) {
+		ImageSource imageSource = imageService.generateModification(
+				image,
+				request.getImageModificationDto(),
+				imageVariant( request, image, outputType -> true )
+		);
+
+		if ( imageSource == null ) {
+			response.setFailed( true );
+		}
+		else {
+			response.setImageSource( imageSource );
+		}
+
+		if ( image.isTemporaryImage() ) {
+			LOG.trace( "Deleting temporary image: {}", image );
+			try {
+				imageStoreService.removeOriginal( image );
+			}
+			catch ( Exception e ) {
+				LOG.warn( "Exception deleting temporary image {}", image, e );
 			}
 		}
 
@@ -113,36 +155,7 @@ public class ImageRestServiceImpl implements ImageRestService
 			if ( !pregenerateList.isEmpty() ) {
 				response.setImageResolutions( DtoUtil.toDto( pregenerateList ) );
 
-				// TODO: offload this as set of tasks to generation service (with a threadpool)
-				Runnable runnable = () -> {
-					LOG.debug( "Start pregeneration of {} resolutions for {}", pregenerateList.size(), image );
-					for ( ImageResolution resolution : pregenerateList ) {
-						List<ImageType> allowedTypes = Collections.singletonList( ImageType.JPEG );
-						for ( ImageType outputType : allowedTypes ) {
-							ImageVariant variant = new ImageVariant();
-							variant.setOutputType( outputType );
-
-							for ( ImageContext context : resolution.getContexts() ) {
-								try {
-									imageService.getVariantImage( image, context, resolution, variant );
-
-									LOG.info(
-											"Finished pregenerating resolution {} for {}: context {} - imageType {}",
-											resolution, image, context.getCode(), outputType );
-								}
-								catch ( Exception e ) {
-									LOG.warn(
-											"Problem pregenerating resolution {} for {}: context {} - imageType {}",
-											resolution, image, context.getCode(), outputType, e );
-								}
-							}
-						}
-					}
-
-					LOG.info( "Finished pregenerating {} resolutions for {}", pregenerateList.size(), image );
-				};
-
-				new Thread( runnable ).start();
+				imagePregenerationService.submit( image, pregenerateList, Collections.singletonList( ImageType.JPEG ) );
 			}
 		}
 
@@ -151,6 +164,15 @@ public class ImageRestServiceImpl implements ImageRestService
 
 	@Override
 	public ViewImageResponse viewImage( ViewImageRequest request ) {
+		return viewImage( request, false ).join();
+	}
+
+	@Override
+	public CompletableFuture<ViewImageResponse> viewImageAsync( ViewImageRequest request ) {
+		return viewImage( request, true );
+	}
+
+	private CompletableFuture<ViewImageResponse> viewImage( ViewImageRequest request, boolean async ) {
 		ViewImageResponse response = new ViewImageResponse( request );
 
 		Image image = imageService.getByExternalId( request.getExternalId() );
@@ -166,33 +188,34 @@ public class ImageRestServiceImpl implements ImageRestService
 
 		if ( image == null ) {
 			response.setImageDoesNotExist( true );
-			return response;
+			return CompletableFuture.completedFuture( response );
 		}
 		if ( ( request.getImageAspectRatioDto() == null || request.getImageAspectRatioDto().getRatio() == null ) && request.getImageResolutionDto() == null ) {
 			response.setNoResolutionSpecified( true );
-			return response;
+			return CompletableFuture.completedFuture( response );
 		}
 		ImageContext context = contextService.getByCode( request.getContext() );
 
 		if ( context == null ) {
 			response.setContextDoesNotExist( true );
-			return response;
+			return CompletableFuture.completedFuture( response );
 		}
 
 		if ( request.getImageAspectRatioDto() != null && request.getImageAspectRatioDto().getRatio() != null ) {
 			return viewImageForRatio( request, response, image, context, request.getImageAspectRatioDto(),
-			                          request.getImageResolutionDto().getWidth(), request.getImageVariantDto() );
+			                          request.getImageResolutionDto().getWidth(), request.getImageVariantDto(), async );
 		}
 		return viewImageForResolution( request, response, image, context, request.getImageResolutionDto(),
-		                               request.getImageVariantDto() );
+		                               request.getImageVariantDto(), async );
 	}
 
-	private ViewImageResponse viewImageForRatio( ViewImageRequest request,
-	                                             ViewImageResponse response,
-	                                             Image image,
-	                                             ImageContext context,
-	                                             ImageAspectRatioDto imageAspectRatioDto,
-	                                             int width, ImageVariantDto imageVariantDto ) {
+	private CompletableFuture<ViewImageResponse> viewImageForRatio( ViewImageRequest request,
+	                                                                ViewImageResponse response,
+	                                                                Image image,
+	                                                                ImageContext context,
+	                                                                ImageAspectRatioDto imageAspectRatioDto,
+	                                                                int width, ImageVariantDto imageVariantDto,
+	                                                                boolean async ) {
 		ImageResolution imageResolution =
 				contextService.getImageResolution( context.getId(), DtoUtil.toBusiness( imageAspectRatioDto ),
 				                                   width );
@@ -200,7 +223,7 @@ public class ImageRestServiceImpl implements ImageRestService
 			LOG.warn( "Resolution does not exist for ratio {} in context {}", imageAspectRatioDto.getRatio(),
 			          context.getCode() );
 			response.setResolutionDoesNotExist( true );
-			return response;
+			return CompletableFuture.completedFuture( response );
 		}
 		else if ( imageResolution == null ) {
 			// Build custom image resolution matching the width
@@ -211,15 +234,16 @@ public class ImageRestServiceImpl implements ImageRestService
 			imageResolution.setAllowedOutputTypes( EnumSet.allOf( ImageType.class ) );
 		}
 
-		return viewImageForResolution( request, response, image, context, imageResolution, imageVariantDto );
+		return viewImageForResolution( request, response, image, context, imageResolution, imageVariantDto, async );
 	}
 
-	private ViewImageResponse viewImageForResolution( ViewImageRequest request,
-	                                                  ViewImageResponse response,
-	                                                  Image image,
-	                                                  ImageContext context,
-	                                                  ImageResolutionDto imageResolutionDto,
-	                                                  ImageVariantDto imageVariantDto ) {
+	private CompletableFuture<ViewImageResponse> viewImageForResolution( ViewImageRequest request,
+	                                                                     ViewImageResponse response,
+	                                                                     Image image,
+	                                                                     ImageContext context,
+	                                                                     ImageResolutionDto imageResolutionDto,
+	                                                                     ImageVariantDto imageVariantDto,
+	                                                                     boolean async ) {
 		ImageResolution imageResolution = contextService.getImageResolution(
 				context.getId(), imageResolutionDto.getWidth(), imageResolutionDto.getHeight()
 		);
@@ -228,7 +252,7 @@ public class ImageRestServiceImpl implements ImageRestService
 			LOG.warn( "Resolution {}x{} does not exist for context {}", imageResolutionDto.getWidth(),
 			          imageResolutionDto.getHeight(), context.getCode() );
 			response.setResolutionDoesNotExist( true );
-			return response;
+			return CompletableFuture.completedFuture( response );
 		}
 		else if ( imageResolution == null ) {
 			// Build custom image resolution matching the width
@@ -236,15 +260,16 @@ public class ImageRestServiceImpl implements ImageRestService
 			imageResolution.setAllowedOutputTypes( EnumSet.allOf( ImageType.class ) );
 		}
 
-		return viewImageForResolution( request, response, image, context, imageResolution, imageVariantDto );
+		return viewImageForResolution( request, response, image, context, imageResolution, imageVariantDto, async );
 	}
 
-	private ViewImageResponse viewImageForResolution( ViewImageRequest request,
-	                                                  ViewImageResponse response,
-	                                                  Image image,
-	                                                  ImageContext context,
-	                                                  ImageResolution imageResolution,
-	                                                  ImageVariantDto imageVariantDto ) {
+	private CompletableFuture<ViewImageResponse> viewImageForResolution( ViewImageRequest request,
+	                                                                     ViewImageResponse response,
+	                                                                     Image image,
+	                                                                     ImageContext context,
+	                                                                     ImageResolution imageResolution,
+	                                                                     ImageVariantDto imageVariantDto,
+	                                                                     boolean async ) {
 		// when available, the bounding box dimensions should be those of an existing resolution
 		DimensionsDto boundaries = imageVariantDto.getBoundaries();
 		if ( boundaries != null && !boundingResolutionExists( boundaries,
@@ -253,29 +278,40 @@ public class ImageRestServiceImpl implements ImageRestService
 			          imageResolution.getWidth(),
 			          imageResolution.getHeight(), context.getCode() );
 			response.setResolutionDoesNotExist( true );
-			return response;
+			return CompletableFuture.completedFuture( response );
 		}
 
-		ImageVariant variant = imageVariant( image, imageVariantDto );
+		ImageVariant variant = imageVariant(
+				request, image, imageVariantDto,
+				outputType -> imageResolution.isAllowedOutputType( outputType ) || request.isValidCustomRequest()
+		);
 
 		if ( !imageResolution.isAllowedOutputType( variant.getOutputType() ) && !request.isValidCustomRequest() ) {
 			LOG.warn( "Output type {} is not allowed for resolution {}", variant.getOutputType(),
 			          imageResolution );
 
 			response.setOutputTypeNotAllowed( true );
-			return response;
+			return CompletableFuture.completedFuture( response );
 		}
 
-		ImageSource imageSource = imageService.getVariantImage( image, context, imageResolution, variant );
-
-		if ( imageSource == null ) {
-			response.setFailed( true );
-		}
-		else {
-			response.setImageSource( imageSource );
+		if ( isNotModified( request, response, variantETag( image, context, imageResolution, variant ), image ) ) {
+			response.setNotModified( true );
+			return CompletableFuture.completedFuture( response );
 		}
 
-		return response;
+		CompletableFuture<ImageSource> imageSource = async
+				? imageService.getVariantImageAsync( image, context, imageResolution, variant )
+				: CompletableFuture.completedFuture( imageService.getVariantImage( image, context, imageResolution, variant ) );
+
+		return imageSource.thenApply( source -> {
+			if ( source == null ) {
+				response.setFailed( true );
+			}
+			else {
+				response.setImageSource( source );
+			}
+			return response;
+		} );
 	}
 
 	private boolean boundingResolutionExists( DimensionsDto boundaries, ImageContext context ) {
@@ -288,15 +324,97 @@ public class ImageRestServiceImpl implements ImageRestService
 		return false;
 	}
 
-	private ImageVariant imageVariant( Image image, ImageVariantDto variantDto ) {
+	private boolean isNotModified( ViewImageRequest request, ViewImageResponse response, String eTag, Image image ) {
+		response.setETag( eTag );
+		response.setLastModified( image.getLastModified().getTime() );
+
+		return request.isNotModified( response.getETag(), response.getLastModified() );
+	}
+
+	/**
+	 * The ETag of a variant identifies the variant file and the version of the modifications it was created with,
+	 * it can be determined without retrieving the variant.
+	 */
+	private String variantETag( Image image, ImageContext context, ImageResolution imageResolution, ImageVariant variant ) {
+		String descriptor = imageFileDescriptorFactory.createForVariant( image, context, imageResolution, variant ).getUri();
+		return eTag( image, descriptor );
+	}
+
+	/**
+	 * The ETag of a rendered image identifies the image and all parameters of the requested modification.
+	 */
+	private String renderETag( Image image, ImageModificationDto modificationDto, ImageVariant variant ) {
+		StringBuilder parameters = new StringBuilder( variant.getOutputType().name() );
+		append( parameters, variant.getBoundaries() != null ? DtoUtil.toDto( variant.getBoundaries() ) : null );
+
+		if ( modificationDto != null ) {
+			ImageResolutionDto resolution = modificationDto.getResolution();
+			parameters.append( ';' ).append( resolution != null ? resolution.getWidth() + "x" + resolution.getHeight() : "" );
+
+			CropDto crop = modificationDto.getCrop();
+			if ( crop != null ) {
+				parameters.append( ';' ).append( crop.getX() ).append( ',' ).append( crop.getY() )
+				          .append( ',' ).append( crop.getWidth() ).append( ',' ).append( crop.getHeight() );
+				append( parameters, crop.getSource() );
+				append( parameters, crop.getBox() );
+			}
+			append( parameters, modificationDto.getDensity() );
+			append( parameters, modificationDto.getBoundaries() );
+		}
+
+		return eTag( image, parameters.toString() );
+	}
+
+	private static void append( StringBuilder parameters, DimensionsDto dimensions ) {
+		parameters.append( ';' );
+		if ( dimensions != null ) {
+			parameters.append( dimensions.getWidth() ).append( 'x' ).append( dimensions.getHeight() );
+		}
+	}
+
+	private static String eTag( Image image, String parameters ) {
+		return "\"" + image.getId() + "-" + image.getModificationVersion() + "-"
+				+ DigestUtils.md5DigestAsHex( parameters.getBytes( StandardCharsets.UTF_8 ) ) + "\"";
+	}
+
+	private ImageVariant imageVariant( ViewImageRequest request, Image image, Predicate<ImageType> allowedOutputType ) {
+		return imageVariant( request, image, request.getImageVariantDto(), allowedOutputType );
+	}
+
+	private ImageVariant imageVariant( ViewImageRequest request,
+	                                   Image image,
+	                                   ImageVariantDto variantDto,
+	                                   Predicate<ImageType> allowedOutputType ) {
 		ImageVariant variant = DtoUtil.toBusiness( variantDto );
 
 		// Ensure an output image type is set
 		variant.setOutputType( ImageType.getPreferredOutputType( variant.getOutputType(), image.getImageType() ) );
 
+		if ( variantDto.getImageType() == ImageTypeDto.AUTO ) {
+			variant.setOutputType( negotiateOutputType( request, variant.getOutputType(), allowedOutputType ) );
+		}
+
 		return variant;
 	}
 
+	/**
+	 * Selects the preferred output type that is accepted by the requester, allowed and can be created.
+	 * Only replaces a default JPEG or PNG output type, a GIF (that can be animated) is kept.
+	 */
+	private ImageType negotiateOutputType( ViewImageRequest request, ImageType defaultOutputType, Predicate<ImageType> allowedOutputType ) {
+		if ( defaultOutputType == ImageType.JPEG || defaultOutputType == ImageType.PNG ) {
+			for ( ImageType outputType : NEGOTIABLE_OUTPUT_TYPES ) {
+				if ( request.getAcceptedOutputTypes().contains( DtoUtil.toDto( outputType ) )
+						&& allowedOutputType.test( outputType )
+						&& imageTransformService.isOutputTypeSupported( outputType ) ) {
+					return outputType;
+				}
+			}
+		}
+
+		return defaultOutputType;
+	}
+
 	@Override
 	public ListModificationsResponse listModifications( ListModificationsRequest request ) {
 		ListModificationsResponse response = new ListModificationsResponse( request );
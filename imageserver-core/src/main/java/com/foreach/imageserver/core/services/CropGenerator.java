@@ -17,4 +17,23 @@ public interface CropGenerator
 	                   List<ImageModification> modifications );
 
 	ImageModificationDto buildModificationDto( Image image, ImageContext context, ImageResolution imageResolution );
+
+	/**
+	 * Cached version of {@link #buildModificationDto(Image, ImageContext, ImageResolution)}.  Cache entries are keyed
+	 * on the {@link Image#getModificationVersion()}, saving modifications for an image evicts the entries of the previous version.
+	 * The same instance is returned for every lookup and should not be modified.
+	 */
+	ImageModificationDto getModificationDto( Image image, ImageContext context, ImageResolution imageResolution );
+
+	/**
+	 * Build the modification, bypassing the cache, and replace the cached version.
+	 * Used to verify a cached modification was still correct after it has been used.
+	 */
+	ImageModificationDto refreshModificationDto( Image image, ImageContext context, ImageResolution imageResolution );
+
+	/**
+	 * Remove the cached modifications of all contexts and resolutions for the current modification version of the image.
+	 * Must be called before the modification version is changed, entries of the previous version would never be used again.
+	 */
+	void evictModificationDtos( Image image );
 }
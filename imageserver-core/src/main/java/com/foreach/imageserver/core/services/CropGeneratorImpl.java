@@ -1,6 +1,7 @@
 package com.foreach.imageserver.core.services;
 
 import com.foreach.imageserver.core.business.*;
+import com.foreach.imageserver.core.managers.ImageContextManager;
 import com.foreach.imageserver.core.managers.ImageModificationManager;
 import com.foreach.imageserver.core.managers.ImageProfileManager;
 import com.foreach.imageserver.core.managers.ImageResolutionManager;
@@ -8,8 +9,13 @@ import com.foreach.imageserver.core.services.exceptions.ImageCouldNotBeRetrieved
 import com.foreach.imageserver.dto.ImageModificationDto;
 import com.foreach.imageserver.logging.LogHelper;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.CachePut;
+import org.springframework.cache.annotation.Cacheable;
 import org.springframework.stereotype.Service;
 
+import java.util.Collection;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
@@ -51,6 +57,11 @@ import java.util.Set;
 @Service
 public class CropGeneratorImpl implements CropGenerator
 {
+	public static final String CACHE_NAME = "imageModifications";
+
+	private static final String CACHE_KEY = "T(com.foreach.imageserver.core.services.CropGeneratorImpl).modificationKey(#image, #context, #imageResolution)";
+	private static final String CACHE_CONDITION = "#image?.id != null and #context?.id != null and #imageResolution?.id != null";
+
 	private ImageModificationManager imageModificationManager;
 
 	private CropGeneratorUtil cropGeneratorUtil;
@@ -61,6 +72,10 @@ public class CropGeneratorImpl implements CropGenerator
 
 	private ImageResolutionService imageResolutionService;
 
+	private ImageContextManager imageContextManager;
+
+	private CacheManager cacheManager;
+
 	@Autowired
 	public void setImageModificationManager( ImageModificationManager imageModificationManager ) {
 		this.imageModificationManager = imageModificationManager;
@@ -86,6 +101,16 @@ public class CropGeneratorImpl implements CropGenerator
 		this.imageResolutionService = imageResolutionService;
 	}
 
+	@Autowired
+	public void setImageContextManager( ImageContextManager imageContextManager ) {
+		this.imageContextManager = imageContextManager;
+	}
+
+	@Autowired(required = false)
+	public void setCacheManager( CacheManager cacheManager ) {
+		this.cacheManager = cacheManager;
+	}
+
 	@Override
 	public ImageModificationDto buildModificationDto( Image image,
 	                                                  ImageContext context,
@@ -124,6 +149,37 @@ public class CropGeneratorImpl implements CropGenerator
 		return modificationDto;
 	}
 
+	@Override
+	@Cacheable(value = CACHE_NAME, key = CACHE_KEY, condition = CACHE_CONDITION)
+	public ImageModificationDto getModificationDto( Image image, ImageContext context, ImageResolution imageResolution ) {
+		return buildModificationDto( image, context, imageResolution );
+	}
+
+	@Override
+	@CachePut(value = CACHE_NAME, key = CACHE_KEY, condition = CACHE_CONDITION)
+	public ImageModificationDto refreshModificationDto( Image image, ImageContext context, ImageResolution imageResolution ) {
+		return buildModificationDto( image, context, imageResolution );
+	}
+
+	@Override
+	public void evictModificationDtos( Image image ) {
+		Cache cache = cacheManager != null && image.getId() != null ? cacheManager.getCache( CACHE_NAME ) : null;
+
+		if ( cache != null ) {
+			Collection<ImageResolution> resolutions = imageResolutionManager.getAllResolutions();
+
+			for ( ImageContext context : imageContextManager.getAllContexts() ) {
+				for ( ImageResolution resolution : resolutions ) {
+					cache.evict( modificationKey( image, context, resolution ) );
+				}
+			}
+		}
+	}
+
+	public static String modificationKey( Image image, ImageContext context, ImageResolution imageResolution ) {
+		return image.getId() + "-" + image.getModificationVersion() + "-" + context.getId() + "-" + imageResolution.getId();
+	}
+
 	private Crop findBestMatchingCrop( Image image, ImageContext context, ImageResolution requestedResolution ) {
 		if ( image == null || context == null || requestedResolution == null ) {
 			LOG.warn(
@@ -6,6 +6,7 @@ import com.foreach.across.modules.filemanager.services.FileManager;
 import com.foreach.imageserver.core.business.Image;
 import com.foreach.imageserver.core.business.ImageContext;
 import com.foreach.imageserver.core.business.ImageResolution;
+import com.foreach.imageserver.core.business.ImageType;
 import com.foreach.imageserver.core.business.ImageVariant;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
@@ -20,8 +21,28 @@ import static com.foreach.imageserver.core.config.ServicesConfiguration.*;
 @Slf4j
 public class DefaultImageFileDescriptorFactory implements ImageFileDescriptorFactory
 {
+	private static final String TILES_FOLDER = "tiles";
+
+	/**
+	 * An image with a content hash shares its original with other images having the same hash.
+	 * The original is stored under a path derived from that hash instead of the image itself.
+	 */
 	@Override
 	public FileDescriptor createForOriginal( Image image ) {
+		String contentHash = image.getContentHash();
+
+		if ( contentHash != null && !image.isTemporaryImage() ) {
+			return FileDescriptor.of(
+					IMAGESERVER_ORIGINALS_REPOSITORY,
+					"sha256/" + contentHash.substring( 0, 2 ) + "/" + contentHash.substring( 2, 4 ),
+					contentHash + '.' + image.getImageType().getExtension()
+			);
+		}
+
+		return createForImageOriginal( image );
+	}
+
+	private FileDescriptor createForImageOriginal( Image image ) {
 		String fileName = constructFileName( image );
 		String targetPath = getFolderName( image );
 		String defaultTargetRepository = IMAGESERVER_ORIGINALS_REPOSITORY;
@@ -41,14 +62,34 @@ public class DefaultImageFileDescriptorFactory implements ImageFileDescriptorFac
 		return composeFileDescriptor( image, fileName, targetPath, IMAGESERVER_VARIANTS_REPOSITORY, context );
 	}
 
+	/**
+	 * Tiles are stored in the variants repository using the Deep Zoom layout: the descriptor in a tiles folder
+	 * next to the context folders, the tiles in a subfolder per level of the {@code <imageId>_files} folder.
+	 */
+	@Override
+	public FileDescriptor createForTilePyramid( Image image ) {
+		return composeFileDescriptor( image, image.getId() + ".dzi", getFolderName( image, TILES_FOLDER ), IMAGESERVER_VARIANTS_REPOSITORY, null );
+	}
+
+	@Override
+	public FileDescriptor createForTile( Image image, int level, int column, int row, ImageType tileType ) {
+		String targetPath = getFolderName( image, TILES_FOLDER ) + "/" + image.getId() + "_files/" + level;
+		return composeFileDescriptor( image, column + "_" + row + "." + tileType.getExtension(), targetPath, IMAGESERVER_VARIANTS_REPOSITORY, null );
+	}
+
+	@Override
+	public Collection<FileResource> findVariantsForImageAndContext( FileManager fileManager, Image image, ImageContext imageContext ) {
+		String lookupPath = StringUtils.replace(
+				IMAGESERVER_VARIANTS_REPOSITORY + ":" + imageContext.getCode() + "/" + image.getVariantPath() + "/" + image.getId() + "-*.*", "//", "/" );
+		return fileManager.findFiles( lookupPath );
+	}
+
 	@Override
 	public void removeVariantsForImageAndContext( FileManager fileManager, Image image, ImageContext imageContext ) {
 		StopWatch sw = new StopWatch();
 		sw.start();
 
-		String lookupPath = StringUtils.replace(
-				IMAGESERVER_VARIANTS_REPOSITORY + ":" + imageContext.getCode() + "/" + image.getVariantPath() + "/" + image.getId() + "-*.*", "//", "/" );
-		Collection<FileResource> files = fileManager.findFiles( lookupPath );
+		Collection<FileResource> files = findVariantsForImageAndContext( fileManager, image, imageContext );
 		files.forEach( FileResource::delete );
 		LOG.debug( "Deleted {} variants for {} and context {} in {} ms", files.size(), image, imageContext.getCode(), sw.getTime() );
 	}
@@ -83,12 +124,15 @@ public class DefaultImageFileDescriptorFactory implements ImageFileDescriptorFac
 
 	private String getFolderName( Image image,
 	                              ImageContext context ) {
+		return getFolderName( image, context.getCode() );
+	}
 
+	private String getFolderName( Image image, String folder ) {
 		if ( image.getVariantPath().contains( ":" ) ) {
-			return image.getVariantPath().replace( ":", StringUtils.join( ":", context.getCode(), "/" ) );
+			return image.getVariantPath().replace( ":", StringUtils.join( ":", folder, "/" ) );
 		}
 
-		return context.getCode() + "/" + image.getVariantPath();
+		return folder + "/" + image.getVariantPath();
 	}
 
 	private String variantFileNamePrefix( long imageId ) {
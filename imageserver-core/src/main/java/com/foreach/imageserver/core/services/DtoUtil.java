@@ -88,6 +88,10 @@ public final class DtoUtil
 				return ImageType.TIFF;
 			case BMP:
 				return ImageType.BMP;
+			case WEBP:
+				return ImageType.WEBP;
+			case AVIF:
+				return ImageType.AVIF;
 			default:
 				return null;
 		}
@@ -118,6 +122,32 @@ public final class DtoUtil
 		return dto;
 	}
 
+	/**
+	 * Create the image info for every external id, in the order requested.  Duplicate ids are only returned once,
+	 * an id without image results in an info dto that is not {@link ImageInfoDto#isExisting()}.
+	 *
+	 * @param externalIds external ids requested
+	 * @param images      images found, mapped on their external id
+	 * @return image info dtos
+	 */
+	public static List<ImageInfoDto> toDto( Collection<String> externalIds, Map<String, Image> images ) {
+		Set<String> distinctIds = new LinkedHashSet<>( externalIds );
+		List<ImageInfoDto> dtos = new ArrayList<>( distinctIds.size() );
+		for ( String externalId : distinctIds ) {
+			Image image = images.get( externalId );
+			if ( image != null ) {
+				dtos.add( toDto( image ) );
+			}
+			else {
+				ImageInfoDto notExisting = new ImageInfoDto();
+				notExisting.setExternalId( externalId );
+				notExisting.setExisting( false );
+				dtos.add( notExisting );
+			}
+		}
+		return dtos;
+	}
+
 	public static DimensionsDto toDto( Dimensions dimensions ) {
 		return new DimensionsDto( dimensions.getWidth(), dimensions.getHeight() );
 	}
@@ -46,16 +46,7 @@ public class ImageContextServiceImpl implements ImageContextService
 			return null;
 		}
 
-		List<ImageResolution> imageResolutions = imageResolutionManager.getForContext( contextId );
-		for ( ImageResolution imageResolution : imageResolutions ) {
-			// Exact fit will return immediately
-			if ( imageResolution.getWidth() == width && imageResolution.getHeight() == height ) {
-				return imageResolution;
-			}
-		}
-
-		// no matching image resolution was found
-		return null;
+		return imageResolutionManager.getIndexForContext( contextId ).getByDimensions( width, height );
 	}
 
 	@Override
@@ -63,29 +54,9 @@ public class ImageContextServiceImpl implements ImageContextService
 		if ( aspectRatio.isNegative() || width < 0 ) {
 			return null;
 		}
-		List<ImageResolution> imageResolutions = imageResolutionManager.getForContext( contextId );
-		List<ImageResolution> imageResolutionsForRatio = new ArrayList<>();
-		for ( ImageResolution imageResolution : imageResolutions ) {
-			AspectRatio ratio = imageResolution.getDimensions().fetchAspectRatio();
-			if ( ratio.equals( aspectRatio ) ) {
-				imageResolutionsForRatio.add( imageResolution );
-			}
-		}
-		Collections.sort( imageResolutionsForRatio, new Comparator<ImageResolution>()
-		{
-			@Override
-			public int compare( ImageResolution o1, ImageResolution o2 ) {
-				return Integer.compare( o1.getWidth(), o2.getWidth() );
-			}
-		} );
-		for ( ImageResolution imageResolution : imageResolutionsForRatio ) {
-			if ( imageResolution.getWidth() >= width ) {
-				return imageResolution;
-			}
-		}
-		// fallback to largest for the ratio
+		// smallest resolution at least as wide as requested, or the largest for the ratio
 		// this implies a possibility for loss of resolution, but we stay as responsive as possible
-		return imageResolutionsForRatio.isEmpty() ? null : imageResolutionsForRatio.get( imageResolutionsForRatio.size() - 1 );
+		return imageResolutionManager.getIndexForContext( contextId ).getByAspectRatio( aspectRatio, width );
 	}
 
 	@Override
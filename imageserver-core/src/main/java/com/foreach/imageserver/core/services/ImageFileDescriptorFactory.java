@@ -1,10 +1,12 @@
 package com.foreach.imageserver.core.services;
 
 import com.foreach.across.modules.filemanager.business.FileDescriptor;
+import com.foreach.across.modules.filemanager.business.FileResource;
 import com.foreach.across.modules.filemanager.services.FileManager;
 import com.foreach.imageserver.core.business.Image;
 import com.foreach.imageserver.core.business.ImageContext;
 import com.foreach.imageserver.core.business.ImageResolution;
+import com.foreach.imageserver.core.business.ImageType;
 import com.foreach.imageserver.core.business.ImageVariant;
 import lombok.NonNull;
 
@@ -32,6 +34,37 @@ public interface ImageFileDescriptorFactory
 	 */
 	FileDescriptor createForVariant( Image image, ImageContext context, ImageResolution imageResolution, ImageVariant imageVariant );
 
+	/**
+	 * Create a file descriptor for the descriptor of the tile pyramid of an image.
+	 *
+	 * @param image to get the file descriptor for
+	 * @return file descriptor
+	 */
+	FileDescriptor createForTilePyramid( Image image );
+
+	/**
+	 * Create a file descriptor for a single tile of the tile pyramid of an image.
+	 * All tiles of the same level should be in the same folder.
+	 *
+	 * @param image    to get the file descriptor for
+	 * @param level    of the tile
+	 * @param column   of the tile
+	 * @param row      of the tile
+	 * @param tileType image type of the tile
+	 * @return file descriptor
+	 */
+	FileDescriptor createForTile( Image image, int level, int column, int row, ImageType tileType );
+
+	/**
+	 * Find all variants registered in a given context, for a given image.
+	 *
+	 * @param fileManager  where the variants are stored
+	 * @param image        to find the variants for
+	 * @param imageContext context for which to find the variants
+	 * @return variant files
+	 */
+	Collection<FileResource> findVariantsForImageAndContext( FileManager fileManager, Image image, ImageContext imageContext );
+
 	/**
 	 * Remove all variants registered in a given context, for a given image.
 	 *
@@ -43,7 +76,8 @@ public interface ImageFileDescriptorFactory
 
 	/**
 	 * Default implementation for generating only the file name aspect of a descriptor, based
-	 * on the variant of an image being requested.
+	 * on the variant of an image being requested.  Once the modifications of the image have been changed,
+	 * the name includes the modification version: a variant of an older version is never served.
 	 *
 	 * @param image           for which the file name should be generated
 	 * @param context         that is being requested
@@ -54,6 +88,11 @@ public interface ImageFileDescriptorFactory
 	default String generateFileName( @NonNull Image image, ImageContext context, ImageResolution imageResolution, ImageVariant imageVariant ) {
 		StringBuilder fileNameBuilder = new StringBuilder();
 		fileNameBuilder.append( image.getId() ).append( '-' );
+		if ( image.getModificationVersion() > 0 ) {
+			fileNameBuilder.append( 'v' );
+			fileNameBuilder.append( image.getModificationVersion() );
+			fileNameBuilder.append( '-' );
+		}
 		fileNameBuilder.append( 'w' );
 		fileNameBuilder.append( imageResolution.getWidth() );
 		fileNameBuilder.append( '-' );
@@ -0,0 +1,308 @@
+package com.foreach.imageserver.core.services;
+
+import com.foreach.imageserver.core.ImageServerCoreModuleSettings;
+import com.foreach.imageserver.core.business.*;
+import com.foreach.imageserver.core.config.PregenerationSettings;
+import com.foreach.imageserver.core.services.exceptions.ImagePregenerationQueueFullException;
+import lombok.AccessLevel;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Generates the variants of pregenerate resolutions in the background, using a bounded number of workers
+ * and a bounded queue of tasks.  Every task generates the variants of all requested resolutions of an image
+ * (for all contexts of those resolutions) in a single output type, as a single transform batch: the original
+ * image is read and decoded only once.  Different images are generated in parallel, the resolutions of a single
+ * image are not: an image with many pregenerate resolutions occupies a single worker until all its variants exist.
+ * Variants requested while their task is busy are not generated twice, the request waits for the task.
+ * <p/>
+ * Resolutions are de-duplicated against tasks that are already queued or busy, resolutions requested while
+ * a task for the same image and output type is still queued are added to that task.  Variants that already exist
+ * are skipped when the task is executed.  As tasks only create what is missing, pregeneration can safely be
+ * requested again for the same image, for example to recover the tasks that were lost when the application
+ * was stopped.  If the tasks of an image do not fit in the queue, the request is rejected with an
+ * {@link ImagePregenerationQueueFullException}, allowing the client to apply back-pressure.
+ *
+ * @author Arne Vandamme
+ * @since 6.3.0
+ */
+@Slf4j
+@Component
+public class ImagePregenerationService
+{
+	private final ImageService imageService;
+	private final ThreadPoolExecutor executor;
+	private final int queueCapacity;
+	private final int retryAfterSeconds;
+
+	// tasks per image and output type, a task is busy once it has been taken from the queue - guarded by this
+	private final Map<TaskKey, PregenerationTask> queuedTasks = new HashMap<>();
+	private final Map<TaskKey, PregenerationTask> busyTasks = new HashMap<>();
+	private final Map<Long, Integer> pendingTasksPerImage = new ConcurrentHashMap<>();
+
+	private final AtomicLong completed = new AtomicLong();
+	private final AtomicLong failed = new AtomicLong();
+	private final AtomicLong rejected = new AtomicLong();
+	private final AtomicLong variantsGenerated = new AtomicLong();
+
+	@Autowired
+	public ImagePregenerationService( @NonNull ImageService imageService, @NonNull ImageServerCoreModuleSettings settings ) {
+		this.imageService = imageService;
+
+		PregenerationSettings pregenerationSettings = settings.getPregeneration();
+		int workers = Math.max( 1, pregenerationSettings.getWorkers() );
+		queueCapacity = Math.max( 1, pregenerationSettings.getQueueCapacity() );
+		retryAfterSeconds = settings.getTransformers().getRetryAfter();
+
+		CustomizableThreadFactory threadFactory = new CustomizableThreadFactory( "imageserver-pregenerate-" );
+		threadFactory.setDaemon( true );
+		executor = new ThreadPoolExecutor( workers, workers, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>( queueCapacity ), threadFactory );
+	}
+
+	/**
+	 * Queue the generation of all missing variants of the resolutions, for every context they are attached to.
+	 * A single task is queued per output type.
+	 *
+	 * @param image       to generate the variants for
+	 * @param resolutions to generate
+	 * @param outputTypes types of the variants to generate
+	 * @return number of resolutions that have been queued (for all output types), resolutions already queued or busy for the image are not queued again
+	 * @throws ImagePregenerationQueueFullException if the new tasks do not fit in the queue
+	 */
+	public synchronized int submit( @NonNull Image image, @NonNull Collection<ImageResolution> resolutions, @NonNull Collection<ImageType> outputTypes ) {
+		Map<TaskKey, List<ImageResolution>> additions = new LinkedHashMap<>();
+		int newTasks = 0;
+
+		for ( ImageType outputType : outputTypes ) {
+			TaskKey key = new TaskKey( image.getId(), outputType );
+			PregenerationTask queued = queuedTasks.get( key );
+			PregenerationTask busy = busyTasks.get( key );
+
+			List<ImageResolution> missing = new ArrayList<>();
+			for ( ImageResolution resolution : resolutions ) {
+				if ( ( queued == null || !queued.contains( resolution ) ) && ( busy == null || !busy.contains( resolution ) ) ) {
+					missing.add( resolution );
+				}
+			}
+
+			if ( !missing.isEmpty() ) {
+				additions.put( key, missing );
+				newTasks += queued == null ? 1 : 0;
+			}
+		}
+
+		if ( executor.getQueue().remainingCapacity() < newTasks ) {
+			rejected.addAndGet( newTasks );
+			LOG.warn( "Unable to queue pregeneration of {} output types for {} - queue is full", newTasks, image );
+			throw new ImagePregenerationQueueFullException( retryAfterSeconds );
+		}
+
+		int queuedResolutions = 0;
+		for ( Map.Entry<TaskKey, List<ImageResolution>> addition : additions.entrySet() ) {
+			PregenerationTask task = queuedTasks.get( addition.getKey() );
+
+			if ( task != null ) {
+				task.addAll( addition.getValue() );
+				queuedResolutions += addition.getValue().size();
+			}
+			else {
+				task = new PregenerationTask( image, addition.getKey().getOutputType(), addition.getValue() );
+				queuedTasks.put( task.getKey(), task );
+				pendingTasksPerImage.merge( image.getId(), 1, Integer::sum );
+
+				try {
+					PregenerationTask queuedTask = task;
+					executor.execute( () -> execute( queuedTask ) );
+					queuedResolutions += addition.getValue().size();
+				}
+				catch ( RejectedExecutionException ree ) {
+					rejected.incrementAndGet();
+					finish( task );
+					LOG.warn( "Unable to queue pregeneration of output type {} for {}", task.getOutputType(), image );
+				}
+			}
+		}
+
+		LOG.debug( "Queued pregeneration of {} resolutions for {}", queuedResolutions, image );
+
+		return queuedResolutions;
+	}
+
+	private void execute( PregenerationTask task ) {
+		List<ImageResolution> resolutions;
+		synchronized ( this ) {
+			queuedTasks.remove( task.getKey(), task );
+			busyTasks.put( task.getKey(), task );
+			resolutions = task.getResolutions();
+		}
+
+		try {
+			ImageTransformLane.run( ImageTransformLane.BACKGROUND, () -> generate( task.getImage(), resolutions, task.getOutputType() ) );
+			completed.incrementAndGet();
+		}
+		catch ( Exception e ) {
+			failed.incrementAndGet();
+			LOG.warn( "Problem pregenerating {} resolutions for {}: imageType {}", resolutions.size(), task.getImage(), task.getOutputType(), e );
+		}
+		finally {
+			finish( task );
+		}
+	}
+
+	private void generate( Image image, List<ImageResolution> resolutions, ImageType outputType ) {
+		ImageVariant variant = new ImageVariant();
+		variant.setOutputType( outputType );
+
+		try {
+			int generated = imageService.pregenerateVariantImages( image, resolutions, variant );
+			variantsGenerated.addAndGet( generated );
+			LOG.info( "Finished pregenerating {} variants of {} resolutions for {}: imageType {}", generated, resolutions.size(), image, outputType );
+		}
+		catch ( Exception e ) {
+			LOG.warn( "Problem pregenerating {} resolutions for {}: imageType {} - retrying every variant separately", resolutions.size(), image, outputType, e );
+
+			for ( ImageResolution resolution : resolutions ) {
+				for ( ImageContext context : resolution.getContexts() ) {
+					try {
+						imageService.getVariantImage( image, context, resolution, variant );
+						variantsGenerated.incrementAndGet();
+					}
+					catch ( Exception ce ) {
+						LOG.warn( "Problem pregenerating resolution {} for {}: context {} - imageType {}", resolution, image, context.getCode(), outputType, ce );
+					}
+				}
+			}
+		}
+	}
+
+	private synchronized void finish( PregenerationTask task ) {
+		queuedTasks.remove( task.getKey(), task );
+		busyTasks.remove( task.getKey(), task );
+		pendingTasksPerImage.computeIfPresent( task.getImage().getId(), ( imageId, pending ) -> pending > 1 ? pending - 1 : null );
+	}
+
+	/**
+	 * @param image to get the status for
+	 * @return number of tasks for the image that are queued or busy
+	 */
+	public int getPendingTasks( @NonNull Image image ) {
+		return pendingTasksPerImage.getOrDefault( image.getId(), 0 );
+	}
+
+	/**
+	 * @return current statistics of the pregeneration queue
+	 */
+	public ImagePregenerationStatistics getStatistics() {
+		return new ImagePregenerationStatistics(
+				executor.getMaximumPoolSize(), queueCapacity, executor.getQueue().size(), executor.getActiveCount(),
+				completed.get(), failed.get(), rejected.get(), variantsGenerated.get()
+		);
+	}
+
+	/**
+	 * Stop the workers, queued tasks are discarded.
+	 */
+	@PreDestroy
+	public void shutdown() {
+		List<Runnable> discarded = executor.shutdownNow();
+		if ( !discarded.isEmpty() ) {
+			LOG.info( "Discarded {} queued pregeneration tasks", discarded.size() );
+		}
+	}
+
+	@Getter
+	@EqualsAndHashCode
+	@RequiredArgsConstructor
+	private static class TaskKey
+	{
+		private final long imageId;
+		private final ImageType outputType;
+	}
+
+	/**
+	 * Resolutions can only be added while the task is queued, access is guarded by the service.
+	 */
+	@Getter
+	private static class PregenerationTask
+	{
+		private final TaskKey key;
+		private final Image image;
+
+		@Getter(AccessLevel.NONE)
+		private final Map<Long, ImageResolution> resolutions = new LinkedHashMap<>();
+
+		PregenerationTask( Image image, ImageType outputType, Collection<ImageResolution> resolutions ) {
+			this.key = new TaskKey( image.getId(), outputType );
+			this.image = image;
+			addAll( resolutions );
+		}
+
+		ImageType getOutputType() {
+			return key.getOutputType();
+		}
+
+		List<ImageResolution> getResolutions() {
+			return new ArrayList<>( resolutions.values() );
+		}
+
+		boolean contains( ImageResolution resolution ) {
+			return resolutions.containsKey( resolution.getId() );
+		}
+
+		void addAll( Collection<ImageResolution> additional ) {
+			additional.forEach( resolution -> resolutions.putIfAbsent( resolution.getId(), resolution ) );
+		}
+	}
+
+	/**
+	 * Snapshot of the statistics of the pregeneration queue.
+	 */
+	@Getter
+	@RequiredArgsConstructor
+	public static class ImagePregenerationStatistics
+	{
+		private final int workers;
+		private final int queueCapacity;
+
+		/**
+		 * Number of tasks waiting for a worker.
+		 */
+		private final int queued;
+
+		/**
+		 * Number of tasks busy.
+		 */
+		private final int active;
+
+		/**
+		 * Total number of tasks that have been executed.
+		 */
+		private final long completed;
+
+		/**
+		 * Total number of tasks that failed.
+		 */
+		private final long failed;
+
+		/**
+		 * Total number of tasks that were not queued because the queue was full.
+		 */
+		private final long rejected;
+
+		/**
+		 * Total number of variants that have been generated, variants that already existed are not included.
+		 */
+		private final long variantsGenerated;
+	}
+}
@@ -9,11 +9,14 @@ import com.foreach.imageserver.dto.ImageModificationDto;
 import lombok.NonNull;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.core.io.InputStreamSource;
 
 import java.util.Collection;
 import java.util.Date;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 
 public interface ImageService
 {
@@ -23,8 +26,29 @@ public interface ImageService
 
 	Image getByExternalId( String externalId );
 
+	/**
+	 * Fetch multiple images using a single query.
+	 *
+	 * @param externalIds external ids of the images
+	 * @return images that exist, mapped on their external id
+	 */
+	Map<String, Image> getByExternalIds( Collection<String> externalIds );
+
 	Image saveImage( String externalId, byte[] imageBytes, Date imageDate, boolean replaceExisting ) throws ImageStoreException;
 
+	/**
+	 * Save a new original image, streaming the data to the image repository.  The original is never held
+	 * in memory as a whole: uploaded files and resources are read twice (once for the image attributes, once
+	 * for storing), other streams are first copied to a temporary file if they are large.
+	 *
+	 * @param externalId      the image should be registered under
+	 * @param imageData       original image data, for example an uploaded {@link org.springframework.web.multipart.MultipartFile}
+	 * @param imageDate       creation date of the image
+	 * @param replaceExisting true if an existing image with the same external id should be replaced
+	 * @return image that has been created
+	 */
+	Image saveImage( String externalId, InputStreamSource imageData, Date imageDate, boolean replaceExisting ) throws ImageStoreException;
+
 	/**
 	 * Creates a temporary Image object containing ImageAttributes and the image data.
 	 *
@@ -41,6 +65,14 @@ public interface ImageService
 	 */
 	Image loadImageData( @NonNull byte[] imageBytes );
 
+	/**
+	 * Load data for given image data, without reading the image data in memory.
+	 *
+	 * @param imageData the image
+	 * @return image
+	 */
+	Image loadImageData( @NonNull InputStreamSource imageData );
+
 	/**
 	 * Save a new image modification for an image.
 	 * <p>
@@ -70,6 +102,52 @@ public interface ImageService
 	                             ImageResolution imageResolution,
 	                             ImageVariant imageVariant );
 
+	/**
+	 * Get a variant without blocking the current thread if it has to be generated.  An existing variant is
+	 * returned as an already completed future.  If the variant is being generated by another request, the
+	 * future completes when that generation is done.  Else the variant is generated by an
+	 * {@link ImageTransformExecutor} worker, in the lane of the current thread.
+	 *
+	 * @param image           to get the variant for
+	 * @param context         of the variant
+	 * @param imageResolution of the variant
+	 * @param imageVariant    variant that is requested
+	 * @return future completing with the variant
+	 * @see #getVariantImage(Image, ImageContext, ImageResolution, ImageVariant)
+	 */
+	CompletableFuture<ImageSource> getVariantImageAsync( Image image,
+	                                                     ImageContext context,
+	                                                     ImageResolution imageResolution,
+	                                                     ImageVariant imageVariant );
+
+	/**
+	 * Attach to the generation of a variant that is currently in progress in another thread, without blocking.
+	 * Cancelling the returned future does not cancel the generation itself.
+	 *
+	 * @param image           to get the variant for
+	 * @param context         of the variant
+	 * @param imageResolution of the variant
+	 * @param imageVariant    variant that is requested
+	 * @return future completing with the variant, empty if the variant is not being generated
+	 */
+	Optional<CompletableFuture<ImageSource>> getVariantImageInProgress( Image image,
+	                                                                   ImageContext context,
+	                                                                   ImageResolution imageResolution,
+	                                                                   ImageVariant imageVariant );
+
+	/**
+	 * Generate and store the variants of an image for all contexts of the given resolutions,
+	 * if they do not yet exist.  All missing variants are created from a single read of the original image.
+	 * Variants that are already being generated by another thread are skipped, requests for a variant
+	 * of the batch wait for the batch instead of generating the variant themselves.
+	 *
+	 * @param image        to generate the variants for
+	 * @param resolutions  to generate, for every context they are attached to
+	 * @param imageVariant variant that should be generated
+	 * @return number of variants that have been generated
+	 */
+	int pregenerateVariantImages( Image image, Collection<ImageResolution> resolutions, ImageVariant imageVariant );
+
 	boolean hasModification( int imageId );
 
 	Optional<ImageResolution> getResolution( long resolutionId );
@@ -1,15 +1,19 @@
 package com.foreach.imageserver.core.services;
 
+import com.foreach.imageserver.core.ImageServerCoreModuleSettings;
 import com.foreach.imageserver.core.business.*;
+import com.foreach.imageserver.core.config.TransformersSettings;
 import com.foreach.imageserver.core.managers.ImageManager;
 import com.foreach.imageserver.core.managers.ImageModificationManager;
 import com.foreach.imageserver.core.managers.ImageResolutionManager;
 import com.foreach.imageserver.core.services.exceptions.CropOutsideOfImageBoundsException;
 import com.foreach.imageserver.core.services.exceptions.ImageCouldNotBeRetrievedException;
 import com.foreach.imageserver.core.services.exceptions.ImageStoreException;
+import com.foreach.imageserver.core.services.exceptions.ImageVariantTimeoutException;
 import com.foreach.imageserver.core.transformers.ImageAttributes;
 import com.foreach.imageserver.core.transformers.ImageSource;
 import com.foreach.imageserver.core.transformers.SimpleImageSource;
+import com.foreach.imageserver.core.transformers.SpillingImageSource;
 import com.foreach.imageserver.dto.*;
 import com.foreach.imageserver.logging.LogHelper;
 import lombok.Getter;
@@ -19,6 +23,9 @@ import lombok.SneakyThrows;
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.InputStreamSource;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.transaction.support.TransactionSynchronization;
@@ -28,11 +35,16 @@ import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.*;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
 @Service
 public class ImageServiceImpl implements ImageService
 {
+	// number of images for which the time of the last version check is remembered
+	private static final int MAX_VERSION_CHECKS = 10000;
+
 	@Autowired
 	private ImageManager imageManager;
 
@@ -57,8 +69,29 @@ public class ImageServiceImpl implements ImageService
 	@Autowired
 	private ImageProfileService imageProfileService;
 
-	// Used concurrently from multiple threads.
-	private Map<VariantImageRequest, FutureVariantImage> futureVariantImages = new ConcurrentHashMap<>();
+	@Autowired
+	private TransformersSettings transformersSettings;
+
+	@Autowired
+	private ImageServerCoreModuleSettings settings;
+
+	@Autowired
+	private ImageTransformExecutor imageTransformExecutor;
+
+	@Autowired
+	private ImageTileService imageTileService;
+
+	// Variants currently being generated, used concurrently from multiple threads.
+	private final ConcurrentMap<VariantImageRequest, CompletableFuture<ImageSource>> variantsInProgress = new ConcurrentHashMap<>();
+
+	// last time the modification version of a cached image was checked, least recently used first
+	private final Map<Long, Long> versionsCheckedAt = new LinkedHashMap<Long, Long>( 1024, 0.75f, true )
+	{
+		@Override
+		protected boolean removeEldestEntry( Map.Entry<Long, Long> eldest ) {
+			return size() > MAX_VERSION_CHECKS;
+		}
+	};
 
 	private static Set<Integer> splitIntoPageNumbers( String pages ) {
 		Set<Integer> result = new HashSet<>();
@@ -85,12 +118,57 @@ public class ImageServiceImpl implements ImageService
 
 	@Override
 	public Optional<Image> getById( long imageId ) {
-		return imageManager.getById( imageId );
+		return imageManager.getById( imageId ).map( image -> checkModificationVersion( image, () -> imageManager.getById( imageId ).orElse( null ) ) );
 	}
 
 	@Override
 	public Image getByExternalId( String externalId ) {
-		return imageManager.getByExternalId( externalId );
+		Image image = imageManager.getByExternalId( externalId );
+		return image != null ? checkModificationVersion( image, () -> imageManager.getByExternalId( externalId ) ) : null;
+	}
+
+	/**
+	 * The modifications of an image can be changed by another instance, which only evicts the image from its own cache.
+	 * A cached image is compared with the database at most once per version check interval: if its modification version
+	 * has changed, the image and its modifications are evicted and the image is fetched again.
+	 */
+	private Image checkModificationVersion( Image image, Supplier<Image> reload ) {
+		long interval = TimeUnit.SECONDS.toMillis( settings.getStore().getVersionCheckInterval() );
+		if ( interval <= 0 || image.getId() == null ) {
+			return image;
+		}
+
+		long now = System.currentTimeMillis();
+		synchronized ( versionsCheckedAt ) {
+			Long checkedAt = versionsCheckedAt.get( image.getId() );
+			if ( checkedAt != null && now - checkedAt < interval ) {
+				return image;
+			}
+			versionsCheckedAt.put( image.getId(), now );
+		}
+
+		Long modificationVersion = imageManager.getModificationVersion( image.getId() );
+		if ( modificationVersion != null && modificationVersion == image.getModificationVersion() ) {
+			return image;
+		}
+
+		LOG.debug( "Modification version of cached image {} has changed, evicting it", image );
+		imageManager.evict( image );
+		cropGenerator.evictModificationDtos( image );
+		return reload.get();
+	}
+
+	@Override
+	public Map<String, Image> getByExternalIds( @NonNull Collection<String> externalIds ) {
+		if ( externalIds.isEmpty() ) {
+			return Collections.emptyMap();
+		}
+
+		Map<String, Image> images = new HashMap<>();
+		for ( Image image : imageManager.getByExternalIds( externalIds ) ) {
+			images.put( image.getExternalId(), image );
+		}
+		return images;
 	}
 
 	// TODO I'm not taking care of errors right now, make sure to tackle this later on!
@@ -105,6 +183,15 @@ public class ImageServiceImpl implements ImageService
 			          LogHelper.flatten( externalId, imageBytes, imageDate ) );
 		}
 
+		return saveImage( externalId, new ByteArrayResource( imageBytes ), imageDate, replaceExisting );
+	}
+
+	@Override
+	@Transactional
+	public Image saveImage( String externalId,
+	                        @NonNull InputStreamSource imageData,
+	                        Date imageDate,
+	                        boolean replaceExisting ) throws ImageStoreException {
 		Image existing = getByExternalId( externalId );
 
 		if ( existing != null ) {
@@ -118,13 +205,49 @@ public class ImageServiceImpl implements ImageService
 			}
 		}
 
-		Image image = loadImageData( imageBytes );
-		image.setExternalId( externalId );
-		image.setDateCreated( imageDate );
+		try (OriginalImageData originalImageData = OriginalImageData.of( imageData )) {
+			String contentHash = settings.getStore().isDeduplicateOriginals() ? originalImageData.getContentHash() : null;
 
-		imageManager.insert( image );
-		imageStoreService.storeOriginalImage( image, imageBytes );
+			// locks the image sharing the original: its deletion can not remove the original before this image is committed
+			Image original = contentHash != null ? imageManager.getByContentHash( contentHash ) : null;
+
+			Image image = original != null ? copyImageData( original ) : loadImageData( originalImageData, originalImageData.getSize() );
+			image.setExternalId( externalId );
+			image.setDateCreated( imageDate );
+			image.setContentHash( contentHash );
+			image.setVariantsRegistered( true );
+
+			imageManager.insert( image );
+
+			if ( original == null || imageStoreService.getOriginalImage( image ) == null ) {
+				try (InputStream imageStream = originalImageData.getInputStream()) {
+					imageStoreService.storeOriginalImage( image, imageStream );
+				}
+			}
+			else {
+				LOG.debug( "Image {} shares the original of image {}", image, original );
+			}
+
+			imageTileService.submit( image );
+
+			return image;
+		}
+		catch ( IOException ioe ) {
+			// a runtime exception: rolls back the transaction
+			throw new ImageStoreException( ioe );
+		}
+	}
 
+	/**
+	 * Create a new image with the same data as an image having an identical original.
+	 */
+	private Image copyImageData( Image original ) {
+		Image image = new Image();
+		image.setImageProfileId( imageProfileService.getDefaultProfile().getId() );
+		image.setDimensions( new Dimensions( original.getDimensions().getWidth(), original.getDimensions().getHeight() ) );
+		image.setImageType( original.getImageType() );
+		image.setFileSize( original.getFileSize() );
+		image.setSceneCount( original.getSceneCount() );
 		return image;
 	}
 
@@ -137,16 +260,25 @@ public class ImageServiceImpl implements ImageService
 			// Delete modifications
 			LOG.debug( "Deleting all modifications for image {}", image );
 			imageModificationManager.deleteModifications( image.getId() );
+			cropGenerator.evictModificationDtos( image );
+			image.setModificationVersion( image.getModificationVersion() + 1 );
 
 			// Delete variants
 			imageStoreService.removeVariants( image );
+			imageTileService.removeTiles( image );
 
 			// Delete image record
 			LOG.debug( "Deleting image record for image {}", image );
 			imageManager.delete( image );
 
-			// Delete original
-			imageStoreService.removeOriginal( image );
+			// Delete original, unless other images still share it - a locking read after the record has been deleted,
+			// it sees an image sharing the original that is being saved concurrently
+			if ( image.getContentHash() != null && imageManager.getByContentHash( image.getContentHash() ) != null ) {
+				LOG.debug( "Keeping original of image {} as it is shared with other images", image );
+			}
+			else {
+				imageStoreService.removeOriginal( image );
+			}
 
 			return true;
 		}
@@ -164,16 +296,28 @@ public class ImageServiceImpl implements ImageService
 	}
 
 	@Override
-	@SneakyThrows
 	public Image loadImageData( @NonNull byte[] imageBytes ) {
-		try (InputStream inputStream = new ByteArrayInputStream( imageBytes )) {
+		return loadImageData( new ByteArrayResource( imageBytes ), imageBytes.length );
+	}
+
+	@Override
+	@SneakyThrows(IOException.class)
+	public Image loadImageData( @NonNull InputStreamSource imageData ) {
+		try (OriginalImageData originalImageData = OriginalImageData.of( imageData )) {
+			return loadImageData( originalImageData, originalImageData.getSize() );
+		}
+	}
+
+	@SneakyThrows(IOException.class)
+	private Image loadImageData( InputStreamSource imageData, long fileSize ) {
+		try (InputStream inputStream = imageData.getInputStream()) {
 			ImageAttributes imageAttributes = imageTransformService.getAttributes( inputStream );
 
 			Image image = new Image();
 			image.setImageProfileId( imageProfileService.getDefaultProfile().getId() );
 			image.setDimensions( imageAttributes.getDimensions() );
 			image.setImageType( imageAttributes.getType() );
-			image.setFileSize( imageBytes.length );
+			image.setFileSize( fileSize );
 			image.setSceneCount( imageAttributes.getSceneCount() );
 			return image;
 		}
@@ -206,6 +350,12 @@ public class ImageServiceImpl implements ImageService
 		}
 
 		storeImageModification( modifications, image );
+		cropGenerator.evictModificationDtos( image );
+
+		// changes the validators (ETag, Last-Modified) of all variants of the image
+		image.setModificationVersion( image.getModificationVersion() + 1 );
+		image.setDateModified( new Date() );
+		imageManager.update( image );
 
 		if ( TransactionSynchronizationManager.isSynchronizationActive() ) {
 			TransactionSynchronizationManager.registerSynchronization( new TransactionSynchronization()
@@ -260,7 +410,7 @@ public class ImageServiceImpl implements ImageService
 		ImageSource imageSource =
 				imageStoreService.getVariantImage( image, context, imageResolution, imageVariant );
 		if ( imageSource == null ) {
-			ImageModificationDto modification = cropGenerator.buildModificationDto( image, context, imageResolution );
+			ImageModificationDto modification = cropGenerator.getModificationDto( image, context, imageResolution );
 			imageSource = generateVariantImage( image, context, modification, imageResolution, imageVariant, true );
 
 			/**
@@ -270,9 +420,10 @@ public class ImageServiceImpl implements ImageService
 			 * semi-optimistic concurrency control. Specifically: we always write the file without any advance
 			 * checking. This may cause us to serve stale variants for a very short while. Then we check that the
 			 * ImageModification was not altered behind our back. Should this be the case we delete the variant from
-			 * disk; it will then be recreated during the next request.
+			 * disk; it will then be recreated during the next request.  The review bypasses the modification cache
+			 * and replaces the cached modification, so the next request uses the correct one.
 			 */
-			ImageModificationDto reviewModification = cropGenerator.buildModificationDto( image, context, imageResolution );
+			ImageModificationDto reviewModification = cropGenerator.refreshModificationDto( image, context, imageResolution );
 			if ( !modification.equals( reviewModification ) ) {
 				imageStoreService.removeVariantImage( image, context, imageResolution, imageVariant );
 			}
@@ -291,7 +442,7 @@ public class ImageServiceImpl implements ImageService
 
 	/**
 	 * We allow just one thread to generate a specific variant. Other threads that require this variant simultaneously
-	 * will block and re-use the same result.
+	 * will wait for and re-use the same result.
 	 */
 	private ImageSource generateVariantImage( Image image,
 	                                          ImageContext context,
@@ -315,58 +466,99 @@ public class ImageServiceImpl implements ImageService
 				                         requestedResolution,
 				                         imageVariant );
 
-		FutureVariantImage futureVariantImage;
-		boolean otherThreadIsCreatingVariant;
-		synchronized ( this ) {
-			otherThreadIsCreatingVariant = futureVariantImages.containsKey( request );
-			if ( otherThreadIsCreatingVariant ) {
-				futureVariantImage = futureVariantImages.get( request );
-			}
-			else {
-				futureVariantImage = new FutureVariantImage();
-				futureVariantImages.put( request, futureVariantImage );
+		CompletableFuture<ImageSource> variantInProgress = new CompletableFuture<>();
+		CompletableFuture<ImageSource> existing = variantsInProgress.computeIfAbsent( request, r -> variantInProgress );
+
+		if ( existing != variantInProgress ) {
+			return waitForVariantImage( existing );
+		}
+
+		try {
+			ImageSource variantImageSource =
+					generateVariantImageInCurrentThread( image, context, imageModification, requestedResolution,
+					                                     imageVariant,
+					                                     storeImage );
+			variantInProgress.complete( variantImageSource );
+			return variantImageSource;
+		}
+		catch ( RuntimeException e ) {
+			LOG.error(
+					"Encountered error during image variant file creation - ImageServiceImpl#generateVariantImage: image={}, context={}, imageModification={}, imageVariant={}, storeImage={}",
+					LogHelper.flatten( image ), LogHelper.flatten( context ),
+					LogHelper.flatten( imageModification ), LogHelper.flatten( imageVariant ), storeImage, e );
+			if ( storeImage ) {
+				removeImageVariantFile( image, context, requestedResolution, imageVariant );
 			}
+			variantInProgress.completeExceptionally( e );
+			throw e;
+		}
+		catch ( Error e ) {
+			variantInProgress.completeExceptionally( e );
+			throw e;
 		}
+		finally {
+			variantsInProgress.remove( request, variantInProgress );
+		}
+	}
+
+	/**
+	 * Wait for a variant that is being generated by another thread.  The wait is bounded by the maximum variant wait,
+	 * if it expires or the waiting thread is interrupted, the generation itself continues.  If the generation failed,
+	 * the original exception is thrown.
+	 */
+	private ImageSource waitForVariantImage( CompletableFuture<ImageSource> variantInProgress ) {
+		int maxVariantWait = transformersSettings.getMaxVariantWait() != null ? transformersSettings.getMaxVariantWait() : 0;
 
-		if ( otherThreadIsCreatingVariant ) {
-			return futureVariantImage.get();
+		try {
+			return maxVariantWait > 0 ? variantInProgress.get( maxVariantWait, TimeUnit.SECONDS ) : variantInProgress.get();
 		}
-		else {
-			try {
-				ImageSource variantImageSource =
-						generateVariantImageInCurrentThread( image, context, imageModification, requestedResolution,
-						                                     imageVariant,
-						                                     storeImage );
-				synchronized ( this ) {
-					futureVariantImage.setResult( variantImageSource );
-					futureVariantImages.remove( request );
-				}
-				return variantImageSource;
+		catch ( ExecutionException ee ) {
+			Throwable cause = ee.getCause();
+			if ( cause instanceof RuntimeException ) {
+				throw (RuntimeException) cause;
 			}
-			catch ( RuntimeException e ) {
-				LOG.error(
-						"Encountered error during image variant file creation - ImageServiceImpl#generateVariantImage: image={}, context={}, imageModification={}, imageVariant={}, storeImage={}",
-						LogHelper.flatten( image ), LogHelper.flatten( context ),
-						LogHelper.flatten( imageModification ), LogHelper.flatten( imageVariant ), storeImage, e );
-				synchronized ( this ) {
-					futureVariantImage.setRuntimeException( e );
-					futureVariantImages.remove( request );
-					if ( storeImage ) {
-						removeImageVariantFile( image, context, requestedResolution, imageVariant );
-					}
-				}
-				throw e;
-			}
-			catch ( Error e ) {
-				synchronized ( this ) {
-					futureVariantImage.setError( e );
-					futureVariantImages.remove( request );
-				}
-				throw e;
+			if ( cause instanceof Error ) {
+				throw (Error) cause;
 			}
+			throw new IllegalStateException( cause );
+		}
+		catch ( TimeoutException te ) {
+			LOG.warn( "Variant did not become available within {} seconds - ImageServiceImpl#waitForVariantImage", maxVariantWait );
+			throw new ImageVariantTimeoutException( ImageTransformLane.current(), transformersSettings.getRetryAfter() );
+		}
+		catch ( InterruptedException ie ) {
+			Thread.currentThread().interrupt();
+			throw new VariantGenerationWasInterruptedException();
 		}
 	}
 
+	@Override
+	public CompletableFuture<ImageSource> getVariantImageAsync( @NonNull Image image,
+	                                                            @NonNull ImageContext context,
+	                                                            @NonNull ImageResolution imageResolution,
+	                                                            @NonNull ImageVariant imageVariant ) {
+		ImageSource imageSource = imageStoreService.getVariantImage( image, context, imageResolution, imageVariant );
+		if ( imageSource != null ) {
+			return CompletableFuture.completedFuture( imageSource );
+		}
+
+		return getVariantImageInProgress( image, context, imageResolution, imageVariant )
+				.orElseGet( () -> imageTransformExecutor.submit( () -> getVariantImage( image, context, imageResolution, imageVariant ) ) );
+	}
+
+	@Override
+	public Optional<CompletableFuture<ImageSource>> getVariantImageInProgress( @NonNull Image image,
+	                                                                          @NonNull ImageContext context,
+	                                                                          @NonNull ImageResolution imageResolution,
+	                                                                          @NonNull ImageVariant imageVariant ) {
+		ImageModificationDto modification = cropGenerator.getModificationDto( image, context, imageResolution );
+		VariantImageRequest request = new VariantImageRequest( image.getId(), context.getId(), modification, imageResolution, imageVariant );
+
+		// dependent future: cancelling it should not cancel the generation that other requests are waiting for
+		return Optional.ofNullable( variantsInProgress.get( request ) )
+		               .map( variantInProgress -> variantInProgress.thenApply( Function.identity() ) );
+	}
+
 	/**
 	 * Tries to remove the image variant file to avoid the possibility that a corrupt file was created and will be persisted
 	 */
@@ -416,14 +608,20 @@ public class ImageServiceImpl implements ImageService
 			throw new ImageCouldNotBeRetrievedException( message );
 		}
 
-		ImageTransformDto transformDto = modificationDto.asTransformDto();
-		if ( imageVariant.getOutputType() != null ) {
-			transformDto.setOutputType( ImageTypeDto.forExtension( imageVariant.getOutputType().getExtension() ) );
-		}
+		ImageAttributes originalAttributes = ImageAttributes.from( image );
+		Collection<ImageTransformDto> transforms = Collections.singleton( createTransformDto( modificationDto, imageVariant ) );
 
-		ImageSource variantImageSource = imageTransformService.transform(
-				originalImageSource, ImageAttributes.from( image ), Collections.singleton( transformDto )
-		);
+		ImageSource variantImageSource;
+		if ( storeImage ) {
+			// write the variant to the store while it is being created, instead of copying it afterwards
+			variantImageSource = imageStoreService.storeVariantImage(
+					image, context, requestedResolution, imageVariant,
+					outputStream -> imageTransformService.transform( originalImageSource, originalAttributes, transforms, outputStream )
+			);
+		}
+		else {
+			variantImageSource = imageTransformService.transform( originalImageSource, originalAttributes, transforms );
+		}
 
 		if ( variantImageSource == null ) {
 			String message = String.format(
@@ -435,12 +633,93 @@ public class ImageServiceImpl implements ImageService
 
 		}
 
-		// TODO We might opt to catch exceptions here and not fail on the write. We can return the variant in memory regardless.
-		if ( storeImage ) {
-			imageStoreService.storeVariantImage( image, context, requestedResolution, imageVariant, variantImageSource );
+		return variantImageSource;
+	}
+
+	private ImageTransformDto createTransformDto( ImageModificationDto modificationDto, ImageVariant imageVariant ) {
+		ImageTransformDto transformDto = modificationDto.asTransformDto();
+		if ( imageVariant.getOutputType() != null ) {
+			transformDto.setOutputType( ImageTypeDto.forExtension( imageVariant.getOutputType().getExtension() ) );
 		}
+		return transformDto;
+	}
 
-		return variantImageSource;
+	@Override
+	public int pregenerateVariantImages( @NonNull Image image, @NonNull Collection<ImageResolution> resolutions, @NonNull ImageVariant imageVariant ) {
+		List<VariantTarget> targets = new ArrayList<>();
+
+		try {
+			for ( ImageResolution resolution : resolutions ) {
+				for ( ImageContext context : resolution.getContexts() ) {
+					if ( imageStoreService.getVariantImage( image, context, resolution, imageVariant ) == null ) {
+						ImageModificationDto modification = cropGenerator.getModificationDto( image, context, resolution );
+						VariantImageRequest request = new VariantImageRequest( image.getId(), context.getId(), modification, resolution, imageVariant );
+
+						// variants already being generated by another thread are skipped, requests for the others wait for this batch
+						CompletableFuture<ImageSource> variantInProgress = new CompletableFuture<>();
+						if ( variantsInProgress.putIfAbsent( request, variantInProgress ) == null ) {
+							targets.add( new VariantTarget( context, resolution, modification, request, variantInProgress ) );
+						}
+					}
+				}
+			}
+
+			if ( !targets.isEmpty() ) {
+				generateVariantTargets( image, targets, imageVariant );
+			}
+		}
+		catch ( RuntimeException | Error e ) {
+			targets.forEach( target -> target.getVariantInProgress().completeExceptionally( e ) );
+			throw e;
+		}
+		finally {
+			targets.forEach( target -> variantsInProgress.remove( target.getRequest(), target.getVariantInProgress() ) );
+		}
+
+		return targets.size();
+	}
+
+	private void generateVariantTargets( Image image, List<VariantTarget> targets, ImageVariant imageVariant ) {
+		ImageSource originalImageSource = imageStoreService.getOriginalImage( image );
+		if ( originalImageSource == null ) {
+			String message = String.format( "The original image is not available on disk. image=%s", LogHelper.flatten( image ) );
+			LOG.error( message );
+			throw new ImageCouldNotBeRetrievedException( message );
+		}
+
+		List<ImageTransformDto> transforms = new ArrayList<>( targets.size() );
+		for ( VariantTarget target : targets ) {
+			transforms.add( createTransformDto( target.getModification(), imageVariant ) );
+		}
+
+		List<ImageSource> variantImageSources = imageTransformService.transformBatch( originalImageSource, ImageAttributes.from( image ), transforms );
+
+		try {
+			for ( int i = 0; i < targets.size(); i++ ) {
+				VariantTarget target = targets.get( i );
+				imageStoreService.storeVariantImage( image, target.getContext(), target.getResolution(), imageVariant, variantImageSources.get( i ) );
+
+				// the batch result is released below, requests waiting for the variant read it from the store
+				ImageSource storedVariant = imageStoreService.getVariantImage( image, target.getContext(), target.getResolution(), imageVariant );
+				if ( storedVariant != null ) {
+					target.getVariantInProgress().complete( storedVariant );
+				}
+				else {
+					target.getVariantInProgress().completeExceptionally(
+							new ImageCouldNotBeRetrievedException( "The pregenerated variant is not available in the store." )
+					);
+				}
+
+				// same semi-optimistic concurrency control as in getVariantImage()
+				ImageModificationDto reviewModification = cropGenerator.refreshModificationDto( image, target.getContext(), target.getResolution() );
+				if ( !target.getModification().equals( reviewModification ) ) {
+					imageStoreService.removeVariantImage( image, target.getContext(), target.getResolution(), imageVariant );
+				}
+			}
+		}
+		finally {
+			variantImageSources.forEach( ImageServiceImpl::release );
+		}
 	}
 
 	@Override
@@ -475,6 +754,7 @@ public class ImageServiceImpl implements ImageService
 
 	@Override
 	@Transactional
+	@CacheEvict(value = CropGeneratorImpl.CACHE_NAME, allEntries = true)
 	public void saveImageResolution( ImageResolution resolution ) {
 		if ( resolution == null ) {
 			LOG.warn( "Null resolution not not allowed - ImageServiceImpl#saveImageResolution" );
@@ -498,33 +778,67 @@ public class ImageServiceImpl implements ImageService
 		Map<String, ImageDto> transforms = new HashMap<>();
 		resultBuilder.transforms( transforms );
 
+		Map<String, ImageSource> resultImages = new LinkedHashMap<>();
+
 		try {
 			ImageConvertSource source = buildImageConvertSource( imageConvertDto );
 
+			// targets consisting of a single transform are created together, decoding the source image only once
+			List<String> batchTargets = new ArrayList<>();
+			List<ImageTransformDto> batchTransforms = new ArrayList<>();
+
 			for ( Map.Entry<String, List<ImageTransformDto>> entry : imageConvertDto.getTransformations().entrySet() ) {
+				if ( entry.getValue().size() == 1 ) {
+					batchTargets.add( entry.getKey() );
+					batchTransforms.add( entry.getValue().get( 0 ) );
+				}
+				else {
+					resultImages.put( entry.getKey(), imageTransformService.transform( source.getImageSource(), source.getAttributes(), entry.getValue() ) );
+				}
+			}
+
+			List<ImageSource> batchResults = imageTransformService.transformBatch( source.getImageSource(), source.getAttributes(), batchTransforms );
+			for ( int i = 0; i < batchTargets.size(); i++ ) {
+				resultImages.put( batchTargets.get( i ), batchResults.get( i ) );
+			}
+
+			for ( Map.Entry<String, ImageSource> resultImage : resultImages.entrySet() ) {
+				ImageDto imageDto;
+				try (InputStream is = resultImage.getValue().getImageStream()) {
+					imageDto = ImageDto.builder()
+					                   .image( IOUtils.toByteArray( is ) )
+					                   .format( DtoUtil.toDto( resultImage.getValue().getImageType() ) )
+					                   .build();
+				}
+
 				for ( Integer page : pages ) {
-					String key = entry.getKey().replace( "*", page.toString() );
+					String key = resultImage.getKey().replace( "*", page.toString() );
 					keys.add( key );
-
-					ImageSource resultImage = imageTransformService.transform( source.getImageSource(), source.getAttributes(), entry.getValue() );
-					try (InputStream is = resultImage.getImageStream()) {
-						transforms.put( key, ImageDto.builder()
-						                             .image( IOUtils.toByteArray( is ) )
-						                             .format( DtoUtil.toDto( resultImage.getImageType() ) )
-						                             .build() );
-					}
+					transforms.put( key, imageDto );
 				}
 			}
 		}
 		catch ( Exception e ) {
 			throw new RuntimeException( "An error occurred while converting the image", e );
 		}
+		finally {
+			resultImages.values().forEach( ImageServiceImpl::release );
+		}
 
 		resultBuilder.total( keys.size() );
 
 		return resultBuilder.build();
 	}
 
+	/**
+	 * Deletes the temporary file of a transformed image once it has been stored or copied.
+	 */
+	private static void release( ImageSource imageSource ) {
+		if ( imageSource instanceof SpillingImageSource ) {
+			( (SpillingImageSource) imageSource ).release();
+		}
+	}
+
 	private ImageConvertSource buildImageConvertSource( ImageConvertDto convertDto ) throws IOException {
 		String imageId = convertDto.getImageId();
 		byte[] imageData = convertDto.getImage();
@@ -563,6 +877,17 @@ public class ImageServiceImpl implements ImageService
 		private final ImageAttributes attributes;
 	}
 
+	@Getter
+	@RequiredArgsConstructor
+	private static class VariantTarget
+	{
+		private final ImageContext context;
+		private final ImageResolution resolution;
+		private final ImageModificationDto modification;
+		private final VariantImageRequest request;
+		private final CompletableFuture<ImageSource> variantInProgress;
+	}
+
 	private static class VariantImageRequest
 	{
 		private final Long imageId;
@@ -596,7 +921,7 @@ public class ImageServiceImpl implements ImageService
 			if ( contextId != that.contextId ) {
 				return false;
 			}
-			if ( imageId != that.imageId ) {
+			if ( !Objects.equals( imageId, that.imageId ) ) {
 				return false;
 			}
 			if ( !modification.equals( that.modification ) ) {
@@ -619,50 +944,6 @@ public class ImageServiceImpl implements ImageService
 		}
 	}
 
-	private static class FutureVariantImage
-	{
-		private ImageSource result;
-		private RuntimeException exception;
-		private Error error;
-
-		public synchronized ImageSource get() {
-			try {
-				while ( result == null && exception == null && error == null ) {
-					wait();
-				}
-
-				if ( exception != null ) {
-					throw exception;
-				}
-
-				if ( error != null ) {
-					throw error;
-				}
-
-				return result;
-			}
-			catch ( InterruptedException e ) {
-				Thread.currentThread().interrupt();
-				throw new VariantGenerationWasInterruptedException();
-			}
-		}
-
-		public synchronized void setResult( ImageSource result ) {
-			this.result = result;
-			notifyAll();
-		}
-
-		public synchronized void setRuntimeException( RuntimeException e ) {
-			this.exception = e;
-			notifyAll();
-		}
-
-		public synchronized void setError( Error e ) {
-			this.error = e;
-			notifyAll();
-		}
-	}
-
 	private static class VariantGenerationWasInterruptedException extends RuntimeException
 	{
 	}
@@ -3,10 +3,16 @@ package com.foreach.imageserver.core.services;
 import com.foreach.imageserver.core.business.Image;
 import com.foreach.imageserver.core.business.ImageContext;
 import com.foreach.imageserver.core.business.ImageResolution;
+import com.foreach.imageserver.core.business.ImageTilePyramid;
+import com.foreach.imageserver.core.business.ImageType;
 import com.foreach.imageserver.core.business.ImageVariant;
+import com.foreach.imageserver.core.business.ImageVariantManifest;
 import com.foreach.imageserver.core.transformers.ImageSource;
 
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Optional;
+import java.util.function.Function;
 
 public interface ImageStoreService
 {
@@ -22,6 +28,20 @@ public interface ImageStoreService
 	                        ImageVariant imageVariant,
 	                        ImageSource imageSource );
 
+	/**
+	 * Store a variant image by letting the writer write it directly to the storage location,
+	 * for example while it is being created.  The writer should not close the output stream.
+	 *
+	 * @param imageWriter writing the variant image to the output stream
+	 * @param <T>         type of the value returned by the writer
+	 * @return value returned by the writer
+	 */
+	<T> T storeVariantImage( Image image,
+	                         ImageContext context,
+	                         ImageResolution imageResolution,
+	                         ImageVariant imageVariant,
+	                         Function<OutputStream, T> imageWriter );
+
 	ImageSource getVariantImage( Image image,
 	                             ImageContext context,
 	                             ImageResolution imageResolution,
@@ -34,5 +54,65 @@ public interface ImageStoreService
 
 	void removeVariants( Image image );
 
+	/**
+	 * Get the inventory of the variants that have been stored for an image.  Empty for images whose
+	 * variants are not registered, see {@link Image#isVariantsRegistered()}.
+	 *
+	 * @param image to get the variants for
+	 * @return manifest of the stored variants
+	 */
+	Optional<ImageVariantManifest> getVariantManifest( Image image );
+
+	/**
+	 * Remove the original file of the image.
+	 *
+	 * @param image to remove the original for
+	 */
 	void removeOriginal( Image image );
+
+	/**
+	 * Store a single tile of the tile pyramid of an image.  The pyramid itself should only be stored
+	 * once all tiles have been stored, see {@link #storeTilePyramid(Image, ImageTilePyramid)}.
+	 *
+	 * @param image    the tile belongs to
+	 * @param pyramid  the tile belongs to
+	 * @param level    of the tile
+	 * @param column   of the tile
+	 * @param row      of the tile
+	 * @param tileData tile image
+	 */
+	void storeTile( Image image, ImageTilePyramid pyramid, int level, int column, int row, ImageSource tileData );
+
+	/**
+	 * Get a single tile of an image.
+	 *
+	 * @param image    the tile belongs to
+	 * @param level    of the tile
+	 * @param column   of the tile
+	 * @param row      of the tile
+	 * @param tileType image type of the tile
+	 * @return tile image or {@code null} if it does not exist
+	 */
+	ImageSource getTile( Image image, int level, int column, int row, ImageType tileType );
+
+	/**
+	 * Store the descriptor of the tile pyramid of an image, marking all tiles as available.
+	 *
+	 * @param image   the pyramid belongs to
+	 * @param pyramid to store
+	 */
+	void storeTilePyramid( Image image, ImageTilePyramid pyramid );
+
+	/**
+	 * @param image to get the tile pyramid for
+	 * @return tile pyramid if all tiles of the image have been stored
+	 */
+	Optional<ImageTilePyramid> getTilePyramid( Image image );
+
+	/**
+	 * Remove the tile pyramid of an image along with all its tiles.
+	 *
+	 * @param image to remove the tiles for
+	 */
+	void removeTiles( Image image );
 }
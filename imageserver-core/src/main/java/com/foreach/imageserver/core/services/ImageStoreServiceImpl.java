@@ -4,6 +4,7 @@ import com.foreach.across.modules.filemanager.business.FileDescriptor;
 import com.foreach.across.modules.filemanager.business.FileResource;
 import com.foreach.across.modules.filemanager.services.FileManager;
 import com.foreach.imageserver.core.business.*;
+import com.foreach.imageserver.core.managers.ImageVariantFileManager;
 import com.foreach.imageserver.core.services.exceptions.ImageStoreException;
 import com.foreach.imageserver.core.transformers.ImageSource;
 import com.foreach.imageserver.core.transformers.SimpleImageSource;
@@ -11,10 +12,27 @@ import com.foreach.imageserver.logging.LogHelper;
 import lombok.RequiredArgsConstructor;
 import lombok.SneakyThrows;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.output.CountingOutputStream;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
 
 import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Slf4j
 @Service
@@ -24,6 +42,9 @@ public class ImageStoreServiceImpl implements ImageStoreService
 	private final FileManager fileManager;
 	private final ImageContextService imageContextService;
 	private final DefaultImageFileDescriptorFactory defaultImageFileDescriptorFactory;
+	private final ImageVariantCache imageVariantCache;
+	private final ImageVariantLocalStore imageVariantLocalStore;
+	private final ImageVariantFileManager imageVariantFileManager;
 
 	@Override
 	public void storeOriginalImage( Image image, byte[] imageBytes ) {
@@ -73,7 +94,6 @@ public class ImageStoreServiceImpl implements ImageStoreService
 	}
 
 	@Override
-	@SneakyThrows
 	public void storeVariantImage( Image image,
 	                               ImageContext context,
 	                               ImageResolution imageResolution,
@@ -84,8 +104,85 @@ public class ImageStoreServiceImpl implements ImageStoreService
 					"Null parameters not allowed - ImageStoreServiceImpl#storeVariantImage: image={}, context={}, imageResolution={}, imageVariant={}, imageSource={}",
 					LogHelper.flatten( image, context, imageResolution, imageVariant, imageSource ) );
 		}
+		storeVariantImage( image, context, imageResolution, imageVariant, os -> copy( imageSource, os ) );
+	}
+
+	@SneakyThrows(IOException.class)
+	private static long copy( ImageSource imageSource, OutputStream outputStream ) {
 		try (InputStream is = imageSource.getImageStream()) {
-			writeSafely( is, getVariantsFileDescriptor( image, context, imageResolution, imageVariant ) );
+			return IOUtils.copyLarge( is, outputStream );
+		}
+	}
+
+	@Override
+	public <T> T storeVariantImage( Image image,
+	                                ImageContext context,
+	                                ImageResolution imageResolution,
+	                                ImageVariant imageVariant,
+	                                Function<OutputStream, T> imageWriter ) {
+		if ( image == null || context == null || imageResolution == null || imageVariant == null || imageWriter == null ) {
+			LOG.warn(
+					"Null parameters not allowed - ImageStoreServiceImpl#storeVariantImage: image={}, context={}, imageResolution={}, imageVariant={}, imageWriter={}",
+					LogHelper.flatten( image, context, imageResolution, imageVariant, imageWriter ) );
+		}
+		FileDescriptor target = getVariantsFileDescriptor( image, context, imageResolution, imageVariant );
+		long[] byteCount = new long[1];
+		Function<OutputStream, T> countingWriter = os -> {
+			CountingOutputStream outputStream = new CountingOutputStream( os );
+			try {
+				return imageWriter.apply( outputStream );
+			}
+			finally {
+				byteCount[0] = outputStream.getByteCount();
+			}
+		};
+
+		T result;
+		try {
+			if ( imageVariantLocalStore.isEnabled() ) {
+				// written to the local folder, uploaded to the repository in the background
+				result = imageVariantLocalStore.write( target, countingWriter );
+			}
+			else {
+				result = writeStaged( target, countingWriter );
+			}
+		}
+		catch ( IOException e ) {
+			LOG.error( "Error while writing file resource - ImageStoreServiceImpl#storeVariantImage: targetPath={}", target, e );
+			throw new ImageStoreException( e );
+		}
+
+		imageVariantCache.invalidate( target );
+		registerVariant( image, target, byteCount[0] );
+		return result;
+	}
+
+	/**
+	 * Writes the variant to a temporary file first, the target is only written once the writer has succeeded.
+	 * A failed or interrupted transform can never leave an incomplete variant behind under the actual name.
+	 * If copying to the target fails, the target is removed.
+	 */
+	private <T> T writeStaged( FileDescriptor target, Function<OutputStream, T> writer ) throws IOException {
+		File staging = fileManager.createTempFile();
+		try {
+			T result;
+			try (OutputStream os = new FileOutputStream( staging )) {
+				result = writer.apply( os );
+			}
+
+			FileResource fileResource = fileManager.getFileResource( target );
+			try {
+				fileResource.copyFrom( staging, true );
+			}
+			catch ( IOException | RuntimeException e ) {
+				fileResource.delete();
+				throw e;
+			}
+
+			return result;
+		}
+		finally {
+			FileUtils.deleteQuietly( staging );
 		}
 	}
 
@@ -100,7 +197,56 @@ public class ImageStoreServiceImpl implements ImageStoreService
 					LogHelper.flatten( image, context, imageResolution, imageVariant ) );
 		}
 		FileDescriptor fileDescriptor = getVariantsFileDescriptor( image, context, imageResolution, imageVariant );
-		return read( fileDescriptor, imageVariant.getOutputType() );
+
+		ImageVariantCache.CachedVariant cached = imageVariantCache.get( fileDescriptor );
+		if ( cached != null ) {
+			return cached.isMissing() ? null : new SimpleImageSource( imageVariant.getOutputType(), cached.getData() );
+		}
+
+		return readVariant( image, fileDescriptor, imageVariant.getOutputType() );
+	}
+
+	/**
+	 * Reads the variant and adds it to the cache, small variants are read in memory at once.
+	 * If the local folder is enabled, the variant is read from there.  A variant that is only in the repository
+	 * is copied to the local folder first.
+	 */
+	private ImageSource readVariant( Image image, FileDescriptor fileDescriptor, ImageType imageType ) {
+		Path localFile = imageVariantLocalStore.isEnabled() ? imageVariantLocalStore.get( fileDescriptor ) : null;
+		Resource resource;
+
+		if ( localFile != null ) {
+			resource = new FileSystemResource( localFile );
+		}
+		else {
+			FileResource fileResource = fileManager.getFileResource( fileDescriptor );
+
+			if ( !fileResource.exists() ) {
+				imageVariantCache.putMissing( image.getId(), fileDescriptor );
+				return null;
+			}
+
+			localFile = imageVariantLocalStore.isEnabled() ? imageVariantLocalStore.copyToLocal( fileDescriptor, fileResource ) : null;
+			resource = localFile != null ? new FileSystemResource( localFile ) : fileResource;
+		}
+
+		if ( imageVariantCache.isEnabled() ) {
+			try {
+				if ( imageVariantCache.isCacheable( resource.contentLength() ) ) {
+					byte[] data;
+					try (InputStream is = resource.getInputStream()) {
+						data = IOUtils.toByteArray( is );
+					}
+					imageVariantCache.put( image.getId(), fileDescriptor, data );
+					return new SimpleImageSource( imageType, data );
+				}
+			}
+			catch ( IOException ioe ) {
+				LOG.debug( "Unable to read variant {} in memory - not caching", fileDescriptor, ioe );
+			}
+		}
+
+		return new SimpleImageSource( imageType, resource );
 	}
 
 	@Override
@@ -115,6 +261,7 @@ public class ImageStoreServiceImpl implements ImageStoreService
 		}
 
 		FileDescriptor descriptor = getVariantsFileDescriptor( image, context, imageResolution, imageVariant );
+		imageVariantLocalStore.remove( descriptor );
 		FileResource fileResource = fileManager.getFileResource( descriptor );
 
 		if ( fileResource.exists() ) {
@@ -124,6 +271,12 @@ public class ImageStoreServiceImpl implements ImageStoreService
 		else {
 			LOG.debug( "Original image file for {} does not exist.", image );
 		}
+
+		imageVariantCache.invalidate( descriptor );
+
+		if ( image.isVariantsRegistered() ) {
+			imageVariantFileManager.delete( image.getId(), Collections.singletonList( descriptor ) );
+		}
 	}
 
 	private FileDescriptor getVariantsFileDescriptor( Image image,
@@ -132,10 +285,133 @@ public class ImageStoreServiceImpl implements ImageStoreService
 		return defaultImageFileDescriptorFactory.createForVariant( image, context, imageResolution, imageVariant );
 	}
 
+	/**
+	 * Removes exactly the variant files registered for the image, and their registrations.  Variants registered
+	 * concurrently remain registered.  Only for an image whose variants are not registered,
+	 * the variants repository is searched for the variants in every context.
+	 */
 	@Override
 	public void removeVariants( Image image ) {
-		imageContextService.getAllContexts()
-		                   .forEach( context -> defaultImageFileDescriptorFactory.removeVariantsForImageAndContext( fileManager, image, context ) );
+		if ( image.isVariantsRegistered() ) {
+			List<FileDescriptor> variants = imageVariantFileManager.getVariantFiles( image.getId() )
+			                                                       .stream()
+			                                                       .map( ImageVariantFile::getFile )
+			                                                       .collect( Collectors.toList() );
+			variants.forEach( variant -> {
+				imageVariantLocalStore.remove( variant );
+				fileManager.getFileResource( variant ).delete();
+			} );
+			imageVariantFileManager.delete( image.getId(), variants );
+			LOG.debug( "Deleted {} registered variants for {}", variants.size(), image );
+		}
+		else {
+			imageContextService.getAllContexts().forEach( context -> {
+				if ( imageVariantLocalStore.isEnabled() ) {
+					defaultImageFileDescriptorFactory.findVariantsForImageAndContext( fileManager, image, context )
+					                                 .forEach( variant -> imageVariantLocalStore.remove( variant.getDescriptor() ) );
+				}
+				defaultImageFileDescriptorFactory.removeVariantsForImageAndContext( fileManager, image, context );
+			} );
+		}
+
+		imageVariantCache.invalidateImage( image.getId() );
+	}
+
+	@Override
+	public Optional<ImageVariantManifest> getVariantManifest( Image image ) {
+		if ( !image.isVariantsRegistered() ) {
+			return Optional.empty();
+		}
+
+		ImageVariantManifest manifest = ImageVariantManifest.EMPTY;
+		for ( ImageVariantFile variantFile : imageVariantFileManager.getVariantFiles( image.getId() ) ) {
+			manifest = manifest.withVariant( variantFile.getFile(), variantFile.getFileSize() );
+		}
+		return Optional.of( manifest );
+	}
+
+	/**
+	 * Registers the variant file for the image, a single insert or update of its own record.
+	 * If another node registers the same file concurrently, the registration can fail, but the file is registered.
+	 */
+	private void registerVariant( Image image, FileDescriptor variant, long size ) {
+		if ( image.isVariantsRegistered() ) {
+			try {
+				imageVariantFileManager.save( new ImageVariantFile( image.getId(), variant, size ) );
+			}
+			catch ( DataIntegrityViolationException e ) {
+				LOG.debug( "Variant {} of {} has been registered concurrently", variant, image, e );
+			}
+		}
+	}
+
+	@Override
+	@SneakyThrows(IOException.class)
+	public void storeTile( Image image, ImageTilePyramid pyramid, int level, int column, int row, ImageSource tileData ) {
+		FileDescriptor target = defaultImageFileDescriptorFactory.createForTile( image, level, column, row, pyramid.getTileType() );
+		try (InputStream is = tileData.getImageStream()) {
+			writeSafely( is, target );
+		}
+		imageVariantCache.invalidate( target );
+	}
+
+	/**
+	 * Tiles are read like variants: from memory, from the local folder or from the repository.
+	 */
+	@Override
+	public ImageSource getTile( Image image, int level, int column, int row, ImageType tileType ) {
+		return readVariant( image, defaultImageFileDescriptorFactory.createForTile( image, level, column, row, tileType ), tileType );
+	}
+
+	@Override
+	public void storeTilePyramid( Image image, ImageTilePyramid pyramid ) {
+		writeSafely( new ByteArrayInputStream( pyramid.serialize().getBytes( StandardCharsets.UTF_8 ) ),
+		             defaultImageFileDescriptorFactory.createForTilePyramid( image ) );
+	}
+
+	@Override
+	public Optional<ImageTilePyramid> getTilePyramid( Image image ) {
+		FileResource descriptor = fileManager.getFileResource( defaultImageFileDescriptorFactory.createForTilePyramid( image ) );
+		try {
+			if ( descriptor.exists() ) {
+				try (InputStream is = descriptor.getInputStream()) {
+					return Optional.of( ImageTilePyramid.parse( IOUtils.toString( is, StandardCharsets.UTF_8 ) ) );
+				}
+			}
+		}
+		catch ( Exception e ) {
+			LOG.warn( "Unable to read tile pyramid for {}", image, e );
+		}
+		return Optional.empty();
+	}
+
+	/**
+	 * Removes the descriptor first, so the tiles are no longer considered complete, then the folder holding all levels.
+	 * Also removes the tiles of a pyramid that was never completed.
+	 */
+	@Override
+	public void removeTiles( Image image ) {
+		Optional<ImageTilePyramid> pyramid = getTilePyramid( image );
+		fileManager.getFileResource( defaultImageFileDescriptorFactory.createForTilePyramid( image ) ).delete();
+
+		pyramid.ifPresent( tiles -> {
+			if ( imageVariantLocalStore.isEnabled() ) {
+				for ( int level = 0; level <= tiles.getMaxLevel(); level++ ) {
+					for ( int column = 0; column < tiles.getColumns( level ); column++ ) {
+						for ( int row = 0; row < tiles.getRows( level ); row++ ) {
+							imageVariantLocalStore.remove( defaultImageFileDescriptorFactory.createForTile( image, level, column, row, tiles.getTileType() ) );
+						}
+					}
+				}
+			}
+		} );
+
+		defaultImageFileDescriptorFactory.createForTile( image, 0, 0, 0, ImageType.PNG )
+		                                 .getFolderDescriptor()
+		                                 .getParentFolderDescriptor()
+		                                 .ifPresent( folder -> fileManager.getFolderResource( folder ).delete( true ) );
+
+		imageVariantCache.invalidateImage( image.getId() );
 	}
 
 	private void writeSafely( InputStream inputStream, FileDescriptor target ) {
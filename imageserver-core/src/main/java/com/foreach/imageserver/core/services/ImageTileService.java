@@ -0,0 +1,265 @@
+package com.foreach.imageserver.core.services;
+
+import com.foreach.imageserver.core.ImageServerCoreModuleSettings;
+import com.foreach.imageserver.core.business.Dimensions;
+import com.foreach.imageserver.core.business.Image;
+import com.foreach.imageserver.core.business.ImageTilePyramid;
+import com.foreach.imageserver.core.business.ImageType;
+import com.foreach.imageserver.core.config.TileSettings;
+import com.foreach.imageserver.core.services.exceptions.ImageStoreException;
+import com.foreach.imageserver.core.transformers.ImageAttributes;
+import com.foreach.imageserver.core.transformers.ImageSource;
+import com.foreach.imageserver.core.transformers.SpillingImageSource;
+import com.foreach.imageserver.dto.CropDto;
+import com.foreach.imageserver.dto.ImageTransformDto;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.*;
+
+/**
+ * Generates and serves deep zoom tiles for large originals, so a viewer can zoom into an image without
+ * a transform being executed for every zoom or pan step.
+ * <p/>
+ * All tiles of an image are generated once, in the background, level by level starting at the highest level.
+ * The tiles of a level and the image of the next level are created in a single batch transform on the image
+ * of that level, only the highest level uses the original.  If an executor supports the entire batch, the original
+ * is only decoded once and every lower level only decodes an image of a quarter of the size of the level above.
+ * The tile pyramid descriptor is stored when all tiles have been stored, an image only has tiles if the descriptor exists.
+ * Tiles are never modified, they are removed when the image is deleted.
+ *
+ * @author Arne Vandamme
+ * @see ImageTilePyramid
+ * @since 6.3.0
+ */
+@Slf4j
+@Service
+public class ImageTileService
+{
+	/**
+	 * Type of the downscaled images the tiles of the lower levels are cut from, lossless to avoid degrading every level.
+	 */
+	private static final ImageType LEVEL_IMAGE_TYPE = ImageType.PNG;
+
+	private final ImageStoreService imageStoreService;
+	private final ImageTransformService imageTransformService;
+	private final TileSettings settings;
+	private final ThreadPoolExecutor executor;
+
+	private final Set<Long> imagesInProgress = ConcurrentHashMap.newKeySet();
+
+	@Autowired
+	public ImageTileService( @NonNull ImageStoreService imageStoreService,
+	                         @NonNull ImageTransformService imageTransformService,
+	                         @NonNull ImageServerCoreModuleSettings settings ) {
+		this( imageStoreService, imageTransformService, settings.getTiles() );
+	}
+
+	public ImageTileService( @NonNull ImageStoreService imageStoreService,
+	                         @NonNull ImageTransformService imageTransformService,
+	                         @NonNull TileSettings settings ) {
+		this.imageStoreService = imageStoreService;
+		this.imageTransformService = imageTransformService;
+		this.settings = settings;
+
+		int workers = Math.max( 1, settings.getWorkers() );
+		CustomizableThreadFactory threadFactory = new CustomizableThreadFactory( "imageserver-tiles-" );
+		threadFactory.setDaemon( true );
+		executor = new ThreadPoolExecutor( workers, workers, 0L, TimeUnit.MILLISECONDS,
+		                                   new LinkedBlockingQueue<>( Math.max( 1, settings.getQueueCapacity() ) ), threadFactory );
+	}
+
+	/**
+	 * Tiles are only generated for registered raster images that are large enough.
+	 *
+	 * @param image to check
+	 * @return true if tiles can be generated for the image
+	 */
+	public boolean isTileable( @NonNull Image image ) {
+		Dimensions dimensions = image.getDimensions();
+		return Boolean.TRUE.equals( settings.getEnabled() )
+				&& !image.isTemporaryImage()
+				&& image.getImageType() != null && !image.getImageType().isScalable()
+				&& image.getSceneCount() <= 1
+				&& dimensions != null
+				&& (long) dimensions.getWidth() * dimensions.getHeight() >= settings.getMinimumPixels();
+	}
+
+	/**
+	 * Create the layout of the tiles of an image, tiles of images with transparency are PNG, all others JPEG.
+	 *
+	 * @param image to create the layout for
+	 * @return tile pyramid
+	 */
+	public ImageTilePyramid createTilePyramid( @NonNull Image image ) {
+		ImageType tileType = image.getImageType().hasTransparency() ? ImageType.PNG : ImageType.JPEG;
+		return new ImageTilePyramid( image.getDimensions().getWidth(), image.getDimensions().getHeight(), settings.getTileSize(), tileType );
+	}
+
+	/**
+	 * @param image to get the tile pyramid for
+	 * @return tile pyramid if all tiles have been generated
+	 */
+	public Optional<ImageTilePyramid> getTilePyramid( @NonNull Image image ) {
+		return imageStoreService.getTilePyramid( image );
+	}
+
+	/**
+	 * @return tile image or {@code null} if it does not exist
+	 */
+	public ImageSource getTile( @NonNull Image image, int level, int column, int row, @NonNull ImageType tileType ) {
+		return imageStoreService.getTile( image, level, column, row, tileType );
+	}
+
+	/**
+	 * Queue the generation of the tiles of an image, if the image is tileable and the tiles are not
+	 * already being generated.  Tiles that already exist are not generated again.
+	 *
+	 * @param image to generate the tiles for
+	 * @return true if the tiles are being generated
+	 */
+	public boolean submit( @NonNull Image image ) {
+		if ( !isTileable( image ) ) {
+			return false;
+		}
+
+		if ( imagesInProgress.add( image.getId() ) ) {
+			try {
+				executor.execute( () -> {
+					try {
+						if ( !getTilePyramid( image ).isPresent() ) {
+							ImageTransformLane.run( ImageTransformLane.BACKGROUND, () -> generateTiles( image ) );
+						}
+					}
+					catch ( Exception e ) {
+						LOG.warn( "Problem generating tiles for {}", image, e );
+					}
+					finally {
+						imagesInProgress.remove( image.getId() );
+					}
+				} );
+			}
+			catch ( RejectedExecutionException ree ) {
+				imagesInProgress.remove( image.getId() );
+				LOG.warn( "Unable to queue tile generation for {} - queue is full", image );
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	/**
+	 * Generate and store all tiles of the image in the current thread.  Existing tiles are replaced.
+	 *
+	 * @param image to generate the tiles for
+	 * @return tile pyramid
+	 */
+	public ImageTilePyramid generateTiles( @NonNull Image image ) {
+		ImageSource original = imageStoreService.getOriginalImage( image );
+		if ( original == null ) {
+			throw new ImageStoreException( "Original image not found for " + image );
+		}
+
+		ImageTilePyramid pyramid = createTilePyramid( image );
+		long start = System.currentTimeMillis();
+
+		// every level is cut from an image of that level, downscaled from the image of the level above it
+		ImageSource levelImage = original;
+		ImageAttributes levelAttributes = ImageAttributes.from( image );
+
+		try {
+			for ( int level = pyramid.getMaxLevel(); level >= 0; level-- ) {
+				List<ImageTransformDto> transforms = new ArrayList<>( pyramid.getColumns( level ) * pyramid.getRows( level ) + 1 );
+
+				for ( int row = 0; row < pyramid.getRows( level ); row++ ) {
+					for ( int column = 0; column < pyramid.getColumns( level ); column++ ) {
+						Dimensions dimensions = pyramid.getTileDimensions( level, column, row );
+						transforms.add(
+								ImageTransformDto.builder()
+								                 .crop( new CropDto( column * pyramid.getTileSize(), row * pyramid.getTileSize(),
+								                                     dimensions.getWidth(), dimensions.getHeight() ) )
+								                 .width( dimensions.getWidth() )
+								                 .height( dimensions.getHeight() )
+								                 .outputType( DtoUtil.toDto( pyramid.getTileType() ) )
+								                 .build()
+						);
+					}
+				}
+
+				int tileCount = transforms.size();
+				Dimensions nextLevelDimensions = level > 0
+						? new Dimensions( pyramid.getLevelWidth( level - 1 ), pyramid.getLevelHeight( level - 1 ) )
+						: null;
+
+				if ( nextLevelDimensions != null ) {
+					transforms.add(
+							ImageTransformDto.builder()
+							                 .width( nextLevelDimensions.getWidth() )
+							                 .height( nextLevelDimensions.getHeight() )
+							                 .outputType( DtoUtil.toDto( LEVEL_IMAGE_TYPE ) )
+							                 .build()
+					);
+				}
+
+				List<ImageSource> outputs = imageTransformService.transformBatch( levelImage, levelAttributes, transforms );
+
+				release( levelImage );
+				levelImage = nextLevelDimensions != null ? outputs.get( tileCount ) : null;
+				levelAttributes = nextLevelDimensions != null ? new ImageAttributes( LEVEL_IMAGE_TYPE, nextLevelDimensions, 1 ) : null;
+
+				try {
+					int index = 0;
+					for ( int row = 0; row < pyramid.getRows( level ); row++ ) {
+						for ( int column = 0; column < pyramid.getColumns( level ); column++ ) {
+							imageStoreService.storeTile( image, pyramid, level, column, row, outputs.get( index++ ) );
+						}
+					}
+				}
+				finally {
+					outputs.subList( 0, tileCount ).forEach( ImageTileService::release );
+				}
+			}
+		}
+		finally {
+			release( levelImage );
+		}
+
+		imageStoreService.storeTilePyramid( image, pyramid );
+		LOG.info( "Generated {} tiles in {} levels for {} in {} ms", pyramid.getTileCount(), pyramid.getMaxLevel() + 1, image,
+		          System.currentTimeMillis() - start );
+
+		return pyramid;
+	}
+
+	private static void release( ImageSource imageSource ) {
+		if ( imageSource instanceof SpillingImageSource ) {
+			( (SpillingImageSource) imageSource ).release();
+		}
+	}
+
+	/**
+	 * Remove all tiles of an image.
+	 *
+	 * @param image to remove the tiles for
+	 */
+	public void removeTiles( @NonNull Image image ) {
+		imageStoreService.removeTiles( image );
+	}
+
+	/**
+	 * Stop the workers, queued generations are discarded.
+	 */
+	@PreDestroy
+	public void shutdown() {
+		executor.shutdownNow();
+	}
+}
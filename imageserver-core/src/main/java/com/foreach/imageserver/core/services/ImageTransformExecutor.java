@@ -0,0 +1,87 @@
+package com.foreach.imageserver.core.services;
+
+import com.foreach.imageserver.core.ImageServerCoreModuleSettings;
+import lombok.NonNull;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.concurrent.*;
+import java.util.function.Supplier;
+
+/**
+ * Executes the generation of images outside of the thread requesting them, so a request thread does not
+ * have to wait for a transform to finish.  Work is executed in the {@link ImageTransformLane} of the thread
+ * submitting it, the lanes still determine when the actual transforms can start.
+ * <p/>
+ * The number of workers is bounded and work is never queued: if all workers are busy, the work is executed
+ * in the submitting thread instead.  The returned future is already completed in that case.
+ *
+ * @author Arne Vandamme
+ * @since 6.3.0
+ */
+@Component
+public class ImageTransformExecutor
+{
+	private final ThreadPoolExecutor executor;
+
+	@Autowired
+	public ImageTransformExecutor( @NonNull ImageServerCoreModuleSettings settings ) {
+		this( settings.getTransformers().getAsyncWorkers() );
+	}
+
+	/**
+	 * @param workers maximum number of threads, if 0 all work is executed in the submitting thread
+	 */
+	public ImageTransformExecutor( int workers ) {
+		if ( workers > 0 ) {
+			CustomizableThreadFactory threadFactory = new CustomizableThreadFactory( "imageserver-transform-" );
+			threadFactory.setDaemon( true );
+			executor = new ThreadPoolExecutor( 0, workers, 60L, TimeUnit.SECONDS, new SynchronousQueue<>(), threadFactory,
+			                                   new ThreadPoolExecutor.CallerRunsPolicy() );
+		}
+		else {
+			executor = null;
+		}
+	}
+
+	/**
+	 * Execute the callback in the lane of the current thread.
+	 *
+	 * @param callback to execute
+	 * @param <T>      return type of the callback
+	 * @return future for the value returned by the callback
+	 */
+	public <T> CompletableFuture<T> submit( @NonNull Supplier<T> callback ) {
+		ImageTransformLane lane = ImageTransformLane.current();
+		Supplier<T> laneCallback = () -> ImageTransformLane.execute( lane, callback );
+
+		if ( executor == null ) {
+			CompletableFuture<T> future = new CompletableFuture<>();
+			try {
+				future.complete( laneCallback.get() );
+			}
+			catch ( RuntimeException | Error e ) {
+				future.completeExceptionally( e );
+			}
+			return future;
+		}
+
+		return CompletableFuture.supplyAsync( laneCallback, executor );
+	}
+
+	/**
+	 * @return number of workers currently generating an image
+	 */
+	public int getActiveCount() {
+		return executor != null ? executor.getActiveCount() : 0;
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		if ( executor != null ) {
+			executor.shutdownNow();
+		}
+	}
+}
@@ -0,0 +1,80 @@
+package com.foreach.imageserver.core.services;
+
+import lombok.NonNull;
+
+import java.util.function.Supplier;
+
+/**
+ * Lanes that transforms are scheduled in by the {@link ImageTransformScheduler}.  Every lane has its own weight,
+ * concurrency limit and maximum queue wait, so background work can never starve the interactive requests.
+ * <p/>
+ * The lane is determined by the thread requesting the transform, see {@link #execute(ImageTransformLane, Supplier)}.
+ * Transforms requested outside of any lane are scheduled in the {@link #API} lane.
+ *
+ * @author Arne Vandamme
+ * @since 6.3.0
+ */
+public enum ImageTransformLane
+{
+	/**
+	 * Images being viewed, usually with a browser waiting for them.
+	 */
+	INTERACTIVE,
+
+	/**
+	 * Images rendered using the API.
+	 */
+	API,
+
+	/**
+	 * Pregeneration and conversion of images, where nobody is waiting for an individual image.
+	 */
+	BACKGROUND;
+
+	private static final ThreadLocal<ImageTransformLane> CURRENT = new ThreadLocal<>();
+
+	/**
+	 * @return lane of the current thread
+	 */
+	public static ImageTransformLane current() {
+		ImageTransformLane lane = CURRENT.get();
+		return lane != null ? lane : API;
+	}
+
+	/**
+	 * Execute the callback with all transforms it requests scheduled in the given lane.
+	 *
+	 * @param lane     to use
+	 * @param callback to execute
+	 * @param <T>      return type of the callback
+	 * @return value returned by the callback
+	 */
+	public static <T> T execute( @NonNull ImageTransformLane lane, @NonNull Supplier<T> callback ) {
+		ImageTransformLane previous = CURRENT.get();
+		CURRENT.set( lane );
+		try {
+			return callback.get();
+		}
+		finally {
+			if ( previous != null ) {
+				CURRENT.set( previous );
+			}
+			else {
+				CURRENT.remove();
+			}
+		}
+	}
+
+	/**
+	 * Execute the runnable with all transforms it requests scheduled in the given lane.
+	 *
+	 * @param lane     to use
+	 * @param runnable to execute
+	 */
+	public static void run( @NonNull ImageTransformLane lane, @NonNull Runnable runnable ) {
+		execute( lane, () -> {
+			runnable.run();
+			return null;
+		} );
+	}
+}
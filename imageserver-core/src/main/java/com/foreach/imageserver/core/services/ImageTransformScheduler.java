@@ -0,0 +1,276 @@
+package com.foreach.imageserver.core.services;
+
+import com.foreach.imageserver.core.config.TransformersSettings;
+import com.foreach.imageserver.core.services.exceptions.ImageTransformQueueTimeoutException;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Limits the number of transforms that can be busy at the same time, scheduling the waiting transforms
+ * over a number of {@link ImageTransformLane}s.  Every lane has its own concurrency limit, and when multiple lanes
+ * have transforms waiting, a free slot goes to a lane according to its relative weight (stride scheduling).
+ * Within a single lane, transforms are started in the order they were requested.
+ * <p/>
+ * A transform that has not been started within the maximum queue wait of its lane fails
+ * with an {@link ImageTransformQueueTimeoutException}.
+ *
+ * @author Arne Vandamme
+ * @since 6.3.0
+ */
+@Slf4j
+@Component
+public class ImageTransformScheduler
+{
+	private static final long STRIDE = 1_000_000L;
+
+	private final ReentrantLock lock = new ReentrantLock();
+	private final Map<ImageTransformLane, Lane> lanes = new EnumMap<>( ImageTransformLane.class );
+
+	private final int concurrentLimit;
+	private final int retryAfterSeconds;
+
+	private int active;
+	private long virtualTime;
+
+	@Autowired
+	public ImageTransformScheduler( @NonNull TransformersSettings settings ) {
+		concurrentLimit = settings.getConcurrentLimit();
+		retryAfterSeconds = settings.getRetryAfter();
+
+		lanes.put( ImageTransformLane.INTERACTIVE, new Lane( ImageTransformLane.INTERACTIVE, settings.getInteractiveLane() ) );
+		lanes.put( ImageTransformLane.API, new Lane( ImageTransformLane.API, settings.getApiLane() ) );
+		lanes.put( ImageTransformLane.BACKGROUND, new Lane( ImageTransformLane.BACKGROUND, settings.getBackgroundLane() ) );
+	}
+
+	/**
+	 * Wait for a transform slot in the lane.  Every successful call must be followed by a call
+	 * to {@link #release(ImageTransformLane)} once the transform is done.
+	 *
+	 * @param imageTransformLane to schedule the transform in
+	 * @throws ImageTransformQueueTimeoutException if the transform could not be started within the maximum wait for the lane
+	 */
+	public void acquire( @NonNull ImageTransformLane imageTransformLane ) {
+		Lane lane = lanes.get( imageTransformLane );
+		long start = System.nanoTime();
+
+		lock.lock();
+		try {
+			if ( lane.waiting.isEmpty() && isAvailable( lane ) ) {
+				grant( lane );
+				return;
+			}
+
+			if ( lane.waiting.isEmpty() ) {
+				// a lane that has been idle should not be able to claim the slots it did not use
+				lane.pass = Math.max( lane.pass, virtualTime );
+			}
+
+			Waiter waiter = new Waiter( lock.newCondition() );
+			lane.waiting.addLast( waiter );
+
+			try {
+				long remaining = lane.maxQueueWaitNanos;
+				while ( !waiter.granted ) {
+					if ( lane.maxQueueWaitNanos <= 0 ) {
+						waiter.condition.await();
+					}
+					else if ( remaining > 0 ) {
+						remaining = waiter.condition.awaitNanos( remaining );
+					}
+					else {
+						lane.waiting.remove( waiter );
+						lane.rejected++;
+						LOG.warn( "Transform could not be started within {} seconds in lane {}", TimeUnit.NANOSECONDS.toSeconds( lane.maxQueueWaitNanos ),
+						          imageTransformLane );
+						throw new ImageTransformQueueTimeoutException( imageTransformLane, retryAfterSeconds );
+					}
+				}
+			}
+			catch ( InterruptedException ie ) {
+				if ( waiter.granted ) {
+					releaseSlot( lane );
+				}
+				else {
+					lane.waiting.remove( waiter );
+				}
+				Thread.currentThread().interrupt();
+				throw new ImageTransformQueueTimeoutException( imageTransformLane, retryAfterSeconds );
+			}
+
+			lane.recordWait( System.nanoTime() - start );
+		}
+		finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Release a slot that was acquired using {@link #acquire(ImageTransformLane)}.
+	 *
+	 * @param imageTransformLane the slot was acquired in
+	 */
+	public void release( @NonNull ImageTransformLane imageTransformLane ) {
+		lock.lock();
+		try {
+			releaseSlot( lanes.get( imageTransformLane ) );
+		}
+		finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * @return current statistics for every lane
+	 */
+	public Map<ImageTransformLane, ImageTransformLaneStatistics> getStatistics() {
+		lock.lock();
+		try {
+			Map<ImageTransformLane, ImageTransformLaneStatistics> statistics = new EnumMap<>( ImageTransformLane.class );
+			lanes.forEach( ( imageTransformLane, lane ) -> statistics.put( imageTransformLane, lane.createStatistics() ) );
+			return statistics;
+		}
+		finally {
+			lock.unlock();
+		}
+	}
+
+	private void releaseSlot( Lane lane ) {
+		active--;
+		lane.active--;
+		dispatch();
+	}
+
+	/**
+	 * Hand out the free slots to the waiting transforms, the lane with the lowest pass goes first.
+	 */
+	private void dispatch() {
+		while ( active < concurrentLimit ) {
+			Lane next = null;
+			for ( Lane candidate : lanes.values() ) {
+				if ( !candidate.waiting.isEmpty() && isAvailable( candidate ) && ( next == null || candidate.pass < next.pass ) ) {
+					next = candidate;
+				}
+			}
+
+			if ( next == null ) {
+				return;
+			}
+
+			Waiter waiter = next.waiting.removeFirst();
+			waiter.granted = true;
+			grant( next );
+			waiter.condition.signal();
+		}
+	}
+
+	private boolean isAvailable( Lane lane ) {
+		return active < concurrentLimit && lane.active < lane.concurrentLimit;
+	}
+
+	private void grant( Lane lane ) {
+		active++;
+		lane.active++;
+		lane.executed++;
+
+		lane.pass = Math.max( lane.pass, virtualTime );
+		virtualTime = lane.pass;
+		lane.pass += STRIDE / lane.weight;
+	}
+
+	@RequiredArgsConstructor
+	private static class Waiter
+	{
+		private final Condition condition;
+		private boolean granted;
+	}
+
+	private class Lane
+	{
+		private final ImageTransformLane imageTransformLane;
+		private final int weight;
+		private final int concurrentLimit;
+		private final long maxQueueWaitNanos;
+		private final Deque<Waiter> waiting = new ArrayDeque<>();
+
+		private int active;
+		private long pass;
+
+		private long executed;
+		private long rejected;
+		private long totalWaitNanos;
+		private long maxWaitNanos;
+
+		Lane( ImageTransformLane imageTransformLane, TransformersSettings.LaneSettings settings ) {
+			this.imageTransformLane = imageTransformLane;
+			weight = Math.max( 1, settings.getWeight() != null ? settings.getWeight() : 1 );
+			concurrentLimit = settings.getConcurrentLimit() != null
+					? Math.max( 1, Math.min( settings.getConcurrentLimit(), ImageTransformScheduler.this.concurrentLimit ) )
+					: ImageTransformScheduler.this.concurrentLimit;
+			maxQueueWaitNanos = TimeUnit.SECONDS.toNanos( settings.getMaxQueueWait() != null ? settings.getMaxQueueWait() : 0 );
+		}
+
+		void recordWait( long waitNanos ) {
+			totalWaitNanos += waitNanos;
+			maxWaitNanos = Math.max( maxWaitNanos, waitNanos );
+		}
+
+		ImageTransformLaneStatistics createStatistics() {
+			return new ImageTransformLaneStatistics(
+					imageTransformLane, weight, concurrentLimit, active, waiting.size(), executed, rejected,
+					executed > 0 ? TimeUnit.NANOSECONDS.toMillis( totalWaitNanos / executed ) : 0,
+					TimeUnit.NANOSECONDS.toMillis( maxWaitNanos )
+			);
+		}
+	}
+
+	/**
+	 * Snapshot of the statistics of a single lane.
+	 */
+	@Getter
+	@RequiredArgsConstructor
+	public static class ImageTransformLaneStatistics
+	{
+		private final ImageTransformLane lane;
+		private final int weight;
+		private final int concurrentLimit;
+
+		/**
+		 * Number of transforms busy.
+		 */
+		private final int active;
+
+		/**
+		 * Number of transforms waiting for a slot.
+		 */
+		private final int queueDepth;
+
+		/**
+		 * Total number of transforms that have been started.
+		 */
+		private final long executed;
+
+		/**
+		 * Total number of transforms that were not started within the maximum queue wait.
+		 */
+		private final long rejected;
+
+		/**
+		 * Average time (in milliseconds) a started transform had to wait for a slot.
+		 */
+		private final long averageWaitTime;
+
+		/**
+		 * Longest time (in milliseconds) a started transform had to wait for a slot.
+		 */
+		private final long maxWaitTime;
+	}
+}
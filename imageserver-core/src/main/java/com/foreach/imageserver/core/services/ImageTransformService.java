@@ -1,11 +1,14 @@
 package com.foreach.imageserver.core.services;
 
+import com.foreach.imageserver.core.business.ImageType;
 import com.foreach.imageserver.core.transformers.ImageAttributes;
 import com.foreach.imageserver.core.transformers.ImageSource;
 import com.foreach.imageserver.dto.ImageTransformDto;
 
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.Collection;
+import java.util.List;
 
 public interface ImageTransformService
 {
@@ -20,6 +23,7 @@ public interface ImageTransformService
 	/**
 	 * Apply a set of transformations in order to a single image source.
 	 * If there is more than one transform specified, the result of the previous will always service as input for the next.
+	 * Consecutive transforms that can be combined are fused into a single transform, without creating the intermediate images.
 	 *
 	 * @param imageSource      to apply the transforms to
 	 * @param sourceAttributes resolved attributes of the image source
@@ -27,4 +31,40 @@ public interface ImageTransformService
 	 * @return transformed image
 	 */
 	ImageSource transform( ImageSource imageSource, ImageAttributes sourceAttributes, Collection<ImageTransformDto> transforms );
+
+	/**
+	 * Apply a set of transformations in order to a single image source, and write the resulting image
+	 * to the output stream while it is being created.  The output stream will not be closed.
+	 * <p/>
+	 * The returned image source can still be read, but will not necessarily hold all data in memory.
+	 *
+	 * @param imageSource      to apply the transforms to
+	 * @param sourceAttributes resolved attributes of the image source
+	 * @param transforms       to apply in order
+	 * @param outputStream     to write the transformed image to
+	 * @return transformed image
+	 * @see #transform(ImageSource, ImageAttributes, Collection)
+	 */
+	ImageSource transform( ImageSource imageSource, ImageAttributes sourceAttributes, Collection<ImageTransformDto> transforms, OutputStream outputStream );
+
+	/**
+	 * Apply a number of independent transforms to a single image source, every transform resulting in a separate output.
+	 * Unlike {@link #transform(ImageSource, ImageAttributes, Collection)} every transform is applied to the original image.
+	 * If an executor supports the entire batch, the original image will only be decoded once for all outputs.
+	 *
+	 * @param imageSource      to apply the transforms to
+	 * @param sourceAttributes resolved attributes of the image source
+	 * @param transforms       to apply, each resulting in a separate output
+	 * @return transformed images, in the same order as the transforms
+	 */
+	List<ImageSource> transformBatch( ImageSource imageSource, ImageAttributes sourceAttributes, List<ImageTransformDto> transforms );
+
+	/**
+	 * Checks if any of the executors declares it can write images of the given type.
+	 * Only executors implementing {@link com.foreach.imageserver.core.transformers.ImageOutputTypeSupport} are considered.
+	 *
+	 * @param outputType type of the output image
+	 * @return true if images of that type can be created
+	 */
+	boolean isOutputTypeSupported( ImageType outputType );
 }
@@ -1,41 +1,54 @@
 package com.foreach.imageserver.core.services;
 
 import com.foreach.across.core.annotations.RefreshableCollection;
+import com.foreach.imageserver.core.business.ImageType;
 import com.foreach.imageserver.core.config.TransformersSettings;
 import com.foreach.imageserver.core.transformers.*;
 import com.foreach.imageserver.dto.ImageTransformDto;
 import lombok.NonNull;
 import lombok.SneakyThrows;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.input.CloseShieldInputStream;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.stereotype.Service;
 
+import java.io.BufferedInputStream;
+import java.io.IOException;
 import java.io.InputStream;
-import java.util.ArrayDeque;
-import java.util.Collection;
-import java.util.Collections;
-import java.util.concurrent.Semaphore;
+import java.io.OutputStream;
+import java.util.*;
+import java.util.stream.Collectors;
 
 @Slf4j
 @Service
 @EnableConfigurationProperties(TransformersSettings.class)
 public class ImageTransformServiceImpl implements ImageTransformService
 {
-	private final Semaphore semaphore;
+	/**
+	 * Maximum number of bytes of an image stream that is kept for the next executor, if an executor
+	 * declines determining the attributes.  Executors only reading the header stay well below it.
+	 */
+	static final int ATTRIBUTES_MARK_LIMIT = 1024 * 1024;
+
+	private final ImageTransformScheduler scheduler;
 	private final ImageTransformUtils imageTransformUtils;
+	private final int outputMemoryThreshold;
 
 	private Collection<ImageCommandExecutor> commandExecutors = Collections.emptyList();
 
-	@SuppressWarnings("unused")
-	public ImageTransformServiceImpl( TransformersSettings transformersSettings, ImageTransformUtils imageTransformUtils ) {
+	public ImageTransformServiceImpl( TransformersSettings transformersSettings,
+	                                  ImageTransformScheduler scheduler,
+	                                  ImageTransformUtils imageTransformUtils ) {
 		this.imageTransformUtils = imageTransformUtils;
 
-		// Right now, we have only one ImageTransformer implementation and it runs on the local machine. In theory,
-		// however, we could have implementations that off-load the actual computations to other machines. Should this
-		// ever get to be the case, we may want to provide more fine-grained control over the number of concurrent
-		// transformations. For now, a single limit will suffice.
-		this.semaphore = new Semaphore( transformersSettings.getConcurrentLimit(), true );
+		// Right now, all executors run on the local machine.  In theory, however, we could have implementations that
+		// off-load the actual computations to other machines.  Should this ever get to be the case, we may want to
+		// provide more fine-grained control over the number of concurrent transformations.  For now, a single limit
+		// scheduled over the different lanes will suffice.
+		this.scheduler = scheduler;
+		this.outputMemoryThreshold = transformersSettings.getOutputMemoryThreshold();
 	}
 
 	@Autowired
@@ -44,26 +57,64 @@ public class ImageTransformServiceImpl implements ImageTransformService
 	}
 
 	@Override
+	@SneakyThrows
 	public ImageAttributes getAttributes( @NonNull InputStream imageStream ) {
-		ImageAttributesCommand attributesCommand = ImageAttributesCommand.builder().imageStream( imageStream ).build();
+		ImageAttributesCommand probe = ImageAttributesCommand.builder().imageStream( imageStream ).build();
+		List<ImageCommandExecutor> executors = findCommandExecutors( probe );
+
+		if ( executors.isEmpty() ) {
+			throw new IllegalArgumentException( "No executor available for determining image attributes" );
+		}
 
-		ImageCommandExecutor executor = findCommandExecutor( attributesCommand );
+		// an executor can decline after having read the header of the image, so the next one should be able to re-read it
+		InputStream stream = executors.size() > 1 && !imageStream.markSupported() ? new BufferedInputStream( imageStream ) : imageStream;
+		stream.mark( ATTRIBUTES_MARK_LIMIT );
 
-		if ( executor != null ) {
+		Iterator<ImageCommandExecutor> iterator = executors.iterator();
+
+		while ( iterator.hasNext() ) {
+			ImageCommandExecutor executor = iterator.next();
+			ImageAttributesCommand attributesCommand = ImageAttributesCommand.builder().imageStream( CloseShieldInputStream.wrap( stream ) ).build();
 			executeCommand( executor, attributesCommand );
 
-			return attributesCommand.getExecutionResult();
+			if ( attributesCommand.isCompleted() ) {
+				return attributesCommand.getExecutionResult();
+			}
+
+			if ( iterator.hasNext() ) {
+				LOG.debug( "Executor {} declined determining image attributes, trying next executor", executor );
+				try {
+					stream.reset();
+				}
+				catch ( IOException ioe ) {
+					LOG.debug( "Executor {} read beyond the first {} bytes, the image can not be re-read", executor, ATTRIBUTES_MARK_LIMIT );
+					break;
+				}
+			}
 		}
 
-		throw new IllegalArgumentException( "No executor available for determining image attributes" );
+		throw new IllegalArgumentException( "None of the executors was able to determine the image attributes" );
 	}
 
 	@Override
-	@SneakyThrows
 	public ImageSource transform( @NonNull ImageSource imageSource,
 	                              @NonNull ImageAttributes sourceAttributes,
 	                              @NonNull Collection<ImageTransformDto> transforms ) {
+		return transform( imageSource, sourceAttributes, transforms, null );
+	}
+
+	@Override
+	@SneakyThrows
+	public ImageSource transform( @NonNull ImageSource imageSource,
+	                              @NonNull ImageAttributes sourceAttributes,
+	                              @NonNull Collection<ImageTransformDto> transforms,
+	                              OutputStream outputStream ) {
 		if ( transforms.isEmpty() ) {
+			if ( outputStream != null ) {
+				try (InputStream is = imageSource.getImageStream()) {
+					IOUtils.copy( is, outputStream );
+				}
+			}
 			return imageSource;
 		}
 
@@ -72,73 +123,170 @@ public class ImageTransformServiceImpl implements ImageTransformService
 		ImageAttributes attributes = sourceAttributes;
 
 		do {
-			ImageTransformDto transform = queue.removeFirst();
-
 			if ( attributes == null ) {
 				try (InputStream is = source.getImageStream()) {
 					attributes = getAttributes( is );
 				}
 			}
 
-			source = transform( source, attributes, transform );
+			ImageTransformDto transform = imageTransformUtils.normalize( queue.removeFirst(), attributes );
 
-			attributes = null;
+			// fuse as many of the next transforms as possible, avoiding the intermediate images
+			ImageTransformDto fused;
+			while ( !queue.isEmpty() && ( fused = imageTransformUtils.fuse( transform, attributes, queue.peekFirst() ) ) != null ) {
+				LOG.trace( "Fused transform {} into {}", queue.peekFirst(), fused );
+				transform = fused;
+				queue.removeFirst();
+			}
+
+			ImageSource previous = source;
+			source = executeTransform( source, attributes, transform, queue.isEmpty() ? outputStream : null );
+
+			if ( previous != imageSource && previous instanceof SpillingImageSource ) {
+				// intermediate image is no longer required
+				( (SpillingImageSource) previous ).release();
+			}
+
+			// attributes of a raster to raster transform can be calculated, scalable formats need to be inspected
+			ImageAttributes outputAttributes = imageTransformUtils.calculateOutputAttributes( transform, attributes );
+			attributes = attributes.getType().isScalable() || outputAttributes.getType().isScalable() ? null : outputAttributes;
 		}
 		while ( !queue.isEmpty() );
 
 		return source;
 	}
 
-	private ImageSource transform( ImageSource imageSource, ImageAttributes attributes, ImageTransformDto transformDto ) {
-		ImageTransformDto normalizedTransform = imageTransformUtils.normalize( transformDto, attributes );
+	@Override
+	@SneakyThrows
+	public List<ImageSource> transformBatch( @NonNull ImageSource imageSource,
+	                                         @NonNull ImageAttributes sourceAttributes,
+	                                         @NonNull List<ImageTransformDto> transforms ) {
+		if ( transforms.isEmpty() ) {
+			return Collections.emptyList();
+		}
+
+		List<ImageTransformDto> normalizedTransforms = transforms.stream()
+		                                                         .map( transform -> imageTransformUtils.normalize( transform, sourceAttributes ) )
+		                                                         .collect( Collectors.toList() );
+		ImageBatchTransformCommand command = ImageBatchTransformCommand.builder()
+		                                                               .originalImage( imageSource )
+		                                                               .originalImageAttributes( sourceAttributes )
+		                                                               .transforms( normalizedTransforms )
+		                                                               .outputMemoryThreshold( outputMemoryThreshold )
+		                                                               .build();
+
+		for ( ImageCommandExecutor executor : findCommandExecutors( command ) ) {
+			executeCommand( executor, command );
+
+			if ( command.isCompleted() ) {
+				return command.getExecutionResult();
+			}
+		}
+
+		LOG.debug( "No executor available for a batch of {} transforms - executing them one by one", transforms.size() );
+
+		// at least avoid retrieving the original image data more than once
+		SpillingImageSource original;
+		try (InputStream is = imageSource.getImageStream()) {
+			original = SpillingImageSource.copyOf( imageSource.getImageType(), is, outputMemoryThreshold );
+		}
+
+		try {
+			List<ImageSource> outputs = new ArrayList<>( transforms.size() );
+			for ( ImageTransformDto transform : normalizedTransforms ) {
+				outputs.add( executeTransform( original, sourceAttributes, transform, null ) );
+			}
+			return outputs;
+		}
+		finally {
+			original.release();
+		}
+	}
+
+	@Override
+	public boolean isOutputTypeSupported( @NonNull ImageType outputType ) {
+		for ( ImageCommandExecutor executor : commandExecutors ) {
+			if ( executor instanceof ImageOutputTypeSupport && ( (ImageOutputTypeSupport) executor ).supportsOutputType( outputType ) ) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	@SneakyThrows
+	private ImageSource executeTransform( ImageSource imageSource,
+	                                      ImageAttributes attributes,
+	                                      ImageTransformDto normalizedTransform,
+	                                      OutputStream outputStream ) {
 		ImageTransformCommand command = ImageTransformCommand.builder()
 		                                                     .originalImage( imageSource )
 		                                                     .originalImageAttributes( attributes )
 		                                                     .transform( normalizedTransform )
+		                                                     .outputStream( outputStream )
+		                                                     .outputMemoryThreshold( outputMemoryThreshold )
 		                                                     .build();
 
-		ImageCommandExecutor executor = findCommandExecutor( command );
-
-		if ( executor != null ) {
+		for ( ImageCommandExecutor executor : findCommandExecutors( command ) ) {
 			executeCommand( executor, command );
-		}
-		else {
-			LOG.error( "No valid executor found for {} and transform: {}", attributes, transformDto );
-			throw new IllegalArgumentException(
-					String.format( "No executor available for transform '%s' on image with attributes '%s'", transformDto, attributes )
-			);
+
+			if ( command.isCompleted() ) {
+				ImageSource result = command.getExecutionResult();
+
+				if ( outputStream != null && !( result instanceof SpillingImageSource && ( (SpillingImageSource) result ).isWrittenTo( outputStream ) ) ) {
+					// executor did not write its output to the stream while creating it
+					try (InputStream is = result.getImageStream()) {
+						IOUtils.copy( is, outputStream );
+					}
+				}
+
+				return result;
+			}
+
+			LOG.debug( "Executor {} declined transform {}, trying next executor", executor, normalizedTransform );
 		}
 
-		return command.getExecutionResult();
+		LOG.error( "No valid executor found for {} and transform: {}", attributes, normalizedTransform );
+		throw new IllegalArgumentException(
+				String.format( "No executor available for transform '%s' on image with attributes '%s'", normalizedTransform, attributes )
+		);
 	}
 
+	/**
+	 * Find the executors that can execute the command, ordered by the sequence in which they should be attempted.
+	 * All executors returning {@link ImageTransformerPriority#PREFERRED} come first, followed by the fallback executors.
+	 * An executor can still decline a command during execution by not setting an execution result.
+	 */
 	@SuppressWarnings("unchecked")
-	private ImageCommandExecutor findCommandExecutor( ImageCommand commandToExecute ) {
-		ImageCommandExecutor fallback = null;
+	private List<ImageCommandExecutor> findCommandExecutors( ImageCommand commandToExecute ) {
+		List<ImageCommandExecutor> preferred = new ArrayList<>();
+		List<ImageCommandExecutor> fallback = new ArrayList<>();
 
 		for ( ImageCommandExecutor candidate : commandExecutors ) {
 			if ( candidate.handles( commandToExecute.getClass() ) ) {
 				ImageTransformerPriority priority = candidate.canExecute( commandToExecute );
 				if ( priority == ImageTransformerPriority.PREFERRED ) {
-					return candidate;
+					preferred.add( candidate );
 				}
-				else if ( priority == ImageTransformerPriority.FALLBACK && fallback == null ) {
-					fallback = candidate;
+				else if ( priority == ImageTransformerPriority.FALLBACK ) {
+					fallback.add( candidate );
 				}
 			}
 		}
 
-		return fallback;
+		preferred.addAll( fallback );
+		return preferred;
 	}
 
 	@SuppressWarnings("unchecked")
 	private void executeCommand( ImageCommandExecutor executor, ImageCommand command ) {
-		semaphore.acquireUninterruptibly();
+		ImageTransformLane lane = ImageTransformLane.current();
+
+		scheduler.acquire( lane );
 		try {
 			executor.execute( command );
 		}
 		finally {
-			semaphore.release();
+			scheduler.release( lane );
 		}
 	}
 }
@@ -0,0 +1,396 @@
+package com.foreach.imageserver.core.services;
+
+import com.foreach.across.modules.filemanager.business.FileDescriptor;
+import com.foreach.imageserver.core.ImageServerCoreModuleSettings;
+import com.foreach.imageserver.core.config.VariantCacheSettings;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Keeps the data of frequently requested variant images in memory, bounded by a maximum number of bytes.
+ * Variants that do not exist are remembered for a short time as well, avoiding a lookup in the store
+ * for every request of a variant that still has to be generated.
+ * <p/>
+ * The cache is split in segments with their own least recently used ordering.  When a segment is full,
+ * a new variant is only admitted if it has been requested more often than the variant it would evict (TinyLFU),
+ * so variants that are requested only once can not flush the frequently requested ones.  Request frequencies
+ * are kept approximately in a small count-min sketch that is halved periodically, so old popularity fades.
+ * <p/>
+ * Entries are keyed by the file descriptor of the variant, which includes the modification version of the image.
+ * They must be invalidated explicitly when the variant is stored or removed by this instance, and expire
+ * after a while as variants can also be removed by other instances.
+ *
+ * @author Arne Vandamme
+ * @since 6.3.0
+ */
+@Component
+public class ImageVariantCache
+{
+	private static final int SEGMENT_COUNT = 16;
+
+	// approximate memory used by an entry apart from the image data
+	private static final int ENTRY_OVERHEAD = 128;
+
+	private final Segment[] segments = new Segment[SEGMENT_COUNT];
+	private final FrequencySketch sketch;
+
+	private final long maxSize;
+	private final int maxEntrySize;
+	private final long missingVariantTtlNanos;
+	private final long variantTtlNanos;
+
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder missingHits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder evictions = new LongAdder();
+	private final LongAdder rejections = new LongAdder();
+
+	@Autowired
+	public ImageVariantCache( @NonNull ImageServerCoreModuleSettings settings ) {
+		this( settings.getVariantCache() );
+	}
+
+	public ImageVariantCache( @NonNull VariantCacheSettings settings ) {
+		maxSize = Math.max( 0, settings.getMaxSize() );
+		maxEntrySize = settings.getMaxEntrySize();
+		missingVariantTtlNanos = TimeUnit.SECONDS.toNanos( settings.getMissingVariantTtl() );
+		variantTtlNanos = TimeUnit.SECONDS.toNanos( settings.getVariantTtl() );
+
+		for ( int i = 0; i < SEGMENT_COUNT; i++ ) {
+			segments[i] = new Segment( maxSize / SEGMENT_COUNT );
+		}
+
+		// size the sketch for the number of average sized entries that fit in the cache
+		sketch = new FrequencySketch( (int) Math.min( 1 << 20, Math.max( 1024, maxSize / 16384 ) ) );
+	}
+
+	/**
+	 * @return true if variants can be cached
+	 */
+	public boolean isEnabled() {
+		return maxSize > 0;
+	}
+
+	/**
+	 * @param variantSize number of bytes of the variant
+	 * @return true if a variant of that size can be cached
+	 */
+	public boolean isCacheable( long variantSize ) {
+		return isEnabled() && variantSize <= maxEntrySize;
+	}
+
+	/**
+	 * Get the cached entry for a variant.
+	 *
+	 * @param variant file descriptor of the variant
+	 * @return cached variant, null if it is not in the cache
+	 */
+	public CachedVariant get( @NonNull FileDescriptor variant ) {
+		if ( !isEnabled() ) {
+			return null;
+		}
+
+		sketch.increment( variant );
+		CachedVariant cached = segmentFor( variant ).get( variant );
+
+		if ( cached == null ) {
+			misses.increment();
+		}
+		else if ( cached.isMissing() ) {
+			missingHits.increment();
+		}
+		else {
+			hits.increment();
+		}
+
+		return cached;
+	}
+
+	/**
+	 * Cache the data of a variant.  Variants larger than the maximum entry size are ignored.
+	 *
+	 * @param imageId id of the image the variant belongs to
+	 * @param variant file descriptor of the variant
+	 * @param data    of the variant
+	 */
+	public void put( long imageId, @NonNull FileDescriptor variant, @NonNull byte[] data ) {
+		if ( isCacheable( data.length ) ) {
+			segmentFor( variant ).put( variant, new CachedVariant( imageId, data, variantTtlNanos > 0, System.nanoTime() + variantTtlNanos ) );
+		}
+	}
+
+	/**
+	 * Remember that a variant does not exist.
+	 *
+	 * @param imageId id of the image the variant belongs to
+	 * @param variant file descriptor of the variant
+	 */
+	public void putMissing( long imageId, @NonNull FileDescriptor variant ) {
+		if ( isEnabled() && missingVariantTtlNanos > 0 ) {
+			segmentFor( variant ).put( variant, new CachedVariant( imageId, null, true, System.nanoTime() + missingVariantTtlNanos ) );
+		}
+	}
+
+	/**
+	 * Remove a single variant from the cache.
+	 *
+	 * @param variant file descriptor of the variant
+	 */
+	public void invalidate( @NonNull FileDescriptor variant ) {
+		if ( isEnabled() ) {
+			segmentFor( variant ).remove( variant );
+		}
+	}
+
+	/**
+	 * Remove all variants of an image from the cache.
+	 *
+	 * @param imageId id of the image
+	 */
+	public void invalidateImage( long imageId ) {
+		if ( isEnabled() ) {
+			for ( Segment segment : segments ) {
+				segment.removeImage( imageId );
+			}
+		}
+	}
+
+	/**
+	 * @return current statistics of the cache
+	 */
+	public ImageVariantCacheStatistics getStatistics() {
+		long size = 0;
+		int entries = 0;
+		for ( Segment segment : segments ) {
+			synchronized ( segment ) {
+				size += segment.size;
+				entries += segment.entries.size();
+			}
+		}
+
+		return new ImageVariantCacheStatistics( maxSize, size, entries, hits.sum(), missingHits.sum(), misses.sum(), evictions.sum(), rejections.sum() );
+	}
+
+	private Segment segmentFor( FileDescriptor variant ) {
+		return segments[spread( variant.hashCode() ) & ( SEGMENT_COUNT - 1 )];
+	}
+
+	private static int spread( int hash ) {
+		int h = hash * 0x9E3779B9;
+		return h ^ ( h >>> 16 );
+	}
+
+	/**
+	 * Cached data of a variant, or a marker that the variant does not exist.
+	 */
+	@RequiredArgsConstructor
+	public static class CachedVariant
+	{
+		private final long imageId;
+
+		/**
+		 * Data of the variant, null if the variant does not exist.
+		 */
+		@Getter
+		private final byte[] data;
+
+		private final boolean expires;
+		private final long expiresAt;
+
+		/**
+		 * @return true if the variant does not exist
+		 */
+		public boolean isMissing() {
+			return data == null;
+		}
+
+		int getWeight() {
+			return ENTRY_OVERHEAD + ( data != null ? data.length : 0 );
+		}
+
+		boolean isExpired( long now ) {
+			return expires && now - expiresAt > 0;
+		}
+	}
+
+	@RequiredArgsConstructor
+	private class Segment
+	{
+		private final long maxSize;
+		private final LinkedHashMap<FileDescriptor, CachedVariant> entries = new LinkedHashMap<>( 64, 0.75f, true );
+		private long size;
+
+		synchronized CachedVariant get( FileDescriptor variant ) {
+			CachedVariant cached = entries.get( variant );
+
+			if ( cached != null && cached.isExpired( System.nanoTime() ) ) {
+				remove( variant );
+				return null;
+			}
+
+			return cached;
+		}
+
+		synchronized void put( FileDescriptor variant, CachedVariant cached ) {
+			int weight = cached.getWeight();
+			if ( weight > maxSize ) {
+				return;
+			}
+
+			remove( variant );
+
+			Iterator<Map.Entry<FileDescriptor, CachedVariant>> eldest = entries.entrySet().iterator();
+			if ( size + weight > maxSize && eldest.hasNext() ) {
+				// admission: the least recently used variant is only replaced by a more frequently requested one
+				FileDescriptor victim = eldest.next().getKey();
+				if ( !cached.isMissing() && sketch.frequency( variant ) < sketch.frequency( victim ) ) {
+					rejections.increment();
+					return;
+				}
+			}
+
+			eldest = entries.entrySet().iterator();
+			while ( size + weight > maxSize && eldest.hasNext() ) {
+				size -= eldest.next().getValue().getWeight();
+				eldest.remove();
+				evictions.increment();
+			}
+
+			entries.put( variant, cached );
+			size += weight;
+		}
+
+		synchronized void remove( FileDescriptor variant ) {
+			CachedVariant removed = entries.remove( variant );
+			if ( removed != null ) {
+				size -= removed.getWeight();
+			}
+		}
+
+		synchronized void removeImage( long imageId ) {
+			Iterator<CachedVariant> iterator = entries.values().iterator();
+			while ( iterator.hasNext() ) {
+				CachedVariant cached = iterator.next();
+				if ( cached.imageId == imageId ) {
+					size -= cached.getWeight();
+					iterator.remove();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Count-min sketch with 4 rows of saturating counters, halved once the number of increments
+	 * reaches ten times the width.  Updates are not synchronized, the counts are an approximation anyway.
+	 */
+	private static class FrequencySketch
+	{
+		private static final int MAX_COUNT = 15;
+		private static final int[] SEEDS = { 0x97CB3127, 0xB8E1AFED, 0x4E5A2F1D, 0x6C8E9CF5 };
+
+		private final int[][] rows = new int[SEEDS.length][];
+		private final int mask;
+		private final int resetThreshold;
+		private int additions;
+
+		FrequencySketch( int expectedEntries ) {
+			int width = Integer.highestOneBit( Math.max( 16, expectedEntries - 1 ) ) << 1;
+			for ( int i = 0; i < rows.length; i++ ) {
+				rows[i] = new int[width];
+			}
+			mask = width - 1;
+			resetThreshold = width * 10;
+		}
+
+		void increment( Object key ) {
+			int hash = spread( key.hashCode() );
+			for ( int i = 0; i < rows.length; i++ ) {
+				int index = indexOf( hash, i );
+				if ( rows[i][index] < MAX_COUNT ) {
+					rows[i][index]++;
+				}
+			}
+
+			if ( ++additions >= resetThreshold ) {
+				reset();
+			}
+		}
+
+		int frequency( Object key ) {
+			int hash = spread( key.hashCode() );
+			int frequency = MAX_COUNT;
+			for ( int i = 0; i < rows.length; i++ ) {
+				frequency = Math.min( frequency, rows[i][indexOf( hash, i )] );
+			}
+			return frequency;
+		}
+
+		private int indexOf( int hash, int row ) {
+			int h = ( hash ^ SEEDS[row] ) * SEEDS[row];
+			return ( h ^ ( h >>> 15 ) ) & mask;
+		}
+
+		private void reset() {
+			additions = 0;
+			for ( int[] row : rows ) {
+				for ( int i = 0; i < row.length; i++ ) {
+					row[i] >>>= 1;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Snapshot of the statistics of the cache.
+	 */
+	@Getter
+	@RequiredArgsConstructor
+	public static class ImageVariantCacheStatistics
+	{
+		/**
+		 * Maximum number of bytes.
+		 */
+		private final long maxSize;
+
+		/**
+		 * Current (approximate) number of bytes.
+		 */
+		private final long size;
+
+		private final int entries;
+
+		/**
+		 * Number of requests served from the cache.
+		 */
+		private final long hits;
+
+		/**
+		 * Number of requests for a variant that was remembered as missing.
+		 */
+		private final long missingHits;
+
+		/**
+		 * Number of requests for a variant that was not in the cache.
+		 */
+		private final long misses;
+
+		/**
+		 * Number of variants evicted to make room for another.
+		 */
+		private final long evictions;
+
+		/**
+		 * Number of variants that were not cached because they were requested less often than the variant they would replace.
+		 */
+		private final long rejections;
+	}
+}
@@ -0,0 +1,515 @@
+package com.foreach.imageserver.core.services;
+
+import com.foreach.across.modules.filemanager.business.FileDescriptor;
+import com.foreach.across.modules.filemanager.business.FileResource;
+import com.foreach.across.modules.filemanager.services.FileManager;
+import com.foreach.imageserver.core.ImageServerCoreModuleSettings;
+import com.foreach.imageserver.core.config.StoreSettings.LocalVariantsSettings;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.io.FileUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.*;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Local disk tier in front of the variants repository, for a variants repository that is remote (eg. cloud storage).
+ * Recently used variants are kept in a local folder, bounded by a maximum number of bytes.  When the folder is full,
+ * the least recently used variants are evicted.  A variant read from the local folder does not require any access
+ * to the variants repository.  The file of an evicted variant is only deleted after a delay, as it might still
+ * be streamed to a client that requested it just before.
+ * <p/>
+ * New variants are written to the local folder and uploaded to the variants repository in the background.
+ * Until the upload has succeeded a marker file exists next to the variant, the variant is never evicted
+ * and a failed upload is retried.  The local folder itself is the index: on startup it is scanned in the background,
+ * the variants are ordered on last use (the modification time of the file) and the uploads that were still pending
+ * are resumed.  Until the scan is done, a variant missing from the index is looked up on disk.
+ * <p/>
+ * Entries are keyed by the file descriptor of the variant and must be removed explicitly when the variant is removed.
+ * As the name of a variant includes the modification version of the image, a variant that was replaced by another
+ * instance is no longer served from the local folder once the cached image has the new modification version.
+ * How long that takes is bounded by <em>store.versionCheckInterval</em>.  A pending upload of such a variant
+ * can only write the file of the old version.
+ *
+ * @author Arne Vandamme
+ * @see ImageStoreServiceImpl
+ * @since 6.3.0
+ */
+@Slf4j
+@Component
+public class ImageVariantLocalStore
+{
+	private static final String PENDING_UPLOAD_SUFFIX = ".pending";
+	private static final String TEMP_FOLDER = ".tmp";
+
+	private static final long MAX_RETRY_DELAY_SECONDS = 300;
+
+	// time a client has to read an evicted variant that was handed out just before
+	private static final long EVICTED_FILE_DELETE_DELAY_SECONDS = 60;
+
+	// modification time of a file is updated at most this often when it is used
+	private static final long TOUCH_INTERVAL_MILLIS = TimeUnit.HOURS.toMillis( 1 );
+
+	private final FileManager fileManager;
+	private final Path folder;
+	private final Path tempFolder;
+	private final long maxSize;
+	private final ScheduledThreadPoolExecutor executor;
+
+	// least recently used entries first, access to the map and changes to the files in the folder are synchronized on the map
+	private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>( 1024, 0.75f, true );
+	private long size;
+
+	private final Future<?> warmUp;
+	private volatile boolean warmedUp;
+
+	@Autowired
+	public ImageVariantLocalStore( @NonNull ImageServerCoreModuleSettings settings, @NonNull FileManager fileManager ) {
+		this( settings.getStore().getLocalVariants(), fileManager );
+	}
+
+	public ImageVariantLocalStore( @NonNull LocalVariantsSettings settings, @NonNull FileManager fileManager ) {
+		this.fileManager = fileManager;
+
+		folder = settings.getFolder() != null ? settings.getFolder().toPath().toAbsolutePath() : null;
+		tempFolder = folder != null ? folder.resolve( TEMP_FOLDER ) : null;
+		maxSize = Math.max( 0, settings.getMaxSize() );
+
+		if ( isEnabled() ) {
+			try {
+				// files being written when the application stopped
+				FileUtils.deleteDirectory( tempFolder.toFile() );
+				Files.createDirectories( tempFolder );
+			}
+			catch ( IOException ioe ) {
+				throw new IllegalStateException( "Unable to create local variants folder " + folder, ioe );
+			}
+
+			CustomizableThreadFactory threadFactory = new CustomizableThreadFactory( "imageserver-variant-upload-" );
+			threadFactory.setDaemon( true );
+			executor = new ScheduledThreadPoolExecutor( Math.max( 1, settings.getUploadWorkers() ), threadFactory );
+			warmUp = executor.submit( this::warmUp );
+		}
+		else {
+			executor = null;
+			warmUp = null;
+			warmedUp = true;
+		}
+	}
+
+	/**
+	 * @return true if variants are kept in a local folder
+	 */
+	public boolean isEnabled() {
+		return folder != null && maxSize > 0;
+	}
+
+	/**
+	 * Get the local file of a variant.
+	 *
+	 * @param variant file descriptor of the variant
+	 * @return local file or {@code null} if the variant is not in the local folder
+	 */
+	public Path get( @NonNull FileDescriptor variant ) {
+		Entry entry;
+		synchronized ( entries ) {
+			entry = entries.get( variant.getUri() );
+		}
+
+		if ( entry == null && !warmedUp ) {
+			Path file = resolve( variant );
+			entry = registerExisting( variant, file, Files.exists( getPendingUploadMarker( file ) ) );
+		}
+
+		if ( entry != null ) {
+			touch( entry );
+			return entry.file;
+		}
+
+		return null;
+	}
+
+	/**
+	 * Copy a variant read from the variants repository to the local folder.  If the variant was written
+	 * to the local folder in the meantime, that version is kept.
+	 *
+	 * @param variant  file descriptor of the variant
+	 * @param resource variant in the variants repository
+	 * @return local file or {@code null} if the variant could not be copied
+	 */
+	public Path copyToLocal( @NonNull FileDescriptor variant, @NonNull FileResource resource ) {
+		Path file = resolve( variant );
+		Path temp = null;
+
+		try {
+			temp = Files.createTempFile( tempFolder, "variant", null );
+			try (InputStream is = resource.getInputStream()) {
+				Files.copy( is, temp, StandardCopyOption.REPLACE_EXISTING );
+			}
+			long fileSize = Files.size( temp );
+
+			synchronized ( entries ) {
+				Entry entry = entries.get( variant.getUri() );
+				if ( entry == null ) {
+					Files.createDirectories( file.getParent() );
+					Files.move( temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE );
+					entry = register( variant, file, fileSize, false );
+				}
+				return entry != null ? entry.file : null;
+			}
+		}
+		catch ( IOException ioe ) {
+			LOG.warn( "Unable to copy variant {} to the local folder", variant, ioe );
+			return null;
+		}
+		finally {
+			deleteQuietly( temp );
+		}
+	}
+
+	/**
+	 * Write a new variant to the local folder and schedule its upload to the variants repository.
+	 * If the writer fails, the variant is not modified.
+	 *
+	 * @param variant file descriptor of the variant
+	 * @param writer  writing the variant data, the output stream is closed afterwards
+	 * @param <T>     return type of the writer
+	 * @return value returned by the writer
+	 */
+	public <T> T write( @NonNull FileDescriptor variant, @NonNull Function<OutputStream, T> writer ) throws IOException {
+		Path file = resolve( variant );
+		Path temp = Files.createTempFile( tempFolder, "variant", null );
+
+		try {
+			T result;
+			try (OutputStream os = Files.newOutputStream( temp )) {
+				result = writer.apply( os );
+			}
+			long fileSize = Files.size( temp );
+
+			Entry entry;
+			synchronized ( entries ) {
+				Files.createDirectories( file.getParent() );
+				Path marker = getPendingUploadMarker( file );
+				if ( !Files.exists( marker ) ) {
+					Files.createFile( marker );
+				}
+				Files.move( temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE );
+				entry = register( variant, file, fileSize, true );
+			}
+			scheduleUpload( entry, 0 );
+
+			return result;
+		}
+		finally {
+			deleteQuietly( temp );
+		}
+	}
+
+	/**
+	 * Remove a variant from the local folder.  If the variant is being uploaded,
+	 * it is removed from the variants repository once the upload is done.
+	 *
+	 * @param variant file descriptor of the variant
+	 */
+	public void remove( @NonNull FileDescriptor variant ) {
+		if ( !isEnabled() ) {
+			return;
+		}
+
+		synchronized ( entries ) {
+			Entry entry = entries.remove( variant.getUri() );
+			if ( entry != null ) {
+				entry.removed = true;
+				size -= entry.size;
+			}
+
+			Path file = resolve( variant );
+			deleteQuietly( file );
+			deleteQuietly( getPendingUploadMarker( file ) );
+		}
+	}
+
+	/**
+	 * @return number of bytes of the variants in the local folder
+	 */
+	public long getSize() {
+		synchronized ( entries ) {
+			return size;
+		}
+	}
+
+	/**
+	 * @return number of variants that still have to be uploaded to the variants repository
+	 */
+	public int getPendingUploadCount() {
+		synchronized ( entries ) {
+			return (int) entries.values().stream().filter( entry -> entry.pendingUpload ).count();
+		}
+	}
+
+	/**
+	 * Stops uploading variants.  Variants that have not been uploaded will be uploaded on the next startup.
+	 */
+	@PreDestroy
+	public void shutdown() {
+		if ( executor != null ) {
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * Wait until the local folder has been scanned.
+	 */
+	void awaitWarmUp() throws Exception {
+		if ( warmUp != null ) {
+			warmUp.get();
+		}
+	}
+
+	private Path resolve( FileDescriptor variant ) {
+		Path file = folder.resolve( variant.getRepositoryId() );
+		if ( variant.getFolderId() != null ) {
+			file = file.resolve( variant.getFolderId() );
+		}
+		return file.resolve( variant.getFileId() );
+	}
+
+	private FileDescriptor toDescriptor( Path file ) {
+		Path relative = folder.relativize( file );
+		int count = relative.getNameCount();
+		String folderId = count > 2 ? relative.subpath( 1, count - 1 ).toString().replace( '\\', '/' ) : null;
+		return FileDescriptor.of( relative.getName( 0 ).toString(), folderId, relative.getFileName().toString() );
+	}
+
+	private static Path getPendingUploadMarker( Path file ) {
+		return file.resolveSibling( file.getFileName() + PENDING_UPLOAD_SUFFIX );
+	}
+
+	/**
+	 * Adds an entry for a file that has been moved to its location and evicts the least recently used entries
+	 * if the folder is full.  Must be called while holding the lock.
+	 *
+	 * @return entry or {@code null} if the entry itself had to be evicted
+	 */
+	private Entry register( FileDescriptor variant, Path file, long fileSize, boolean pendingUpload ) {
+		Entry entry = new Entry( variant, file, fileSize );
+		entry.pendingUpload = pendingUpload;
+
+		Entry previous = entries.put( variant.getUri(), entry );
+		if ( previous != null ) {
+			size -= previous.size;
+		}
+		size += fileSize;
+
+		evict();
+
+		return entries.get( variant.getUri() ) == entry ? entry : null;
+	}
+
+	private Entry registerExisting( FileDescriptor variant, Path file, boolean pendingUpload ) {
+		synchronized ( entries ) {
+			Entry entry = entries.get( variant.getUri() );
+			if ( entry == null ) {
+				try {
+					if ( Files.isRegularFile( file ) ) {
+						entry = register( variant, file, Files.size( file ), pendingUpload );
+					}
+				}
+				catch ( IOException ioe ) {
+					LOG.warn( "Unable to read local variant {}", file, ioe );
+				}
+			}
+			return entry;
+		}
+	}
+
+	private void evict() {
+		Iterator<Entry> iterator = entries.values().iterator();
+		while ( size > maxSize && iterator.hasNext() ) {
+			Entry candidate = iterator.next();
+			if ( !candidate.pendingUpload ) {
+				iterator.remove();
+				size -= candidate.size;
+				scheduleDelete( candidate );
+			}
+		}
+	}
+
+	private void scheduleDelete( Entry evicted ) {
+		if ( executor.isShutdown() ) {
+			deleteQuietly( evicted.file );
+		}
+		else {
+			executor.schedule( () -> {
+				synchronized ( entries ) {
+					// the variant might have been stored in the local folder again
+					if ( !entries.containsKey( evicted.variant.getUri() ) ) {
+						deleteQuietly( evicted.file );
+					}
+				}
+			}, EVICTED_FILE_DELETE_DELAY_SECONDS, TimeUnit.SECONDS );
+		}
+	}
+
+	private void touch( Entry entry ) {
+		long now = System.currentTimeMillis();
+		if ( now - entry.touched > TOUCH_INTERVAL_MILLIS ) {
+			entry.touched = now;
+			try {
+				Files.setLastModifiedTime( entry.file, FileTime.fromMillis( now ) );
+			}
+			catch ( IOException ioe ) {
+				LOG.trace( "Unable to update modification time of local variant {}", entry.file, ioe );
+			}
+		}
+	}
+
+	private void scheduleUpload( Entry entry, int attempt ) {
+		if ( entry != null && !executor.isShutdown() ) {
+			long delay = attempt > 0 ? Math.min( MAX_RETRY_DELAY_SECONDS, 5L << Math.min( attempt, 6 ) ) : 0;
+			executor.schedule( () -> upload( entry, attempt ), delay, TimeUnit.SECONDS );
+		}
+	}
+
+	private boolean isCurrent( Entry entry ) {
+		synchronized ( entries ) {
+			return entries.get( entry.variant.getUri() ) == entry;
+		}
+	}
+
+	private void upload( Entry entry, int attempt ) {
+		// a newer version of the variant will be uploaded instead
+		if ( !isCurrent( entry ) ) {
+			return;
+		}
+
+		try {
+			fileManager.getFileResource( entry.variant ).copyFrom( entry.file.toFile(), false );
+		}
+		catch ( Exception e ) {
+			if ( isCurrent( entry ) ) {
+				LOG.warn( "Unable to upload variant {} to the variants repository (attempt {}) - retrying", entry.variant, attempt + 1, e );
+				scheduleUpload( entry, attempt + 1 );
+			}
+			return;
+		}
+
+		boolean removed;
+		synchronized ( entries ) {
+			if ( entries.get( entry.variant.getUri() ) == entry ) {
+				entry.pendingUpload = false;
+				deleteQuietly( getPendingUploadMarker( entry.file ) );
+				evict();
+			}
+			removed = entry.removed && !entries.containsKey( entry.variant.getUri() );
+		}
+
+		if ( removed ) {
+			LOG.debug( "Variant {} was removed while it was being uploaded - removing it from the variants repository", entry.variant );
+			fileManager.getFileResource( entry.variant ).delete();
+		}
+	}
+
+	/**
+	 * Registers all variants in the folder, least recently used first, and resumes pending uploads.
+	 */
+	private void warmUp() {
+		List<Path> files = new ArrayList<>();
+		Map<Path, FileTime> lastModified = new HashMap<>();
+		Set<Path> pendingUploads = new HashSet<>();
+
+		try {
+			Files.walkFileTree( folder, new SimpleFileVisitor<Path>()
+			{
+				@Override
+				public FileVisitResult preVisitDirectory( Path dir, BasicFileAttributes attrs ) {
+					return dir.equals( tempFolder ) ? FileVisitResult.SKIP_SUBTREE : FileVisitResult.CONTINUE;
+				}
+
+				@Override
+				public FileVisitResult visitFile( Path file, BasicFileAttributes attrs ) {
+					String name = file.getFileName().toString();
+					if ( name.endsWith( PENDING_UPLOAD_SUFFIX ) ) {
+						pendingUploads.add( file.resolveSibling( name.substring( 0, name.length() - PENDING_UPLOAD_SUFFIX.length() ) ) );
+					}
+					else if ( folder.relativize( file ).getNameCount() > 1 ) {
+						files.add( file );
+						lastModified.put( file, attrs.lastModifiedTime() );
+					}
+					return FileVisitResult.CONTINUE;
+				}
+
+				@Override
+				public FileVisitResult visitFileFailed( Path file, IOException exc ) {
+					LOG.warn( "Unable to read local variant {}", file, exc );
+					return FileVisitResult.CONTINUE;
+				}
+			} );
+		}
+		catch ( IOException ioe ) {
+			LOG.error( "Unable to scan local variants folder {}", folder, ioe );
+		}
+
+		files.sort( Comparator.comparing( lastModified::get ) );
+
+		for ( Path file : files ) {
+			boolean pendingUpload = pendingUploads.remove( file );
+			Entry entry = registerExisting( toDescriptor( file ), file, pendingUpload );
+
+			if ( pendingUpload && entry != null ) {
+				synchronized ( entries ) {
+					entry.pendingUpload = true;
+				}
+				scheduleUpload( entry, 0 );
+			}
+		}
+
+		// markers without a variant: the variant was never moved to its location
+		pendingUploads.forEach( file -> deleteQuietly( getPendingUploadMarker( file ) ) );
+
+		warmedUp = true;
+		LOG.info( "Loaded {} local variants ({} bytes) from {}, {} pending upload", files.size(), getSize(), folder, getPendingUploadCount() );
+	}
+
+	private static void deleteQuietly( Path file ) {
+		if ( file != null ) {
+			try {
+				Files.deleteIfExists( file );
+			}
+			catch ( IOException ioe ) {
+				LOG.warn( "Unable to delete local variant file {}", file, ioe );
+			}
+		}
+	}
+
+	private static final class Entry
+	{
+		private final FileDescriptor variant;
+		private final Path file;
+		private final long size;
+
+		private boolean pendingUpload;
+		private boolean removed;
+		private volatile long touched = System.currentTimeMillis();
+
+		Entry( FileDescriptor variant, Path file, long size ) {
+			this.variant = variant;
+			this.file = file;
+			this.size = size;
+		}
+	}
+}
@@ -0,0 +1,110 @@
+package com.foreach.imageserver.core.services;
+
+import com.foreach.imageserver.core.transformers.SpillingImageSource;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import org.springframework.core.io.InputStreamSource;
+import org.springframework.core.io.Resource;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigInteger;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Data of an original image that is being ingested.  The data can be read more than once: to determine
+ * the image attributes and to store it in the image repository, without holding the original in memory.
+ * <p/>
+ * Uploaded files and resources are read directly from their location.  Sources that can only be read once,
+ * like an {@link org.springframework.core.io.InputStreamResource}, are copied first: in memory if they are
+ * small, to a temporary file otherwise.  The temporary file is deleted when the data is closed.
+ * <p/>
+ * The SHA-256 hash of the data is used to find an existing image with the same original.
+ *
+ * @author Arne Vandamme
+ * @since 6.3.0
+ */
+@RequiredArgsConstructor(access = AccessLevel.PRIVATE)
+final class OriginalImageData implements InputStreamSource, AutoCloseable
+{
+	private final InputStreamSource source;
+	private final SpillingImageSource copy;
+
+	/**
+	 * Number of bytes of the original image.
+	 */
+	@Getter
+	private final long size;
+
+	private String contentHash;
+
+	static OriginalImageData of( @NonNull InputStreamSource imageData ) throws IOException {
+		if ( imageData instanceof MultipartFile ) {
+			return new OriginalImageData( imageData, null, ( (MultipartFile) imageData ).getSize() );
+		}
+		if ( imageData instanceof Resource && !( (Resource) imageData ).isOpen() ) {
+			return new OriginalImageData( imageData, null, ( (Resource) imageData ).contentLength() );
+		}
+
+		MessageDigest digest = createDigest();
+		try (InputStream inputStream = new DigestInputStream( imageData.getInputStream(), digest )) {
+			SpillingImageSource copy = SpillingImageSource.copyOf( null, inputStream, SpillingImageSource.DEFAULT_MEMORY_THRESHOLD );
+			OriginalImageData originalImageData = new OriginalImageData( null, copy, copy.getSize() );
+			originalImageData.contentHash = toHex( digest.digest() );
+			return originalImageData;
+		}
+	}
+
+	/**
+	 * Get the SHA-256 hash of the data.  If the data was copied, the hash has been calculated while copying.
+	 * Otherwise the data is read once more when the hash is first requested.
+	 *
+	 * @return lowercase hexadecimal hash
+	 */
+	String getContentHash() throws IOException {
+		if ( contentHash == null ) {
+			MessageDigest digest = createDigest();
+			try (InputStream inputStream = new DigestInputStream( getInputStream(), digest )) {
+				byte[] buffer = new byte[8192];
+				while ( inputStream.read( buffer ) != -1 ) {
+					// digest is updated while reading
+				}
+			}
+			contentHash = toHex( digest.digest() );
+		}
+		return contentHash;
+	}
+
+	@Override
+	public InputStream getInputStream() throws IOException {
+		return copy != null ? copy.getImageStream() : source.getInputStream();
+	}
+
+	private static MessageDigest createDigest() {
+		try {
+			return MessageDigest.getInstance( "SHA-256" );
+		}
+		catch ( NoSuchAlgorithmException nsae ) {
+			throw new IllegalStateException( "SHA-256 algorithm not available", nsae );
+		}
+	}
+
+	private static String toHex( byte[] hash ) {
+		return String.format( "%064x", new BigInteger( 1, hash ) );
+	}
+
+	/**
+	 * Deletes the temporary copy of the data, if there is one.
+	 */
+	@Override
+	public void close() {
+		if ( copy != null ) {
+			copy.release();
+		}
+	}
+}
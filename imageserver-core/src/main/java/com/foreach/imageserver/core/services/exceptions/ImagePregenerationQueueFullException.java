@@ -0,0 +1,21 @@
+package com.foreach.imageserver.core.services.exceptions;
+
+import lombok.Getter;
+
+/**
+ * Thrown if the variants of an image could not be queued for pregeneration because the queue is full.
+ * The request should be retried later, the suggested delay is available as {@link #getRetryAfterSeconds()}.
+ *
+ * @author Arne Vandamme
+ * @since 6.3.0
+ */
+@Getter
+public class ImagePregenerationQueueFullException extends RuntimeException
+{
+	private final int retryAfterSeconds;
+
+	public ImagePregenerationQueueFullException( int retryAfterSeconds ) {
+		super( "Pregeneration queue is full" );
+		this.retryAfterSeconds = retryAfterSeconds;
+	}
+}
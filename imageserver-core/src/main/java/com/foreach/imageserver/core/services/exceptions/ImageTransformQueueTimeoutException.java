@@ -0,0 +1,28 @@
+package com.foreach.imageserver.core.services.exceptions;
+
+import com.foreach.imageserver.core.services.ImageTransformLane;
+import lombok.Getter;
+
+/**
+ * Thrown if a transform could not be started within the maximum queue wait of its lane.
+ * The request should be retried later, the suggested delay is available as {@link #getRetryAfterSeconds()}.
+ *
+ * @author Arne Vandamme
+ * @since 6.3.0
+ */
+@Getter
+public class ImageTransformQueueTimeoutException extends RuntimeException
+{
+	private final ImageTransformLane lane;
+	private final int retryAfterSeconds;
+
+	public ImageTransformQueueTimeoutException( ImageTransformLane lane, int retryAfterSeconds ) {
+		this( String.format( "Transform could not be started in time - %s lane is too busy", lane ), lane, retryAfterSeconds );
+	}
+
+	protected ImageTransformQueueTimeoutException( String message, ImageTransformLane lane, int retryAfterSeconds ) {
+		super( message );
+		this.lane = lane;
+		this.retryAfterSeconds = retryAfterSeconds;
+	}
+}
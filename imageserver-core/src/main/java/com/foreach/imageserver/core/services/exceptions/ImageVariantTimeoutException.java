@@ -0,0 +1,17 @@
+package com.foreach.imageserver.core.services.exceptions;
+
+import com.foreach.imageserver.core.services.ImageTransformLane;
+
+/**
+ * Thrown if a variant that was being generated by another request did not become available
+ * within the maximum variant wait.  The generation itself continues, the request should be retried later.
+ *
+ * @author Arne Vandamme
+ * @since 6.3.0
+ */
+public class ImageVariantTimeoutException extends ImageTransformQueueTimeoutException
+{
+	public ImageVariantTimeoutException( ImageTransformLane lane, int retryAfterSeconds ) {
+		super( "Variant that is being generated by another request did not become available in time", lane, retryAfterSeconds );
+	}
+}
@@ -0,0 +1,72 @@
+package com.foreach.imageserver.core.transformers;
+
+import com.foreach.imageserver.core.business.ImageType;
+import com.foreach.imageserver.dto.ImageTransformDto;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.Singular;
+
+import java.util.List;
+
+/**
+ * Represents a number of independent transformations to be performed on the same image.
+ * Every transform results in a separate output image, the original image only needs to be decoded once.
+ * The execution result contains the output images in the same order as the transforms.
+ *
+ * @author Arne Vandamme
+ * @since 6.3.0
+ */
+@Builder(toBuilder = true)
+@Getter
+public class ImageBatchTransformCommand extends ImageCommand<List<ImageSource>>
+{
+	/**
+	 * Image to be transformed.
+	 */
+	@NonNull
+	private final ImageSource originalImage;
+
+	/**
+	 * Attributes of the image to be transformed.
+	 */
+	@NonNull
+	private final ImageAttributes originalImageAttributes;
+
+	/**
+	 * Transforms to apply, each transform applies to the original image.
+	 */
+	@Singular
+	private final List<ImageTransformDto> transforms;
+
+	/**
+	 * Maximum number of bytes of a single output image that should be kept in memory.
+	 */
+	@Builder.Default
+	private final int outputMemoryThreshold = SpillingImageSource.DEFAULT_MEMORY_THRESHOLD;
+
+	/**
+	 * Create the image source an output image should be written to.
+	 *
+	 * @param outputType type of the output image
+	 * @return image source to write to
+	 */
+	public SpillingImageSource createOutputImageSource( ImageType outputType ) {
+		return new SpillingImageSource( outputType, outputMemoryThreshold );
+	}
+
+	/**
+	 * Create the single transform command for one of the transforms of this batch.
+	 *
+	 * @param transform to apply to the original image
+	 * @return command
+	 */
+	public ImageTransformCommand toTransformCommand( @NonNull ImageTransformDto transform ) {
+		return ImageTransformCommand.builder()
+		                            .originalImage( originalImage )
+		                            .originalImageAttributes( originalImageAttributes )
+		                            .transform( transform )
+		                            .outputMemoryThreshold( outputMemoryThreshold )
+		                            .build();
+	}
+}
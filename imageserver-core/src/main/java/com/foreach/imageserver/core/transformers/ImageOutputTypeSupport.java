@@ -0,0 +1,20 @@
+package com.foreach.imageserver.core.transformers;
+
+import com.foreach.imageserver.core.business.ImageType;
+
+/**
+ * Implemented by an {@link ImageCommandExecutor} that can tell which output types it is able to write,
+ * independent of a specific command.  Used to determine if an output type can be offered when negotiating
+ * the output type with the requester.
+ *
+ * @author Arne Vandamme
+ * @since 6.3.0
+ */
+public interface ImageOutputTypeSupport
+{
+	/**
+	 * @param outputType type of the image to write
+	 * @return true if images of that type can be written
+	 */
+	boolean supportsOutputType( ImageType outputType );
+}
@@ -3,6 +3,8 @@ package com.foreach.imageserver.core.transformers;
 import com.foreach.imageserver.core.business.ImageType;
 
 import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.Optional;
 
 /**
  * @author Arne Vandamme
@@ -19,4 +21,15 @@ public interface ImageSource
 	 * @return stream to the image byte data
 	 */
 	InputStream getImageStream();
+
+	/**
+	 * If the image data is stored as a regular file on the local file system, it can be served without reading
+	 * it through {@link #getImageStream()}.  The file should not be modified or deleted by the caller.
+	 *
+	 * @return local file holding the image data, empty if the data is not available as a file
+	 * @since 6.3.0
+	 */
+	default Optional<Path> getImageFile() {
+		return Optional.empty();
+	}
 }
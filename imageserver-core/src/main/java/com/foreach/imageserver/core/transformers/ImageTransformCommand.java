@@ -1,10 +1,13 @@
 package com.foreach.imageserver.core.transformers;
 
+import com.foreach.imageserver.core.business.ImageType;
 import com.foreach.imageserver.dto.ImageTransformDto;
 import lombok.Builder;
 import lombok.Getter;
 import lombok.NonNull;
 
+import java.io.OutputStream;
+
 /**
  * Represents a transformation to be performed on a particular image.
  *
@@ -32,4 +35,28 @@ public class ImageTransformCommand extends ImageCommand<ImageSource>
 	 */
 	@NonNull
 	private final ImageTransformDto transform;
+
+	/**
+	 * Optional stream the output image should be written to while it is being created.
+	 * The stream will not be closed.
+	 */
+	private final OutputStream outputStream;
+
+	/**
+	 * Maximum number of bytes of the output image that should be kept in memory.
+	 */
+	@Builder.Default
+	private final int outputMemoryThreshold = SpillingImageSource.DEFAULT_MEMORY_THRESHOLD;
+
+	/**
+	 * Create the image source the output image should be written to.  The source will spill to disk if the
+	 * output exceeds the memory threshold, and will also write to the {@link #getOutputStream()} if there is one.
+	 * An executor should only create the output once it is certain it can complete the command.
+	 *
+	 * @param outputType type of the output image
+	 * @return image source to write to
+	 */
+	public SpillingImageSource createOutputImageSource( ImageType outputType ) {
+		return new SpillingImageSource( outputType, outputMemoryThreshold, outputStream );
+	}
 }
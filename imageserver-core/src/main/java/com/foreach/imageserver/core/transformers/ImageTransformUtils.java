@@ -1,7 +1,10 @@
 package com.foreach.imageserver.core.transformers;
 
 import com.foreach.imageserver.core.business.Dimensions;
+import com.foreach.imageserver.core.business.ImageType;
 import com.foreach.imageserver.core.services.DtoUtil;
+import com.foreach.imageserver.dto.ColorDto;
+import com.foreach.imageserver.dto.ColorSpaceDto;
 import com.foreach.imageserver.dto.CropDto;
 import com.foreach.imageserver.dto.DimensionsDto;
 import com.foreach.imageserver.dto.ImageTransformDto;
@@ -45,6 +48,115 @@ public class ImageTransformUtils
 		return normalized;
 	}
 
+	/**
+	 * Attempt to fuse a transform with the transform that should be applied to its result, into a single transform
+	 * that can be applied directly to the original image.  The intermediate image is never created, its dimensions
+	 * are calculated from the first transform instead.
+	 * <p/>
+	 * Only transforms of single scene raster images are fused, and only if the next transform consists of
+	 * crop, resize, grayscale, quality or output type.  Any other combination returns {@code null}, in which
+	 * case both transforms should be executed separately.
+	 *
+	 * @param normalized       first transform, normalized for the source attributes
+	 * @param sourceAttributes attributes of the image to which the first transform applies
+	 * @param next             transform to apply to the result of the first transform
+	 * @return fused transform (normalized) or {@code null} if the transforms cannot be fused
+	 */
+	public ImageTransformDto fuse( @NonNull ImageTransformDto normalized, @NonNull ImageAttributes sourceAttributes, @NonNull ImageTransformDto next ) {
+		ImageAttributes intermediate = calculateOutputAttributes( normalized, sourceAttributes );
+
+		if ( !canBeFused( normalized, sourceAttributes, intermediate, next ) ) {
+			return null;
+		}
+
+		ImageTransformDto nextNormalized = normalize( next, intermediate );
+
+		CropDto firstCrop = normalized.getCrop() != null
+				? normalized.getCrop()
+				: new CropDto( 0, 0, sourceAttributes.getDimensions().getWidth(), sourceAttributes.getDimensions().getHeight() );
+		double scaleX = (double) firstCrop.getWidth() / intermediate.getDimensions().getWidth();
+		double scaleY = (double) firstCrop.getHeight() / intermediate.getDimensions().getHeight();
+
+		CropDto fusedCrop = firstCrop;
+		CropDto nextCrop = nextNormalized.getCrop();
+
+		if ( nextCrop != null ) {
+			fusedCrop = new CropDto(
+					firstCrop.getX() + (int) Math.round( nextCrop.getX() * scaleX ),
+					firstCrop.getY() + (int) Math.round( nextCrop.getY() * scaleY ),
+					Math.max( 1, Math.min( firstCrop.getWidth(), (int) Math.round( nextCrop.getWidth() * scaleX ) ) ),
+					Math.max( 1, Math.min( firstCrop.getHeight(), (int) Math.round( nextCrop.getHeight() * scaleY ) ) )
+			);
+		}
+
+		Dimensions output = calculateOutputAttributes( nextNormalized, intermediate ).getDimensions();
+		boolean fullImage = fusedCrop.getX() == 0 && fusedCrop.getY() == 0
+				&& fusedCrop.getWidth() == sourceAttributes.getDimensions().getWidth()
+				&& fusedCrop.getHeight() == sourceAttributes.getDimensions().getHeight();
+		boolean resize = output.getWidth() != fusedCrop.getWidth() || output.getHeight() != fusedCrop.getHeight();
+
+		ImageTransformDto fused = normalized.toBuilder().build();
+		fused.setCrop( fullImage ? null : fusedCrop );
+		fused.setWidth( resize ? output.getWidth() : null );
+		fused.setHeight( resize ? output.getHeight() : null );
+
+		if ( next.getColorSpace() != null ) {
+			fused.setColorSpace( next.getColorSpace() );
+		}
+		if ( next.getQuality() != null ) {
+			fused.setQuality( next.getQuality() );
+		}
+		if ( next.getOutputType() != null ) {
+			fused.setOutputType( next.getOutputType() );
+		}
+		if ( fused.getBackgroundColor() == null && sourceAttributes.getType().hasTransparency() && !intermediate.getType().hasTransparency() ) {
+			// the intermediate image would have been flattened, the fused output type might not do so
+			fused.setBackgroundColor( ColorDto.WHITE );
+		}
+
+		return fused;
+	}
+
+	/**
+	 * Calculate the attributes of the image that would result from applying the transform.
+	 *
+	 * @param normalized       transform, normalized for the source attributes
+	 * @param sourceAttributes attributes of the image to which the transform applies
+	 * @return attributes of the output
+	 */
+	public ImageAttributes calculateOutputAttributes( @NonNull ImageTransformDto normalized, @NonNull ImageAttributes sourceAttributes ) {
+		ImageType outputType = normalized.getOutputType() != null ? DtoUtil.toBusiness( normalized.getOutputType() ) : sourceAttributes.getType();
+
+		Dimensions dimensions;
+		if ( normalized.getWidth() != null && normalized.getHeight() != null ) {
+			dimensions = new Dimensions( normalized.getWidth(), normalized.getHeight() );
+		}
+		else if ( normalized.getCrop() != null ) {
+			dimensions = new Dimensions( normalized.getCrop().getWidth(), normalized.getCrop().getHeight() );
+		}
+		else {
+			dimensions = sourceAttributes.getDimensions();
+		}
+
+		return new ImageAttributes( outputType, dimensions, normalized.getScene() != null ? 1 : sourceAttributes.getSceneCount() );
+	}
+
+	private boolean canBeFused( ImageTransformDto normalized, ImageAttributes sourceAttributes, ImageAttributes intermediate, ImageTransformDto next ) {
+		return !sourceAttributes.getType().isScalable()
+				&& !intermediate.getType().isScalable()
+				&& sourceAttributes.getSceneCount() <= 1
+				&& isFusableColorSpace( normalized.getColorSpace() )
+				&& isFusableColorSpace( next.getColorSpace() )
+				&& next.getScene() == null
+				&& next.getDpi() == null
+				&& next.getAlphaColor() == null
+				&& next.getBackgroundColor() == null;
+	}
+
+	private boolean isFusableColorSpace( ColorSpaceDto colorSpace ) {
+		return colorSpace == null || colorSpace == ColorSpaceDto.GRAYSCALE;
+	}
+
 	private void calculateWidthAndHeight( ImageTransformDto normalized, ImageTransformDto original, Dimensions actualDimensions ) {
 		DimensionsDto widthAndHeight = calculateDimensions( original.getWidth(), original.getHeight(), actualDimensions, original.getAspectRatio() );
 
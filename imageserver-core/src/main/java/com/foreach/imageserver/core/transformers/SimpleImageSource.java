@@ -1,20 +1,34 @@
 package com.foreach.imageserver.core.transformers;
 
+import com.foreach.across.modules.filemanager.business.FileResource;
 import com.foreach.imageserver.core.business.ImageType;
+import org.springframework.core.io.FileSystemResource;
 import org.springframework.core.io.InputStreamSource;
 
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.Optional;
 import java.util.function.Supplier;
 
 public class SimpleImageSource implements ImageSource
 {
 	private final ImageType imageType;
 	private final Supplier<InputStream> inputStreamSupplier;
+	private final Path imageFile;
 
 	public SimpleImageSource( ImageType imageType, InputStreamSource inputStreamSource ) {
 		this.imageType = imageType;
+		if ( inputStreamSource instanceof FileResource.TargetFile ) {
+			this.imageFile = ( (FileResource.TargetFile) inputStreamSource ).getTargetFile().toPath();
+		}
+		else if ( inputStreamSource instanceof FileSystemResource ) {
+			this.imageFile = ( (FileSystemResource) inputStreamSource ).getFile().toPath();
+		}
+		else {
+			this.imageFile = null;
+		}
 		this.inputStreamSupplier = () -> {
 			try {
 				return inputStreamSource.getInputStream();
@@ -28,6 +42,7 @@ public class SimpleImageSource implements ImageSource
 	public SimpleImageSource( ImageType imageType, byte[] imageBytes ) {
 		this.imageType = imageType;
 		this.inputStreamSupplier = () -> new ByteArrayInputStream( imageBytes );
+		this.imageFile = null;
 	}
 
 	@Override
@@ -39,4 +54,9 @@ public class SimpleImageSource implements ImageSource
 	public InputStream getImageStream() {
 		return inputStreamSupplier.get();
 	}
+
+	@Override
+	public Optional<Path> getImageFile() {
+		return Optional.ofNullable( imageFile );
+	}
 }
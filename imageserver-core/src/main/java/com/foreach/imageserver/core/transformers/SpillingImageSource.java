@@ -0,0 +1,171 @@
+package com.foreach.imageserver.core.transformers;
+
+import com.foreach.imageserver.core.business.ImageType;
+import lombok.Getter;
+import lombok.NonNull;
+import org.apache.commons.io.FileCleaningTracker;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.output.CloseShieldOutputStream;
+import org.apache.commons.io.output.DeferredFileOutputStream;
+import org.apache.commons.io.output.ProxyOutputStream;
+import org.apache.commons.io.output.TeeOutputStream;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * {@link ImageSource} for image data that is being created, for example the output of a transform.
+ * The data is written once using {@link #getOutputStream()} and is kept in memory up until the threshold,
+ * larger images are spilled to a temporary file instead.  Once the output stream has been closed,
+ * the data can be read any number of times - also concurrently - using {@link #getImageStream()}.
+ * <p/>
+ * The data can optionally be written to another output stream at the same time it is being created,
+ * avoiding an additional copy when the image should also be stored.  That stream is never closed,
+ * this is the responsibility of the caller that provided it.
+ * <p/>
+ * A temporary file is deleted when {@link #release()} is called, or when the image source
+ * itself is no longer referenced.
+ *
+ * @author Arne Vandamme
+ * @since 6.3.0
+ */
+public class SpillingImageSource implements ImageSource
+{
+	/**
+	 * Default number of bytes that is kept in memory: 1 MB.
+	 */
+	public static final int DEFAULT_MEMORY_THRESHOLD = 1024 * 1024;
+
+	private static final FileCleaningTracker FILE_CLEANING_TRACKER = new FileCleaningTracker();
+
+	@Getter
+	private final ImageType imageType;
+
+	private final OutputStream teeOutputStream;
+	private final DeferredFileOutputStream buffer;
+
+	private volatile boolean completed;
+	private boolean outputStreamCreated;
+
+	public SpillingImageSource( ImageType imageType, int memoryThreshold ) {
+		this( imageType, memoryThreshold, null );
+	}
+
+	/**
+	 * @param imageType       type of the image
+	 * @param memoryThreshold maximum number of bytes to keep in memory
+	 * @param teeOutputStream optional stream the data should be written to as well
+	 */
+	public SpillingImageSource( ImageType imageType, int memoryThreshold, OutputStream teeOutputStream ) {
+		this.imageType = imageType;
+		this.teeOutputStream = teeOutputStream;
+
+		buffer = new DeferredFileOutputStream( memoryThreshold, "imageserver-", ".tmp", null );
+	}
+
+	/**
+	 * Create a new image source holding the data of the input stream.
+	 * The caller is responsible for closing the input stream.
+	 *
+	 * @param imageType       type of the image
+	 * @param inputStream     data to copy
+	 * @param memoryThreshold maximum number of bytes to keep in memory
+	 * @return image source
+	 */
+	public static SpillingImageSource copyOf( ImageType imageType, @NonNull InputStream inputStream, int memoryThreshold ) throws IOException {
+		SpillingImageSource imageSource = new SpillingImageSource( imageType, memoryThreshold );
+		try (OutputStream os = imageSource.getOutputStream()) {
+			IOUtils.copy( inputStream, os );
+		}
+		return imageSource;
+	}
+
+	/**
+	 * Get the stream the image data should be written to.  Can only be called once and the stream must be
+	 * closed when all data has been written.  The tee output stream is written to as well, but is not closed.
+	 *
+	 * @return output stream
+	 */
+	public synchronized OutputStream getOutputStream() {
+		if ( outputStreamCreated ) {
+			throw new IllegalStateException( "Output stream has already been created - image data can only be written once" );
+		}
+		outputStreamCreated = true;
+
+		OutputStream target = teeOutputStream != null ? new TeeOutputStream( buffer, CloseShieldOutputStream.wrap( teeOutputStream ) ) : buffer;
+
+		return new ProxyOutputStream( target )
+		{
+			@Override
+			public void close() throws IOException {
+				super.close();
+				complete();
+			}
+		};
+	}
+
+	private void complete() {
+		if ( !completed ) {
+			if ( !buffer.isInMemory() ) {
+				FILE_CLEANING_TRACKER.track( buffer.getFile(), this );
+			}
+			completed = true;
+		}
+	}
+
+	/**
+	 * @param outputStream to check
+	 * @return true if the data is also written to that output stream
+	 */
+	public boolean isWrittenTo( OutputStream outputStream ) {
+		return outputStream != null && outputStream == teeOutputStream;
+	}
+
+	/**
+	 * @return true if the output stream has been closed and the data can be read
+	 */
+	public boolean isCompleted() {
+		return completed;
+	}
+
+	/**
+	 * @return true if the data is held in memory, false if it has been spilled to a temporary file
+	 */
+	public boolean isInMemory() {
+		return buffer.isInMemory();
+	}
+
+	/**
+	 * @return number of bytes written
+	 */
+	public long getSize() {
+		return buffer.getByteCount();
+	}
+
+	@Override
+	public InputStream getImageStream() {
+		if ( !completed ) {
+			throw new IllegalStateException( "Image data can only be read once the output stream has been closed" );
+		}
+
+		try {
+			return buffer.toInputStream();
+		}
+		catch ( IOException ioe ) {
+			throw new ImageModificationException( ioe );
+		}
+	}
+
+	/**
+	 * Deletes the temporary file if the data was spilled to disk.
+	 * The image source can no longer be read afterwards.
+	 */
+	public void release() {
+		if ( !buffer.isInMemory() ) {
+			FileUtils.deleteQuietly( buffer.getFile() );
+		}
+	}
+}
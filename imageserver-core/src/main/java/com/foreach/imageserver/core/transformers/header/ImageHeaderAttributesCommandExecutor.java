@@ -0,0 +1,46 @@
+package com.foreach.imageserver.core.transformers.header;
+
+import com.foreach.imageserver.core.transformers.AbstractOrderedImageCommandExecutor;
+import com.foreach.imageserver.core.transformers.ImageAttributes;
+import com.foreach.imageserver.core.transformers.ImageAttributesCommand;
+import com.foreach.imageserver.core.transformers.ImageTransformerPriority;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.InputStream;
+
+/**
+ * Resolves {@link ImageAttributes} in-process by parsing the header of the image, without decoding it and
+ * without starting an external process.  Handles JPEG, PNG, GIF, WebP, BMP, TIFF and SVG.
+ * <p/>
+ * Images that can not be parsed with certainty from the first kilobytes (eg. animated PNG or WebP,
+ * SVG dimensions in units other than pixels, multi-page TIFF) and PDF documents are declined,
+ * leaving them for the next executor (usually ImageMagick).
+ *
+ * @author Arne Vandamme
+ * @since 6.3.0
+ */
+@Slf4j
+public class ImageHeaderAttributesCommandExecutor extends AbstractOrderedImageCommandExecutor<ImageAttributesCommand>
+{
+	@Override
+	public ImageTransformerPriority canExecute( ImageAttributesCommand command ) {
+		return ImageTransformerPriority.PREFERRED;
+	}
+
+	@Override
+	public void execute( ImageAttributesCommand command ) {
+		try (InputStream stream = command.getImageStream()) {
+			ImageAttributes attributes = ImageHeaderParser.parse( stream );
+
+			if ( attributes != null ) {
+				command.setExecutionResult( attributes );
+			}
+			else {
+				LOG.debug( "Unable to determine image attributes from the header, declining" );
+			}
+		}
+		catch ( Exception e ) {
+			LOG.debug( "Unable to determine image attributes from the header", e );
+		}
+	}
+}
@@ -0,0 +1,23 @@
+package com.foreach.imageserver.core.transformers.header;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * @author Arne Vandamme
+ * @since 6.3.0
+ */
+@Configuration
+@ConditionalOnProperty(value = "image-server-core.transformers.header.enabled", havingValue = "true", matchIfMissing = true)
+@EnableConfigurationProperties(ImageHeaderSettings.class)
+class ImageHeaderConfiguration
+{
+	@Bean
+	ImageHeaderAttributesCommandExecutor imageHeaderAttributesCommandExecutor( ImageHeaderSettings settings ) {
+		ImageHeaderAttributesCommandExecutor attributesCommandExecutor = new ImageHeaderAttributesCommandExecutor();
+		attributesCommandExecutor.setOrder( settings.getPriority() );
+		return attributesCommandExecutor;
+	}
+}
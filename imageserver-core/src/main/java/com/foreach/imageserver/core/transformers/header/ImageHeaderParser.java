@@ -0,0 +1,434 @@
+package com.foreach.imageserver.core.transformers.header;
+
+import com.foreach.imageserver.core.business.Dimensions;
+import com.foreach.imageserver.core.business.ImageType;
+import com.foreach.imageserver.core.transformers.ImageAttributes;
+import org.apache.commons.io.IOUtils;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Parses the attributes of an image from the structures describing it, without decoding any pixel data.
+ * Usually only the first few kilobytes of the stream are read, an image is declined if its attributes are not
+ * found within the first {@link #MAX_HEADER_SIZE} bytes.  PDF documents are always declined, as their
+ * page tree can be anywhere in the file.
+ * <p/>
+ * The attributes returned are those ImageMagick would report for the same image.
+ * If that can not be determined with certainty, {@code null} is returned.
+ *
+ * @author Arne Vandamme
+ * @since 6.3.0
+ */
+final class ImageHeaderParser
+{
+	/**
+	 * Number of bytes read up front for detecting the format and parsing text based formats.
+	 */
+	static final int HEADER_SIZE = 8192;
+
+	/**
+	 * Maximum number of bytes read before an image is declined.
+	 */
+	static final int MAX_HEADER_SIZE = 256 * 1024;
+
+	private static final Pattern SVG_LENGTH = Pattern.compile( "\\s*(\\d+)(?:\\.0*)?\\s*(?:px)?\\s*" );
+	private static final Pattern SVG_VIEW_BOX = Pattern.compile( "\\s*-?[\\d.]+[\\s,]+-?[\\d.]+[\\s,]+(\\d+)(?:\\.0*)?[\\s,]+(\\d+)(?:\\.0*)?\\s*" );
+
+
+	private ImageHeaderParser() {
+	}
+
+	/**
+	 * @param stream positioned at the start of the image, will not be closed
+	 * @return attributes or {@code null} if the format is not supported or the image could not be parsed
+	 */
+	static ImageAttributes parse( InputStream stream ) throws IOException {
+		byte[] header = new byte[HEADER_SIZE];
+		int length = IOUtils.read( stream, header );
+
+		DataReader reader = new DataReader( new SequenceInputStream( new ByteArrayInputStream( header, 0, length ), stream ) );
+
+		if ( startsWith( header, length, 0xFF, 0xD8, 0xFF ) ) {
+			return jpeg( reader );
+		}
+		if ( startsWith( header, length, 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n' ) ) {
+			return png( reader );
+		}
+		if ( startsWith( header, length, 'G', 'I', 'F', '8' ) ) {
+			return gif( reader );
+		}
+		if ( startsWith( header, length, 'R', 'I', 'F', 'F' ) && length >= 12 && "WEBP".equals( ascii( header, 8, 4 ) ) ) {
+			return webp( reader );
+		}
+		if ( startsWith( header, length, 'B', 'M' ) ) {
+			return bmp( reader );
+		}
+		if ( startsWith( header, length, 'I', 'I', 42, 0 ) || startsWith( header, length, 'M', 'M', 0, 42 ) ) {
+			return tiff( reader, header[0] == 'I' );
+		}
+		if ( startsWith( header, length, '%', 'P', 'D', 'F', '-' ) ) {
+			return null;
+		}
+
+		return svg( new String( header, 0, length, StandardCharsets.UTF_8 ) );
+	}
+
+	/**
+	 * Walks the marker segments up to the first start of frame segment.
+	 */
+	private static ImageAttributes jpeg( DataReader in ) throws IOException {
+		in.skip( 2 );
+
+		while ( true ) {
+			if ( in.u8() != 0xFF ) {
+				return null;
+			}
+			int marker = in.u8();
+			while ( marker == 0xFF ) {
+				marker = in.u8();
+			}
+
+			if ( marker == 0x01 || ( marker >= 0xD0 && marker <= 0xD8 ) ) {
+				continue;
+			}
+			if ( marker == 0xD9 || marker == 0xDA ) {
+				return null;
+			}
+
+			int length = in.u16be();
+			if ( marker >= 0xC0 && marker <= 0xCF && marker != 0xC4 && marker != 0xC8 && marker != 0xCC ) {
+				in.skip( 1 );
+				int height = in.u16be();
+				int width = in.u16be();
+				return attributes( ImageType.JPEG, width, height, 1 );
+			}
+			in.skip( length - 2 );
+		}
+	}
+
+	/**
+	 * Reads the IHDR chunk, animated PNG images are declined.
+	 */
+	private static ImageAttributes png( DataReader in ) throws IOException {
+		in.skip( 8 );
+		long length = in.u32be();
+		if ( !"IHDR".equals( in.ascii( 4 ) ) ) {
+			return null;
+		}
+		long width = in.u32be();
+		long height = in.u32be();
+		in.skip( length - 8 + 4 );
+
+		while ( true ) {
+			length = in.u32be();
+			String chunk = in.ascii( 4 );
+			if ( "acTL".equals( chunk ) ) {
+				return null;
+			}
+			if ( "IDAT".equals( chunk ) || "IEND".equals( chunk ) ) {
+				return attributes( ImageType.PNG, width, height, 1 );
+			}
+			in.skip( length + 4 );
+		}
+	}
+
+	/**
+	 * Counts the image descriptors, the dimensions are those of the first frame.
+	 */
+	private static ImageAttributes gif( DataReader in ) throws IOException {
+		in.skip( 10 );
+		int flags = in.u8();
+		in.skip( 2 );
+		skipColorTable( in, flags );
+
+		int width = 0, height = 0, sceneCount = 0;
+
+		try {
+			while ( true ) {
+				int block = in.u8();
+				if ( block == 0x2C ) {
+					in.skip( 4 );
+					int frameWidth = in.u16le();
+					int frameHeight = in.u16le();
+					skipColorTable( in, in.u8() );
+					in.skip( 1 );
+					skipSubBlocks( in );
+
+					if ( sceneCount++ == 0 ) {
+						width = frameWidth;
+						height = frameHeight;
+					}
+				}
+				else if ( block == 0x21 ) {
+					in.skip( 1 );
+					skipSubBlocks( in );
+				}
+				else if ( block == 0x3B ) {
+					break;
+				}
+				else {
+					return null;
+				}
+			}
+		}
+		catch ( EOFException eof ) {
+			// truncated image, the frames that were complete are still readable
+		}
+
+		return sceneCount > 0 ? attributes( ImageType.GIF, width, height, sceneCount ) : null;
+	}
+
+	private static void skipColorTable( DataReader in, int flags ) throws IOException {
+		if ( ( flags & 0x80 ) != 0 ) {
+			in.skip( 3L << ( ( flags & 0x07 ) + 1 ) );
+		}
+	}
+
+	private static void skipSubBlocks( DataReader in ) throws IOException {
+		int size = in.u8();
+		while ( size > 0 ) {
+			in.skip( size );
+			size = in.u8();
+		}
+	}
+
+	/**
+	 * Reads the dimensions from the first chunk, animated WebP images are declined.
+	 */
+	private static ImageAttributes webp( DataReader in ) throws IOException {
+		in.skip( 12 );
+		String chunk = in.ascii( 4 );
+		in.skip( 4 );
+
+		switch ( chunk ) {
+			case "VP8 ":
+				in.skip( 3 );
+				if ( in.u8() != 0x9D || in.u8() != 0x01 || in.u8() != 0x2A ) {
+					return null;
+				}
+				int width = in.u16le() & 0x3FFF;
+				int height = in.u16le() & 0x3FFF;
+				return attributes( ImageType.WEBP, width, height, 1 );
+			case "VP8L":
+				if ( in.u8() != 0x2F ) {
+					return null;
+				}
+				long bits = in.u32le();
+				return attributes( ImageType.WEBP, ( bits & 0x3FFF ) + 1, ( ( bits >> 14 ) & 0x3FFF ) + 1, 1 );
+			case "VP8X":
+				int flags = in.u8();
+				if ( ( flags & 0x02 ) != 0 ) {
+					return null;
+				}
+				in.skip( 3 );
+				long canvasWidth = in.u16le() | ( in.u8() << 16 );
+				long canvasHeight = in.u16le() | ( in.u8() << 16 );
+				return attributes( ImageType.WEBP, canvasWidth + 1, canvasHeight + 1, 1 );
+			default:
+				return null;
+		}
+	}
+
+	private static ImageAttributes bmp( DataReader in ) throws IOException {
+		in.skip( 14 );
+		long headerSize = in.u32le();
+		if ( headerSize == 12 ) {
+			return attributes( ImageType.BMP, in.u16le(), in.u16le(), 1 );
+		}
+		if ( headerSize < 40 ) {
+			return null;
+		}
+		int width = (int) in.u32le();
+		int height = (int) in.u32le();
+		return attributes( ImageType.BMP, width, Math.abs( height ), 1 );
+	}
+
+	/**
+	 * Reads the dimensions from the first image file directory.  Only single page images are handled,
+	 * counting the pages would require following the chain of directories through the entire file.
+	 */
+	private static ImageAttributes tiff( DataReader in, boolean littleEndian ) throws IOException {
+		in.skip( 4 );
+		long offset = in.u32( littleEndian );
+		if ( offset < in.position() || offset > MAX_HEADER_SIZE ) {
+			return null;
+		}
+		in.skip( offset - in.position() );
+
+		long width = 0, height = 0;
+		int entries = in.u16( littleEndian );
+		for ( int i = 0; i < entries; i++ ) {
+			int tag = in.u16( littleEndian );
+			int type = in.u16( littleEndian );
+			in.skip( 4 );
+
+			if ( tag == 256 || tag == 257 ) {
+				long value = type == 3 ? in.u16( littleEndian ) : in.u32( littleEndian );
+				in.skip( type == 3 ? 2 : 0 );
+				if ( tag == 256 ) {
+					width = value;
+				}
+				else {
+					height = value;
+				}
+			}
+			else {
+				in.skip( 4 );
+			}
+		}
+
+		return in.u32( littleEndian ) == 0 ? attributes( ImageType.TIFF, width, height, 1 ) : null;
+	}
+
+	/**
+	 * Uses the pixel dimensions of the root element: explicit width and height attributes or
+	 * the size of the view box.  Relative sizes and other units are declined.
+	 */
+	private static ImageAttributes svg( String header ) {
+		int start = header.indexOf( "<svg" );
+		if ( start < 0 || !isXmlPrologue( header.substring( 0, start ) ) ) {
+			return null;
+		}
+		int end = header.indexOf( '>', start );
+		if ( end < 0 ) {
+			return null;
+		}
+
+		String element = header.substring( start, end );
+		String width = attribute( element, "width" );
+		String height = attribute( element, "height" );
+
+		if ( width != null || height != null ) {
+			Matcher widthMatcher = SVG_LENGTH.matcher( width != null ? width : "" );
+			Matcher heightMatcher = SVG_LENGTH.matcher( height != null ? height : "" );
+			if ( widthMatcher.matches() && heightMatcher.matches() ) {
+				return attributes( ImageType.SVG, Long.parseLong( widthMatcher.group( 1 ) ), Long.parseLong( heightMatcher.group( 1 ) ), 1 );
+			}
+			return null;
+		}
+
+		String viewBox = attribute( element, "viewBox" );
+		if ( viewBox != null ) {
+			Matcher matcher = SVG_VIEW_BOX.matcher( viewBox );
+			if ( matcher.matches() ) {
+				return attributes( ImageType.SVG, Long.parseLong( matcher.group( 1 ) ), Long.parseLong( matcher.group( 2 ) ), 1 );
+			}
+		}
+
+		return null;
+	}
+
+	private static boolean isXmlPrologue( String prologue ) {
+		String remaining = prologue.replaceAll( "(?s)<\\?.*?\\?>|<!--.*?-->|<!DOCTYPE[^>\\[]*(\\[.*?])?\\s*>", "" );
+		return remaining.replace( "\uFEFF", "" ).trim().isEmpty();
+	}
+
+	private static String attribute( String element, String name ) {
+		Matcher matcher = Pattern.compile( "\\s" + name + "\\s*=\\s*(?:\"([^\"]*)\"|'([^']*)')" ).matcher( element );
+		if ( matcher.find() ) {
+			return matcher.group( 1 ) != null ? matcher.group( 1 ) : matcher.group( 2 );
+		}
+		return null;
+	}
+
+	private static ImageAttributes attributes( ImageType imageType, long width, long height, int sceneCount ) {
+		if ( width <= 0 || height <= 0 || width > Integer.MAX_VALUE || height > Integer.MAX_VALUE ) {
+			return null;
+		}
+		return new ImageAttributes( imageType, new Dimensions( (int) width, (int) height ), sceneCount );
+	}
+
+	private static boolean startsWith( byte[] data, int length, int... signature ) {
+		if ( length < signature.length ) {
+			return false;
+		}
+		for ( int i = 0; i < signature.length; i++ ) {
+			if ( ( data[i] & 0xFF ) != signature[i] ) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static String ascii( byte[] data, int offset, int length ) {
+		return new String( data, offset, length, StandardCharsets.ISO_8859_1 );
+	}
+
+	/**
+	 * Reads numbers of different sizes and byte order from a stream, keeping track of the position.
+	 * Reading beyond {@link #MAX_HEADER_SIZE} fails.
+	 */
+	private static final class DataReader
+	{
+		private final InputStream stream;
+		private long position;
+
+		DataReader( InputStream stream ) {
+			this.stream = new BufferedInputStream( stream );
+		}
+
+		long position() {
+			return position;
+		}
+
+		int u8() throws IOException {
+			checkLimit( 1 );
+			int value = stream.read();
+			if ( value < 0 ) {
+				throw new EOFException();
+			}
+			position++;
+			return value;
+		}
+
+		int u16be() throws IOException {
+			return ( u8() << 8 ) | u8();
+		}
+
+		int u16le() throws IOException {
+			return u8() | ( u8() << 8 );
+		}
+
+		long u32be() throws IOException {
+			return ( (long) u16be() << 16 ) | u16be();
+		}
+
+		long u32le() throws IOException {
+			return u16le() | ( (long) u16le() << 16 );
+		}
+
+		int u16( boolean littleEndian ) throws IOException {
+			return littleEndian ? u16le() : u16be();
+		}
+
+		long u32( boolean littleEndian ) throws IOException {
+			return littleEndian ? u32le() : u32be();
+		}
+
+		String ascii( int length ) throws IOException {
+			checkLimit( length );
+			byte[] bytes = new byte[length];
+			IOUtils.readFully( stream, bytes );
+			position += length;
+			return new String( bytes, StandardCharsets.ISO_8859_1 );
+		}
+
+		void skip( long length ) throws IOException {
+			if ( length < 0 ) {
+				throw new EOFException( "Negative skip" );
+			}
+			checkLimit( length );
+			IOUtils.skipFully( stream, length );
+			position += length;
+		}
+
+		private void checkLimit( long length ) throws IOException {
+			if ( position + length > MAX_HEADER_SIZE ) {
+				throw new IOException( "Image attributes not found within the first " + MAX_HEADER_SIZE + " bytes" );
+			}
+		}
+	}
+}
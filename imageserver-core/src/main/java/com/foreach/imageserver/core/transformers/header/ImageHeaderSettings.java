@@ -0,0 +1,24 @@
+package com.foreach.imageserver.core.transformers.header;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * @author Arne Vandamme
+ * @since 6.3.0
+ */
+@Data
+@ConfigurationProperties(prefix = "image-server-core.transformers.header")
+@SuppressWarnings("WeakerAccess")
+public class ImageHeaderSettings
+{
+	/**
+	 * True if image attributes should be determined by parsing the image header in-process.
+	 */
+	private boolean enabled = true;
+
+	/**
+	 * Priority for the header attributes executor, it should come before any executor starting an external process.
+	 */
+	private int priority = -1;
+}
@@ -0,0 +1,165 @@
+package com.foreach.imageserver.core.transformers.imagemagick;
+
+import com.foreach.imageserver.core.transformers.ImageModificationException;
+import org.apache.commons.lang3.StringUtils;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Wraps a single long-running {@code gm batch} process.  Commands are written to the standard input of the
+ * process, one per line, and the process reports success or failure of every command using a marker line.
+ * Any output of the command (eg. of {@code identify}) is returned to the caller.
+ * <p/>
+ * Instances are not thread-safe, a process should only be used by a single thread at a time.
+ *
+ * @author Arne Vandamme
+ * @see GraphicsMagickWorkerPool
+ * @since 6.3.0
+ */
+class GraphicsMagickBatchProcess
+{
+	static final String PASS_MARKER = "__gm_batch_pass__";
+	static final String FAIL_MARKER = "__gm_batch_fail__";
+
+	private final Process process;
+	private final BufferedWriter commandWriter;
+	private final BufferedReader outputReader;
+
+	private int jobCount;
+	private boolean broken;
+
+	private GraphicsMagickBatchProcess( Process process ) {
+		this.process = process;
+		this.commandWriter = new BufferedWriter( new OutputStreamWriter( process.getOutputStream(), StandardCharsets.UTF_8 ) );
+		this.outputReader = new BufferedReader( new InputStreamReader( process.getInputStream(), StandardCharsets.UTF_8 ) );
+	}
+
+	/**
+	 * Start a new batch process.
+	 *
+	 * @param executable path to the {@code gm} executable
+	 * @return process
+	 * @throws IOException if process could not be started
+	 */
+	static GraphicsMagickBatchProcess start( String executable ) throws IOException {
+		Process process = new ProcessBuilder( executable, "batch",
+		                                      "-escape", "unix",
+		                                      "-feedback", "on",
+		                                      "-stop-on-error", "off",
+		                                      "-pass", PASS_MARKER,
+		                                      "-fail", FAIL_MARKER )
+				.redirectErrorStream( true )
+				.start();
+
+		return new GraphicsMagickBatchProcess( process );
+	}
+
+	/**
+	 * Execute a single command, eg. {@code convert in.png -resize 100x100 out.png}, and wait for it to finish.
+	 *
+	 * @param arguments command and its arguments
+	 * @return output lines written by the command
+	 * @throws IOException                if the process terminated or could not be written to
+	 * @throws ImageModificationException if the process reported the command as failed
+	 */
+	List<String> execute( List<String> arguments ) throws IOException {
+		jobCount++;
+
+		try {
+			commandWriter.write( toCommandLine( arguments ) );
+			commandWriter.newLine();
+			commandWriter.flush();
+
+			List<String> output = new ArrayList<>();
+			String line;
+
+			while ( ( line = outputReader.readLine() ) != null ) {
+				if ( line.endsWith( PASS_MARKER ) ) {
+					addIfNotBlank( output, StringUtils.removeEnd( line, PASS_MARKER ) );
+					return output;
+				}
+				if ( line.endsWith( FAIL_MARKER ) ) {
+					addIfNotBlank( output, StringUtils.removeEnd( line, FAIL_MARKER ) );
+					throw new ImageModificationException( "GraphicsMagick command failed: " + StringUtils.join( output, System.lineSeparator() ) );
+				}
+				output.add( line );
+			}
+		}
+		catch ( IOException ioe ) {
+			broken = true;
+			throw ioe;
+		}
+
+		broken = true;
+		throw new IOException( "GraphicsMagick batch process terminated unexpectedly" );
+	}
+
+	/**
+	 * @return number of commands that have been sent to this process
+	 */
+	int getJobCount() {
+		return jobCount;
+	}
+
+	/**
+	 * @return true if the process is still running and can accept new commands
+	 */
+	boolean isAlive() {
+		return !broken && process.isAlive();
+	}
+
+	/**
+	 * Terminate the process.  Will unblock any thread waiting on the output of a command.
+	 */
+	void destroy() {
+		process.destroyForcibly();
+	}
+
+	/**
+	 * Closes the input of the process, causing it to stop once the current command is done.
+	 */
+	void stop() {
+		try {
+			commandWriter.close();
+		}
+		catch ( IOException ignore ) {
+			destroy();
+		}
+	}
+
+	/**
+	 * Converts the arguments into a single command line, quoting every argument according to the
+	 * unix escape rules of {@code gm batch}.
+	 */
+	static String toCommandLine( List<String> arguments ) {
+		StringBuilder commandLine = new StringBuilder();
+
+		for ( String argument : arguments ) {
+			if ( StringUtils.containsAny( argument, '\n', '\r' ) ) {
+				throw new IllegalArgumentException( "Line breaks are not supported in batch arguments: " + argument );
+			}
+			if ( commandLine.length() > 0 ) {
+				commandLine.append( ' ' );
+			}
+			commandLine.append( '"' );
+			for ( char c : argument.toCharArray() ) {
+				if ( c == '"' || c == '\\' ) {
+					commandLine.append( '\\' );
+				}
+				commandLine.append( c );
+			}
+			commandLine.append( '"' );
+		}
+
+		return commandLine.toString();
+	}
+
+	private static void addIfNotBlank( List<String> output, String line ) {
+		if ( StringUtils.isNotBlank( line ) ) {
+			output.add( line );
+		}
+	}
+}
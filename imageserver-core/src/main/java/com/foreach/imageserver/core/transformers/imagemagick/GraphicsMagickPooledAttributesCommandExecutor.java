@@ -0,0 +1,84 @@
+package com.foreach.imageserver.core.transformers.imagemagick;
+
+import com.foreach.imageserver.core.business.Dimensions;
+import com.foreach.imageserver.core.business.ImageType;
+import com.foreach.imageserver.core.transformers.ImageAttributes;
+import com.foreach.imageserver.core.transformers.ImageAttributesCommand;
+import com.foreach.imageserver.core.transformers.ImageModificationException;
+import lombok.NonNull;
+import org.apache.commons.lang3.StringUtils;
+
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Variant of the {@link ImageMagickAttributesCommandExecutor} that runs {@code identify} on a
+ * {@link GraphicsMagickWorkerPool} instead of forking a new process for every image.
+ * Every scene of the image is reported as a separate output line.
+ *
+ * @author Arne Vandamme
+ * @since 6.3.0
+ */
+public class GraphicsMagickPooledAttributesCommandExecutor extends ImageMagickAttributesCommandExecutor
+{
+	private static final String IDENTIFY_FORMAT = "%m %w %h\\n";
+
+	private final GraphicsMagickWorkerPool workerPool;
+
+	public GraphicsMagickPooledAttributesCommandExecutor( @NonNull GraphicsMagickWorkerPool workerPool ) {
+		this.workerPool = workerPool;
+	}
+
+	@Override
+	public void execute( ImageAttributesCommand command ) {
+		Path input = null;
+
+		try {
+			input = Files.createTempFile( "gm-identify-", ".tmp" );
+
+			try (InputStream stream = command.getImageStream()) {
+				Files.copy( stream, input, StandardCopyOption.REPLACE_EXISTING );
+			}
+
+			List<String> output = workerPool.execute( Arrays.asList( "identify", "-ping", "-format", IDENTIFY_FORMAT, input.toString() ) );
+			command.setExecutionResult( parseIdentifyOutput( output ) );
+		}
+		catch ( ImageModificationException ime ) {
+			throw ime;
+		}
+		catch ( Exception e ) {
+			throw new ImageModificationException( e );
+		}
+		finally {
+			GraphicsMagickPooledTransformCommandExecutor.deleteQuietly( input );
+		}
+	}
+
+	private ImageAttributes parseIdentifyOutput( List<String> output ) {
+		int sceneCount = 0;
+		String[] firstScene = null;
+
+		for ( String line : output ) {
+			String[] parts = StringUtils.split( line.trim(), ' ' );
+			if ( parts.length == 3 && StringUtils.isNumeric( parts[1] ) && StringUtils.isNumeric( parts[2] ) ) {
+				sceneCount++;
+				if ( firstScene == null ) {
+					firstScene = parts;
+				}
+			}
+		}
+
+		if ( firstScene == null ) {
+			throw new ImageModificationException( "The image format could not be determined." );
+		}
+
+		ImageType imageType = resolveImageType( firstScene[0] );
+		Dimensions dimensions = new Dimensions( Integer.parseInt( firstScene[1] ), Integer.parseInt( firstScene[2] ) );
+
+		return new ImageAttributes( imageType, dimensions, sceneCount );
+	}
+}
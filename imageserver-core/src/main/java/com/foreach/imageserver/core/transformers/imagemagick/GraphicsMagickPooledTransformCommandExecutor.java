@@ -0,0 +1,89 @@
+package com.foreach.imageserver.core.transformers.imagemagick;
+
+import com.foreach.imageserver.core.business.ImageType;
+import com.foreach.imageserver.core.transformers.ImageModificationException;
+import com.foreach.imageserver.core.transformers.ImageTransformCommand;
+import com.foreach.imageserver.core.transformers.SpillingImageSource;
+import com.github.geko444.im4java.core.IMOperation;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Variant of the {@link ImageMagickTransformCommandExecutor} that executes the operations on a
+ * {@link GraphicsMagickWorkerPool} instead of forking a new process for every transform.
+ * <p/>
+ * Because the standard input of a batch worker is used for receiving commands, the original image and the
+ * result are exchanged using temporary files.
+ *
+ * @author Arne Vandamme
+ * @since 6.3.0
+ */
+@Slf4j
+public class GraphicsMagickPooledTransformCommandExecutor extends ImageMagickTransformCommandExecutor
+{
+	private final GraphicsMagickWorkerPool workerPool;
+
+	public GraphicsMagickPooledTransformCommandExecutor( @NonNull GraphicsMagickWorkerPool workerPool ) {
+		this.workerPool = workerPool;
+	}
+
+	@Override
+	public void execute( ImageTransformCommand command ) {
+		ImageType outputType = determineOutputType( command.getTransform().getOutputType(), command.getOriginalImageAttributes().getType() );
+		Path input = null;
+		Path output = null;
+		IMOperation op = null;
+
+		try {
+			input = Files.createTempFile( "gm-in-", ".tmp" );
+			output = Files.createTempFile( "gm-out-", "." + outputType.getExtension() );
+
+			try (InputStream is = command.getOriginalImage().getImageStream()) {
+				Files.copy( is, input, StandardCopyOption.REPLACE_EXISTING );
+			}
+
+			op = createIMOperation( command, input.toString(), output.toString() );
+
+			LOG.debug( "Executing IMOperation on worker pool: {}", op );
+
+			List<String> arguments = new ArrayList<>();
+			arguments.add( "convert" );
+			arguments.addAll( op.getCmdArgs() );
+			workerPool.execute( arguments );
+
+			SpillingImageSource result = command.createOutputImageSource( outputType );
+			try (OutputStream os = result.getOutputStream()) {
+				Files.copy( output, os );
+			}
+			command.setExecutionResult( result );
+		}
+		catch ( Exception e ) {
+			LOG.error( "Failed to execute IMOperation: {}", op, e );
+			throw e instanceof ImageModificationException ? (ImageModificationException) e : new ImageModificationException( e );
+		}
+		finally {
+			deleteQuietly( input );
+			deleteQuietly( output );
+		}
+	}
+
+	static void deleteQuietly( Path path ) {
+		if ( path != null ) {
+			try {
+				Files.deleteIfExists( path );
+			}
+			catch ( IOException ioe ) {
+				LOG.warn( "Unable to delete temporary file {}", path, ioe );
+			}
+		}
+	}
+}
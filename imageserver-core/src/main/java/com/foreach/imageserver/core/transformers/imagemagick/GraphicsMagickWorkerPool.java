@@ -0,0 +1,166 @@
+package com.foreach.imageserver.core.transformers.imagemagick;
+
+import com.foreach.imageserver.core.transformers.ImageModificationException;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.*;
+
+/**
+ * Pool of persistent {@code gm batch} worker processes.  Avoids the cost of forking a new GraphicsMagick
+ * process for every single command.  A worker is recycled after it has executed a maximum number of commands,
+ * or as soon as it crashed or exceeded the maximum execution time of a command.
+ * <p/>
+ * Workers are started lazily, the pool will never hold more than the configured number of processes.
+ *
+ * @author Arne Vandamme
+ * @since 6.3.0
+ */
+@Slf4j
+public class GraphicsMagickWorkerPool
+{
+	private final String executable;
+	private final BlockingQueue<GraphicsMagickBatchProcess> idleWorkers;
+	private final Semaphore permits;
+	private final ScheduledExecutorService watchdog;
+
+	/**
+	 * Maximum number of workers.
+	 */
+	@Getter
+	private final int poolSize;
+
+	/**
+	 * Number of commands a worker can execute before it gets replaced.
+	 */
+	@Getter
+	private final int maxJobsPerWorker;
+
+	/**
+	 * Number of milliseconds a single command is allowed to take, before the worker gets terminated.
+	 */
+	@Getter
+	private final long jobTimeoutMillis;
+
+	private volatile boolean shutdown;
+
+	public GraphicsMagickWorkerPool( String executable, int poolSize, int maxJobsPerWorker, long jobTimeoutMillis ) {
+		if ( poolSize < 1 ) {
+			throw new IllegalArgumentException( "GraphicsMagick worker pool requires at least 1 worker" );
+		}
+
+		this.executable = executable;
+		this.poolSize = poolSize;
+		this.maxJobsPerWorker = maxJobsPerWorker;
+		this.jobTimeoutMillis = jobTimeoutMillis;
+
+		idleWorkers = new ArrayBlockingQueue<>( poolSize );
+		permits = new Semaphore( poolSize, true );
+		watchdog = Executors.newSingleThreadScheduledExecutor( runnable -> {
+			Thread thread = new Thread( runnable, "gm-worker-watchdog" );
+			thread.setDaemon( true );
+			return thread;
+		} );
+	}
+
+	/**
+	 * Execute a single GraphicsMagick command on one of the workers.  Blocks until a worker is available.
+	 *
+	 * @param arguments command and arguments, eg. {@code convert in.png out.jpeg}
+	 * @return output lines written by the command
+	 */
+	public List<String> execute( List<String> arguments ) {
+		if ( shutdown ) {
+			throw new IllegalStateException( "GraphicsMagick worker pool has been shut down" );
+		}
+
+		try {
+			permits.acquire();
+		}
+		catch ( InterruptedException ie ) {
+			Thread.currentThread().interrupt();
+			throw new ImageModificationException( "Interrupted while waiting for a GraphicsMagick worker", ie );
+		}
+
+		try {
+			GraphicsMagickBatchProcess worker = borrowWorker();
+			ScheduledFuture<?> timeout = jobTimeoutMillis > 0
+					? watchdog.schedule( worker::destroy, jobTimeoutMillis, TimeUnit.MILLISECONDS ) : null;
+
+			try {
+				return worker.execute( arguments );
+			}
+			catch ( IOException ioe ) {
+				throw new ImageModificationException( "GraphicsMagick worker failed executing: " + arguments, ioe );
+			}
+			finally {
+				if ( timeout != null ) {
+					timeout.cancel( false );
+				}
+				returnWorker( worker );
+			}
+		}
+		finally {
+			permits.release();
+		}
+	}
+
+	/**
+	 * @return number of workers that are currently started but not executing a command
+	 */
+	public int getIdleWorkerCount() {
+		return idleWorkers.size();
+	}
+
+	/**
+	 * Stop all idle workers and reject any new commands.  Workers busy executing a command
+	 * will be stopped as soon as they are returned.
+	 */
+	public void shutdown() {
+		shutdown = true;
+
+		GraphicsMagickBatchProcess worker;
+		while ( ( worker = idleWorkers.poll() ) != null ) {
+			worker.stop();
+		}
+
+		watchdog.shutdownNow();
+	}
+
+	private GraphicsMagickBatchProcess borrowWorker() {
+		GraphicsMagickBatchProcess worker = idleWorkers.poll();
+
+		while ( worker != null && !worker.isAlive() ) {
+			LOG.debug( "Discarding GraphicsMagick worker that is no longer alive" );
+			worker = idleWorkers.poll();
+		}
+
+		if ( worker == null ) {
+			try {
+				LOG.debug( "Starting new GraphicsMagick worker: {} batch", executable );
+				worker = GraphicsMagickBatchProcess.start( executable );
+			}
+			catch ( IOException ioe ) {
+				throw new ImageModificationException( "Unable to start GraphicsMagick worker process", ioe );
+			}
+		}
+
+		return worker;
+	}
+
+	private void returnWorker( GraphicsMagickBatchProcess worker ) {
+		if ( !worker.isAlive() ) {
+			LOG.warn( "GraphicsMagick worker terminated after {} commands - it will be replaced", worker.getJobCount() );
+			worker.destroy();
+		}
+		else if ( shutdown || worker.getJobCount() >= maxJobsPerWorker ) {
+			LOG.debug( "Recycling GraphicsMagick worker after {} commands", worker.getJobCount() );
+			worker.stop();
+		}
+		else if ( !idleWorkers.offer( worker ) ) {
+			worker.stop();
+		}
+	}
+}
@@ -47,6 +47,8 @@ public class ImageMagickAttributesCommandExecutor extends AbstractOrderedImageCo
 		magickToImageType.put( "EPDF", ImageType.PDF );
 		magickToImageType.put( "TIFF", ImageType.TIFF );
 		magickToImageType.put( "BMP", ImageType.BMP );
+		magickToImageType.put( "WEBP", ImageType.WEBP );
+		magickToImageType.put( "AVIF", ImageType.AVIF );
 
 		// This seems to be a bug in GraphicsMagick.
 		magickToImageType.put( "MVG", ImageType.SVG );
@@ -79,7 +81,16 @@ public class ImageMagickAttributesCommandExecutor extends AbstractOrderedImageCo
 	}
 
 	private ImageType resolveImageType( Info imageInfo ) {
-		String reportedFormatString = imageInfo.getImageFormat();
+		return resolveImageType( imageInfo.getImageFormat() );
+	}
+
+	/**
+	 * Resolve the {@link ImageType} for the image format reported by ImageMagick.
+	 *
+	 * @param reportedFormatString format string, starting with the magick
+	 * @return image type
+	 */
+	protected ImageType resolveImageType( String reportedFormatString ) {
 		if ( StringUtils.isBlank( reportedFormatString ) ) {
 			throw new ImageModificationException( "The image format could not be determined." );
 		}
@@ -0,0 +1,135 @@
+package com.foreach.imageserver.core.transformers.imagemagick;
+
+import com.foreach.imageserver.core.business.ImageType;
+import com.foreach.imageserver.core.transformers.*;
+import com.foreach.imageserver.dto.ImageTransformDto;
+import com.github.geko444.im4java.core.ConvertCmd;
+import com.github.geko444.im4java.core.IMOperation;
+import com.github.geko444.im4java.process.Pipe;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Executes a batch of transforms using a single ImageMagick command.  The original image is read and decoded once
+ * into the {@code mpr:} memory register, every transform starts from a copy of that register and writes
+ * its own output image.  The output images are exchanged using temporary files.
+ * <p/>
+ * Scalable originals are not handled, as the density to read them with depends on the transform.
+ * Neither are transforms selecting a specific scene or dpi.  GraphicsMagick does not support
+ * image sequences in parentheses, this executor is only registered for ImageMagick.
+ *
+ * @author Arne Vandamme
+ * @see ImageMagickTransformCommandExecutor
+ * @since 6.3.0
+ */
+@Slf4j
+@RequiredArgsConstructor
+public class ImageMagickBatchTransformCommandExecutor extends AbstractOrderedImageCommandExecutor<ImageBatchTransformCommand>
+{
+	private static final String ORIGINAL_REGISTER = "mpr:original";
+
+	@NonNull
+	private final ImageMagickTransformCommandExecutor transformCommandExecutor;
+
+	@Override
+	public ImageTransformerPriority canExecute( ImageBatchTransformCommand command ) {
+		if ( command.getTransforms().isEmpty() || command.getOriginalImageAttributes().getType().isScalable() ) {
+			return ImageTransformerPriority.UNABLE;
+		}
+
+		for ( ImageTransformDto transform : command.getTransforms() ) {
+			if ( transform.getScene() != null || transform.getDpi() != null ) {
+				return ImageTransformerPriority.UNABLE;
+			}
+		}
+
+		return ImageTransformerPriority.FALLBACK;
+	}
+
+	@Override
+	public void execute( ImageBatchTransformCommand command ) {
+		List<Path> outputFiles = new ArrayList<>( command.getTransforms().size() );
+		List<ImageSource> outputs = new ArrayList<>( command.getTransforms().size() );
+		IMOperation op = null;
+
+		try {
+			for ( ImageTransformDto transform : command.getTransforms() ) {
+				outputFiles.add( Files.createTempFile( "im-batch-", "." + determineOutputType( command, transform ).getExtension() ) );
+			}
+
+			op = createIMOperation( command, outputFiles );
+
+			ConvertCmd cmd = new ConvertCmd();
+			try (InputStream is = command.getOriginalImage().getImageStream()) {
+				cmd.setInputProvider( new Pipe( is, null ) );
+
+				LOG.debug( "Executing IMOperation for a batch of {} transforms: {}", outputFiles.size(), op );
+
+				cmd.run( op );
+			}
+
+			for ( int i = 0; i < outputFiles.size(); i++ ) {
+				SpillingImageSource output = command.createOutputImageSource( determineOutputType( command, command.getTransforms().get( i ) ) );
+				outputs.add( output );
+				try (OutputStream os = output.getOutputStream()) {
+					Files.copy( outputFiles.get( i ), os );
+				}
+			}
+
+			command.setExecutionResult( outputs );
+		}
+		catch ( Exception e ) {
+			outputs.forEach( output -> ( (SpillingImageSource) output ).release() );
+			LOG.error( "Failed to execute IMOperation: {}", op, e );
+			throw new ImageModificationException( e );
+		}
+		finally {
+			outputFiles.forEach( GraphicsMagickPooledTransformCommandExecutor::deleteQuietly );
+		}
+	}
+
+	/**
+	 * Create the operation reading the original image from standard input and writing the result of every
+	 * transform to the output file at the same position.
+	 *
+	 * @param command     batch command
+	 * @param outputFiles to write the output images to
+	 * @return operation
+	 */
+	public IMOperation createIMOperation( @NonNull ImageBatchTransformCommand command, @NonNull List<Path> outputFiles ) {
+		ImageAttributes imageAttributes = command.getOriginalImageAttributes();
+
+		IMOperation op = new IMOperation();
+		transformCommandExecutor.applyFilter( op );
+		op.addImage( "-" );
+		op.write( ORIGINAL_REGISTER );
+
+		for ( int i = 0; i < outputFiles.size(); i++ ) {
+			ImageTransformDto transform = command.getTransforms().get( i );
+
+			op.openOperation();
+			op.addImage( ORIGINAL_REGISTER );
+			transformCommandExecutor.applyTransform( op, imageAttributes, transform, 1d );
+			op.write( determineOutputType( command, transform ).getExtension() + ":" + outputFiles.get( i ) );
+			op.closeOperation();
+
+			// output image is no longer required
+			op.p_delete();
+		}
+
+		op.addImage( "null:" );
+		return op;
+	}
+
+	private ImageType determineOutputType( ImageBatchTransformCommand command, ImageTransformDto transform ) {
+		return transformCommandExecutor.determineOutputType( transform.getOutputType(), command.getOriginalImageAttributes().getType() );
+	}
+}
@@ -1,7 +1,9 @@
 package com.foreach.imageserver.core.transformers.imagemagick;
 
 import com.github.geko444.im4java.process.ProcessStarter;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
@@ -17,6 +19,9 @@ import java.io.File;
 @EnableConfigurationProperties(ImageMagickSettings.class)
 class ImageMagickConfiguration
 {
+	private static final String WORKER_POOL_ENABLED = "${imageServerCore.transformers.imageMagick.useGraphicsMagick:false} "
+			+ "&& ${imageServerCore.transformers.imageMagick.workerPoolSize:0} > 0";
+
 	@Autowired
 	public void configureImageMagick( ImageMagickSettings settings ) {
 		// configure global settings required by the third-party library
@@ -26,20 +31,47 @@ class ImageMagickConfiguration
 		}
 	}
 
+	@Bean(destroyMethod = "shutdown")
+	@ConditionalOnExpression(WORKER_POOL_ENABLED)
+	GraphicsMagickWorkerPool graphicsMagickWorkerPool( ImageMagickSettings settings ) {
+		return new GraphicsMagickWorkerPool(
+				new File( settings.getPath(), "gm" ).getAbsolutePath(),
+				settings.getWorkerPoolSize(),
+				settings.getWorkerMaxJobs(),
+				settings.getWorkerTimeout() * 1000L
+		);
+	}
+
 	@Bean
-	ImageMagickTransformCommandExecutor imageMagickTransformCommandExecutor( ImageMagickSettings settings ) {
-		ImageMagickTransformCommandExecutor transformCommandExecutor = new ImageMagickTransformCommandExecutor();
+	ImageMagickTransformCommandExecutor imageMagickTransformCommandExecutor( ImageMagickSettings settings,
+	                                                                         ObjectProvider<GraphicsMagickWorkerPool> workerPool ) {
+		GraphicsMagickWorkerPool pool = workerPool.getIfAvailable();
+		ImageMagickTransformCommandExecutor transformCommandExecutor
+				= pool != null ? new GraphicsMagickPooledTransformCommandExecutor( pool ) : new ImageMagickTransformCommandExecutor();
 		transformCommandExecutor.setDefaultQuality( settings.getDefaultQuality() );
 		transformCommandExecutor.setDefaultDpi( settings.getDefaultDpi() );
 		transformCommandExecutor.setFilter( settings.getFilter() );
 		transformCommandExecutor.setUseThumbnail( settings.isUseThumbnail() );
+		transformCommandExecutor.getOutputTypes().addAll( ImageMagickFormats.detectOptionalOutputTypes( settings ) );
 		transformCommandExecutor.setOrder( settings.getPriority() );
 		return transformCommandExecutor;
 	}
 
 	@Bean
-	ImageMagickAttributesCommandExecutor imageMagickAttributesCommandExecutor( ImageMagickSettings settings ) {
-		ImageMagickAttributesCommandExecutor attributesCommandExecutor = new ImageMagickAttributesCommandExecutor();
+	@ConditionalOnProperty(value = "imageServerCore.transformers.imageMagick.useGraphicsMagick", havingValue = "false", matchIfMissing = true)
+	ImageMagickBatchTransformCommandExecutor imageMagickBatchTransformCommandExecutor( ImageMagickTransformCommandExecutor transformCommandExecutor,
+	                                                                                   ImageMagickSettings settings ) {
+		ImageMagickBatchTransformCommandExecutor batchTransformCommandExecutor = new ImageMagickBatchTransformCommandExecutor( transformCommandExecutor );
+		batchTransformCommandExecutor.setOrder( settings.getPriority() );
+		return batchTransformCommandExecutor;
+	}
+
+	@Bean
+	ImageMagickAttributesCommandExecutor imageMagickAttributesCommandExecutor( ImageMagickSettings settings,
+	                                                                           ObjectProvider<GraphicsMagickWorkerPool> workerPool ) {
+		GraphicsMagickWorkerPool pool = workerPool.getIfAvailable();
+		ImageMagickAttributesCommandExecutor attributesCommandExecutor
+				= pool != null ? new GraphicsMagickPooledAttributesCommandExecutor( pool ) : new ImageMagickAttributesCommandExecutor();
 		attributesCommandExecutor.setOrder( settings.getPriority() );
 		return attributesCommandExecutor;
 	}
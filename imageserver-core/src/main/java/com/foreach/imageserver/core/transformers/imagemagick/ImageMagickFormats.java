@@ -0,0 +1,105 @@
+package com.foreach.imageserver.core.transformers.imagemagick;
+
+import com.foreach.imageserver.core.business.ImageType;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang3.StringUtils;
+
+import java.io.File;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Detects which of the output types that depend on optional delegate libraries (WebP, AVIF)
+ * can be written by the installed ImageMagick or GraphicsMagick, using {@code convert -list format}.
+ *
+ * @author Arne Vandamme
+ * @since 6.3.0
+ */
+@Slf4j
+final class ImageMagickFormats
+{
+	/**
+	 * Output types that are only available if the installation has been built with support for them.
+	 */
+	static final Set<ImageType> OPTIONAL_OUTPUT_TYPES = Collections.unmodifiableSet( EnumSet.of( ImageType.WEBP, ImageType.AVIF ) );
+
+	private static final long LIST_FORMAT_TIMEOUT_SECONDS = 10;
+
+	private ImageMagickFormats() {
+	}
+
+	/**
+	 * @param settings ImageMagick configuration
+	 * @return optional output types that can be written, empty if they could not be detected
+	 */
+	static Set<ImageType> detectOptionalOutputTypes( @NonNull ImageMagickSettings settings ) {
+		String[] command = settings.getUseGraphicsMagick()
+				? new String[] { new File( settings.getPath(), "gm" ).getAbsolutePath(), "convert", "-list", "format" }
+				: new String[] { new File( settings.getPath(), "convert" ).getAbsolutePath(), "-list", "format" };
+
+		try {
+			Process process = new ProcessBuilder( command ).redirectErrorStream( true ).start();
+			String formats;
+			try (InputStream is = process.getInputStream()) {
+				formats = IOUtils.toString( is, StandardCharsets.UTF_8 );
+			}
+
+			if ( !process.waitFor( LIST_FORMAT_TIMEOUT_SECONDS, TimeUnit.SECONDS ) ) {
+				process.destroyForcibly();
+				LOG.warn( "Listing the supported formats took too long, not using any of {}", OPTIONAL_OUTPUT_TYPES );
+				return EnumSet.noneOf( ImageType.class );
+			}
+
+			Set<ImageType> outputTypes = parseOptionalOutputTypes( formats );
+			LOG.info( "Optional output types supported by {}: {}", command[0], outputTypes );
+			return outputTypes;
+		}
+		catch ( Exception e ) {
+			LOG.warn( "Unable to list the supported formats, not using any of {}", OPTIONAL_OUTPUT_TYPES, e );
+			return EnumSet.noneOf( ImageType.class );
+		}
+	}
+
+	/**
+	 * Parses the output of {@code convert -list format}.  Every format is listed on a separate line holding
+	 * the format name (optionally followed by an asterisk), the mode ({@code rw+}) and the description.
+	 * GraphicsMagick adds an extra column between the format name and the mode.
+	 *
+	 * @param formats output of the list format command
+	 * @return optional output types that are listed as writable
+	 */
+	static Set<ImageType> parseOptionalOutputTypes( @NonNull String formats ) {
+		Set<ImageType> outputTypes = EnumSet.noneOf( ImageType.class );
+
+		for ( String line : StringUtils.split( formats, '\n' ) ) {
+			String[] columns = StringUtils.split( line.trim() );
+			if ( columns.length < 2 ) {
+				continue;
+			}
+
+			String format = StringUtils.removeEnd( columns[0], "*" );
+			for ( ImageType outputType : OPTIONAL_OUTPUT_TYPES ) {
+				if ( outputType.name().equalsIgnoreCase( format ) && isWritable( columns ) ) {
+					outputTypes.add( outputType );
+				}
+			}
+		}
+
+		return outputTypes;
+	}
+
+	private static boolean isWritable( String[] columns ) {
+		for ( int i = 1; i < Math.min( columns.length, 3 ); i++ ) {
+			if ( columns[i].matches( "[r-][w-][+-]" ) ) {
+				return columns[i].charAt( 1 ) == 'w';
+			}
+		}
+		return false;
+	}
+}
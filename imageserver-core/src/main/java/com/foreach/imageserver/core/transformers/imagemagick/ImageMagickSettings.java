@@ -53,4 +53,21 @@ public class ImageMagickSettings
 	 * when resizing to a smaller image? Thumbnail is faster but might result in lower quality images.
 	 */
 	private boolean useThumbnail = false;
+
+	/**
+	 * Number of persistent GraphicsMagick worker processes ({@code gm batch}) that should execute the commands.
+	 * Only applies when {@link #useGraphicsMagick} is {@code true}.  If 0, a new process will be forked for every command.
+	 */
+	private int workerPoolSize = 0;
+
+	/**
+	 * Number of commands a single worker process can execute before it is replaced by a new process.
+	 */
+	private int workerMaxJobs = 500;
+
+	/**
+	 * Maximum number of seconds a single command can take on a worker process.
+	 * If exceeded, the worker process is terminated and the command fails.
+	 */
+	private int workerTimeout = 300;
 }
@@ -15,9 +15,11 @@ import lombok.extern.slf4j.Slf4j;
 import com.github.geko444.im4java.core.ConvertCmd;
 import com.github.geko444.im4java.core.IMOperation;
 import com.github.geko444.im4java.process.Pipe;
-import java.io.ByteArrayOutputStream;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.EnumSet;
 import java.util.Optional;
+import java.util.Set;
 
 /**
  * Handles image transforms using ImageMagick.
@@ -26,7 +28,7 @@ import java.util.Optional;
  * @since 5.0.0
  */
 @Slf4j
-public class ImageMagickTransformCommandExecutor extends AbstractOrderedImageCommandExecutor<ImageTransformCommand>
+public class ImageMagickTransformCommandExecutor extends AbstractOrderedImageCommandExecutor<ImageTransformCommand> implements ImageOutputTypeSupport
 {
 	private static final int MAX_DPI = 1200;
 	private static final int DPI_STEP = 300;
@@ -65,6 +67,19 @@ public class ImageMagickTransformCommandExecutor extends AbstractOrderedImageCom
 	@Getter
 	private boolean useThumbnail = false;
 
+	/**
+	 * Output types that can be written.  Types requiring an optional delegate library (WebP, AVIF)
+	 * should only be added if the installation supports them.
+	 */
+	@Setter
+	@Getter
+	private Set<ImageType> outputTypes = EnumSet.complementOf( EnumSet.copyOf( ImageMagickFormats.OPTIONAL_OUTPUT_TYPES ) );
+
+	@Override
+	public boolean supportsOutputType( ImageType outputType ) {
+		return outputTypes.contains( outputType );
+	}
+
 	@Override
 	public ImageTransformerPriority canExecute( ImageTransformCommand command ) {
 		return ImageTransformerPriority.FALLBACK;
@@ -75,33 +90,46 @@ public class ImageMagickTransformCommandExecutor extends AbstractOrderedImageCom
 		ConvertCmd cmd = new ConvertCmd();
 		IMOperation op = createIMOperation( command );
 
+		ImageType outputType = determineOutputType( command.getTransform().getOutputType(), command.getOriginalImageAttributes().getType() );
+		SpillingImageSource output = command.createOutputImageSource( outputType );
+
 		try (InputStream is = command.getOriginalImage().getImageStream()) {
-			try (ByteArrayOutputStream os = new ByteArrayOutputStream()) {
+			try (OutputStream os = output.getOutputStream()) {
 				cmd.setInputProvider( new Pipe( is, null ) );
 				cmd.setOutputConsumer( new Pipe( null, os ) );
 
 				LOG.debug( "Executing IMOperation: {}", op.toString() );
 
 				cmd.run( op );
-
-				byte[] bytes = os.toByteArray();
-				ImageType outputType = determineOutputType( command.getTransform().getOutputType(), command.getOriginalImageAttributes().getType() );
-				command.setExecutionResult( new SimpleImageSource( outputType, bytes ) );
 			}
 
+			command.setExecutionResult( output );
 		}
 		catch ( Exception e ) {
+			output.release();
 			LOG.error( "Failed to execute IMOperation: {}", op.toString(), e );
 			throw new ImageModificationException( e );
 		}
 	}
 
 	public IMOperation createIMOperation( ImageTransformCommand command ) {
+		return createIMOperation( command, "-", "-" );
+	}
+
+	/**
+	 * Create the operation for a transform command, reading the original image from the {@code input}
+	 * and writing the result to {@code output}.  Both will be {@code -} when using standard input and output.
+	 *
+	 * @param command to create the operation for
+	 * @param input   name of the input image
+	 * @param output  name of the output image, will be prefixed with the output format
+	 * @return operation
+	 */
+	protected IMOperation createIMOperation( ImageTransformCommand command, String input, String output ) {
 		ImageAttributes imageAttributes = command.getOriginalImageAttributes();
 		ImageTransformDto transform = command.getTransform();
 
 		ImageType outputType = determineOutputType( transform.getOutputType(), imageAttributes.getType() );
-		ColorSpaceDto requestedColorSpace = transform.getColorSpace();
 
 		IMOperation op = new IMOperation();
 		applyFilter( op );
@@ -113,7 +141,25 @@ public class ImageMagickTransformCommandExecutor extends AbstractOrderedImageCom
 		}
 
 		Integer scene = determineSceneToUse( transform.getScene(), imageAttributes, outputType );
-		op.addImage( "-" + ( scene != null ? "[" + scene + "]" : "" ) );
+		op.addImage( input + ( scene != null ? "[" + scene + "]" : "" ) );
+
+		applyTransform( op, imageAttributes, transform, dpiFactor );
+
+		op.addImage( outputType.getExtension() + ":" + output );
+		return op;
+	}
+
+	/**
+	 * Add the operators of a transform on the image that has been read, up until writing the output image.
+	 *
+	 * @param op              operation to add the operators to
+	 * @param imageAttributes attributes of the image that has been read
+	 * @param transform       to apply
+	 * @param dpiFactor       factor the image has been scaled with when it was read
+	 */
+	void applyTransform( IMOperation op, ImageAttributes imageAttributes, ImageTransformDto transform, double dpiFactor ) {
+		ImageType outputType = determineOutputType( transform.getOutputType(), imageAttributes.getType() );
+		ColorSpaceDto requestedColorSpace = transform.getColorSpace();
 
 		if ( transform.getCrop() != null ) {
 			Crop crop = applyDotsPerInch( DtoUtil.toBusiness( transform.getCrop() ), dpiFactor );
@@ -129,9 +175,6 @@ public class ImageMagickTransformCommandExecutor extends AbstractOrderedImageCom
 		op.p_profile( "*" );
 		op.strip();
 		op.quality( 1d * ( transform.getQuality() != null ? transform.getQuality() : defaultQuality ) );
-
-		op.addImage( outputType.getExtension() + ":-" );
-		return op;
 	}
 
 	private Dimensions determineOutputDimensions( Integer width, Integer height, Dimensions originalDimensions ) {
@@ -141,7 +184,7 @@ public class ImageMagickTransformCommandExecutor extends AbstractOrderedImageCom
 		return new Dimensions( width != null ? width : 0, height != null ? height : 0 );
 	}
 
-	private void applyFilter( IMOperation op ) {
+	void applyFilter( IMOperation op ) {
 		if ( filter != null ) {
 			op.filter( filter );
 		}
@@ -225,7 +268,7 @@ public class ImageMagickTransformCommandExecutor extends AbstractOrderedImageCom
 		}
 	}
 
-	private ImageType determineOutputType( ImageTypeDto requestedOutputType, ImageType original ) {
+	protected ImageType determineOutputType( ImageTypeDto requestedOutputType, ImageType original ) {
 		return Optional.ofNullable( requestedOutputType != null ? DtoUtil.toBusiness( requestedOutputType ) : original ).orElse( original );
 	}
 
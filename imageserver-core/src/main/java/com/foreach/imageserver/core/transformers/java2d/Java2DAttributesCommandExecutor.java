@@ -0,0 +1,79 @@
+package com.foreach.imageserver.core.transformers.java2d;
+
+import com.foreach.imageserver.core.business.Dimensions;
+import com.foreach.imageserver.core.business.ImageType;
+import com.foreach.imageserver.core.transformers.AbstractOrderedImageCommandExecutor;
+import com.foreach.imageserver.core.transformers.ImageAttributes;
+import com.foreach.imageserver.core.transformers.ImageAttributesCommand;
+import com.foreach.imageserver.core.transformers.ImageTransformerPriority;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.MemoryCacheImageInputStream;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Resolves {@link ImageAttributes} in-process using the {@link ImageIO} readers available in the JVM.
+ * Only the image header is read, except for formats that can contain multiple scenes.
+ * <p/>
+ * Images in a format that is not supported by the available readers are declined,
+ * leaving them for the next executor (usually ImageMagick).
+ *
+ * @author Arne Vandamme
+ * @since 6.3.0
+ */
+@Slf4j
+public class Java2DAttributesCommandExecutor extends AbstractOrderedImageCommandExecutor<ImageAttributesCommand>
+{
+	private final static Map<String, ImageType> formatToImageType = new HashMap<>( 8 );
+
+	static {
+		formatToImageType.put( "jpeg", ImageType.JPEG );
+		formatToImageType.put( "jpg", ImageType.JPEG );
+		formatToImageType.put( "png", ImageType.PNG );
+		formatToImageType.put( "gif", ImageType.GIF );
+		formatToImageType.put( "bmp", ImageType.BMP );
+		formatToImageType.put( "tif", ImageType.TIFF );
+		formatToImageType.put( "tiff", ImageType.TIFF );
+	}
+
+	@Override
+	public ImageTransformerPriority canExecute( ImageAttributesCommand command ) {
+		return ImageTransformerPriority.PREFERRED;
+	}
+
+	@Override
+	public void execute( ImageAttributesCommand command ) {
+		try (InputStream stream = command.getImageStream()) {
+			try (ImageInputStream imageInputStream = new MemoryCacheImageInputStream( stream )) {
+				Iterator<ImageReader> readers = ImageIO.getImageReaders( imageInputStream );
+
+				if ( readers.hasNext() ) {
+					ImageReader reader = readers.next();
+
+					try {
+						reader.setInput( imageInputStream );
+						ImageType imageType = formatToImageType.get( reader.getFormatName().toLowerCase() );
+
+						if ( imageType != null ) {
+							Dimensions dimensions = new Dimensions( reader.getWidth( 0 ), reader.getHeight( 0 ) );
+							int sceneCount = ImageType.GIF == imageType || ImageType.TIFF == imageType ? reader.getNumImages( true ) : 1;
+							command.setExecutionResult( new ImageAttributes( imageType, dimensions, sceneCount ) );
+						}
+					}
+					finally {
+						reader.dispose();
+					}
+				}
+			}
+		}
+		catch ( Exception e ) {
+			LOG.debug( "Unable to determine image attributes using ImageIO", e );
+		}
+	}
+}
@@ -0,0 +1,64 @@
+package com.foreach.imageserver.core.transformers.java2d;
+
+import com.foreach.imageserver.core.transformers.*;
+import com.foreach.imageserver.dto.ImageTransformDto;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Executes a batch of transforms in-process, decoding the original image only once and creating
+ * every output from the same decoded raster.  Only handles a batch if the {@link Java2DTransformCommandExecutor}
+ * supports every single transform of it, otherwise the batch is left to another executor.
+ *
+ * @author Arne Vandamme
+ * @see Java2DTransformCommandExecutor
+ * @since 6.3.0
+ */
+@Slf4j
+@RequiredArgsConstructor
+public class Java2DBatchTransformCommandExecutor extends AbstractOrderedImageCommandExecutor<ImageBatchTransformCommand>
+{
+	@NonNull
+	private final Java2DTransformCommandExecutor transformCommandExecutor;
+
+	@Override
+	public ImageTransformerPriority canExecute( ImageBatchTransformCommand command ) {
+		for ( ImageTransformDto transform : command.getTransforms() ) {
+			if ( transformCommandExecutor.canExecute( command.toTransformCommand( transform ) ) != ImageTransformerPriority.PREFERRED ) {
+				return ImageTransformerPriority.UNABLE;
+			}
+		}
+
+		return ImageTransformerPriority.PREFERRED;
+	}
+
+	@Override
+	public void execute( ImageBatchTransformCommand command ) {
+		try {
+			BufferedImage original = transformCommandExecutor.decode( command.getOriginalImage() );
+
+			if ( original == null ) {
+				LOG.debug( "Original image could not be decoded using ImageIO - declining batch of {} transforms", command.getTransforms().size() );
+				return;
+			}
+
+			List<ImageSource> outputs = new ArrayList<>( command.getTransforms().size() );
+			for ( ImageTransformDto transform : command.getTransforms() ) {
+				outputs.add( transformCommandExecutor.transform(
+						original, command.getOriginalImageAttributes().getType(), transform, command::createOutputImageSource
+				) );
+			}
+
+			command.setExecutionResult( outputs );
+		}
+		catch ( Exception e ) {
+			LOG.error( "Failed to execute Java2D batch transform: {}", command.getTransforms(), e );
+			throw new ImageModificationException( e );
+		}
+	}
+}
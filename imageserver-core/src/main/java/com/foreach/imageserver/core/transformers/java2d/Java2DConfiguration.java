@@ -0,0 +1,40 @@
+package com.foreach.imageserver.core.transformers.java2d;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * @author Arne Vandamme
+ * @since 6.3.0
+ */
+@Configuration
+@ConditionalOnProperty(value = "image-server-core.transformers.java2d.enabled", havingValue = "true")
+@EnableConfigurationProperties(Java2DSettings.class)
+class Java2DConfiguration
+{
+	@Bean
+	Java2DTransformCommandExecutor java2DTransformCommandExecutor( Java2DSettings settings ) {
+		Java2DTransformCommandExecutor transformCommandExecutor = new Java2DTransformCommandExecutor();
+		transformCommandExecutor.setDefaultQuality( settings.getDefaultQuality() );
+		transformCommandExecutor.setMaxImagePixels( settings.getMaxImagePixels() );
+		transformCommandExecutor.setOrder( settings.getPriority() );
+		return transformCommandExecutor;
+	}
+
+	@Bean
+	Java2DBatchTransformCommandExecutor java2DBatchTransformCommandExecutor( Java2DTransformCommandExecutor transformCommandExecutor,
+	                                                                         Java2DSettings settings ) {
+		Java2DBatchTransformCommandExecutor batchTransformCommandExecutor = new Java2DBatchTransformCommandExecutor( transformCommandExecutor );
+		batchTransformCommandExecutor.setOrder( settings.getPriority() );
+		return batchTransformCommandExecutor;
+	}
+
+	@Bean
+	Java2DAttributesCommandExecutor java2DAttributesCommandExecutor( Java2DSettings settings ) {
+		Java2DAttributesCommandExecutor attributesCommandExecutor = new Java2DAttributesCommandExecutor();
+		attributesCommandExecutor.setOrder( settings.getPriority() );
+		return attributesCommandExecutor;
+	}
+}
@@ -0,0 +1,35 @@
+package com.foreach.imageserver.core.transformers.java2d;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * @author Arne Vandamme
+ * @since 6.3.0
+ */
+@Data
+@ConfigurationProperties(prefix = "image-server-core.transformers.java2d")
+@SuppressWarnings("WeakerAccess")
+public class Java2DSettings
+{
+	/**
+	 * True if the in-process Java2D executors should be created.
+	 */
+	private boolean enabled;
+
+	/**
+	 * Priority for the Java2D executors.
+	 */
+	private int priority = 0;
+
+	/**
+	 * Default quality setting that should be used when writing lossy formats.
+	 */
+	private int defaultQuality = 85;
+
+	/**
+	 * Maximum number of pixels of an original image that will be processed in the JVM.
+	 * Larger images are left to the other executors, as a decoded image requires 4 bytes per pixel.
+	 */
+	private long maxImagePixels = 25_000_000L;
+}
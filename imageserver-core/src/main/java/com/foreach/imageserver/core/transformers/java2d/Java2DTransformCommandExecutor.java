@@ -0,0 +1,322 @@
+package com.foreach.imageserver.core.transformers.java2d;
+
+import com.foreach.imageserver.core.business.ImageType;
+import com.foreach.imageserver.core.services.DtoUtil;
+import com.foreach.imageserver.core.transformers.*;
+import com.foreach.imageserver.dto.ColorDto;
+import com.foreach.imageserver.dto.CropDto;
+import com.foreach.imageserver.dto.ImageTransformDto;
+import com.foreach.imageserver.dto.ImageTypeDto;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import javax.imageio.stream.MemoryCacheImageOutputStream;
+import java.awt.*;
+import java.awt.color.ColorSpace;
+import java.awt.image.BufferedImage;
+import java.awt.image.WritableRaster;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.EnumSet;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+
+/**
+ * Handles the most common image transforms in-process using ImageIO and Java2D, avoiding the
+ * cost of an external process.  Only single scene JPEG, PNG and GIF images are supported, and only for
+ * transforms consisting of a crop, a resize, a background color, quality and output type.
+ * Anything else is left to another executor (usually ImageMagick).
+ * <p/>
+ * The output is intended to be visually equivalent to the ImageMagick output of the same transform:
+ * transparency is replaced by a white background if the output type does not support it, and metadata is never written.
+ * Downscaling is done in multiple steps, halving the dimensions until the requested size is reached.
+ * <p/>
+ * If the original image cannot be decoded (eg. a CMYK JPEG), the command is declined during execution.
+ *
+ * @author Arne Vandamme
+ * @since 6.3.0
+ */
+@Slf4j
+public class Java2DTransformCommandExecutor extends AbstractOrderedImageCommandExecutor<ImageTransformCommand> implements ImageOutputTypeSupport
+{
+	private static final Set<ImageType> SUPPORTED_TYPES = EnumSet.of( ImageType.JPEG, ImageType.PNG, ImageType.GIF );
+	private static final Pattern HEX_COLOR = Pattern.compile( "#[0-9a-f]{6}" );
+
+	private static final Color ALPHA_BACKGROUND = Color.WHITE;
+
+	/**
+	 * Default quality setting that should be used when doing transforms.
+	 * Quality can be specified on {@link ImageTransformDto} to override this default.
+	 */
+	@Setter
+	@Getter
+	private int defaultQuality = 85;
+
+	/**
+	 * Maximum number of pixels the original image can have for this executor to handle the transform.
+	 */
+	@Setter
+	@Getter
+	private long maxImagePixels = 25_000_000L;
+
+	@Override
+	public boolean supportsOutputType( ImageType outputType ) {
+		return SUPPORTED_TYPES.contains( outputType );
+	}
+
+	@Override
+	public ImageTransformerPriority canExecute( ImageTransformCommand command ) {
+		ImageAttributes attributes = command.getOriginalImageAttributes();
+		ImageTransformDto transform = command.getTransform();
+
+		if ( !SUPPORTED_TYPES.contains( attributes.getType() ) || attributes.getSceneCount() > 1 ) {
+			return ImageTransformerPriority.UNABLE;
+		}
+
+		if ( attributes.getDimensions() == null
+				|| (long) attributes.getDimensions().getWidth() * attributes.getDimensions().getHeight() > maxImagePixels ) {
+			return ImageTransformerPriority.UNABLE;
+		}
+
+		if ( !SUPPORTED_TYPES.contains( determineOutputType( transform.getOutputType(), attributes.getType() ) ) ) {
+			return ImageTransformerPriority.UNABLE;
+		}
+
+		if ( transform.getColorSpace() != null || transform.getAlphaColor() != null
+				|| ( transform.getScene() != null && transform.getScene() > 0 ) ) {
+			return ImageTransformerPriority.UNABLE;
+		}
+
+		if ( transform.getBackgroundColor() != null && !HEX_COLOR.matcher( transform.getBackgroundColor().getValue() ).matches() ) {
+			return ImageTransformerPriority.UNABLE;
+		}
+
+		return ImageTransformerPriority.PREFERRED;
+	}
+
+	@Override
+	public void execute( ImageTransformCommand command ) {
+		ImageTransformDto transform = command.getTransform();
+
+		try {
+			BufferedImage original = decode( command.getOriginalImage() );
+
+			if ( original == null ) {
+				LOG.debug( "Original image could not be decoded using ImageIO - declining transform {}", transform );
+				return;
+			}
+
+			command.setExecutionResult( transform( original, command.getOriginalImageAttributes().getType(), transform, command::createOutputImageSource ) );
+		}
+		catch ( Exception e ) {
+			LOG.error( "Failed to execute Java2D transform: {}", transform, e );
+			throw new ImageModificationException( e );
+		}
+	}
+
+	/**
+	 * Decode the image source into a raster that can be used for {@link #transform(BufferedImage, ImageType, ImageTransformDto, Function)}.
+	 *
+	 * @param imageSource to decode
+	 * @return decoded image or {@code null} if the image could not be decoded using ImageIO
+	 */
+	BufferedImage decode( ImageSource imageSource ) throws IOException {
+		try (InputStream is = imageSource.getImageStream()) {
+			return normalizeGrayscale( ImageIO.read( is ) );
+		}
+		catch ( IOException ioe ) {
+			// eg. unsupported color model
+			LOG.debug( "Unable to read image using ImageIO", ioe );
+			return null;
+		}
+	}
+
+	/**
+	 * Apply a single transform to a decoded image and encode the result.  The decoded image itself is not modified
+	 * and can be used for other transforms.
+	 *
+	 * @param original     decoded original image
+	 * @param originalType type of the original image
+	 * @param transform    to apply
+	 * @param output       creates the image source the result should be encoded to, for the output type
+	 * @return encoded result
+	 */
+	ImageSource transform( BufferedImage original,
+	                       ImageType originalType,
+	                       ImageTransformDto transform,
+	                       Function<ImageType, SpillingImageSource> output ) throws IOException {
+		ImageType outputType = determineOutputType( transform.getOutputType(), originalType );
+
+		BufferedImage image = crop( original, transform.getCrop() );
+		image = applyBackgroundColor( image, transform.getBackgroundColor(), outputType );
+		image = resize( image, transform.getWidth(), transform.getHeight() );
+
+		int quality = transform.getQuality() != null ? transform.getQuality() : defaultQuality;
+		SpillingImageSource result = output.apply( outputType );
+		try (OutputStream os = result.getOutputStream()) {
+			write( image, outputType, quality, os );
+		}
+		return result;
+	}
+
+	/**
+	 * ImageIO decodes grayscale images with an alpha channel (or a non-standard bit depth) using a linear gray
+	 * color space, which Java2D brightens when drawing it.  Convert those to a regular ARGB image using the raw samples,
+	 * like ImageMagick does.  The standard gray image types are drawn correctly and are returned as is.
+	 */
+	static BufferedImage normalizeGrayscale( BufferedImage image ) {
+		if ( image == null
+				|| image.getColorModel().getColorSpace().getType() != ColorSpace.TYPE_GRAY
+				|| image.getType() == BufferedImage.TYPE_BYTE_GRAY
+				|| image.getType() == BufferedImage.TYPE_USHORT_GRAY ) {
+			return image;
+		}
+
+		WritableRaster raster = image.getRaster();
+		boolean hasAlpha = image.getColorModel().hasAlpha();
+		double grayScale = 255d / ( ( 1 << raster.getSampleModel().getSampleSize( 0 ) ) - 1 );
+		double alphaScale = hasAlpha ? 255d / ( ( 1 << raster.getSampleModel().getSampleSize( 1 ) ) - 1 ) : 0;
+
+		BufferedImage argb = new BufferedImage( image.getWidth(), image.getHeight(), BufferedImage.TYPE_INT_ARGB );
+
+		for ( int y = 0; y < image.getHeight(); y++ ) {
+			for ( int x = 0; x < image.getWidth(); x++ ) {
+				int gray = (int) Math.round( raster.getSample( x, y, 0 ) * grayScale );
+				int alpha = hasAlpha ? (int) Math.round( raster.getSample( x, y, 1 ) * alphaScale ) : 255;
+				argb.setRGB( x, y, ( alpha << 24 ) | ( gray << 16 ) | ( gray << 8 ) | gray );
+			}
+		}
+
+		return argb;
+	}
+
+	private BufferedImage crop( BufferedImage image, CropDto crop ) {
+		if ( crop == null ) {
+			return image;
+		}
+
+		Rectangle bounds = new Rectangle( crop.getX(), crop.getY(), crop.getWidth(), crop.getHeight() )
+				.intersection( new Rectangle( image.getWidth(), image.getHeight() ) );
+
+		if ( bounds.isEmpty() ) {
+			throw new ImageModificationException( "Crop is outside of the image boundaries: " + crop );
+		}
+
+		return image.getSubimage( bounds.x, bounds.y, bounds.width, bounds.height );
+	}
+
+	private BufferedImage applyBackgroundColor( BufferedImage image, ColorDto requestedColor, ImageType outputType ) {
+		boolean hasAlpha = image.getColorModel().hasAlpha();
+
+		if ( requestedColor != null ) {
+			return flatten( image, Color.decode( requestedColor.getValue() ) );
+		}
+
+		if ( hasAlpha && !outputType.hasTransparency() ) {
+			return flatten( image, ALPHA_BACKGROUND );
+		}
+
+		return image;
+	}
+
+	private BufferedImage flatten( BufferedImage image, Color background ) {
+		BufferedImage flattened = new BufferedImage( image.getWidth(), image.getHeight(), BufferedImage.TYPE_INT_RGB );
+		Graphics2D graphics = flattened.createGraphics();
+		try {
+			graphics.setColor( background );
+			graphics.fillRect( 0, 0, image.getWidth(), image.getHeight() );
+			graphics.drawImage( image, 0, 0, null );
+		}
+		finally {
+			graphics.dispose();
+		}
+		return flattened;
+	}
+
+	/**
+	 * Resize the image to the requested dimensions.  If only one dimension is specified, the other one
+	 * is calculated according to the aspect ratio of the image.  Downscaling happens in steps of maximum
+	 * half the current size, using bilinear interpolation, only the last step uses bicubic interpolation.
+	 */
+	static BufferedImage resize( BufferedImage image, Integer width, Integer height ) {
+		if ( width == null && height == null ) {
+			return image;
+		}
+
+		int targetWidth = width != null ? width : Math.max( 1, (int) Math.round( (double) height * image.getWidth() / image.getHeight() ) );
+		int targetHeight = height != null ? height : Math.max( 1, (int) Math.round( (double) width * image.getHeight() / image.getWidth() ) );
+
+		BufferedImage current = image;
+		int currentWidth = image.getWidth();
+		int currentHeight = image.getHeight();
+
+		while ( currentWidth != targetWidth || currentHeight != targetHeight ) {
+			currentWidth = currentWidth > targetWidth ? Math.max( currentWidth / 2, targetWidth ) : targetWidth;
+			currentHeight = currentHeight > targetHeight ? Math.max( currentHeight / 2, targetHeight ) : targetHeight;
+
+			boolean lastStep = currentWidth == targetWidth && currentHeight == targetHeight;
+			current = scale( current, currentWidth, currentHeight,
+			                 lastStep ? RenderingHints.VALUE_INTERPOLATION_BICUBIC : RenderingHints.VALUE_INTERPOLATION_BILINEAR );
+		}
+
+		return current;
+	}
+
+	private static BufferedImage scale( BufferedImage image, int width, int height, Object interpolation ) {
+		boolean hasAlpha = image.getColorModel().hasAlpha();
+		BufferedImage scaled = new BufferedImage( width, height, hasAlpha ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB );
+		Graphics2D graphics = scaled.createGraphics();
+		try {
+			graphics.setRenderingHint( RenderingHints.KEY_INTERPOLATION, interpolation );
+			graphics.setRenderingHint( RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY );
+			graphics.setRenderingHint( RenderingHints.KEY_ALPHA_INTERPOLATION, RenderingHints.VALUE_ALPHA_INTERPOLATION_QUALITY );
+			graphics.drawImage( image, 0, 0, width, height, null );
+		}
+		finally {
+			graphics.dispose();
+		}
+		return scaled;
+	}
+
+	private void write( BufferedImage image, ImageType outputType, int quality, OutputStream os ) throws IOException {
+		ImageWriter writer = ImageIO.getImageWritersByFormatName( outputType.getExtension() ).next();
+
+		try (ImageOutputStream ios = new MemoryCacheImageOutputStream( os )) {
+			writer.setOutput( ios );
+
+			ImageWriteParam param = writer.getDefaultWriteParam();
+			BufferedImage output = image;
+
+			if ( ImageType.JPEG == outputType ) {
+				param.setCompressionMode( ImageWriteParam.MODE_EXPLICIT );
+				param.setCompressionQuality( Math.max( 1, Math.min( 100, quality ) ) / 100f );
+				output = toRgb( image );
+			}
+
+			writer.write( null, new IIOImage( output, null, null ), param );
+		}
+		finally {
+			writer.dispose();
+		}
+	}
+
+	private BufferedImage toRgb( BufferedImage image ) {
+		if ( image.getType() == BufferedImage.TYPE_INT_RGB ) {
+			return image;
+		}
+		return flatten( image, ALPHA_BACKGROUND );
+	}
+
+	private ImageType determineOutputType( ImageTypeDto requestedOutputType, ImageType original ) {
+		return Optional.ofNullable( requestedOutputType != null ? DtoUtil.toBusiness( requestedOutputType ) : original ).orElse( original );
+	}
+}
@@ -0,0 +1,34 @@
+package com.foreach.imageserver.core.business;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Date;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public class TestImage
+{
+	private final Date created = new Date( 1000L );
+	private final Date modified = new Date( 2000L );
+
+	@Test
+	public void lastModifiedIsTheMostRecentDate() {
+		assertEquals( modified, image( created, modified ).getLastModified() );
+		assertEquals( modified, image( modified, created ).getLastModified() );
+		assertEquals( created, image( created, null ).getLastModified() );
+	}
+
+	@Test
+	public void lastModifiedIsModificationDateIfCreationDateIsMissing() {
+		assertEquals( modified, image( null, modified ).getLastModified() );
+		assertNull( image( null, null ).getLastModified() );
+	}
+
+	private Image image( Date dateCreated, Date dateModified ) {
+		Image image = new Image();
+		image.setDateCreated( dateCreated );
+		image.setDateModified( dateModified );
+		return image;
+	}
+}
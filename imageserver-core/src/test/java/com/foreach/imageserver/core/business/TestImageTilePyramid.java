@@ -0,0 +1,80 @@
+package com.foreach.imageserver.core.business;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * @author Arne Vandamme
+ * @since 6.3.0
+ */
+public class TestImageTilePyramid
+{
+	private final ImageTilePyramid pyramid = new ImageTilePyramid( 5000, 3000, 512, ImageType.JPEG );
+
+	@Test
+	public void levelsHalveTheDimensions() {
+		assertThat( pyramid.getMaxLevel() ).isEqualTo( 13 );
+		assertThat( pyramid.getLevelWidth( 13 ) ).isEqualTo( 5000 );
+		assertThat( pyramid.getLevelHeight( 13 ) ).isEqualTo( 3000 );
+		assertThat( pyramid.getLevelWidth( 12 ) ).isEqualTo( 2500 );
+		assertThat( pyramid.getLevelHeight( 11 ) ).isEqualTo( 750 );
+		assertThat( pyramid.getLevelWidth( 0 ) ).isEqualTo( 1 );
+		assertThat( pyramid.getLevelHeight( 0 ) ).isEqualTo( 1 );
+
+		assertThat( new ImageTilePyramid( 1, 1, 256, ImageType.PNG ).getMaxLevel() ).isEqualTo( 0 );
+		assertThat( new ImageTilePyramid( 4096, 10, 256, ImageType.PNG ).getMaxLevel() ).isEqualTo( 12 );
+		assertThatThrownBy( () -> pyramid.getLevelWidth( 14 ) ).isInstanceOf( IllegalArgumentException.class );
+	}
+
+	@Test
+	public void tilesCoverEveryLevel() {
+		assertThat( pyramid.getColumns( 13 ) ).isEqualTo( 10 );
+		assertThat( pyramid.getRows( 13 ) ).isEqualTo( 6 );
+		assertThat( pyramid.getColumns( 12 ) ).isEqualTo( 5 );
+		assertThat( pyramid.getRows( 12 ) ).isEqualTo( 3 );
+		assertThat( pyramid.getColumns( 9 ) ).isEqualTo( 1 );
+		assertThat( pyramid.getTileCount() ).isEqualTo( 60 + 15 + 6 + 2 + 10 );
+
+		assertThat( pyramid.hasTile( 12, 4, 2 ) ).isTrue();
+		assertThat( pyramid.hasTile( 12, 5, 2 ) ).isFalse();
+		assertThat( pyramid.hasTile( 14, 0, 0 ) ).isFalse();
+		assertThat( pyramid.hasTile( -1, 0, 0 ) ).isFalse();
+	}
+
+	@Test
+	public void tileCropIsInOriginalCoordinates() {
+		assertThat( pyramid.getTileCrop( 13, 0, 0 ) ).isEqualTo( new Crop( 0, 0, 512, 512 ) );
+		assertThat( pyramid.getTileCrop( 13, 9, 5 ) ).isEqualTo( new Crop( 4608, 2560, 392, 440 ) );
+		assertThat( pyramid.getTileCrop( 12, 4, 2 ) ).isEqualTo( new Crop( 4096, 2048, 904, 952 ) );
+		assertThat( pyramid.getTileCrop( 0, 0, 0 ) ).isEqualTo( new Crop( 0, 0, 5000, 3000 ) );
+	}
+
+	@Test
+	public void edgeTilesAreSmaller() {
+		assertThat( pyramid.getTileDimensions( 13, 0, 0 ) ).isEqualTo( new Dimensions( 512, 512 ) );
+		assertThat( pyramid.getTileDimensions( 13, 9, 5 ) ).isEqualTo( new Dimensions( 392, 440 ) );
+		assertThat( pyramid.getTileDimensions( 12, 4, 2 ) ).isEqualTo( new Dimensions( 452, 476 ) );
+		assertThat( pyramid.getTileDimensions( 0, 0, 0 ) ).isEqualTo( new Dimensions( 1, 1 ) );
+	}
+
+	@Test
+	public void serializeAndParse() {
+		String descriptor = pyramid.serialize();
+
+		assertThat( descriptor )
+				.contains( "Format=\"jpeg\"" )
+				.contains( "Overlap=\"0\"" )
+				.contains( "TileSize=\"512\"" )
+				.contains( "<Size Width=\"5000\" Height=\"3000\"/>" );
+		assertThat( ImageTilePyramid.parse( descriptor ) ).isEqualTo( pyramid );
+		assertThat( ImageTilePyramid.parse( new ImageTilePyramid( 20000, 80, 256, ImageType.PNG ).serialize() ).getTileType() )
+				.isEqualTo( ImageType.PNG );
+		assertThatThrownBy( () -> ImageTilePyramid.parse( "<Image/>" ) ).isInstanceOf( IllegalArgumentException.class );
+
+		String withTilesUrl = pyramid.serialize( "http://localhost/tiles/photo/5_files/?a=1&b=2" );
+		assertThat( withTilesUrl ).contains( "TileSize=\"512\" Url=\"http://localhost/tiles/photo/5_files/?a=1&amp;b=2\">" );
+		assertThat( ImageTilePyramid.parse( withTilesUrl ) ).isEqualTo( pyramid );
+	}
+}
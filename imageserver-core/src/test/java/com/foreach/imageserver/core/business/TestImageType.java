@@ -0,0 +1,31 @@
+package com.foreach.imageserver.core.business;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class TestImageType
+{
+	@Test
+	public void requestedOutputTypeIsAlwaysUsed() {
+		assertEquals( ImageType.WEBP, ImageType.getPreferredOutputType( ImageType.WEBP, ImageType.PNG ) );
+		assertEquals( ImageType.JPEG, ImageType.getPreferredOutputType( ImageType.JPEG, ImageType.AVIF ) );
+	}
+
+	@Test
+	public void transparentOriginalsAreConvertedToPng() {
+		assertEquals( ImageType.PNG, ImageType.getPreferredOutputType( null, ImageType.PNG ) );
+		assertEquals( ImageType.PNG, ImageType.getPreferredOutputType( null, ImageType.SVG ) );
+		assertEquals( ImageType.PNG, ImageType.getPreferredOutputType( null, ImageType.EPS ) );
+		assertEquals( ImageType.PNG, ImageType.getPreferredOutputType( null, ImageType.WEBP ) );
+		assertEquals( ImageType.PNG, ImageType.getPreferredOutputType( null, ImageType.AVIF ) );
+		assertEquals( ImageType.GIF, ImageType.getPreferredOutputType( null, ImageType.GIF ) );
+	}
+
+	@Test
+	public void otherOriginalsAreConvertedToJpeg() {
+		assertEquals( ImageType.JPEG, ImageType.getPreferredOutputType( null, ImageType.JPEG ) );
+		assertEquals( ImageType.JPEG, ImageType.getPreferredOutputType( null, ImageType.TIFF ) );
+		assertEquals( ImageType.JPEG, ImageType.getPreferredOutputType( null, ImageType.PDF ) );
+	}
+}
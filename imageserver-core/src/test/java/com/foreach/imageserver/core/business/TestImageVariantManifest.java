@@ -0,0 +1,30 @@
+package com.foreach.imageserver.core.business;
+
+import com.foreach.across.modules.filemanager.business.FileDescriptor;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author Arne Vandamme
+ * @since 6.3.0
+ */
+public class TestImageVariantManifest
+{
+	private static final FileDescriptor ONE = FileDescriptor.of( "imageserver-variants", "default/2018/12", "1-w100-h100.jpeg" );
+	private static final FileDescriptor TWO = FileDescriptor.of( "imageserver-variants", "website/2018/12", "1-w200-h100.png" );
+
+	@Test
+	public void modificationsReturnNewInstance() {
+		ImageVariantManifest manifest = ImageVariantManifest.EMPTY.withVariant( ONE, 100 ).withVariant( TWO, 250 );
+
+		assertThat( manifest.getVariants() ).containsOnlyKeys( ONE, TWO );
+		assertThat( manifest.getTotalSize() ).isEqualTo( 350 );
+		assertThat( ImageVariantManifest.EMPTY.isEmpty() ).isTrue();
+
+		assertThat( manifest.withVariant( ONE, 100 ) ).isSameAs( manifest );
+		assertThat( manifest.withoutVariant( FileDescriptor.of( "imageserver-variants", "3.png" ) ) ).isSameAs( manifest );
+		assertThat( manifest.withoutVariant( ONE ).getVariants() ).containsOnlyKeys( TWO );
+		assertThat( manifest.withVariant( ONE, 120 ).getTotalSize() ).isEqualTo( 370 );
+	}
+}
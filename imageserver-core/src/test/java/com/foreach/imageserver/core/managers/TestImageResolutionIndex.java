@@ -0,0 +1,88 @@
+package com.foreach.imageserver.core.managers;
+
+import com.foreach.imageserver.core.business.ImageResolution;
+import com.foreach.imageserver.math.AspectRatio;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestImageResolutionIndex
+{
+	private static final AspectRatio WIDESCREEN = new AspectRatio( 16, 9 );
+
+	private final ImageResolution medium = resolution( 1, 640, 360 );
+	private final ImageResolution square = resolution( 2, 300, 300 );
+	private final ImageResolution large = resolution( 3, 1280, 720 );
+	private final ImageResolution small = resolution( 4, 320, 180 );
+
+	private final ImageResolutionIndex index = new ImageResolutionIndex( Arrays.asList( medium, square, large, small ) );
+
+	@Test
+	public void resolutionsKeepTheirOriginalOrder() {
+		assertEquals( Arrays.asList( medium, square, large, small ), index.getResolutions() );
+		assertThrows( UnsupportedOperationException.class, () -> index.getResolutions().add( medium ) );
+	}
+
+	@Test
+	public void exactDimensionsAreMatched() {
+		assertSame( medium, index.getByDimensions( 640, 360 ) );
+		assertSame( square, index.getByDimensions( 300, 300 ) );
+		assertNull( index.getByDimensions( 360, 640 ) );
+		assertNull( index.getByDimensions( 640, 0 ) );
+	}
+
+	@Test
+	public void smallestResolutionAtLeastAsWideIsMatchedOnAspectRatio() {
+		assertSame( small, index.getByAspectRatio( WIDESCREEN, 10 ) );
+		assertSame( small, index.getByAspectRatio( WIDESCREEN, 320 ) );
+		assertSame( medium, index.getByAspectRatio( WIDESCREEN, 321 ) );
+		assertSame( medium, index.getByAspectRatio( WIDESCREEN, 640 ) );
+		assertSame( large, index.getByAspectRatio( WIDESCREEN, 1000 ) );
+		assertSame( square, index.getByAspectRatio( new AspectRatio( 1, 1 ), 100 ) );
+	}
+
+	@Test
+	public void largestResolutionIsMatchedIfNoneIsWideEnough() {
+		assertSame( large, index.getByAspectRatio( WIDESCREEN, 1281 ) );
+		assertSame( square, index.getByAspectRatio( new AspectRatio( 1, 1 ), 5000 ) );
+	}
+
+	@Test
+	public void unknownAspectRatioIsNotMatched() {
+		assertNull( index.getByAspectRatio( new AspectRatio( 4, 3 ), 640 ) );
+	}
+
+	@Test
+	public void firstResolutionWinsIfDimensionsAreTheSame() {
+		ImageResolution first = resolution( 10, 640, 360 );
+		ImageResolution second = resolution( 11, 640, 360 );
+		ImageResolutionIndex duplicates = new ImageResolutionIndex( Arrays.asList( large, first, second ) );
+
+		assertSame( first, duplicates.getByDimensions( 640, 360 ) );
+		assertSame( first, duplicates.getByAspectRatio( WIDESCREEN, 500 ) );
+
+		ImageResolutionIndex reversed = new ImageResolutionIndex( Arrays.asList( second, first, large ) );
+		assertSame( second, reversed.getByDimensions( 640, 360 ) );
+		assertSame( second, reversed.getByAspectRatio( WIDESCREEN, 500 ) );
+	}
+
+	@Test
+	public void emptyIndexMatchesNothing() {
+		ImageResolutionIndex empty = new ImageResolutionIndex( Collections.emptyList() );
+
+		assertTrue( empty.getResolutions().isEmpty() );
+		assertNull( empty.getByDimensions( 640, 360 ) );
+		assertNull( empty.getByAspectRatio( WIDESCREEN, 640 ) );
+	}
+
+	private static ImageResolution resolution( long id, int width, int height ) {
+		ImageResolution resolution = new ImageResolution();
+		resolution.setId( id );
+		resolution.setWidth( width );
+		resolution.setHeight( height );
+		return resolution;
+	}
+}
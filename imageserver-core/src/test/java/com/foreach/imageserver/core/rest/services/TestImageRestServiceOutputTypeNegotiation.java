@@ -0,0 +1,139 @@
+package com.foreach.imageserver.core.rest.services;
+
+import com.foreach.imageserver.core.business.*;
+import com.foreach.imageserver.core.rest.request.ViewImageRequest;
+import com.foreach.imageserver.core.services.DefaultImageFileDescriptorFactory;
+import com.foreach.imageserver.core.services.ImageContextService;
+import com.foreach.imageserver.core.services.ImageService;
+import com.foreach.imageserver.core.services.ImageTransformService;
+import com.foreach.imageserver.core.transformers.SimpleImageSource;
+import com.foreach.imageserver.dto.ImageResolutionDto;
+import com.foreach.imageserver.dto.ImageTypeDto;
+import com.foreach.imageserver.dto.ImageVariantDto;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
+
+import java.util.EnumSet;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * @author Arne Vandamme
+ * @since 6.3.0
+ */
+public class TestImageRestServiceOutputTypeNegotiation
+{
+	@Mock
+	private ImageContextService contextService;
+
+	@Mock
+	private ImageService imageService;
+
+	@Mock
+	private ImageTransformService imageTransformService;
+
+	@Spy
+	private DefaultImageFileDescriptorFactory imageFileDescriptorFactory = new DefaultImageFileDescriptorFactory();
+
+	@InjectMocks
+	private ImageRestServiceImpl imageRestService;
+
+	private Image image;
+	private ImageResolution resolution;
+
+	@BeforeEach
+	public void setUp() {
+		MockitoAnnotations.initMocks( this );
+
+		image = new Image();
+		image.setId( 1L );
+		image.setExternalId( "image" );
+		image.setImageType( ImageType.JPEG );
+		image.setVariantPath( "2018/12/11" );
+		when( imageService.getByExternalId( "image" ) ).thenReturn( image );
+
+		ImageContext context = new ImageContext();
+		context.setId( 2L );
+		context.setCode( "website" );
+		when( contextService.getByCode( "website" ) ).thenReturn( context );
+
+		resolution = new ImageResolution();
+		resolution.setId( 3L );
+		resolution.setWidth( 100 );
+		resolution.setHeight( 50 );
+		resolution.setAllowedOutputTypes( EnumSet.of( ImageType.JPEG, ImageType.PNG, ImageType.WEBP, ImageType.AVIF ) );
+		when( contextService.getImageResolution( 2L, 100, 50 ) ).thenReturn( resolution );
+
+		when( imageService.getVariantImage( any(), any(), any(), any() ) ).thenReturn( new SimpleImageSource( ImageType.JPEG, new byte[] { 1 } ) );
+		when( imageTransformService.isOutputTypeSupported( ImageType.WEBP ) ).thenReturn( true );
+	}
+
+	@Test
+	public void preferredSupportedOutputTypeIsSelected() {
+		assertThat( viewWithAccepted( ImageTypeDto.WEBP, ImageTypeDto.AVIF ) ).isEqualTo( ImageType.WEBP );
+
+		when( imageTransformService.isOutputTypeSupported( ImageType.AVIF ) ).thenReturn( true );
+		assertThat( viewWithAccepted( ImageTypeDto.WEBP, ImageTypeDto.AVIF ) ).isEqualTo( ImageType.AVIF );
+	}
+
+	@Test
+	public void defaultOutputTypeIfNoneIsAccepted() {
+		assertThat( viewWithAccepted() ).isEqualTo( ImageType.JPEG );
+		assertThat( viewWithAccepted( ImageTypeDto.AVIF ) ).isEqualTo( ImageType.JPEG );
+	}
+
+	@Test
+	public void outputTypeMustBeAllowedForTheResolution() {
+		resolution.setAllowedOutputTypes( EnumSet.of( ImageType.JPEG ) );
+		assertThat( viewWithAccepted( ImageTypeDto.WEBP ) ).isEqualTo( ImageType.JPEG );
+	}
+
+	@Test
+	public void gifIsNotReplaced() {
+		image.setImageType( ImageType.GIF );
+		resolution.getAllowedOutputTypes().add( ImageType.GIF );
+		assertThat( viewWithAccepted( ImageTypeDto.WEBP ) ).isEqualTo( ImageType.GIF );
+	}
+
+	@Test
+	public void negotiatedVariantHasItsOwnETag() {
+		ViewImageRequest request = request();
+		request.setAcceptedOutputTypes( EnumSet.of( ImageTypeDto.WEBP ) );
+		String webpETag = imageRestService.viewImage( request ).getETag();
+
+		request = request();
+		String jpegETag = imageRestService.viewImage( request ).getETag();
+
+		assertThat( webpETag ).isNotEqualTo( jpegETag );
+	}
+
+	private ImageType viewWithAccepted( ImageTypeDto... accepted ) {
+		ViewImageRequest request = request();
+		request.setAcceptedOutputTypes( accepted.length > 0 ? EnumSet.of( accepted[0], accepted ) : EnumSet.noneOf( ImageTypeDto.class ) );
+
+		assertThat( imageRestService.viewImage( request ).getImageSource() ).isNotNull();
+
+		ArgumentCaptor<ImageVariant> variant = ArgumentCaptor.forClass( ImageVariant.class );
+		verify( imageService, atLeastOnce() ).getVariantImage( eq( image ), any(), eq( resolution ), variant.capture() );
+		return variant.getValue().getOutputType();
+	}
+
+	private ViewImageRequest request() {
+		ViewImageRequest request = new ViewImageRequest();
+		request.setExternalId( "image" );
+		request.setContext( "website" );
+		request.setImageResolutionDto( new ImageResolutionDto( 100, 50 ) );
+		request.setImageVariantDto( new ImageVariantDto( ImageTypeDto.AUTO ) );
+		return request;
+	}
+}
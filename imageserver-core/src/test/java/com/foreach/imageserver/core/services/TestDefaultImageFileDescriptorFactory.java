@@ -56,6 +56,17 @@ public class TestDefaultImageFileDescriptorFactory
 		Assertions.assertEquals( "650071.png", fileDescriptor.getFileId() );
 	}
 
+	@Test
+	public void sharedOriginalIsStoredUnderContentHash() {
+		image.setOriginalPath( customRepository + ":" + originalPath );
+		image.setContentHash( "a1b2c3d4e5f60718293a4b5c6d7e8f90a1b2c3d4e5f60718293a4b5c6d7e8f90" );
+		FileDescriptor fileDescriptor = defaultImageFileDescriptorFactory.createForOriginal( image );
+
+		Assertions.assertEquals( ServicesConfiguration.IMAGESERVER_ORIGINALS_REPOSITORY, fileDescriptor.getRepositoryId() );
+		Assertions.assertEquals( "sha256/a1/b2", fileDescriptor.getFolderId() );
+		Assertions.assertEquals( "a1b2c3d4e5f60718293a4b5c6d7e8f90a1b2c3d4e5f60718293a4b5c6d7e8f90.png", fileDescriptor.getFileId() );
+	}
+
 	@Test
 	public void oldImageVariantPathGivesRightFileDescriptor() {
 		ImageContext imageContext = new ImageContext();
@@ -94,6 +105,35 @@ public class TestDefaultImageFileDescriptorFactory
 		Assertions.assertEquals( "650071-w300-h200.jpeg", fileDescriptor.getFileId() );
 	}
 
+	@Test
+	public void variantNameIncludesModificationVersion() {
+		ImageContext imageContext = new ImageContext();
+		imageContext.setId( 650071L );
+		imageContext.setCode( "ONLINE" );
+
+		ImageResolution imageResolution = new ImageResolution();
+		imageResolution.setWidth( 300 );
+		imageResolution.setHeight( 200 );
+
+		image.setModificationVersion( 3 );
+		FileDescriptor fileDescriptor = defaultImageFileDescriptorFactory.createForVariant( image, imageContext, imageResolution, variantImage );
+
+		Assertions.assertEquals( "650071-v3-w300-h200.jpeg", fileDescriptor.getFileId() );
+	}
+
+	@Test
+	public void tilesAreStoredInDeepZoomLayout() {
+		image.setVariantPath( customRepository + ":" + originalPath );
+
+		FileDescriptor pyramid = defaultImageFileDescriptorFactory.createForTilePyramid( image );
+		Assertions.assertEquals( "s3-files:tiles/2018/12/11/09:650071.dzi", pyramid.getUri() );
+
+		FileDescriptor tile = defaultImageFileDescriptorFactory.createForTile( image, 12, 3, 1, ImageType.JPEG );
+		Assertions.assertEquals( "s3-files", tile.getRepositoryId() );
+		Assertions.assertEquals( "tiles/2018/12/11/09/650071_files/12", tile.getFolderId() );
+		Assertions.assertEquals( "3_1.jpeg", tile.getFileId() );
+	}
+
 	@Test
 	public void politiek() {
 		image.setVariantPath( customRepository + ":" + originalPath );
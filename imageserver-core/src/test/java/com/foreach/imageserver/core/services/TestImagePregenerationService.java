@@ -0,0 +1,206 @@
+package com.foreach.imageserver.core.services;
+
+import com.foreach.imageserver.core.ImageServerCoreModuleSettings;
+import com.foreach.imageserver.core.business.*;
+import com.foreach.imageserver.core.services.exceptions.ImagePregenerationQueueFullException;
+import lombok.SneakyThrows;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * @author Arne Vandamme
+ * @since 6.3.0
+ */
+public class TestImagePregenerationService
+{
+	private final ImageService imageService = mock( ImageService.class );
+	private final Image image = image();
+
+	private ImagePregenerationService pregenerationService;
+
+	@AfterEach
+	public void shutdown() {
+		pregenerationService.shutdown();
+	}
+
+	@Test
+	@SneakyThrows
+	@SuppressWarnings("unchecked")
+	public void resolutionsOfAnImageAreGeneratedInASingleBatch() {
+		createService( 2, 10 );
+
+		ImageResolution one = resolution( 1L );
+		ImageResolution two = resolution( 2L );
+		when( imageService.pregenerateVariantImages( eq( image ), any(), any() ) ).thenReturn( 2 );
+
+		assertThat( pregenerationService.submit( image, Arrays.asList( one, two ), Collections.singleton( ImageType.JPEG ) ) ).isEqualTo( 2 );
+		awaitPendingTasks();
+
+		ArgumentCaptor<Collection<ImageResolution>> resolutions = ArgumentCaptor.forClass( Collection.class );
+		verify( imageService ).pregenerateVariantImages( eq( image ), resolutions.capture(), any() );
+		assertThat( resolutions.getValue() ).containsExactly( one, two );
+
+		ImagePregenerationService.ImagePregenerationStatistics statistics = pregenerationService.getStatistics();
+		assertThat( statistics.getCompleted() ).isEqualTo( 1 );
+		assertThat( statistics.getVariantsGenerated() ).isEqualTo( 2 );
+	}
+
+	@Test
+	@SneakyThrows
+	public void outputTypesAreGeneratedInParallel() {
+		createService( 2, 10 );
+
+		CountDownLatch started = new CountDownLatch( 2 );
+		when( imageService.pregenerateVariantImages( eq( image ), any(), any() ) ).thenAnswer( invocation -> {
+			started.countDown();
+			// only returns if the other output type is being generated at the same time
+			return started.await( 5, TimeUnit.SECONDS ) ? 1 : 0;
+		} );
+
+		assertThat( pregenerationService.submit( image, Collections.singletonList( resolution( 1L ) ), Arrays.asList( ImageType.JPEG, ImageType.PNG ) ) )
+				.isEqualTo( 2 );
+		awaitPendingTasks();
+
+		ImagePregenerationService.ImagePregenerationStatistics statistics = pregenerationService.getStatistics();
+		assertThat( statistics.getCompleted() ).isEqualTo( 2 );
+		assertThat( statistics.getVariantsGenerated() ).isEqualTo( 2 );
+	}
+
+	@Test
+	@SneakyThrows
+	@SuppressWarnings("unchecked")
+	public void resolutionsAreAddedToTheQueuedTaskOfTheImage() {
+		createService( 1, 10 );
+
+		CountDownLatch busy = new CountDownLatch( 1 );
+		CountDownLatch release = new CountDownLatch( 1 );
+		when( imageService.pregenerateVariantImages( eq( image ), any(), any() ) ).thenAnswer( invocation -> {
+			busy.countDown();
+			return release.await( 5, TimeUnit.SECONDS ) ? 1 : 0;
+		} );
+
+		assertThat( pregenerationService.submit( image, Collections.singletonList( resolution( 1L ) ), Collections.singleton( ImageType.JPEG ) ) )
+				.isEqualTo( 1 );
+		assertThat( busy.await( 5, TimeUnit.SECONDS ) ).isTrue();
+
+		// resolution 1 is busy, resolution 2 is queued in a new task, resolution 3 is added to that task
+		assertThat( pregenerationService.submit( image, Arrays.asList( resolution( 1L ), resolution( 2L ) ), Collections.singleton( ImageType.JPEG ) ) )
+				.isEqualTo( 1 );
+		assertThat( pregenerationService.submit( image, Arrays.asList( resolution( 2L ), resolution( 3L ) ), Collections.singleton( ImageType.JPEG ) ) )
+				.isEqualTo( 1 );
+		assertThat( pregenerationService.getPendingTasks( image ) ).isEqualTo( 2 );
+
+		release.countDown();
+		awaitPendingTasks();
+
+		ArgumentCaptor<Collection<ImageResolution>> resolutions = ArgumentCaptor.forClass( Collection.class );
+		verify( imageService, times( 2 ) ).pregenerateVariantImages( eq( image ), resolutions.capture(), any() );
+		assertThat( resolutions.getAllValues().get( 0 ) ).extracting( ImageResolution::getId ).containsExactly( 1L );
+		assertThat( resolutions.getAllValues().get( 1 ) ).extracting( ImageResolution::getId ).containsExactly( 2L, 3L );
+	}
+
+	@Test
+	@SneakyThrows
+	public void submitIsRejectedIfTasksDoNotFitInTheQueue() {
+		createService( 1, 1 );
+
+		CountDownLatch busy = new CountDownLatch( 1 );
+		CountDownLatch release = new CountDownLatch( 1 );
+		when( imageService.pregenerateVariantImages( eq( image ), any(), any() ) ).thenAnswer( invocation -> {
+			busy.countDown();
+			return release.await( 5, TimeUnit.SECONDS ) ? 1 : 0;
+		} );
+
+		pregenerationService.submit( image, Collections.singletonList( resolution( 1L ) ), Collections.singleton( ImageType.JPEG ) );
+		assertThat( busy.await( 5, TimeUnit.SECONDS ) ).isTrue();
+		pregenerationService.submit( image, Collections.singletonList( resolution( 2L ) ), Collections.singleton( ImageType.JPEG ) );
+
+		// added to the queued task, no new task required
+		assertThat( pregenerationService.submit( image, Collections.singletonList( resolution( 3L ) ), Collections.singleton( ImageType.JPEG ) ) )
+				.isEqualTo( 1 );
+
+		assertThatExceptionOfType( ImagePregenerationQueueFullException.class )
+				.isThrownBy( () -> pregenerationService.submit( image, Collections.singletonList( resolution( 4L ) ),
+				                                                Arrays.asList( ImageType.JPEG, ImageType.PNG ) ) )
+				.satisfies( e -> assertThat( e.getRetryAfterSeconds() ).isEqualTo( 5 ) );
+
+		ImagePregenerationService.ImagePregenerationStatistics statistics = pregenerationService.getStatistics();
+		assertThat( statistics.getQueued() ).isEqualTo( 1 );
+		assertThat( statistics.getActive() ).isEqualTo( 1 );
+		assertThat( statistics.getRejected() ).isEqualTo( 1 );
+		assertThat( pregenerationService.getPendingTasks( image ) ).isEqualTo( 2 );
+
+		release.countDown();
+		awaitPendingTasks();
+
+		verify( imageService, times( 2 ) ).pregenerateVariantImages( eq( image ), any(), any() );
+	}
+
+	@Test
+	@SneakyThrows
+	public void contextsAreGeneratedSeparatelyIfResolutionFails() {
+		createService( 1, 10 );
+
+		ImageResolution resolution = resolution( 1L );
+		ImageContext one = context( 1L );
+		ImageContext two = context( 2L );
+		resolution.setContexts( Arrays.asList( one, two ) );
+
+		when( imageService.pregenerateVariantImages( eq( image ), any(), any() ) ).thenThrow( new IllegalStateException( "batch failed" ) );
+		when( imageService.getVariantImage( eq( image ), eq( one ), eq( resolution ), any() ) ).thenThrow( new IllegalStateException( "context failed" ) );
+
+		pregenerationService.submit( image, Collections.singletonList( resolution ), Collections.singleton( ImageType.JPEG ) );
+		awaitPendingTasks();
+
+		verify( imageService ).getVariantImage( eq( image ), eq( two ), eq( resolution ), any() );
+		assertThat( pregenerationService.getStatistics().getVariantsGenerated() ).isEqualTo( 1 );
+	}
+
+	private void createService( int workers, int queueCapacity ) {
+		ImageServerCoreModuleSettings settings = new ImageServerCoreModuleSettings();
+		settings.getPregeneration().setWorkers( workers );
+		settings.getPregeneration().setQueueCapacity( queueCapacity );
+		pregenerationService = new ImagePregenerationService( imageService, settings );
+	}
+
+	@SneakyThrows
+	private void awaitPendingTasks() {
+		long deadline = System.currentTimeMillis() + 5000;
+		while ( pregenerationService.getPendingTasks( image ) > 0 && System.currentTimeMillis() < deadline ) {
+			Thread.sleep( 10 );
+		}
+		assertThat( pregenerationService.getPendingTasks( image ) ).isEqualTo( 0 );
+	}
+
+	private Image image() {
+		Image image = new Image();
+		image.setId( 1L );
+		return image;
+	}
+
+	private ImageResolution resolution( long id ) {
+		ImageResolution resolution = new ImageResolution();
+		resolution.setId( id );
+		return resolution;
+	}
+
+	private ImageContext context( long id ) {
+		ImageContext context = new ImageContext();
+		context.setId( id );
+		context.setCode( "context-" + id );
+		return context;
+	}
+}
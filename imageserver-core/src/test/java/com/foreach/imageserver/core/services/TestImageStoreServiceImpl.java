@@ -0,0 +1,341 @@
+package com.foreach.imageserver.core.services;
+
+import com.foreach.across.modules.filemanager.business.FileDescriptor;
+import com.foreach.across.modules.filemanager.services.FileManagerImpl;
+import com.foreach.across.modules.filemanager.services.LocalFileRepository;
+import com.foreach.imageserver.core.business.*;
+import com.foreach.imageserver.core.config.StoreSettings.LocalVariantsSettings;
+import com.foreach.imageserver.core.config.VariantCacheSettings;
+import com.foreach.imageserver.core.managers.ImageVariantFileManager;
+import com.foreach.imageserver.core.transformers.ImageSource;
+import com.foreach.imageserver.core.transformers.SimpleImageSource;
+import lombok.SneakyThrows;
+import org.apache.commons.io.IOUtils;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.dao.DataIntegrityViolationException;
+
+import java.io.File;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.function.Function;
+
+import static com.foreach.imageserver.core.config.ServicesConfiguration.IMAGESERVER_ORIGINALS_REPOSITORY;
+import static com.foreach.imageserver.core.config.ServicesConfiguration.IMAGESERVER_VARIANTS_REPOSITORY;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.*;
+
+/**
+ * @author Arne Vandamme
+ * @since 6.3.0
+ */
+public class TestImageStoreServiceImpl
+{
+	private final ImageContextService imageContextService = mock( ImageContextService.class );
+	private final DefaultImageFileDescriptorFactory fileDescriptorFactory = new DefaultImageFileDescriptorFactory();
+	private final InMemoryVariantFileManager variantFileManager = new InMemoryVariantFileManager();
+
+	private FileManagerImpl fileManager;
+	private ImageStoreServiceImpl imageStoreService;
+
+	private Image image;
+	private ImageContext context;
+	private ImageVariant variant;
+
+	@BeforeEach
+	public void createStore( @TempDir File folder ) {
+		fileManager = new FileManagerImpl();
+		fileManager.registerRepository(
+				LocalFileRepository.builder().repositoryId( IMAGESERVER_ORIGINALS_REPOSITORY ).rootFolder( folder + "/originals" ).build()
+		);
+		fileManager.registerRepository(
+				LocalFileRepository.builder().repositoryId( IMAGESERVER_VARIANTS_REPOSITORY ).rootFolder( folder + "/variants" ).build()
+		);
+
+		imageStoreService = new ImageStoreServiceImpl( fileManager, imageContextService, fileDescriptorFactory, new ImageVariantCache( new VariantCacheSettings() ),
+		                                               new ImageVariantLocalStore( new LocalVariantsSettings(), fileManager ), variantFileManager );
+
+		image = new Image();
+		image.setId( 5L );
+		image.setImageType( ImageType.PNG );
+		image.setOriginalPath( "2018/12/11" );
+		image.setVariantPath( "2018/12/11" );
+		image.setVariantsRegistered( true );
+
+		context = new ImageContext();
+		context.setId( 1L );
+		context.setCode( "website" );
+		when( imageContextService.getAllContexts() ).thenReturn( Collections.singletonList( context ) );
+
+		variant = new ImageVariant();
+		variant.setOutputType( ImageType.JPEG );
+	}
+
+	@Test
+	public void storedVariantsAreRemovedUsingTheManifest() {
+		imageStoreService.storeOriginalImage( image, bytes( "original" ) );
+		assertThat( imageStoreService.getVariantManifest( image ) ).contains( ImageVariantManifest.EMPTY );
+
+		imageStoreService.storeVariantImage( image, context, resolution( 100 ), variant, new SimpleImageSource( ImageType.JPEG, bytes( "small" ) ) );
+		imageStoreService.storeVariantImage( image, context, resolution( 200 ), variant, os -> write( os, "medium" ) );
+
+		ImageVariantManifest manifest = imageStoreService.getVariantManifest( image ).orElseThrow( AssertionError::new );
+		assertThat( manifest.getVariants() ).containsOnlyKeys( descriptor( 100 ), descriptor( 200 ) );
+		assertThat( manifest.getTotalSize() ).isEqualTo( 11 );
+
+		imageStoreService.removeVariants( image );
+
+		assertThat( imageStoreService.getVariantImage( image, context, resolution( 100 ), variant ) ).isNull();
+		assertThat( imageStoreService.getVariantImage( image, context, resolution( 200 ), variant ) ).isNull();
+		assertThat( imageStoreService.getVariantManifest( image ) ).contains( ImageVariantManifest.EMPTY );
+		verify( imageContextService, never() ).getAllContexts();
+	}
+
+	@Test
+	public void removedVariantIsRemovedFromManifest() {
+		imageStoreService.storeOriginalImage( image, bytes( "original" ) );
+		imageStoreService.storeVariantImage( image, context, resolution( 100 ), variant, os -> write( os, "small" ) );
+		imageStoreService.storeVariantImage( image, context, resolution( 200 ), variant, os -> write( os, "medium" ) );
+
+		imageStoreService.removeVariantImage( image, context, resolution( 100 ), variant );
+
+		assertThat( imageStoreService.getVariantManifest( image ).orElseThrow( AssertionError::new ).getVariants() )
+				.containsOnlyKeys( descriptor( 200 ) );
+	}
+
+	@Test
+	@SneakyThrows
+	public void failedWriterDoesNotLeaveIncompleteVariant() {
+		imageStoreService.storeOriginalImage( image, bytes( "original" ) );
+		imageStoreService.storeVariantImage( image, context, resolution( 200 ), variant, os -> write( os, "medium" ) );
+
+		Function<OutputStream, Void> failingWriter = os -> {
+			write( os, "partial" );
+			throw new IllegalStateException( "transform failed" );
+		};
+
+		assertThatThrownBy( () -> imageStoreService.storeVariantImage( image, context, resolution( 100 ), variant, failingWriter ) )
+				.isInstanceOf( IllegalStateException.class );
+		assertThatThrownBy( () -> imageStoreService.storeVariantImage( image, context, resolution( 200 ), variant, failingWriter ) )
+				.isInstanceOf( IllegalStateException.class );
+
+		assertThat( fileManager.getFileResource( descriptor( 100 ) ).exists() ).isFalse();
+		try (InputStream is = fileManager.getFileResource( descriptor( 200 ) ).getInputStream()) {
+			assertThat( IOUtils.toString( is, StandardCharsets.UTF_8 ) ).isEqualTo( "medium" );
+		}
+		assertThat( imageStoreService.getVariantManifest( image ).orElseThrow( AssertionError::new ).getVariants() )
+				.containsOnlyKeys( descriptor( 200 ) );
+	}
+
+	@Test
+	@SneakyThrows
+	public void variantsRegisteredByOtherNodesAreRemoved() {
+		imageStoreService.storeVariantImage( image, context, resolution( 100 ), variant, os -> write( os, "small" ) );
+
+		// stored and registered by another node
+		try (OutputStream os = fileManager.getFileResource( descriptor( 200 ) ).getOutputStream()) {
+			write( os, "medium" );
+		}
+		variantFileManager.save( new ImageVariantFile( image.getId(), descriptor( 200 ), 6 ) );
+
+		imageStoreService.removeVariants( image );
+
+		assertThat( fileManager.getFileResource( descriptor( 100 ) ).exists() ).isFalse();
+		assertThat( fileManager.getFileResource( descriptor( 200 ) ).exists() ).isFalse();
+		assertThat( variantFileManager.getVariantFiles( image.getId() ) ).isEmpty();
+	}
+
+	@Test
+	public void variantRegisteredConcurrentlyIsStored() {
+		variantFileManager.failNextSave = true;
+
+		imageStoreService.storeVariantImage( image, context, resolution( 100 ), variant, os -> write( os, "small" ) );
+
+		assertThat( read( imageStoreService.getVariantImage( image, context, resolution( 100 ), variant ) ) ).isEqualTo( "small" );
+	}
+
+	@Test
+	@SneakyThrows
+	public void variantsAreSearchedIfTheyAreNotRegistered() {
+		image.setVariantsRegistered( false );
+
+		try (OutputStream os = fileManager.getFileResource( descriptor( 100 ) ).getOutputStream()) {
+			write( os, "existing" );
+		}
+		imageStoreService.storeVariantImage( image, context, resolution( 200 ), variant, os -> write( os, "medium" ) );
+		assertThat( imageStoreService.getVariantManifest( image ) ).isEmpty();
+		assertThat( variantFileManager.getVariantFiles( image.getId() ) ).isEmpty();
+
+		imageStoreService.removeVariants( image );
+
+		assertThat( imageStoreService.getVariantImage( image, context, resolution( 100 ), variant ) ).isNull();
+		assertThat( imageStoreService.getVariantImage( image, context, resolution( 200 ), variant ) ).isNull();
+		verify( imageContextService ).getAllContexts();
+	}
+
+	@Test
+	@SneakyThrows
+	public void variantsAreServedFromCacheUntilInvalidated() {
+		assertThat( imageStoreService.getVariantImage( image, context, resolution( 100 ), variant ) ).isNull();
+
+		imageStoreService.storeVariantImage( image, context, resolution( 100 ), variant, os -> write( os, "small" ) );
+		assertThat( read( imageStoreService.getVariantImage( image, context, resolution( 100 ), variant ) ) ).isEqualTo( "small" );
+
+		// modified behind the back of the store
+		try (OutputStream os = fileManager.getFileResource( descriptor( 100 ) ).getOutputStream()) {
+			write( os, "modified" );
+		}
+		assertThat( read( imageStoreService.getVariantImage( image, context, resolution( 100 ), variant ) ) ).isEqualTo( "small" );
+
+		imageStoreService.storeVariantImage( image, context, resolution( 100 ), variant, os -> write( os, "replaced" ) );
+		assertThat( read( imageStoreService.getVariantImage( image, context, resolution( 100 ), variant ) ) ).isEqualTo( "replaced" );
+
+		imageStoreService.removeVariants( image );
+		assertThat( imageStoreService.getVariantImage( image, context, resolution( 100 ), variant ) ).isNull();
+	}
+
+	@Test
+	@SneakyThrows
+	public void variantsAreServedFromLocalFolderAndUploaded( @TempDir File folder ) {
+		LocalVariantsSettings settings = new LocalVariantsSettings();
+		settings.setFolder( folder );
+		VariantCacheSettings cacheSettings = new VariantCacheSettings();
+		cacheSettings.setMaxSize( 0L );
+
+		ImageVariantLocalStore localStore = new ImageVariantLocalStore( settings, fileManager );
+		imageStoreService = new ImageStoreServiceImpl( fileManager, imageContextService, fileDescriptorFactory, new ImageVariantCache( cacheSettings ), localStore,
+		                                               variantFileManager );
+
+		try {
+			imageStoreService.storeOriginalImage( image, bytes( "original" ) );
+			imageStoreService.storeVariantImage( image, context, resolution( 100 ), variant, os -> write( os, "small" ) );
+
+			long timeout = System.currentTimeMillis() + 5000;
+			while ( localStore.getPendingUploadCount() > 0 && System.currentTimeMillis() < timeout ) {
+				Thread.sleep( 10 );
+			}
+			assertThat( fileManager.getFileResource( descriptor( 100 ) ).exists() ).isTrue();
+
+			// removed behind the back of the store
+			fileManager.getFileResource( descriptor( 100 ) ).delete();
+
+			ImageSource local = imageStoreService.getVariantImage( image, context, resolution( 100 ), variant );
+			assertThat( read( local ) ).isEqualTo( "small" );
+			assertThat( local.getImageFile() ).hasValueSatisfying( file -> assertThat( file ).startsWith( folder.toPath() ) );
+
+			imageStoreService.removeVariants( image );
+			assertThat( imageStoreService.getVariantImage( image, context, resolution( 100 ), variant ) ).isNull();
+		}
+		finally {
+			localStore.shutdown();
+		}
+	}
+
+	@Test
+	@SneakyThrows
+	public void localVariantOfPreviousModificationVersionIsNotServed( @TempDir File folder ) {
+		LocalVariantsSettings settings = new LocalVariantsSettings();
+		settings.setFolder( folder );
+		ImageVariantLocalStore localStore = new ImageVariantLocalStore( settings, fileManager );
+		imageStoreService = new ImageStoreServiceImpl( fileManager, imageContextService, fileDescriptorFactory, new ImageVariantCache( new VariantCacheSettings() ),
+		                                               localStore, variantFileManager );
+
+		try {
+			imageStoreService.storeVariantImage( image, context, resolution( 100 ), variant, os -> write( os, "old crop" ) );
+			assertThat( read( imageStoreService.getVariantImage( image, context, resolution( 100 ), variant ) ) ).isEqualTo( "old crop" );
+
+			// modified on another instance, which removed the variants it knows about
+			image.setModificationVersion( image.getModificationVersion() + 1 );
+
+			assertThat( imageStoreService.getVariantImage( image, context, resolution( 100 ), variant ) ).isNull();
+		}
+		finally {
+			localStore.shutdown();
+		}
+	}
+
+	@Test
+	public void tilesAreOnlyCompleteWithPyramid() {
+		ImageTilePyramid pyramid = new ImageTilePyramid( 600, 300, 512, ImageType.JPEG );
+
+		imageStoreService.storeTile( image, pyramid, 10, 1, 0, new SimpleImageSource( ImageType.JPEG, bytes( "tile" ) ) );
+		assertThat( imageStoreService.getTilePyramid( image ) ).isEmpty();
+		assertThat( read( imageStoreService.getTile( image, 10, 1, 0, ImageType.JPEG ) ) ).isEqualTo( "tile" );
+		assertThat( imageStoreService.getTile( image, 10, 0, 0, ImageType.JPEG ) ).isNull();
+
+		imageStoreService.storeTilePyramid( image, pyramid );
+		assertThat( imageStoreService.getTilePyramid( image ) ).contains( pyramid );
+
+		imageStoreService.removeTiles( image );
+		assertThat( imageStoreService.getTilePyramid( image ) ).isEmpty();
+		assertThat( imageStoreService.getTile( image, 10, 1, 0, ImageType.JPEG ) ).isNull();
+		assertThat( fileManager.getFileResource( fileDescriptorFactory.createForTile( image, 10, 1, 0, ImageType.JPEG ) ).exists() ).isFalse();
+	}
+
+	@SneakyThrows
+	private String read( ImageSource imageSource ) {
+		try (InputStream is = imageSource.getImageStream()) {
+			return IOUtils.toString( is, StandardCharsets.UTF_8 );
+		}
+	}
+
+	private FileDescriptor descriptor( int width ) {
+		return fileDescriptorFactory.createForVariant( image, context, resolution( width ), variant );
+	}
+
+	private ImageResolution resolution( int width ) {
+		ImageResolution resolution = new ImageResolution();
+		resolution.setId( (long) width );
+		resolution.setWidth( width );
+		resolution.setHeight( 100 );
+		return resolution;
+	}
+
+	private byte[] bytes( String data ) {
+		return data.getBytes( StandardCharsets.UTF_8 );
+	}
+
+	@SneakyThrows
+	private Void write( OutputStream os, String data ) {
+		os.write( bytes( data ) );
+		return null;
+	}
+
+	/**
+	 * Keeps the variant files like the database would, can fail a registration like a concurrent insert would.
+	 */
+	private static class InMemoryVariantFileManager implements ImageVariantFileManager
+	{
+		private final Map<ImageVariantFileId, ImageVariantFile> variantFiles = new LinkedHashMap<>();
+		private boolean failNextSave;
+
+		@Override
+		public List<ImageVariantFile> getVariantFiles( long imageId ) {
+			List<ImageVariantFile> files = new ArrayList<>();
+			variantFiles.forEach( ( id, file ) -> {
+				if ( id.getImageId() == imageId ) {
+					files.add( file );
+				}
+			} );
+			return files;
+		}
+
+		@Override
+		public void save( ImageVariantFile variantFile ) {
+			if ( failNextSave ) {
+				failNextSave = false;
+				throw new DataIntegrityViolationException( "duplicate key" );
+			}
+			variantFiles.put( variantFile.getId(), variantFile );
+		}
+
+		@Override
+		public void delete( long imageId, Collection<FileDescriptor> files ) {
+			files.forEach( file -> variantFiles.remove( new ImageVariantFileId( imageId, file.getUri() ) ) );
+		}
+	}
+}
@@ -0,0 +1,134 @@
+package com.foreach.imageserver.core.services;
+
+import com.foreach.imageserver.core.business.Dimensions;
+import com.foreach.imageserver.core.business.Image;
+import com.foreach.imageserver.core.business.ImageTilePyramid;
+import com.foreach.imageserver.core.business.ImageType;
+import com.foreach.imageserver.core.config.TileSettings;
+import com.foreach.imageserver.core.transformers.ImageAttributes;
+import com.foreach.imageserver.core.transformers.ImageSource;
+import com.foreach.imageserver.core.transformers.SimpleImageSource;
+import com.foreach.imageserver.dto.ImageTransformDto;
+import com.foreach.imageserver.dto.ImageTypeDto;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * @author Arne Vandamme
+ * @since 6.3.0
+ */
+public class TestImageTileService
+{
+	private final ImageStoreService imageStoreService = mock( ImageStoreService.class );
+	private final ImageTransformService imageTransformService = mock( ImageTransformService.class );
+
+	private TileSettings settings;
+	private ImageTileService tileService;
+
+	@BeforeEach
+	public void createService() {
+		settings = new TileSettings();
+		settings.setEnabled( true );
+		settings.setMinimumPixels( 1000L );
+		settings.setTileSize( 256 );
+		tileService = new ImageTileService( imageStoreService, imageTransformService, settings );
+	}
+
+	@AfterEach
+	public void shutdown() {
+		tileService.shutdown();
+	}
+
+	@Test
+	public void onlyLargeRasterImagesAreTileable() {
+		assertThat( tileService.isTileable( image( ImageType.JPEG, 500, 300 ) ) ).isTrue();
+		assertThat( tileService.isTileable( image( ImageType.JPEG, 30, 30 ) ) ).isFalse();
+		assertThat( tileService.isTileable( image( ImageType.SVG, 500, 300 ) ) ).isFalse();
+
+		Image temporary = image( ImageType.JPEG, 500, 300 );
+		temporary.setTemporaryImage( true );
+		assertThat( tileService.isTileable( temporary ) ).isFalse();
+
+		Image multipleScenes = image( ImageType.TIFF, 500, 300 );
+		multipleScenes.setSceneCount( 3 );
+		assertThat( tileService.isTileable( multipleScenes ) ).isFalse();
+
+		settings.setEnabled( false );
+		assertThat( tileService.isTileable( image( ImageType.JPEG, 500, 300 ) ) ).isFalse();
+		assertThat( tileService.submit( image( ImageType.JPEG, 500, 300 ) ) ).isFalse();
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void everyLevelIsCutFromTheLevelAboveAndPyramidIsStoredLast() {
+		Image image = image( ImageType.PNG, 500, 300 );
+		ImageSource original = new SimpleImageSource( ImageType.PNG, new byte[0] );
+		when( imageStoreService.getOriginalImage( image ) ).thenReturn( original );
+
+		List<ImageSource> levelImages = new ArrayList<>();
+		when( imageTransformService.transformBatch( any(), any(), anyList() ) ).thenAnswer( invocation -> {
+			List<ImageSource> outputs = new ArrayList<>();
+			for ( int i = 0; i < invocation.<List<?>>getArgument( 2 ).size(); i++ ) {
+				outputs.add( new SimpleImageSource( ImageType.PNG, new byte[0] ) );
+			}
+			levelImages.add( outputs.get( outputs.size() - 1 ) );
+			return outputs;
+		} );
+
+		ImageTilePyramid pyramid = tileService.generateTiles( image );
+		assertThat( pyramid ).isEqualTo( new ImageTilePyramid( 500, 300, 256, ImageType.PNG ) );
+
+		ArgumentCaptor<ImageSource> sources = ArgumentCaptor.forClass( ImageSource.class );
+		ArgumentCaptor<ImageAttributes> attributes = ArgumentCaptor.forClass( ImageAttributes.class );
+		ArgumentCaptor<List<ImageTransformDto>> transforms = ArgumentCaptor.forClass( List.class );
+		verify( imageTransformService, times( pyramid.getMaxLevel() + 1 ) ).transformBatch( sources.capture(), attributes.capture(), transforms.capture() );
+
+		// highest level: 2 x 2 tiles and the image of the next level, only batch using the original
+		assertThat( sources.getAllValues().get( 0 ) ).isSameAs( original );
+		List<ImageTransformDto> highestLevel = transforms.getAllValues().get( 0 );
+		assertThat( highestLevel ).hasSize( 5 );
+
+		ImageTransformDto lastTile = highestLevel.get( 3 );
+		assertThat( lastTile.getWidth() ).isEqualTo( 244 );
+		assertThat( lastTile.getHeight() ).isEqualTo( 44 );
+		assertThat( lastTile.getCrop().getX() ).isEqualTo( 256 );
+		assertThat( lastTile.getCrop().getY() ).isEqualTo( 256 );
+		assertThat( lastTile.getOutputType() ).isEqualTo( ImageTypeDto.PNG );
+
+		ImageTransformDto nextLevel = highestLevel.get( 4 );
+		assertThat( nextLevel.getCrop() ).isNull();
+		assertThat( nextLevel.getWidth() ).isEqualTo( 250 );
+		assertThat( nextLevel.getHeight() ).isEqualTo( 150 );
+
+		// lower levels are cut from the image created by the batch of the level above
+		assertThat( sources.getAllValues().get( 1 ) ).isSameAs( levelImages.get( 0 ) );
+		assertThat( attributes.getAllValues().get( 1 ).getDimensions() ).isEqualTo( new Dimensions( 250, 150 ) );
+		assertThat( transforms.getAllValues().get( 1 ).get( 0 ).getCrop().getWidth() ).isEqualTo( 250 );
+
+		// lowest level has no next level
+		assertThat( transforms.getAllValues().get( pyramid.getMaxLevel() ) ).hasSize( 1 );
+
+		InOrder inOrder = inOrder( imageStoreService );
+		inOrder.verify( imageStoreService, times( pyramid.getTileCount() ) ).storeTile( eq( image ), eq( pyramid ), anyInt(), anyInt(), anyInt(), any() );
+		inOrder.verify( imageStoreService ).storeTilePyramid( image, pyramid );
+	}
+
+	private Image image( ImageType imageType, int width, int height ) {
+		Image image = new Image();
+		image.setId( 1L );
+		image.setImageType( imageType );
+		image.setDimensions( new Dimensions( width, height ) );
+		image.setSceneCount( 1 );
+		return image;
+	}
+}
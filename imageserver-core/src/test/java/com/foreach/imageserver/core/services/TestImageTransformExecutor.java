@@ -0,0 +1,83 @@
+package com.foreach.imageserver.core.services;
+
+import lombok.SneakyThrows;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+
+/**
+ * @author Arne Vandamme
+ * @since 6.3.0
+ */
+public class TestImageTransformExecutor
+{
+	private ImageTransformExecutor executor;
+
+	@AfterEach
+	public void shutdown() {
+		executor.shutdown();
+	}
+
+	@Test
+	@SneakyThrows
+	public void workIsExecutedInTheLaneOfTheSubmittingThread() {
+		executor = new ImageTransformExecutor( 1 );
+
+		CompletableFuture<String> future = ImageTransformLane.execute(
+				ImageTransformLane.API, () -> executor.submit( () -> Thread.currentThread().getName() + ":" + ImageTransformLane.current() )
+		);
+
+		assertThat( future.get( 5, TimeUnit.SECONDS ) ).isEqualTo( "imageserver-transform-1:" + ImageTransformLane.API );
+	}
+
+	@Test
+	@SneakyThrows
+	public void workIsExecutedInSubmittingThreadIfAllWorkersAreBusy() {
+		executor = new ImageTransformExecutor( 1 );
+
+		CountDownLatch busy = new CountDownLatch( 1 );
+		CountDownLatch release = new CountDownLatch( 1 );
+		CompletableFuture<Boolean> blocking = executor.submit( () -> {
+			busy.countDown();
+			return awaitUninterruptibly( release );
+		} );
+		assertThat( busy.await( 5, TimeUnit.SECONDS ) ).isTrue();
+		assertThat( executor.getActiveCount() ).isEqualTo( 1 );
+
+		Thread submitter = Thread.currentThread();
+		CompletableFuture<Boolean> future = executor.submit( () -> Thread.currentThread() == submitter );
+		assertThat( future.isDone() ).isTrue();
+		assertThat( future.get() ).isTrue();
+
+		release.countDown();
+		assertThat( blocking.get( 5, TimeUnit.SECONDS ) ).isTrue();
+	}
+
+	@Test
+	public void workIsExecutedInSubmittingThreadWithoutWorkers() {
+		executor = new ImageTransformExecutor( 0 );
+
+		Thread submitter = Thread.currentThread();
+		assertThat( executor.submit( () -> Thread.currentThread() == submitter ).join() ).isTrue();
+
+		CompletableFuture<Object> failed = executor.submit( () -> {
+			throw new IllegalStateException( "failed" );
+		} );
+		assertThat( failed.isCompletedExceptionally() ).isTrue();
+		assertThatExceptionOfType( ExecutionException.class )
+				.isThrownBy( failed::get )
+				.withCauseInstanceOf( IllegalStateException.class );
+	}
+
+	@SneakyThrows
+	private boolean awaitUninterruptibly( CountDownLatch latch ) {
+		return latch.await( 5, TimeUnit.SECONDS );
+	}
+}
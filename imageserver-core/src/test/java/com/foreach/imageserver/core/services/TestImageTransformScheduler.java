@@ -0,0 +1,145 @@
+package com.foreach.imageserver.core.services;
+
+import com.foreach.imageserver.core.config.TransformersSettings;
+import com.foreach.imageserver.core.services.exceptions.ImageTransformQueueTimeoutException;
+import lombok.SneakyThrows;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static com.foreach.imageserver.core.services.ImageTransformLane.*;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+
+/**
+ * @author Arne Vandamme
+ * @since 6.3.0
+ */
+public class TestImageTransformScheduler
+{
+	private final ExecutorService executorService = Executors.newCachedThreadPool();
+	private final List<ImageTransformLane> started = new CopyOnWriteArrayList<>();
+
+	@AfterEach
+	public void shutdown() {
+		executorService.shutdownNow();
+	}
+
+	@Test
+	public void slotsAreLimitedPerLane() {
+		TransformersSettings settings = new TransformersSettings();
+		settings.setConcurrentLimit( 3 );
+		settings.setBackgroundLane( new TransformersSettings.LaneSettings( 1, 1, 1 ) );
+		ImageTransformScheduler scheduler = new ImageTransformScheduler( settings );
+
+		scheduler.acquire( BACKGROUND );
+		assertThatExceptionOfType( ImageTransformQueueTimeoutException.class )
+				.isThrownBy( () -> scheduler.acquire( BACKGROUND ) )
+				.satisfies( e -> {
+					assertThat( e.getLane() ).isEqualTo( BACKGROUND );
+					assertThat( e.getRetryAfterSeconds() ).isEqualTo( 5 );
+				} );
+
+		// other lanes can still use the remaining slots
+		scheduler.acquire( INTERACTIVE );
+		scheduler.acquire( API );
+
+		ImageTransformScheduler.ImageTransformLaneStatistics statistics = scheduler.getStatistics().get( BACKGROUND );
+		assertThat( statistics.getActive() ).isEqualTo( 1 );
+		assertThat( statistics.getExecuted() ).isEqualTo( 1 );
+		assertThat( statistics.getRejected() ).isEqualTo( 1 );
+		assertThat( statistics.getQueueDepth() ).isEqualTo( 0 );
+
+		scheduler.release( BACKGROUND );
+		scheduler.acquire( BACKGROUND );
+	}
+
+	@Test
+	@SneakyThrows
+	public void waitingLanesAreServedAccordingToTheirWeight() {
+		TransformersSettings settings = new TransformersSettings();
+		settings.setConcurrentLimit( 1 );
+		settings.setInteractiveLane( new TransformersSettings.LaneSettings( 3, null, 0 ) );
+		settings.setBackgroundLane( new TransformersSettings.LaneSettings( 1, null, 0 ) );
+		ImageTransformScheduler scheduler = new ImageTransformScheduler( settings );
+
+		scheduler.acquire( API );
+
+		for ( int i = 0; i < 4; i++ ) {
+			queue( scheduler, BACKGROUND );
+		}
+		for ( int i = 0; i < 6; i++ ) {
+			queue( scheduler, INTERACTIVE );
+		}
+
+		awaitQueueDepth( scheduler, BACKGROUND, 4 );
+		awaitQueueDepth( scheduler, INTERACTIVE, 6 );
+
+		scheduler.release( API );
+		executorService.shutdown();
+		assertThat( executorService.awaitTermination( 10, TimeUnit.SECONDS ) ).isTrue();
+
+		// interactive gets 3 slots for every background slot, as long as it has transforms waiting
+		assertThat( started ).containsExactly(
+				INTERACTIVE, BACKGROUND, INTERACTIVE, INTERACTIVE, INTERACTIVE, BACKGROUND, INTERACTIVE, INTERACTIVE, BACKGROUND, BACKGROUND
+		);
+		assertThat( scheduler.getStatistics().get( INTERACTIVE ).getExecuted() ).isEqualTo( 6 );
+		assertThat( scheduler.getStatistics().get( INTERACTIVE ).getQueueDepth() ).isEqualTo( 0 );
+	}
+
+	@Test
+	@SneakyThrows
+	public void interruptedWaitFailsAndLeavesTheQueue() {
+		TransformersSettings settings = new TransformersSettings();
+		settings.setConcurrentLimit( 1 );
+		ImageTransformScheduler scheduler = new ImageTransformScheduler( settings );
+
+		scheduler.acquire( API );
+
+		Thread waiting = new Thread( () -> {
+			assertThatExceptionOfType( ImageTransformQueueTimeoutException.class ).isThrownBy( () -> scheduler.acquire( INTERACTIVE ) );
+			assertThat( Thread.currentThread().isInterrupted() ).isTrue();
+		} );
+		waiting.start();
+		awaitQueueDepth( scheduler, INTERACTIVE, 1 );
+
+		waiting.interrupt();
+		waiting.join( 5000 );
+
+		assertThat( scheduler.getStatistics().get( INTERACTIVE ).getQueueDepth() ).isEqualTo( 0 );
+		scheduler.release( API );
+		scheduler.acquire( INTERACTIVE );
+	}
+
+	@Test
+	public void laneOfCurrentThread() {
+		assertThat( ImageTransformLane.current() ).isEqualTo( API );
+		assertThat( ImageTransformLane.execute( BACKGROUND, () -> {
+			assertThat( ImageTransformLane.execute( INTERACTIVE, ImageTransformLane::current ) ).isEqualTo( INTERACTIVE );
+			return ImageTransformLane.current();
+		} ) ).isEqualTo( BACKGROUND );
+		assertThat( ImageTransformLane.current() ).isEqualTo( API );
+	}
+
+	private void queue( ImageTransformScheduler scheduler, ImageTransformLane lane ) {
+		executorService.submit( () -> {
+			scheduler.acquire( lane );
+			started.add( lane );
+			scheduler.release( lane );
+		} );
+	}
+
+	@SneakyThrows
+	private void awaitQueueDepth( ImageTransformScheduler scheduler, ImageTransformLane lane, int queueDepth ) {
+		long timeout = System.currentTimeMillis() + 5000;
+		while ( scheduler.getStatistics().get( lane ).getQueueDepth() < queueDepth && System.currentTimeMillis() < timeout ) {
+			Thread.sleep( 10 );
+		}
+		assertThat( scheduler.getStatistics().get( lane ).getQueueDepth() ).isEqualTo( queueDepth );
+	}
+}
@@ -0,0 +1,281 @@
+package com.foreach.imageserver.core.services;
+
+import com.foreach.imageserver.core.business.Dimensions;
+import com.foreach.imageserver.core.business.ImageType;
+import com.foreach.imageserver.core.config.TransformersSettings;
+import com.foreach.imageserver.core.transformers.*;
+import com.foreach.imageserver.dto.ColorDto;
+import com.foreach.imageserver.dto.CropDto;
+import com.foreach.imageserver.dto.ImageTransformDto;
+import lombok.RequiredArgsConstructor;
+import lombok.SneakyThrows;
+import org.apache.commons.io.IOUtils;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+
+/**
+ * @author Arne Vandamme
+ * @since 6.3.0
+ */
+public class TestImageTransformServiceImpl
+{
+	private static final ImageAttributes ATTRIBUTES = new ImageAttributes( ImageType.PNG, new Dimensions( 100, 100 ), 1 );
+
+	private final List<String> executed = new ArrayList<>();
+
+	private ImageTransformServiceImpl transformService;
+
+	@BeforeEach
+	public void createService() {
+		transformService = new ImageTransformServiceImpl( new TransformersSettings(), new ImageTransformScheduler( new TransformersSettings() ), new ImageTransformUtils() );
+	}
+
+	@Test
+	public void preferredExecutorIsUsedBeforeFallback() {
+		transformService.setCommandExecutors( Arrays.asList(
+				new TransformExecutor( "fallback", ImageTransformerPriority.FALLBACK, true ),
+				new TransformExecutor( "unable", ImageTransformerPriority.UNABLE, true ),
+				new TransformExecutor( "preferred", ImageTransformerPriority.PREFERRED, true )
+		) );
+
+		ImageSource result = transformService.transform( source(), ATTRIBUTES, Collections.singletonList( transform() ) );
+		assertThat( result.getImageType() ).isEqualTo( ImageType.JPEG );
+		assertThat( executed ).containsExactly( "preferred" );
+	}
+
+	@Test
+	public void nextExecutorIsUsedIfTransformIsDeclined() {
+		transformService.setCommandExecutors( Arrays.asList(
+				new TransformExecutor( "fallback", ImageTransformerPriority.FALLBACK, true ),
+				new TransformExecutor( "preferred", ImageTransformerPriority.PREFERRED, false )
+		) );
+
+		assertThat( transformService.transform( source(), ATTRIBUTES, Collections.singletonList( transform() ) ) ).isNotNull();
+		assertThat( executed ).containsExactly( "preferred", "fallback" );
+	}
+
+	@Test
+	public void exceptionIfAllExecutorsDeclineTheTransform() {
+		transformService.setCommandExecutors( Collections.singletonList( new TransformExecutor( "preferred", ImageTransformerPriority.PREFERRED, false ) ) );
+
+		assertThatExceptionOfType( IllegalArgumentException.class )
+				.isThrownBy( () -> transformService.transform( source(), ATTRIBUTES, Collections.singletonList( transform() ) ) );
+	}
+
+	@Test
+	public void nextAttributesExecutorCanRereadTheImageStream() {
+		transformService.setCommandExecutors( Arrays.asList(
+				new AttributesExecutor( "declining", false ),
+				new AttributesExecutor( "reading", true )
+		) );
+
+		InputStream notMarkable = new FilterInputStream( new ByteArrayInputStream( "image-data".getBytes( StandardCharsets.UTF_8 ) ) )
+		{
+			@Override
+			public boolean markSupported() {
+				return false;
+			}
+		};
+
+		assertThat( transformService.getAttributes( notMarkable ) ).isEqualTo( ATTRIBUTES );
+		assertThat( executed ).containsExactly( "declining:image-data", "reading:image-data" );
+	}
+
+	@Test
+	public void imageStreamIsNotKeptBeyondTheMarkLimit() {
+		transformService.setCommandExecutors( Arrays.asList(
+				new AttributesExecutor( "declining", false ),
+				new AttributesExecutor( "reading", true )
+		) );
+
+		byte[] data = new byte[ImageTransformServiceImpl.ATTRIBUTES_MARK_LIMIT + 1];
+		InputStream notMarkable = new FilterInputStream( new ByteArrayInputStream( data ) )
+		{
+			@Override
+			public boolean markSupported() {
+				return false;
+			}
+		};
+
+		assertThatExceptionOfType( IllegalArgumentException.class ).isThrownBy( () -> transformService.getAttributes( notMarkable ) );
+		assertThat( executed ).hasSize( 1 );
+		assertThat( executed.get( 0 ) ).startsWith( "declining:" );
+	}
+
+	@Test
+	public void chainedTransformsAreFusedIntoSingleExecution() {
+		transformService.setCommandExecutors( Collections.singletonList( new TransformExecutor( "preferred", ImageTransformerPriority.PREFERRED, true ) ) );
+
+		ImageTransformDto crop = ImageTransformDto.builder().crop( new CropDto( 10, 10, 80, 80 ) ).build();
+		assertThat( transformService.transform( source(), ATTRIBUTES, Arrays.asList( crop, transform() ) ) ).isNotNull();
+		assertThat( executed ).containsExactly( "preferred" );
+	}
+
+	@Test
+	public void chainedTransformsThatCannotBeFusedAreExecutedSeparately() {
+		transformService.setCommandExecutors( Collections.singletonList( new TransformExecutor( "preferred", ImageTransformerPriority.PREFERRED, true ) ) );
+
+		ImageTransformDto alpha = ImageTransformDto.builder().alphaColor( ColorDto.WHITE ).build();
+		assertThat( transformService.transform( source(), ATTRIBUTES, Arrays.asList( transform(), alpha ) ) ).isNotNull();
+		assertThat( executed ).containsExactly( "preferred", "preferred" );
+	}
+
+	@Test
+	public void outputIsWrittenToOutputStreamWhileBeingCreated() {
+		transformService.setCommandExecutors( Collections.singletonList( new SpillingTransformExecutor() ) );
+
+		// only the final output should be written, not the intermediate image
+		ImageTransformDto alpha = ImageTransformDto.builder().alphaColor( ColorDto.WHITE ).build();
+		ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+		ImageSource result = transformService.transform( source(), ATTRIBUTES, Arrays.asList( transform(), alpha ), outputStream );
+
+		assertThat( result ).isInstanceOf( SpillingImageSource.class );
+		assertThat( new String( outputStream.toByteArray(), StandardCharsets.UTF_8 ) ).isEqualTo( "spilling" );
+		assertThat( executed ).containsExactly( "spilling", "spilling" );
+	}
+
+	@Test
+	public void outputIsCopiedToOutputStreamIfExecutorDoesNotWriteToIt() {
+		transformService.setCommandExecutors( Collections.singletonList( new TransformExecutor( "preferred", ImageTransformerPriority.PREFERRED, true ) ) );
+
+		ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+		transformService.transform( source(), ATTRIBUTES, Collections.singletonList( transform() ), outputStream );
+
+		assertThat( new String( outputStream.toByteArray(), StandardCharsets.UTF_8 ) ).isEqualTo( "preferred" );
+	}
+
+	@Test
+	public void batchIsExecutedByBatchExecutor() {
+		transformService.setCommandExecutors( Arrays.asList(
+				new TransformExecutor( "single", ImageTransformerPriority.PREFERRED, true ),
+				new BatchExecutor( "batch", ImageTransformerPriority.PREFERRED )
+		) );
+
+		List<ImageSource> outputs = transformService.transformBatch( source(), ATTRIBUTES, Arrays.asList( transform(), transform() ) );
+		assertThat( outputs ).hasSize( 2 );
+		assertThat( executed ).containsExactly( "batch:2" );
+	}
+
+	@Test
+	public void batchFallsBackToSingleTransforms() {
+		AtomicInteger reads = new AtomicInteger();
+		ImageSource source = new SimpleImageSource( ImageType.PNG, () -> {
+			reads.incrementAndGet();
+			return new ByteArrayInputStream( new byte[0] );
+		} );
+
+		transformService.setCommandExecutors( Arrays.asList(
+				new TransformExecutor( "single", ImageTransformerPriority.FALLBACK, true ),
+				new BatchExecutor( "batch", ImageTransformerPriority.UNABLE )
+		) );
+
+		List<ImageSource> outputs = transformService.transformBatch( source, ATTRIBUTES, Arrays.asList( transform(), transform(), transform() ) );
+		assertThat( outputs ).hasSize( 3 );
+		assertThat( executed ).containsExactly( "single", "single", "single" );
+		assertThat( reads.get() ).isEqualTo( 1 );
+	}
+
+	private ImageSource source() {
+		return new SimpleImageSource( ImageType.PNG, new byte[0] );
+	}
+
+	private ImageTransformDto transform() {
+		return ImageTransformDto.builder().width( 50 ).height( 50 ).build();
+	}
+
+	@RequiredArgsConstructor
+	private class TransformExecutor implements ImageCommandExecutor<ImageTransformCommand>
+	{
+		private final String name;
+		private final ImageTransformerPriority priority;
+		private final boolean complete;
+
+		@Override
+		public ImageTransformerPriority canExecute( ImageTransformCommand command ) {
+			return priority;
+		}
+
+		@Override
+		public void execute( ImageTransformCommand command ) {
+			executed.add( name );
+			if ( complete ) {
+				command.setExecutionResult( new SimpleImageSource( ImageType.JPEG, name.getBytes( StandardCharsets.UTF_8 ) ) );
+			}
+		}
+	}
+
+	private class SpillingTransformExecutor implements ImageCommandExecutor<ImageTransformCommand>
+	{
+		@Override
+		public ImageTransformerPriority canExecute( ImageTransformCommand command ) {
+			return ImageTransformerPriority.PREFERRED;
+		}
+
+		@Override
+		@SneakyThrows
+		public void execute( ImageTransformCommand command ) {
+			executed.add( "spilling" );
+
+			SpillingImageSource output = command.createOutputImageSource( ImageType.JPEG );
+			try (OutputStream os = output.getOutputStream()) {
+				os.write( "spilling".getBytes( StandardCharsets.UTF_8 ) );
+			}
+			command.setExecutionResult( output );
+		}
+	}
+
+	@RequiredArgsConstructor
+	private class BatchExecutor implements ImageCommandExecutor<ImageBatchTransformCommand>
+	{
+		private final String name;
+		private final ImageTransformerPriority priority;
+
+		@Override
+		public ImageTransformerPriority canExecute( ImageBatchTransformCommand command ) {
+			return priority;
+		}
+
+		@Override
+		public void execute( ImageBatchTransformCommand command ) {
+			executed.add( name + ":" + command.getTransforms().size() );
+
+			List<ImageSource> outputs = new ArrayList<>();
+			command.getTransforms().forEach( t -> outputs.add( new SimpleImageSource( ImageType.JPEG, new byte[0] ) ) );
+			command.setExecutionResult( outputs );
+		}
+	}
+
+	@RequiredArgsConstructor
+	private class AttributesExecutor implements ImageCommandExecutor<ImageAttributesCommand>
+	{
+		private final String name;
+		private final boolean complete;
+
+		@Override
+		public ImageTransformerPriority canExecute( ImageAttributesCommand command ) {
+			return ImageTransformerPriority.PREFERRED;
+		}
+
+		@Override
+		@SneakyThrows
+		public void execute( ImageAttributesCommand command ) {
+			try (InputStream is = command.getImageStream()) {
+				executed.add( name + ":" + IOUtils.toString( is, StandardCharsets.UTF_8 ) );
+			}
+			if ( complete ) {
+				command.setExecutionResult( ATTRIBUTES );
+			}
+		}
+	}
+}
@@ -0,0 +1,147 @@
+package com.foreach.imageserver.core.services;
+
+import com.foreach.across.modules.filemanager.business.FileDescriptor;
+import com.foreach.imageserver.core.config.VariantCacheSettings;
+import lombok.SneakyThrows;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author Arne Vandamme
+ * @since 6.3.0
+ */
+public class TestImageVariantCache
+{
+	@Test
+	public void hitsAndMissesAreRecorded() {
+		ImageVariantCache cache = cache( 1024 * 1024, 100, 10 );
+
+		assertThat( cache.get( variant( 1, 1 ) ) ).isNull();
+		cache.put( 1, variant( 1, 1 ), new byte[10] );
+		assertThat( cache.get( variant( 1, 1 ) ).getData() ).hasSize( 10 );
+
+		cache.putMissing( 1, variant( 1, 2 ) );
+		assertThat( cache.get( variant( 1, 2 ) ).isMissing() ).isTrue();
+
+		ImageVariantCache.ImageVariantCacheStatistics statistics = cache.getStatistics();
+		assertThat( statistics.getHits() ).isEqualTo( 1 );
+		assertThat( statistics.getMissingHits() ).isEqualTo( 1 );
+		assertThat( statistics.getMisses() ).isEqualTo( 1 );
+		assertThat( statistics.getEntries() ).isEqualTo( 2 );
+	}
+
+	@Test
+	public void variantsLargerThanMaxEntrySizeAreNotCached() {
+		ImageVariantCache cache = cache( 1024 * 1024, 100, 10 );
+
+		assertThat( cache.isCacheable( 101 ) ).isFalse();
+		cache.put( 1, variant( 1, 1 ), new byte[101] );
+		assertThat( cache.get( variant( 1, 1 ) ) ).isNull();
+	}
+
+	@Test
+	@SneakyThrows
+	public void missingVariantsExpire() {
+		ImageVariantCache cache = cache( 1024 * 1024, 100, 1 );
+
+		cache.putMissing( 1, variant( 1, 1 ) );
+		assertThat( cache.get( variant( 1, 1 ) ) ).isNotNull();
+
+		Thread.sleep( 1100 );
+		assertThat( cache.get( variant( 1, 1 ) ) ).isNull();
+	}
+
+	@Test
+	@SneakyThrows
+	public void variantsExpire() {
+		VariantCacheSettings settings = new VariantCacheSettings();
+		settings.setVariantTtl( 1 );
+		ImageVariantCache cache = new ImageVariantCache( settings );
+
+		cache.put( 1, variant( 1, 1 ), new byte[10] );
+		assertThat( cache.get( variant( 1, 1 ) ) ).isNotNull();
+
+		Thread.sleep( 1100 );
+		assertThat( cache.get( variant( 1, 1 ) ) ).isNull();
+
+		settings.setVariantTtl( 0 );
+		cache = new ImageVariantCache( settings );
+		cache.put( 1, variant( 1, 1 ), new byte[10] );
+		Thread.sleep( 10 );
+		assertThat( cache.get( variant( 1, 1 ) ) ).isNotNull();
+	}
+
+	@Test
+	public void invalidation() {
+		ImageVariantCache cache = cache( 1024 * 1024, 100, 10 );
+		cache.put( 1, variant( 1, 1 ), new byte[10] );
+		cache.put( 1, variant( 1, 2 ), new byte[10] );
+		cache.put( 2, variant( 2, 1 ), new byte[10] );
+
+		cache.invalidate( variant( 1, 1 ) );
+		assertThat( cache.get( variant( 1, 1 ) ) ).isNull();
+		assertThat( cache.get( variant( 1, 2 ) ) ).isNotNull();
+
+		cache.invalidateImage( 1 );
+		assertThat( cache.get( variant( 1, 2 ) ) ).isNull();
+		assertThat( cache.get( variant( 2, 1 ) ) ).isNotNull();
+		assertThat( cache.getStatistics().getEntries() ).isEqualTo( 1 );
+	}
+
+	@Test
+	public void sizeIsBounded() {
+		// 16 segments of 1024 bytes
+		ImageVariantCache cache = cache( 16 * 1024, 1024, 10 );
+
+		for ( int i = 0; i < 1000; i++ ) {
+			cache.get( variant( 1, i ) );
+			cache.put( 1, variant( 1, i ), new byte[200] );
+		}
+
+		ImageVariantCache.ImageVariantCacheStatistics statistics = cache.getStatistics();
+		assertThat( statistics.getSize() ).isLessThanOrEqualTo( 16 * 1024 );
+		assertThat( statistics.getEvictions() ).isGreaterThan( 0 );
+	}
+
+	@Test
+	public void frequentlyRequestedVariantsAreNotFlushedByVariantsRequestedOnce() {
+		// a single entry fits in a segment
+		ImageVariantCache cache = cache( 16 * 300, 200, 10 );
+
+		FileDescriptor popular = variant( 1, 0 );
+		for ( int i = 0; i < 5; i++ ) {
+			cache.get( popular );
+		}
+		cache.put( 1, popular, new byte[100] );
+
+		for ( int i = 1; i < 500; i++ ) {
+			cache.get( variant( 2, i ) );
+			cache.put( 2, variant( 2, i ), new byte[100] );
+		}
+
+		assertThat( cache.get( popular ) ).isNotNull();
+		assertThat( cache.getStatistics().getRejections() ).isGreaterThan( 0 );
+	}
+
+	@Test
+	public void disabledCache() {
+		ImageVariantCache cache = cache( 0, 100, 10 );
+		assertThat( cache.isEnabled() ).isFalse();
+
+		cache.put( 1, variant( 1, 1 ), new byte[10] );
+		assertThat( cache.get( variant( 1, 1 ) ) ).isNull();
+	}
+
+	private ImageVariantCache cache( long maxSize, int maxEntrySize, int missingVariantTtl ) {
+		VariantCacheSettings settings = new VariantCacheSettings();
+		settings.setMaxSize( maxSize );
+		settings.setMaxEntrySize( maxEntrySize );
+		settings.setMissingVariantTtl( missingVariantTtl );
+		return new ImageVariantCache( settings );
+	}
+
+	private FileDescriptor variant( long imageId, int width ) {
+		return FileDescriptor.of( "imageserver-variants", "default/2018", imageId + "-w" + width + "-h100.jpeg" );
+	}
+}
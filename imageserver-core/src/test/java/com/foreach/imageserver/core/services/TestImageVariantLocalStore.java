@@ -0,0 +1,194 @@
+package com.foreach.imageserver.core.services;
+
+import com.foreach.across.modules.filemanager.business.FileDescriptor;
+import com.foreach.across.modules.filemanager.business.FileResource;
+import com.foreach.across.modules.filemanager.services.FileManager;
+import com.foreach.across.modules.filemanager.services.FileManagerImpl;
+import com.foreach.across.modules.filemanager.services.LocalFileRepository;
+import com.foreach.imageserver.core.config.StoreSettings.LocalVariantsSettings;
+import lombok.SneakyThrows;
+import org.apache.commons.io.IOUtils;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.function.BooleanSupplier;
+
+import static com.foreach.imageserver.core.config.ServicesConfiguration.IMAGESERVER_VARIANTS_REPOSITORY;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.Mockito.*;
+
+/**
+ * @author Arne Vandamme
+ * @since 6.3.0
+ */
+public class TestImageVariantLocalStore
+{
+	private FileManagerImpl fileManager;
+	private LocalVariantsSettings settings;
+	private ImageVariantLocalStore store;
+
+	@BeforeEach
+	public void createStore( @TempDir File folder ) {
+		fileManager = new FileManagerImpl();
+		fileManager.registerRepository(
+				LocalFileRepository.builder().repositoryId( IMAGESERVER_VARIANTS_REPOSITORY ).rootFolder( folder + "/variants" ).build()
+		);
+
+		settings = new LocalVariantsSettings();
+		settings.setFolder( new File( folder, "local" ) );
+		settings.setMaxSize( 10L );
+	}
+
+	@AfterEach
+	public void shutdown() {
+		if ( store != null ) {
+			store.shutdown();
+		}
+	}
+
+	@Test
+	public void disabledWithoutFolder() {
+		assertThat( new ImageVariantLocalStore( new LocalVariantsSettings(), fileManager ).isEnabled() ).isFalse();
+	}
+
+	@Test
+	@SneakyThrows
+	public void writtenVariantIsUploaded() {
+		store = createStore( fileManager );
+
+		store.write( variant( "a" ), os -> write( os, "written" ) );
+		Path file = store.get( variant( "a" ) );
+		assertThat( read( file ) ).isEqualTo( "written" );
+
+		waitFor( () -> store.getPendingUploadCount() == 0 );
+		assertThat( read( fileManager.getFileResource( variant( "a" ) ) ) ).isEqualTo( "written" );
+		assertThat( file.resolveSibling( file.getFileName() + ".pending" ) ).doesNotExist();
+	}
+
+	@Test
+	@SneakyThrows
+	public void leastRecentlyUsedVariantsAreEvicted() {
+		store = createStore( fileManager );
+
+		copyToLocal( "a", "aaaa" );
+		Path evicted = copyToLocal( "b", "bbbb" );
+		assertThat( store.get( variant( "a" ) ) ).isNotNull();
+
+		copyToLocal( "c", "cccc" );
+
+		assertThat( store.get( variant( "a" ) ) ).isNotNull();
+		assertThat( store.get( variant( "b" ) ) ).isNull();
+		assertThat( store.get( variant( "c" ) ) ).isNotNull();
+		assertThat( store.getSize() ).isEqualTo( 8 );
+
+		// a client might still be reading the evicted variant
+		assertThat( read( evicted ) ).isEqualTo( "bbbb" );
+	}
+
+	@Test
+	@SneakyThrows
+	public void variantsThatAreNotUploadedAreNeverEvicted() {
+		store = createStore( failingFileManager() );
+
+		store.write( variant( "a" ), os -> write( os, "aaaaaaaa" ) );
+		store.write( variant( "b" ), os -> write( os, "bbbbbbbb" ) );
+
+		assertThat( store.get( variant( "a" ) ) ).isNotNull();
+		assertThat( store.get( variant( "b" ) ) ).isNotNull();
+		assertThat( store.getSize() ).isEqualTo( 16 );
+		assertThat( store.getPendingUploadCount() ).isEqualTo( 2 );
+	}
+
+	@Test
+	@SneakyThrows
+	public void variantsAndPendingUploadsAreRestoredOnStartup() {
+		store = createStore( failingFileManager() );
+		copyToLocal( "a", "aaaa" );
+		store.write( variant( "b" ), os -> write( os, "bbbb" ) );
+		store.shutdown();
+
+		store = createStore( fileManager );
+
+		assertThat( store.getSize() ).isEqualTo( 8 );
+		assertThat( read( store.get( variant( "a" ) ) ) ).isEqualTo( "aaaa" );
+
+		waitFor( () -> store.getPendingUploadCount() == 0 );
+		assertThat( read( fileManager.getFileResource( variant( "b" ) ) ) ).isEqualTo( "bbbb" );
+	}
+
+	@Test
+	@SneakyThrows
+	public void removedVariantIsDeleted() {
+		store = createStore( fileManager );
+
+		Path file = copyToLocal( "a", "aaaa" );
+		store.remove( variant( "a" ) );
+
+		assertThat( store.get( variant( "a" ) ) ).isNull();
+		assertThat( file ).doesNotExist();
+		assertThat( store.getSize() ).isEqualTo( 0 );
+	}
+
+	private ImageVariantLocalStore createStore( FileManager fileManager ) throws Exception {
+		ImageVariantLocalStore localStore = new ImageVariantLocalStore( settings, fileManager );
+		localStore.awaitWarmUp();
+		return localStore;
+	}
+
+	@SneakyThrows
+	private FileManager failingFileManager() {
+		FileResource resource = mock( FileResource.class );
+		doThrow( new IOException( "upload failed" ) ).when( resource ).copyFrom( any( File.class ), anyBoolean() );
+		FileManager failing = mock( FileManager.class );
+		when( failing.getFileResource( any( FileDescriptor.class ) ) ).thenReturn( resource );
+		return failing;
+	}
+
+	@SneakyThrows
+	private Path copyToLocal( String name, String data ) {
+		FileResource resource = fileManager.getFileResource( variant( name ) );
+		resource.copyFrom( IOUtils.toInputStream( data, StandardCharsets.UTF_8 ) );
+		return store.copyToLocal( variant( name ), resource );
+	}
+
+	private FileDescriptor variant( String name ) {
+		return FileDescriptor.of( IMAGESERVER_VARIANTS_REPOSITORY, "website/2018/12", name + ".png" );
+	}
+
+	@SneakyThrows
+	private String read( Path file ) {
+		return new String( Files.readAllBytes( file ), StandardCharsets.UTF_8 );
+	}
+
+	@SneakyThrows
+	private String read( FileResource resource ) {
+		try (InputStream is = resource.getInputStream()) {
+			return IOUtils.toString( is, StandardCharsets.UTF_8 );
+		}
+	}
+
+	@SneakyThrows
+	private Void write( OutputStream os, String data ) {
+		os.write( data.getBytes( StandardCharsets.UTF_8 ) );
+		return null;
+	}
+
+	private void waitFor( BooleanSupplier condition ) throws InterruptedException {
+		long timeout = System.currentTimeMillis() + 5000;
+		while ( !condition.getAsBoolean() && System.currentTimeMillis() < timeout ) {
+			Thread.sleep( 10 );
+		}
+		assertThat( condition.getAsBoolean() ).isTrue();
+	}
+}
@@ -0,0 +1,82 @@
+package com.foreach.imageserver.core.services;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.InputStreamResource;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.util.StreamUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author Arne Vandamme
+ * @since 6.3.0
+ */
+public class TestOriginalImageData
+{
+	@Test
+	public void uploadedFileIsReadDirectly() throws IOException {
+		byte[] data = data( 2000 );
+		MockMultipartFile file = new MockMultipartFile( "imageData", "imageData", null, data );
+
+		try (OriginalImageData imageData = OriginalImageData.of( file )) {
+			assertThat( imageData.getSize() ).isEqualTo( 2000 );
+			assertThat( read( imageData ) ).isEqualTo( data );
+			assertThat( read( imageData ) ).isEqualTo( data );
+		}
+	}
+
+	@Test
+	public void resourceIsReadDirectly() throws IOException {
+		byte[] data = data( 500 );
+
+		try (OriginalImageData imageData = OriginalImageData.of( new ByteArrayResource( data ) )) {
+			assertThat( imageData.getSize() ).isEqualTo( 500 );
+			assertThat( read( imageData ) ).isEqualTo( data );
+			assertThat( read( imageData ) ).isEqualTo( data );
+		}
+	}
+
+	@Test
+	public void streamThatCanOnlyBeReadOnceIsCopied() throws IOException {
+		byte[] data = data( 3 * 1024 * 1024 );
+		InputStreamResource resource = new InputStreamResource( new ByteArrayInputStream( data ) );
+
+		try (OriginalImageData imageData = OriginalImageData.of( resource )) {
+			assertThat( resource.isOpen() ).isTrue();
+			assertThat( imageData.getSize() ).isEqualTo( data.length );
+			assertThat( read( imageData ) ).isEqualTo( data );
+			assertThat( read( imageData ) ).isEqualTo( data );
+		}
+	}
+
+	@Test
+	public void contentHashIsTheSameWhetherOrNotTheDataWasCopied() throws IOException {
+		byte[] data = data( 2 * 1024 * 1024 );
+
+		try (OriginalImageData direct = OriginalImageData.of( new ByteArrayResource( data ) );
+		     OriginalImageData copied = OriginalImageData.of( new InputStreamResource( new ByteArrayInputStream( data ) ) )) {
+			assertThat( direct.getContentHash() )
+					.hasSize( 64 )
+					.isEqualTo( copied.getContentHash() )
+					.isNotEqualTo( OriginalImageData.of( new ByteArrayResource( data( 100 ) ) ).getContentHash() );
+		}
+	}
+
+	private byte[] read( OriginalImageData imageData ) throws IOException {
+		try (InputStream is = imageData.getInputStream()) {
+			return StreamUtils.copyToByteArray( is );
+		}
+	}
+
+	private byte[] data( int size ) {
+		byte[] data = new byte[size];
+		new Random( size ).nextBytes( data );
+		return data;
+	}
+}
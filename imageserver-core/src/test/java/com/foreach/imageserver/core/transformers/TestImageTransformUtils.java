@@ -2,9 +2,7 @@ package com.foreach.imageserver.core.transformers;
 
 import com.foreach.imageserver.core.business.Dimensions;
 import com.foreach.imageserver.core.business.ImageType;
-import com.foreach.imageserver.dto.CropDto;
-import com.foreach.imageserver.dto.DimensionsDto;
-import com.foreach.imageserver.dto.ImageTransformDto;
+import com.foreach.imageserver.dto.*;
 import com.foreach.imageserver.math.AspectRatio;
 import lombok.RequiredArgsConstructor;
 import org.junit.jupiter.api.Test;
@@ -104,6 +102,72 @@ public class TestImageTransformUtils
 				.isEqualTo( t().crop( CropDto.builder().x( 0 ).y( 150 ).width( 1600 ).height( 900 ).build() ).width( 1280 ).height( 720 ) );
 	}
 
+	@Test
+	public void outputAttributesAreCalculated() {
+		assertThat( utils.calculateOutputAttributes( t().build(), attributes ) ).isEqualTo( attributes );
+		assertThat( utils.calculateOutputAttributes( t().crop( new CropDto( 10, 10, 200, 100 ) ).outputType( ImageTypeDto.JPEG ).build(), attributes ) )
+				.isEqualTo( new ImageAttributes( ImageType.JPEG, new Dimensions( 200, 100 ), 1 ) );
+		assertThat( utils.calculateOutputAttributes( t().crop( new CropDto( 10, 10, 200, 100 ) ).width( 100 ).height( 50 ).build(), attributes ) )
+				.isEqualTo( new ImageAttributes( ImageType.PNG, new Dimensions( 100, 50 ), 1 ) );
+	}
+
+	@Test
+	public void resizeFollowedByCropIsFusedIntoCropOfTheOriginal() {
+		// downscale to half, then take crop of the result
+		assertFused( t().width( 800 ), t().crop( new CropDto( 100, 50, 200, 100 ) ) )
+				.isEqualTo( t().crop( new CropDto( 200, 100, 400, 200 ) ).width( 200 ).height( 100 ) );
+	}
+
+	@Test
+	public void cropFollowedByResizeIsFusedIntoSingleCropAndResize() {
+		assertFused( t().crop( new CropDto( 100, 100, 400, 300 ) ), t().width( 200 ).outputType( ImageTypeDto.JPEG ).quality( 70 ) )
+				.isEqualTo( t().crop( new CropDto( 100, 100, 400, 300 ) ).width( 200 ).height( 150 ).outputType( ImageTypeDto.JPEG ).quality( 70 ) );
+	}
+
+	@Test
+	public void cropsAreCombined() {
+		assertFused( t().crop( new CropDto( 100, 100, 400, 300 ) ), t().crop( new CropDto( 50, 50, 100, 100 ) ) )
+				.isEqualTo( t().crop( new CropDto( 150, 150, 100, 100 ) ) );
+	}
+
+	@Test
+	public void grayscaleIsFused() {
+		assertFused( t().colorSpace( ColorSpaceDto.GRAYSCALE ), t().width( 800 ) )
+				.isEqualTo( t().colorSpace( ColorSpaceDto.GRAYSCALE ).width( 800 ).height( 600 ) );
+		assertFused( t().width( 800 ), t().colorSpace( ColorSpaceDto.GRAYSCALE ) )
+				.isEqualTo( t().colorSpace( ColorSpaceDto.GRAYSCALE ).width( 800 ).height( 600 ) );
+	}
+
+	@Test
+	public void transparencyRemovedByIntermediateOutputTypeIsKept() {
+		assertFused( t().outputType( ImageTypeDto.JPEG ), t().width( 800 ).outputType( ImageTypeDto.PNG ) )
+				.isEqualTo( t().backgroundColor( ColorDto.WHITE ).width( 800 ).height( 600 ).outputType( ImageTypeDto.PNG ) );
+	}
+
+	@Test
+	public void transformsThatDependOnIntermediatePixelsAreNotFused() {
+		assertThat( fuse( t().width( 800 ), t().alphaColor( ColorDto.WHITE ), attributes ) ).isNull();
+		assertThat( fuse( t().width( 800 ), t().backgroundColor( ColorDto.WHITE ), attributes ) ).isNull();
+		assertThat( fuse( t().width( 800 ), t().colorSpace( ColorSpaceDto.MONOCHROME ), attributes ) ).isNull();
+		assertThat( fuse( t().colorSpace( ColorSpaceDto.MONOCHROME ), t().width( 800 ), attributes ) ).isNull();
+		assertThat( fuse( t().width( 800 ), t().scene( 0 ), attributes ) ).isNull();
+		assertThat( fuse( t().width( 800 ), t().width( 400 ), attributes.toBuilder().type( ImageType.PDF ).build() ) ).isNull();
+		assertThat( fuse( t().outputType( ImageTypeDto.PDF ), t().width( 400 ), attributes ) ).isNull();
+		assertThat( fuse( t().width( 800 ), t().width( 400 ), attributes.toBuilder().sceneCount( 3 ).build() ) ).isNull();
+	}
+
+	private NormalizedTransformAssert assertFused( ImageTransformDto.ImageTransformDtoBuilder first, ImageTransformDto.ImageTransformDtoBuilder next ) {
+		ImageTransformDto fused = fuse( first, next, attributes );
+		assertThat( fused ).isNotNull();
+		return new NormalizedTransformAssert( fused );
+	}
+
+	private ImageTransformDto fuse( ImageTransformDto.ImageTransformDtoBuilder first,
+	                                ImageTransformDto.ImageTransformDtoBuilder next,
+	                                ImageAttributes sourceAttributes ) {
+		return utils.fuse( utils.normalize( first.build(), sourceAttributes ), sourceAttributes, next.build() );
+	}
+
 	private ImageTransformDto.ImageTransformDtoBuilder t() {
 		return builder();
 	}
@@ -0,0 +1,101 @@
+package com.foreach.imageserver.core.transformers;
+
+import com.foreach.imageserver.core.business.ImageType;
+import lombok.SneakyThrows;
+import org.apache.commons.io.IOUtils;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+
+/**
+ * @author Arne Vandamme
+ * @since 6.3.0
+ */
+public class TestSpillingImageSource
+{
+	@Test
+	public void smallImageIsKeptInMemory() {
+		SpillingImageSource imageSource = write( new SpillingImageSource( ImageType.PNG, 100 ), "image-data" );
+
+		assertThat( imageSource.getImageType() ).isEqualTo( ImageType.PNG );
+		assertThat( imageSource.isInMemory() ).isTrue();
+		assertThat( imageSource.getSize() ).isEqualTo( 10 );
+		assertThat( read( imageSource ) ).isEqualTo( "image-data" );
+		assertThat( read( imageSource ) ).isEqualTo( "image-data" );
+	}
+
+	@Test
+	public void largeImageIsSpilledToDisk() {
+		SpillingImageSource imageSource = write( new SpillingImageSource( ImageType.JPEG, 4 ), "image-data" );
+
+		assertThat( imageSource.isInMemory() ).isFalse();
+		assertThat( read( imageSource ) ).isEqualTo( "image-data" );
+		assertThat( read( imageSource ) ).isEqualTo( "image-data" );
+
+		imageSource.release();
+		assertThatExceptionOfType( ImageModificationException.class ).isThrownBy( imageSource::getImageStream );
+	}
+
+	@Test
+	@SneakyThrows
+	public void dataIsWrittenToTeeOutputStreamWhichIsNotClosed() {
+		ByteArrayOutputStream tee = new ByteArrayOutputStream()
+		{
+			@Override
+			public void close() {
+				throw new AssertionError( "tee output stream should not be closed" );
+			}
+		};
+
+		SpillingImageSource imageSource = write( new SpillingImageSource( ImageType.PNG, 4, tee ), "image-data" );
+
+		assertThat( imageSource.isWrittenTo( tee ) ).isTrue();
+		assertThat( imageSource.isWrittenTo( new ByteArrayOutputStream() ) ).isFalse();
+		assertThat( new String( tee.toByteArray(), StandardCharsets.UTF_8 ) ).isEqualTo( "image-data" );
+		assertThat( read( imageSource ) ).isEqualTo( "image-data" );
+	}
+
+	@Test
+	public void imageCanOnlyBeReadOnceWritingIsDone() {
+		SpillingImageSource imageSource = new SpillingImageSource( ImageType.PNG, 100 );
+		imageSource.getOutputStream();
+
+		assertThat( imageSource.isCompleted() ).isFalse();
+		assertThatExceptionOfType( IllegalStateException.class ).isThrownBy( imageSource::getImageStream );
+		assertThatExceptionOfType( IllegalStateException.class ).isThrownBy( imageSource::getOutputStream );
+	}
+
+	@Test
+	@SneakyThrows
+	public void copyOfInputStream() {
+		SpillingImageSource imageSource = SpillingImageSource.copyOf(
+				ImageType.GIF, new ByteArrayInputStream( "image-data".getBytes( StandardCharsets.UTF_8 ) ), 4
+		);
+
+		assertThat( imageSource.isCompleted() ).isTrue();
+		assertThat( imageSource.getImageType() ).isEqualTo( ImageType.GIF );
+		assertThat( read( imageSource ) ).isEqualTo( "image-data" );
+	}
+
+	@SneakyThrows
+	private SpillingImageSource write( SpillingImageSource imageSource, String data ) {
+		try (OutputStream os = imageSource.getOutputStream()) {
+			os.write( data.getBytes( StandardCharsets.UTF_8 ) );
+		}
+		return imageSource;
+	}
+
+	@SneakyThrows
+	private String read( ImageSource imageSource ) {
+		try (InputStream is = imageSource.getImageStream()) {
+			return IOUtils.toString( is, StandardCharsets.UTF_8 );
+		}
+	}
+}
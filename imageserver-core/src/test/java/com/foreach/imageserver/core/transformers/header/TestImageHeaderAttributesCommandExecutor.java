@@ -0,0 +1,212 @@
+package com.foreach.imageserver.core.transformers.header;
+
+import com.foreach.imageserver.core.business.Dimensions;
+import com.foreach.imageserver.core.business.ImageType;
+import com.foreach.imageserver.core.transformers.ImageAttributes;
+import com.foreach.imageserver.core.transformers.ImageAttributesCommand;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Expected attributes are those returned by the ImageMagick executor for the same images.
+ *
+ * @author Arne Vandamme
+ * @since 6.3.0
+ */
+public class TestImageHeaderAttributesCommandExecutor
+{
+	private final ImageHeaderAttributesCommandExecutor executor = new ImageHeaderAttributesCommandExecutor();
+
+	@Test
+	public void jpeg() {
+		assertThat( attributes( "images/cropCorrectness.jpeg" ) ).isEqualTo( attributes( ImageType.JPEG, 2000, 1000, 1 ) );
+	}
+
+	@Test
+	public void png() {
+		assertThat( attributes( "images/cropCorrectness.png" ) ).isEqualTo( attributes( ImageType.PNG, 2000, 1000, 1 ) );
+	}
+
+	@Test
+	public void gif() {
+		assertThat( attributes( "images/getAttributes.gif" ) ).isEqualTo( attributes( ImageType.GIF, 640, 125, 1 ) );
+	}
+
+	@Test
+	public void tiff() {
+		assertThat( attributes( "images/getAttributes.tiff" ) ).isEqualTo( attributes( ImageType.TIFF, 640, 125, 1 ) );
+	}
+
+	@Test
+	public void svg() {
+		assertThat( attributes( "images/getAttributes.svg" ) ).isEqualTo( attributes( ImageType.SVG, 600, 600, 1 ) );
+	}
+
+	@Test
+	public void pdfIsDeclined() {
+		assertThat( attributes( "images/sample-pdf.pdf" ) ).isNull();
+	}
+
+	@Test
+	public void onlyTheFirstTiffDirectoryIsRead() {
+		assertThat( attributes( tiff( 8, 0 ) ) ).isEqualTo( attributes( ImageType.TIFF, 640, 125, 1 ) );
+
+		// more pages or a directory beyond the header are left to ImageMagick
+		assertThat( attributes( tiff( 8, 1024 ) ) ).isNull();
+		assertThat( attributes( tiff( ImageHeaderParser.MAX_HEADER_SIZE + 8, 0 ) ) ).isNull();
+	}
+
+	@Test
+	public void imageIsDeclinedIfTheHeaderIsTooLarge() {
+		byte[] jpeg = new byte[ImageHeaderParser.MAX_HEADER_SIZE + 0x10000 + 1024];
+		int position = 2;
+		jpeg[0] = (byte) 0xFF;
+		jpeg[1] = (byte) 0xD8;
+		while ( position <= ImageHeaderParser.MAX_HEADER_SIZE ) {
+			// application segments of the maximum size, pushing the start of frame beyond the limit
+			jpeg[position] = (byte) 0xFF;
+			jpeg[position + 1] = (byte) 0xE1;
+			jpeg[position + 2] = (byte) 0xFF;
+			jpeg[position + 3] = (byte) 0xFF;
+			position += 0xFFFF + 2;
+		}
+		System.arraycopy( bytes( 0xFF, 0xC0, 0x00, 0x11, 0x08, 0x00, 0x7D, 0x02, 0x80 ), 0, jpeg, position, 9 );
+
+		assertThat( attributes( jpeg ) ).isNull();
+
+		// same start of frame within the limit
+		byte[] withinLimit = Arrays.copyOf( jpeg, 2 + 0xFFFF + 2 + 9 );
+		System.arraycopy( jpeg, position, withinLimit, 2 + 0xFFFF + 2, 9 );
+		assertThat( attributes( withinLimit ) ).isEqualTo( attributes( ImageType.JPEG, 640, 125, 1 ) );
+	}
+
+	@Test
+	public void animatedGifScenesAreCounted() {
+		byte[] gif = bytes(
+				'G', 'I', 'F', '8', '9', 'a', 20, 0, 10, 0, 0, 0, 0,
+				0x21, 0xF9, 4, 0, 0, 0, 0, 0,
+				0x2C, 0, 0, 0, 0, 20, 0, 10, 0, 0, 2, 2, 0x44, 0x01, 0,
+				0x21, 0xF9, 4, 0, 0, 0, 0, 0,
+				0x2C, 5, 0, 5, 0, 4, 0, 3, 0, 0, 2, 2, 0x44, 0x01, 0,
+				0x3B
+		);
+		assertThat( attributes( gif ) ).isEqualTo( attributes( ImageType.GIF, 20, 10, 2 ) );
+	}
+
+	@Test
+	public void webp() {
+		byte[] lossy = bytes( 'R', 'I', 'F', 'F', 0, 0, 0, 0, 'W', 'E', 'B', 'P', 'V', 'P', '8', ' ', 0, 0, 0, 0,
+		                      0, 0, 0, 0x9D, 0x01, 0x2A, 0x90, 0x01, 0x2C, 0x01 );
+		assertThat( attributes( lossy ) ).isEqualTo( attributes( ImageType.WEBP, 400, 300, 1 ) );
+
+		// width - 1 = 399 and height - 1 = 299 packed in 14 bits each
+		byte[] lossless = bytes( 'R', 'I', 'F', 'F', 0, 0, 0, 0, 'W', 'E', 'B', 'P', 'V', 'P', '8', 'L', 0, 0, 0, 0,
+		                         0x2F, 0x8F, 0xC1, 0x4A, 0x00 );
+		assertThat( attributes( lossless ) ).isEqualTo( attributes( ImageType.WEBP, 400, 300, 1 ) );
+	}
+
+	@Test
+	public void animatedWebpIsDeclined() {
+		byte[] animated = bytes( 'R', 'I', 'F', 'F', 0, 0, 0, 0, 'W', 'E', 'B', 'P', 'V', 'P', '8', 'X', 10, 0, 0, 0,
+		                         0x02, 0, 0, 0, 0x8F, 0x01, 0, 0x2B, 0x01, 0 );
+		assertThat( attributes( animated ) ).isNull();
+	}
+
+	@Test
+	public void bmp() {
+		byte[] bmp = bytes( 'B', 'M', 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0,
+		                    40, 0, 0, 0, 0x90, 0x01, 0, 0, 0xD4, 0xFE, 0xFF, 0xFF );
+		assertThat( attributes( bmp ) ).isEqualTo( attributes( ImageType.BMP, 400, 300, 1 ) );
+	}
+
+	@Test
+	public void svgViewBoxIsUsedWithoutDimensions() {
+		assertThat( attributes( svg( "<svg xmlns=\"http://www.w3.org/2000/svg\" viewBox=\"0 0 120 80\">" ) ) )
+				.isEqualTo( attributes( ImageType.SVG, 120, 80, 1 ) );
+		assertThat( attributes( svg( "<?xml version=\"1.0\"?>\n<!-- logo -->\n<svg stroke-width='2' width='30px' height='20px'>" ) ) )
+				.isEqualTo( attributes( ImageType.SVG, 30, 20, 1 ) );
+	}
+
+	@Test
+	public void svgWithoutPixelDimensionsIsDeclined() {
+		assertThat( attributes( svg( "<svg width=\"100%\" height=\"100%\" viewBox=\"0 0 120 80\">" ) ) ).isNull();
+		assertThat( attributes( svg( "<svg width=\"10cm\" height=\"5cm\">" ) ) ).isNull();
+		assertThat( attributes( "images/across-logo.svg" ) ).isNull();
+	}
+
+	@Test
+	public void unsupportedFormatsAreDeclined() {
+		assertThat( attributes( "images/sample-eps.eps" ) ).isNull();
+		assertThat( attributes( "images/getAttributes.eps" ) ).isNull();
+		assertThat( attributes( "this is not an image".getBytes( StandardCharsets.UTF_8 ) ) ).isNull();
+		assertThat( attributes( new byte[0] ) ).isNull();
+	}
+
+	@Test
+	public void truncatedImageIsDeclined() {
+		assertThat( attributes( bytes( 0xFF, 0xD8, 0xFF, 0xE0, 0x00, 0x10, 'J', 'F' ) ) ).isNull();
+	}
+
+	private ImageAttributes attributes( ImageType imageType, int width, int height, int sceneCount ) {
+		return new ImageAttributes( imageType, new Dimensions( width, height ), sceneCount );
+	}
+
+	private ImageAttributes attributes( String path ) {
+		return attributes( getClass().getClassLoader().getResourceAsStream( path ) );
+	}
+
+	private ImageAttributes attributes( byte[] data ) {
+		return attributes( new ByteArrayInputStream( data ) );
+	}
+
+	private ImageAttributes attributes( InputStream stream ) {
+		ImageAttributesCommand command = ImageAttributesCommand.builder().imageStream( stream ).build();
+		executor.execute( command );
+		return command.getExecutionResult();
+	}
+
+	private byte[] tiff( int directoryOffset, int nextDirectoryOffset ) {
+		byte[] data = new byte[directoryOffset + 2 + 2 * 12 + 4];
+		System.arraycopy( bytes( 'I', 'I', 42, 0 ), 0, data, 0, 4 );
+		writeLittleEndian( data, 4, directoryOffset );
+
+		int position = directoryOffset;
+		data[position] = 2;
+		position += 2;
+		for ( int[] entry : new int[][] { { 256, 640 }, { 257, 125 } } ) {
+			data[position] = (byte) entry[0];
+			data[position + 1] = (byte) ( entry[0] >> 8 );
+			data[position + 2] = 3;
+			data[position + 4] = 1;
+			data[position + 8] = (byte) entry[1];
+			data[position + 9] = (byte) ( entry[1] >> 8 );
+			position += 12;
+		}
+		writeLittleEndian( data, position, nextDirectoryOffset );
+		return data;
+	}
+
+	private void writeLittleEndian( byte[] data, int position, int value ) {
+		for ( int i = 0; i < 4; i++ ) {
+			data[position + i] = (byte) ( value >> ( 8 * i ) );
+		}
+	}
+
+	private byte[] svg( String rootElement ) {
+		return ( rootElement + "<rect width=\"1\" height=\"1\"/></svg>" ).getBytes( StandardCharsets.UTF_8 );
+	}
+
+	private byte[] bytes( int... values ) {
+		byte[] data = new byte[values.length];
+		for ( int i = 0; i < values.length; i++ ) {
+			data[i] = (byte) values[i];
+		}
+		return data;
+	}
+}
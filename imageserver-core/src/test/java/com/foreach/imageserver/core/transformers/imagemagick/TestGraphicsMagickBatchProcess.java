@@ -0,0 +1,32 @@
+package com.foreach.imageserver.core.transformers.imagemagick;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * @author Arne Vandamme
+ * @since 6.3.0
+ */
+public class TestGraphicsMagickBatchProcess
+{
+	@Test
+	public void argumentsAreQuoted() {
+		assertThat( GraphicsMagickBatchProcess.toCommandLine( Arrays.asList( "convert", "-background", "#ffffff", "/tmp/my file.png", "png:/tmp/out.png" ) ) )
+				.isEqualTo( "\"convert\" \"-background\" \"#ffffff\" \"/tmp/my file.png\" \"png:/tmp/out.png\"" );
+	}
+
+	@Test
+	public void quotesAndBackslashesAreEscaped() {
+		assertThat( GraphicsMagickBatchProcess.toCommandLine( Arrays.asList( "identify", "-format", "%m \"%w\"\\n" ) ) )
+				.isEqualTo( "\"identify\" \"-format\" \"%m \\\"%w\\\"\\\\n\"" );
+	}
+
+	@Test
+	public void lineBreaksAreNotAllowed() {
+		assertThrows( IllegalArgumentException.class, () -> GraphicsMagickBatchProcess.toCommandLine( Arrays.asList( "identify", "a\nb" ) ) );
+	}
+}
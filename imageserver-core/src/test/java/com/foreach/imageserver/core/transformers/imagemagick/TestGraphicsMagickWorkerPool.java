@@ -0,0 +1,126 @@
+package com.foreach.imageserver.core.transformers.imagemagick;
+
+import com.foreach.imageserver.core.transformers.ImageModificationException;
+import lombok.SneakyThrows;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.DisabledOnOs;
+import org.junit.jupiter.api.condition.OS;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+
+/**
+ * Runs the pool against a shell script that mimics {@code gm batch}: every command prints the process id
+ * of the worker, unless the command is {@code fail}, {@code crash} or {@code hang}.
+ *
+ * @author Arne Vandamme
+ * @since 6.3.0
+ */
+@DisabledOnOs(OS.WINDOWS)
+public class TestGraphicsMagickWorkerPool
+{
+	private static final String SCRIPT = "#!/bin/sh\n"
+			+ "while IFS= read -r line; do\n"
+			+ "  case \"$line\" in\n"
+			+ "    '\"fail\"') echo \"" + GraphicsMagickBatchProcess.FAIL_MARKER + "\" ;;\n"
+			+ "    '\"crash\"') exit 1 ;;\n"
+			+ "    '\"hang\"') exec sleep 30 ;;\n"
+			+ "    *) echo \"$$" + GraphicsMagickBatchProcess.PASS_MARKER + "\" ;;\n"
+			+ "  esac\n"
+			+ "done\n";
+
+	@TempDir
+	Path folder;
+
+	private String executable;
+	private GraphicsMagickWorkerPool pool;
+
+	@BeforeEach
+	@SneakyThrows
+	public void createExecutable() {
+		File script = folder.resolve( "gm" ).toFile();
+		Files.write( script.toPath(), SCRIPT.getBytes( StandardCharsets.US_ASCII ) );
+		assertThat( script.setExecutable( true ) ).isTrue();
+		executable = script.getAbsolutePath();
+	}
+
+	@AfterEach
+	public void shutdown() {
+		if ( pool != null ) {
+			pool.shutdown();
+		}
+	}
+
+	@Test
+	public void workerIsReusedUntilMaxJobs() {
+		pool = new GraphicsMagickWorkerPool( executable, 1, 2, 0 );
+
+		String worker = workerId();
+		assertThat( workerId() ).isEqualTo( worker );
+		assertThat( pool.getIdleWorkerCount() ).isEqualTo( 0 );
+
+		assertThat( workerId() ).isNotEqualTo( worker );
+		assertThat( pool.getIdleWorkerCount() ).isEqualTo( 1 );
+	}
+
+	@Test
+	public void failedCommandDoesNotReplaceTheWorker() {
+		pool = new GraphicsMagickWorkerPool( executable, 1, 10, 0 );
+
+		String worker = workerId();
+		assertThatExceptionOfType( ImageModificationException.class )
+				.isThrownBy( () -> pool.execute( Collections.singletonList( "fail" ) ) )
+				.withMessageStartingWith( "GraphicsMagick command failed" );
+
+		assertThat( workerId() ).isEqualTo( worker );
+	}
+
+	@Test
+	public void crashedWorkerIsReplaced() {
+		pool = new GraphicsMagickWorkerPool( executable, 1, 10, 0 );
+
+		String worker = workerId();
+		assertThatExceptionOfType( ImageModificationException.class )
+				.isThrownBy( () -> pool.execute( Collections.singletonList( "crash" ) ) )
+				.withMessageStartingWith( "GraphicsMagick worker failed executing" );
+		assertThat( pool.getIdleWorkerCount() ).isEqualTo( 0 );
+
+		assertThat( workerId() ).isNotEqualTo( worker );
+	}
+
+	@Test
+	public void workerExceedingTheTimeoutIsTerminated() {
+		pool = new GraphicsMagickWorkerPool( executable, 1, 10, 200 );
+
+		String worker = workerId();
+		long start = System.currentTimeMillis();
+		assertThatExceptionOfType( ImageModificationException.class )
+				.isThrownBy( () -> pool.execute( Collections.singletonList( "hang" ) ) );
+		assertThat( System.currentTimeMillis() - start ).isLessThan( 10000 );
+
+		assertThat( workerId() ).isNotEqualTo( worker );
+	}
+
+	@Test
+	public void commandsAreRejectedAfterShutdown() {
+		pool = new GraphicsMagickWorkerPool( executable, 1, 10, 0 );
+		workerId();
+
+		pool.shutdown();
+		assertThat( pool.getIdleWorkerCount() ).isEqualTo( 0 );
+		assertThatExceptionOfType( IllegalStateException.class ).isThrownBy( this::workerId );
+	}
+
+	private String workerId() {
+		return pool.execute( Collections.singletonList( "identify" ) ).get( 0 );
+	}
+}
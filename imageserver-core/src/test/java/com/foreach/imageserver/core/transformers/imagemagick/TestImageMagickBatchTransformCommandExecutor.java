@@ -0,0 +1,74 @@
+package com.foreach.imageserver.core.transformers.imagemagick;
+
+import com.foreach.imageserver.core.business.Dimensions;
+import com.foreach.imageserver.core.business.ImageType;
+import com.foreach.imageserver.core.transformers.ImageAttributes;
+import com.foreach.imageserver.core.transformers.ImageBatchTransformCommand;
+import com.foreach.imageserver.core.transformers.ImageTransformerPriority;
+import com.foreach.imageserver.core.transformers.SimpleImageSource;
+import com.foreach.imageserver.dto.CropDto;
+import com.foreach.imageserver.dto.ImageTransformDto;
+import com.foreach.imageserver.dto.ImageTypeDto;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author Arne Vandamme
+ * @since 6.3.0
+ */
+public class TestImageMagickBatchTransformCommandExecutor
+{
+	private static final CropDto CROP = CropDto.builder().x( 10 ).y( 20 ).width( 300 ).height( 200 ).build();
+
+	private final ImageMagickBatchTransformCommandExecutor executor = new ImageMagickBatchTransformCommandExecutor( new ImageMagickTransformCommandExecutor() );
+
+	@Test
+	public void scalableOriginalsAndSceneOrDpiSelectionAreNotHandled() {
+		assertThat( executor.canExecute( command( ImageType.JPEG, ImageTransformDto.builder().crop( CROP ).build() ) ) )
+				.isEqualTo( ImageTransformerPriority.FALLBACK );
+		assertThat( executor.canExecute( command( ImageType.PDF, ImageTransformDto.builder().crop( CROP ).build() ) ) )
+				.isEqualTo( ImageTransformerPriority.UNABLE );
+		assertThat( executor.canExecute( command( ImageType.GIF, ImageTransformDto.builder().scene( 1 ).build() ) ) )
+				.isEqualTo( ImageTransformerPriority.UNABLE );
+		assertThat( executor.canExecute( command( ImageType.JPEG, ImageTransformDto.builder().width( 100 ).dpi( 300 ).build() ) ) )
+				.isEqualTo( ImageTransformerPriority.UNABLE );
+	}
+
+	@Test
+	public void originalIsReadOnceAndEveryTransformWritesItsOwnOutput() {
+		ImageBatchTransformCommand command = command(
+				ImageType.JPEG,
+				ImageTransformDto.builder().crop( CROP ).build(),
+				ImageTransformDto.builder().width( 100 ).height( 50 ).outputType( ImageTypeDto.PNG ).quality( 70 ).build()
+		);
+		List<Path> outputFiles = Arrays.asList( Paths.get( "/tmp/one.jpeg" ), Paths.get( "/tmp/two.png" ) );
+
+		List<String> arguments = executor.createIMOperation( command, outputFiles ).getCmdArgs();
+
+		assertThat( arguments ).containsOnlyOnce( "-" );
+		assertThat( arguments.subList( arguments.indexOf( "-" ), arguments.indexOf( "-" ) + 3 ) )
+				.containsExactly( "-", "-write", "mpr:original" );
+		assertThat( Collections.frequency( arguments, "mpr:original" ) ).isEqualTo( 3 );
+
+		String operation = String.join( " ", arguments );
+		assertThat( operation )
+				.contains( "( mpr:original -crop 300x200+10+20 +profile * -strip -quality 85.0 -write jpeg:" + outputFiles.get( 0 ) + " ) +delete" )
+				.contains( "( mpr:original -resize 100x50! +profile * -strip -quality 70.0 -write png:" + outputFiles.get( 1 ) + " ) +delete" )
+				.endsWith( "null:" );
+	}
+
+	private ImageBatchTransformCommand command( ImageType imageType, ImageTransformDto... transforms ) {
+		return ImageBatchTransformCommand.builder()
+		                                 .originalImage( new SimpleImageSource( imageType, new byte[0] ) )
+		                                 .originalImageAttributes( new ImageAttributes( imageType, new Dimensions( 2000, 1000 ), 1 ) )
+		                                 .transforms( Arrays.asList( transforms ) )
+		                                 .build();
+	}
+}
@@ -0,0 +1,41 @@
+package com.foreach.imageserver.core.transformers.imagemagick;
+
+import com.foreach.imageserver.core.business.ImageType;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author Arne Vandamme
+ * @since 6.3.0
+ */
+public class TestImageMagickFormats
+{
+	@Test
+	public void writableFormatsOfImageMagick() {
+		String formats = "   Format  Mode  Description\n"
+				+ "-------------------------------------------------------------------------------\n"
+				+ "      3FR  r--   Hasselblad CFV/H3D39II Raw Format\n"
+				+ "     AVIF  r--   AV1 Image File Format (1.12.0)\n"
+				+ "      BMP* rw-   Microsoft Windows bitmap image\n"
+				+ "     WEBP* rw+   WebP Image Format (libwebp 1.2.4 [020F])\n";
+
+		assertThat( ImageMagickFormats.parseOptionalOutputTypes( formats ) ).containsExactly( ImageType.WEBP );
+	}
+
+	@Test
+	public void writableFormatsOfGraphicsMagick() {
+		String formats = "   Format L  Mode  Description\n"
+				+ "--------------------------------------------------------------------------------\n"
+				+ "      AVIF U  rw-   AV1 Image File Format\n"
+				+ "      WEBP P  rw-   WebP Image Format (libwebp 1.0.3)\n";
+
+		assertThat( ImageMagickFormats.parseOptionalOutputTypes( formats ) ).containsExactly( ImageType.WEBP, ImageType.AVIF );
+	}
+
+	@Test
+	public void formatsThatAreNotListedAreNotSupported() {
+		assertThat( ImageMagickFormats.parseOptionalOutputTypes( "convert: not found\n" ) ).isEmpty();
+		assertThat( ImageMagickFormats.parseOptionalOutputTypes( "" ) ).isEmpty();
+	}
+}
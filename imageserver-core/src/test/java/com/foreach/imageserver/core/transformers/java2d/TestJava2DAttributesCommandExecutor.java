@@ -0,0 +1,52 @@
+package com.foreach.imageserver.core.transformers.java2d;
+
+import com.foreach.imageserver.core.business.Dimensions;
+import com.foreach.imageserver.core.business.ImageType;
+import com.foreach.imageserver.core.transformers.ImageAttributes;
+import com.foreach.imageserver.core.transformers.ImageAttributesCommand;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author Arne Vandamme
+ * @since 6.3.0
+ */
+public class TestJava2DAttributesCommandExecutor
+{
+	private final Java2DAttributesCommandExecutor executor = new Java2DAttributesCommandExecutor();
+
+	@Test
+	public void jpeg() {
+		assertThat( attributes( "images/cropCorrectness.jpeg" ) )
+				.isEqualTo( new ImageAttributes( ImageType.JPEG, new Dimensions( 2000, 1000 ), 1 ) );
+	}
+
+	@Test
+	public void png() {
+		assertThat( attributes( "images/transparency.png" ) )
+				.isEqualTo( new ImageAttributes( ImageType.PNG, new Dimensions( 100, 100 ), 1 ) );
+	}
+
+	@Test
+	public void gifScenesAreCounted() {
+		ImageAttributes attributes = attributes( "images/getAttributes.gif" );
+		assertThat( attributes.getType() ).isEqualTo( ImageType.GIF );
+		assertThat( attributes.getSceneCount() ).isGreaterThanOrEqualTo( 1 );
+	}
+
+	@Test
+	public void unsupportedFormatsAreDeclined() {
+		assertThat( attributes( "images/sample-pdf.pdf" ) ).isNull();
+		assertThat( attributes( "images/across-logo.svg" ) ).isNull();
+		assertThat( attributes( "images/sample-eps.eps" ) ).isNull();
+	}
+
+	private ImageAttributes attributes( String path ) {
+		ImageAttributesCommand command = ImageAttributesCommand.builder()
+		                                                       .imageStream( getClass().getClassLoader().getResourceAsStream( path ) )
+		                                                       .build();
+		executor.execute( command );
+		return command.getExecutionResult();
+	}
+}
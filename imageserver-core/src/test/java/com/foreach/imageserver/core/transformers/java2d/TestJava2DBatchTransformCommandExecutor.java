@@ -0,0 +1,85 @@
+package com.foreach.imageserver.core.transformers.java2d;
+
+import com.foreach.imageserver.core.business.Dimensions;
+import com.foreach.imageserver.core.business.ImageType;
+import com.foreach.imageserver.core.transformers.*;
+import com.foreach.imageserver.dto.ColorSpaceDto;
+import com.foreach.imageserver.dto.CropDto;
+import com.foreach.imageserver.dto.ImageTransformDto;
+import com.foreach.imageserver.dto.ImageTypeDto;
+import lombok.SneakyThrows;
+import org.junit.jupiter.api.Test;
+
+import java.io.InputStream;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static support.ImageUtils.*;
+
+/**
+ * @author Arne Vandamme
+ * @since 6.3.0
+ */
+public class TestJava2DBatchTransformCommandExecutor
+{
+	private static final CropDto CROP = CropDto.builder().x( 1000 ).y( 140 ).width( 270 ).height( 580 ).build();
+
+	private final AtomicInteger reads = new AtomicInteger();
+	private final Java2DBatchTransformCommandExecutor executor = new Java2DBatchTransformCommandExecutor( new Java2DTransformCommandExecutor() );
+
+	@Test
+	public void batchIsOnlyHandledIfEveryTransformIsSupported() {
+		assertThat( executor.canExecute( command( ImageTransformDto.builder().crop( CROP ).build(),
+		                                          ImageTransformDto.builder().width( 100 ).height( 50 ).build() ) ) )
+				.isEqualTo( ImageTransformerPriority.PREFERRED );
+
+		assertThat( executor.canExecute( command( ImageTransformDto.builder().crop( CROP ).build(),
+		                                          ImageTransformDto.builder().colorSpace( ColorSpaceDto.GRAYSCALE ).build() ) ) )
+				.isEqualTo( ImageTransformerPriority.UNABLE );
+	}
+
+	@Test
+	@SneakyThrows
+	public void originalIsDecodedOnceForAllOutputs() {
+		ImageBatchTransformCommand command = command(
+				ImageTransformDto.builder().crop( CROP ).build(),
+				ImageTransformDto.builder().crop( CROP ).outputType( ImageTypeDto.JPEG ).build(),
+				ImageTransformDto.builder().width( 200 ).height( 100 ).build()
+		);
+		executor.execute( command );
+
+		assertThat( reads.get() ).isEqualTo( 1 );
+
+		List<ImageSource> outputs = command.getExecutionResult();
+		assertThat( outputs ).hasSize( 3 );
+		assertThat( outputs.get( 0 ).getImageType() ).isEqualTo( ImageType.PNG );
+		assertThat( outputs.get( 1 ).getImageType() ).isEqualTo( ImageType.JPEG );
+
+		try (InputStream is = outputs.get( 0 ).getImageStream()) {
+			assertThat( meanPixelDifference( bufferedImage( is ), bufferedImageFromClassPath( "images/cropPngToPng.png" ) ) ).isLessThan( 0.5 );
+		}
+		try (InputStream is = outputs.get( 1 ).getImageStream()) {
+			assertThat( meanPixelDifference( bufferedImage( is ), bufferedImageFromClassPath( "images/cropPngToJpg.jpeg" ) ) ).isLessThan( 3 );
+		}
+		try (InputStream is = outputs.get( 2 ).getImageStream()) {
+			assertThat( bufferedImage( is ).getWidth() ).isEqualTo( 200 );
+		}
+	}
+
+	private ImageBatchTransformCommand command( ImageTransformDto... transforms ) {
+		ImageSource source = new SimpleImageSource( null, () -> {
+			reads.incrementAndGet();
+			return getClass().getClassLoader().getResourceAsStream( "images/cropCorrectness.png" );
+		} );
+
+		ImageBatchTransformCommand.ImageBatchTransformCommandBuilder builder
+				= ImageBatchTransformCommand.builder()
+				                            .originalImage( source )
+				                            .originalImageAttributes( new ImageAttributes( ImageType.PNG, new Dimensions( 2000, 1000 ), 1 ) );
+		for ( ImageTransformDto transform : transforms ) {
+			builder.transform( transform );
+		}
+		return builder.build();
+	}
+}
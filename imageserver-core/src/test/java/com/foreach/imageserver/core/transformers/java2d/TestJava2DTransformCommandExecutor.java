@@ -0,0 +1,210 @@
+package com.foreach.imageserver.core.transformers.java2d;
+
+import com.foreach.imageserver.core.business.Dimensions;
+import com.foreach.imageserver.core.business.ImageType;
+import com.foreach.imageserver.core.transformers.*;
+import com.foreach.imageserver.dto.*;
+import lombok.SneakyThrows;
+import org.junit.jupiter.api.Test;
+
+import java.awt.image.BufferedImage;
+import java.io.InputStream;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static support.ImageUtils.*;
+
+/**
+ * Visual regression tests comparing the Java2D output with the reference images generated by ImageMagick
+ * for the same transforms (see {@code TestImageMagickTransformCommandExecutor}).
+ *
+ * @author Arne Vandamme
+ * @since 6.3.0
+ */
+public class TestJava2DTransformCommandExecutor
+{
+	private static final CropDto CROP = CropDto.builder().x( 1000 ).y( 140 ).width( 270 ).height( 580 ).build();
+
+	/**
+	 * Maximum mean difference per color component for lossless output.
+	 */
+	private static final double LOSSLESS_TOLERANCE = 0.5;
+
+	/**
+	 * Maximum mean difference per color component when either image has been JPEG encoded.
+	 */
+	private static final double LOSSY_TOLERANCE = 3;
+
+	private final Java2DTransformCommandExecutor executor = new Java2DTransformCommandExecutor();
+
+	@Test
+	public void supportedTransformsArePreferred() {
+		assertThat( executor.canExecute( pngCommand( t -> t.crop( CROP ) ) ) ).isEqualTo( ImageTransformerPriority.PREFERRED );
+		assertThat( executor.canExecute( pngCommand( t -> t.width( 100 ).height( 50 ).quality( 70 ).outputType( ImageTypeDto.JPEG ) ) ) )
+				.isEqualTo( ImageTransformerPriority.PREFERRED );
+		assertThat( executor.canExecute( pngCommand( t -> t.backgroundColor( ColorDto.from( "#aabbff" ) ).outputType( ImageTypeDto.GIF ) ) ) )
+				.isEqualTo( ImageTransformerPriority.PREFERRED );
+	}
+
+	@Test
+	public void unsupportedTransformsAreLeftToOtherExecutors() {
+		assertThat( executor.canExecute( pngCommand( t -> t.colorSpace( ColorSpaceDto.GRAYSCALE ) ) ) ).isEqualTo( ImageTransformerPriority.UNABLE );
+		assertThat( executor.canExecute( pngCommand( t -> t.alphaColor( ColorDto.WHITE ) ) ) ).isEqualTo( ImageTransformerPriority.UNABLE );
+		assertThat( executor.canExecute( pngCommand( t -> t.backgroundColor( ColorDto.from( "yellow" ) ) ) ) ).isEqualTo( ImageTransformerPriority.UNABLE );
+		assertThat( executor.canExecute( pngCommand( t -> t.outputType( ImageTypeDto.PDF ) ) ) ).isEqualTo( ImageTransformerPriority.UNABLE );
+		assertThat( executor.canExecute( pngCommand( t -> t.outputType( ImageTypeDto.TIFF ) ) ) ).isEqualTo( ImageTransformerPriority.UNABLE );
+
+		assertThat( executor.canExecute( command( "images/sample-pdf.pdf", ImageType.PDF, 612, 792, 5, t -> t.outputType( ImageTypeDto.PNG ) ) ) )
+				.isEqualTo( ImageTransformerPriority.UNABLE );
+		assertThat( executor.canExecute( command( "images/across-logo.svg", ImageType.SVG, 82, 95, 1, t -> t.outputType( ImageTypeDto.PNG ) ) ) )
+				.isEqualTo( ImageTransformerPriority.UNABLE );
+		assertThat( executor.canExecute( command( "images/getAttributes.gif", ImageType.GIF, 100, 100, 3, t -> t.width( 50 ) ) ) )
+				.isEqualTo( ImageTransformerPriority.UNABLE );
+	}
+
+	@Test
+	public void originalsExceedingMaximumPixelsAreLeftToOtherExecutors() {
+		Java2DTransformCommandExecutor limited = new Java2DTransformCommandExecutor();
+		limited.setMaxImagePixels( 1_000_000 );
+		assertThat( limited.canExecute( pngCommand( t -> t.crop( CROP ) ) ) ).isEqualTo( ImageTransformerPriority.UNABLE );
+	}
+
+	@Test
+	public void cropPngToPng() {
+		assertImage( "images/cropPngToPng.png", pngCommand( t -> t.crop( CROP ) ), LOSSLESS_TOLERANCE );
+	}
+
+	@Test
+	public void cropPngToJpeg() {
+		assertImage( "images/cropPngToJpg.jpeg", pngCommand( t -> t.crop( CROP ).outputType( ImageTypeDto.JPEG ) ), LOSSY_TOLERANCE );
+	}
+
+	@Test
+	public void cropJpegToJpeg() {
+		assertImage( "images/cropJpgToJpg.jpeg", jpegCommand( t -> t.crop( CROP ) ), LOSSY_TOLERANCE );
+	}
+
+	@Test
+	public void cropJpegToPng() {
+		assertImage( "images/cropJpgToPng.png", jpegCommand( t -> t.crop( CROP ).outputType( ImageTypeDto.PNG ) ), LOSSY_TOLERANCE );
+	}
+
+	@Test
+	public void transparentPngToNonTransparentJpeg() {
+		assertImage( "images/transparentPngToJpg.jpg", transparencyCommand( t -> t.outputType( ImageTypeDto.JPEG ) ), LOSSY_TOLERANCE );
+	}
+
+	@Test
+	public void transparentPngToFlattenedPng() {
+		assertImage( "images/transparentPngToPngFlat.png", transparencyCommand( t -> t.backgroundColor( ColorDto.WHITE ) ), LOSSLESS_TOLERANCE );
+	}
+
+	@Test
+	public void transparentPngBackgroundColorFill() {
+		assertImage( "images/transparentPngToPngBackground.png",
+		             transparencyCommand( t -> t.backgroundColor( ColorDto.from( "#aabbff" ) ) ),
+		             LOSSLESS_TOLERANCE );
+	}
+
+	@Test
+	@SneakyThrows
+	public void cropAndDownscaleMatchesImageMagickLuminance() {
+		// the ImageMagick reference is grayscale, compare the luminance of both images on a white background
+		ImageTransformCommand command = pngCommand( t -> t.crop( CROP ).width( 135 ).height( 290 ) );
+		executor.execute( command );
+
+		try (InputStream is = command.getExecutionResult().getImageStream()) {
+			BufferedImage actual = grayscale( bufferedImage( is ) );
+			BufferedImage expected = grayscale(
+					Java2DTransformCommandExecutor.normalizeGrayscale( bufferedImageFromClassPath( "images/cropPngToSmallerGrayscale.png" ) )
+			);
+
+			assertThat( actual.getWidth() ).isEqualTo( 135 );
+			assertThat( actual.getHeight() ).isEqualTo( 290 );
+			assertThat( meanPixelDifference( actual, expected ) ).isLessThan( LOSSY_TOLERANCE );
+		}
+	}
+
+	@Test
+	public void resizeCalculatesMissingDimensionAccordingToAspectRatio() {
+		BufferedImage image = new BufferedImage( 2000, 1000, BufferedImage.TYPE_INT_RGB );
+
+		BufferedImage resized = Java2DTransformCommandExecutor.resize( image, 300, null );
+		assertThat( resized.getWidth() ).isEqualTo( 300 );
+		assertThat( resized.getHeight() ).isEqualTo( 150 );
+
+		resized = Java2DTransformCommandExecutor.resize( image, null, 3000 );
+		assertThat( resized.getWidth() ).isEqualTo( 6000 );
+		assertThat( resized.getHeight() ).isEqualTo( 3000 );
+
+		assertThat( Java2DTransformCommandExecutor.resize( image, null, null ) ).isSameAs( image );
+	}
+
+	@Test
+	@SneakyThrows
+	public void grayscaleWithAlphaIsNotBrightened() {
+		BufferedImage gray = Java2DTransformCommandExecutor.normalizeGrayscale( bufferedImageFromClassPath( "images/cropPngToSmallerGrayscale.png" ) );
+		assertThat( gray.getType() ).isEqualTo( BufferedImage.TYPE_INT_ARGB );
+		assertThat( gray.getRGB( 0, 0 ) ).isEqualTo( 0xff000000 );
+		assertThat( gray.getRGB( 10, 10 ) ).isEqualTo( 0xff646464 );
+	}
+
+	@Test
+	public void undecodableImageIsDeclined() {
+		ImageTransformCommand command = command( "images/sample-pdf.pdf", ImageType.PNG, 612, 792, 1, t -> t.width( 100 ) );
+		executor.execute( command );
+		assertThat( command.isCompleted() ).isFalse();
+	}
+
+	@SneakyThrows
+	private void assertImage( String expected, ImageTransformCommand command, double tolerance ) {
+		executor.execute( command );
+
+		try (InputStream is = command.getExecutionResult().getImageStream()) {
+			BufferedImage actual = bufferedImage( is );
+			assertThat( meanPixelDifference( actual, bufferedImageFromClassPath( expected ) ) ).isLessThan( tolerance );
+		}
+	}
+
+	private BufferedImage grayscale( BufferedImage image ) {
+		BufferedImage gray = new BufferedImage( image.getWidth(), image.getHeight(), BufferedImage.TYPE_INT_RGB );
+		for ( int y = 0; y < image.getHeight(); y++ ) {
+			for ( int x = 0; x < image.getWidth(); x++ ) {
+				int argb = image.getRGB( x, y );
+				double alpha = ( ( argb >> 24 ) & 0xff ) / 255d;
+				double luminance = 0.299 * ( ( argb >> 16 ) & 0xff ) + 0.587 * ( ( argb >> 8 ) & 0xff ) + 0.114 * ( argb & 0xff );
+				int flattened = (int) Math.round( alpha * luminance + ( 1 - alpha ) * 255 );
+				gray.setRGB( x, y, ( flattened << 16 ) | ( flattened << 8 ) | flattened );
+			}
+		}
+		return gray;
+	}
+
+	private ImageTransformCommand pngCommand( Consumer<ImageTransformDto.ImageTransformDtoBuilder> transform ) {
+		return command( "images/cropCorrectness.png", ImageType.PNG, 2000, 1000, 1, transform );
+	}
+
+	private ImageTransformCommand jpegCommand( Consumer<ImageTransformDto.ImageTransformDtoBuilder> transform ) {
+		return command( "images/cropCorrectness.jpeg", ImageType.JPEG, 2000, 1000, 1, transform );
+	}
+
+	private ImageTransformCommand transparencyCommand( Consumer<ImageTransformDto.ImageTransformDtoBuilder> transform ) {
+		return command( "images/transparency.png", ImageType.PNG, 100, 100, 1, transform );
+	}
+
+	private ImageTransformCommand command( String path,
+	                                       ImageType type,
+	                                       int width,
+	                                       int height,
+	                                       int sceneCount,
+	                                       Consumer<ImageTransformDto.ImageTransformDtoBuilder> transformBuilder ) {
+		ImageTransformDto.ImageTransformDtoBuilder transformDtoBuilder = ImageTransformDto.builder();
+		transformBuilder.accept( transformDtoBuilder );
+
+		return ImageTransformCommand.builder()
+		                            .originalImage( new SimpleImageSource( null, () -> getClass().getClassLoader().getResourceAsStream( path ) ) )
+		                            .originalImageAttributes( new ImageAttributes( type, new Dimensions( width, height ), sceneCount ) )
+		                            .transform( transformDtoBuilder.build() )
+		                            .build();
+	}
+}
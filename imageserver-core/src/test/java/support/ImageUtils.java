@@ -68,4 +68,28 @@ public class ImageUtils
 		return Arrays.equals( imageData1, imageData2 );
 	}
 
+	/**
+	 * Calculates the mean absolute difference of all color and alpha components of both images,
+	 * as a value between 0 (identical) and 255.  Can be used to visually compare images created by different encoders.
+	 */
+	public static double meanPixelDifference( BufferedImage image1, BufferedImage image2 ) {
+		if ( image1.getWidth() != image2.getWidth() || image1.getHeight() != image2.getHeight() ) {
+			return 255d;
+		}
+
+		long difference = 0;
+
+		for ( int y = 0; y < image1.getHeight(); y++ ) {
+			for ( int x = 0; x < image1.getWidth(); x++ ) {
+				int argb1 = image1.getRGB( x, y );
+				int argb2 = image2.getRGB( x, y );
+
+				for ( int shift = 0; shift < 32; shift += 8 ) {
+					difference += Math.abs( ( ( argb1 >> shift ) & 0xff ) - ( ( argb2 >> shift ) & 0xff ) );
+				}
+			}
+		}
+
+		return difference / ( 4d * image1.getWidth() * image1.getHeight() );
+	}
 }
@@ -16,6 +16,10 @@ import org.springframework.context.annotation.Configuration;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
 
@@ -45,7 +49,7 @@ public class TestImageInfoController
 		mockImage.setDimensions( new Dimensions( 100, 200 ) );
 		mockImage.setImageType( ImageType.BMP );
 
-		when( imageService.loadImageData( any() ) ).thenReturn( mockImage );
+		when( imageService.loadImageData( any( byte[].class ) ) ).thenReturn( mockImage );
 
 		// Act
 		JsonResponse response = imageInfoController.infoForUploadedImage( "token", new byte[] { 1 } );
@@ -61,6 +65,35 @@ public class TestImageInfoController
 		assertFalse( result.isExisting() );
 	}
 
+	@Test
+	public void shouldReturnInfoForMultipleImagesInRequestedOrder() {
+		Image existing = new Image();
+		existing.setExternalId( "existing" );
+		existing.setDimensions( new Dimensions( 100, 200 ) );
+		existing.setImageType( ImageType.PNG );
+
+		List<String> externalIds = Arrays.asList( "missing", "existing", "missing" );
+		when( imageService.getByExternalIds( externalIds ) ).thenReturn( Collections.singletonMap( "existing", existing ) );
+
+		JsonResponse response = imageInfoController.infoForImages( "token", externalIds );
+		assertTrue( response.isSuccess() );
+
+		@SuppressWarnings("unchecked")
+		List<ImageInfoDto> result = (List<ImageInfoDto>) response.getResult();
+		assertEquals( 2, result.size() );
+		assertEquals( "missing", result.get( 0 ).getExternalId() );
+		assertFalse( result.get( 0 ).isExisting() );
+		assertEquals( "existing", result.get( 1 ).getExternalId() );
+		assertTrue( result.get( 1 ).isExisting() );
+		assertEquals( 100, result.get( 1 ).getDimensionsDto().getWidth() );
+	}
+
+	@Test
+	public void accessTokenIsRequiredForMultipleImages() {
+		assertFalse( imageInfoController.infoForImages( "invalid", Collections.singletonList( "existing" ) ).isSuccess() );
+		verifyNoInteractions( imageService );
+	}
+
 	@Configuration
 	public static class Config
 	{
@@ -1,26 +1,50 @@
 package test.controllers;
 
+import com.foreach.across.modules.filemanager.business.FileResource;
+import com.foreach.imageserver.core.business.Image;
+import com.foreach.imageserver.core.business.ImageTilePyramid;
 import com.foreach.imageserver.core.business.ImageType;
 import com.foreach.imageserver.core.controllers.ImageStreamingController;
 import com.foreach.imageserver.core.rest.request.ViewImageRequest;
 import com.foreach.imageserver.core.rest.response.ViewImageResponse;
 import com.foreach.imageserver.core.rest.services.ImageRestService;
 import com.foreach.imageserver.core.services.ImageService;
+import com.foreach.imageserver.core.services.ImageTileService;
+import com.foreach.imageserver.core.services.ImageTransformLane;
+import com.foreach.imageserver.core.services.exceptions.ImageTransformQueueTimeoutException;
 import com.foreach.imageserver.core.transformers.SimpleImageSource;
+import com.foreach.imageserver.dto.ImageAspectRatioDto;
 import com.foreach.imageserver.dto.ImageModificationDto;
+import com.foreach.imageserver.dto.ImageResolutionDto;
+import com.foreach.imageserver.dto.ImageTypeDto;
 import com.foreach.imageserver.dto.ImageVariantDto;
+import lombok.RequiredArgsConstructor;
+import org.apache.commons.io.FileUtils;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.io.InputStreamSource;
+import org.springframework.mock.web.MockHttpServletRequest;
 import org.springframework.mock.web.MockHttpServletResponse;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.web.servlet.ModelAndView;
 
 import javax.servlet.http.HttpServletResponse;
+import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
@@ -33,10 +57,14 @@ public class TestImageStreamingController
 	private ImageStreamingController controller;
 	@Autowired
 	private ImageRestService imageRestService;
+	@Autowired
+	private ImageService imageService;
+	@Autowired
+	private ImageTileService imageTileService;
 
 	@BeforeEach
 	public void resetMocks() {
-		reset( imageRestService );
+		reset( imageRestService, imageService, imageTileService );
 	}
 
 	@Test
@@ -46,9 +74,9 @@ public class TestImageStreamingController
 		HttpServletResponse response = mock( HttpServletResponse.class );
 		when( response.getOutputStream() ).thenThrow( new IOException() );
 		viewImageResponse.setImageSource( simpleImageSource );
-		when( imageRestService.renderImage( any( ViewImageRequest.class ) ) ).thenReturn( viewImageResponse );
+		when( imageRestService.renderImageAsync( any( ViewImageRequest.class ) ) ).thenReturn( CompletableFuture.completedFuture( viewImageResponse ) );
 		      controller.render( "abc", "id", mock( ImageModificationDto.class ), mock(
-				      ImageVariantDto.class ), response );
+				      ImageVariantDto.class ), new MockHttpServletRequest(), response );
 		verify( response ).setContentType( "text/plain" );
 		verify( response ).setHeader( "Cache-Control", "no-cache" );
 		verify( response ).setHeader( ImageStreamingController.AKAMAI_EDGE_CONTROL_HEADER,
@@ -61,9 +89,9 @@ public class TestImageStreamingController
 		SimpleImageSource simpleImageSource = new SimpleImageSource( ImageType.JPEG, new byte[] { 1 } );
 		MockHttpServletResponse response = new MockHttpServletResponse();
 		viewImageResponse.setImageSource( simpleImageSource );
-		when( imageRestService.renderImage( any( ViewImageRequest.class ) ) ).thenReturn( viewImageResponse );
+		when( imageRestService.renderImageAsync( any( ViewImageRequest.class ) ) ).thenReturn( CompletableFuture.completedFuture( viewImageResponse ) );
 		controller.render( "abc", "id", mock( ImageModificationDto.class ), mock(
-				ImageVariantDto.class ), response );
+				ImageVariantDto.class ), new MockHttpServletRequest(), response );
 		assertEquals( "max-age=30", response.getHeader( "Cache-Control" ) );
 		assertNull( response.getHeader( ImageStreamingController.AKAMAI_EDGE_CONTROL_HEADER ) );
 		String expiresHeader = response.getHeader( "Expires" );
@@ -71,6 +99,342 @@ public class TestImageStreamingController
 		assertTrue( expiresHeader.contains( "GMT" ) );
 	}
 
+	@Test
+	public void serviceUnavailableIfTransformCannotBeStartedInTime() {
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		when( imageRestService.renderImageAsync( any( ViewImageRequest.class ) ) )
+				.thenThrow( new ImageTransformQueueTimeoutException( ImageTransformLane.API, 7 ) );
+		controller.render( "abc", "id", mock( ImageModificationDto.class ), mock( ImageVariantDto.class ), new MockHttpServletRequest(), response );
+
+		assertEquals( 503, response.getStatus() );
+		assertEquals( "7", response.getHeader( "Retry-After" ) );
+		assertEquals( "no-cache", response.getHeader( "Cache-Control" ) );
+	}
+
+	@Test
+	public void viewIsRequestedInInteractiveLane() {
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		when( imageRestService.viewImageAsync( any( ViewImageRequest.class ) ) ).thenAnswer( invocation -> {
+			assertEquals( ImageTransformLane.INTERACTIVE, ImageTransformLane.current() );
+			throw new ImageTransformQueueTimeoutException( ImageTransformLane.INTERACTIVE, 5 );
+		} );
+		controller.view( "id", "context", new ImageAspectRatioDto(), new ImageResolutionDto(), new ImageVariantDto(), null, null, new MockHttpServletRequest(), response );
+
+		assertEquals( 503, response.getStatus() );
+		assertEquals( "5", response.getHeader( "Retry-After" ) );
+		verify( imageRestService ).viewImageAsync( any( ViewImageRequest.class ) );
+	}
+
+	@Test
+	public void validatorsAreSentWithTheImage() {
+		ViewImageResponse viewImageResponse = new ViewImageResponse();
+		viewImageResponse.setImageSource( new SimpleImageSource( ImageType.JPEG, new byte[] { 1 } ) );
+		viewImageResponse.setETag( "\"1-0-abc\"" );
+		viewImageResponse.setLastModified( 1546300800000L );
+		when( imageRestService.viewImageAsync( any( ViewImageRequest.class ) ) ).thenReturn( CompletableFuture.completedFuture( viewImageResponse ) );
+
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		controller.view( "id", "context", new ImageAspectRatioDto(), new ImageResolutionDto(), new ImageVariantDto(), null, null,
+		                 new MockHttpServletRequest( "GET", "/view" ), response );
+
+		assertEquals( 200, response.getStatus() );
+		assertEquals( "\"1-0-abc\"", response.getHeader( "ETag" ) );
+		assertEquals( 1546300800000L, response.getDateHeader( "Last-Modified" ) );
+		assertEquals( 1, response.getContentAsByteArray().length );
+	}
+
+	@Test
+	public void notModifiedIfRequesterHasCurrentVersion() {
+		when( imageRestService.viewImageAsync( any( ViewImageRequest.class ) ) ).thenAnswer( invocation -> {
+			ViewImageRequest request = invocation.getArgument( 0 );
+			ViewImageResponse viewImageResponse = new ViewImageResponse();
+			viewImageResponse.setETag( "\"1-0-abc\"" );
+			viewImageResponse.setLastModified( 1546300800000L );
+			viewImageResponse.setNotModified( request.isNotModified( viewImageResponse.getETag(), viewImageResponse.getLastModified() ) );
+			if ( !viewImageResponse.isNotModified() ) {
+				viewImageResponse.setImageSource( new SimpleImageSource( ImageType.JPEG, new byte[] { 1 } ) );
+			}
+			return CompletableFuture.completedFuture( viewImageResponse );
+		} );
+
+		MockHttpServletRequest request = new MockHttpServletRequest( "GET", "/view" );
+		request.addHeader( "If-None-Match", "\"1-0-abc\"" );
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		controller.view( "id", "context", new ImageAspectRatioDto(), new ImageResolutionDto(), new ImageVariantDto(), null, null, request, response );
+
+		assertEquals( 304, response.getStatus() );
+		assertEquals( "\"1-0-abc\"", response.getHeader( "ETag" ) );
+		assertEquals( "max-age=30", response.getHeader( "Cache-Control" ) );
+		assertEquals( 0, response.getContentAsByteArray().length );
+
+		request = new MockHttpServletRequest( "GET", "/view" );
+		request.addHeader( "If-None-Match", "\"1-1-abc\"" );
+		response = new MockHttpServletResponse();
+		controller.view( "id", "context", new ImageAspectRatioDto(), new ImageResolutionDto(), new ImageVariantDto(), null, null, request, response );
+
+		assertEquals( 200, response.getStatus() );
+		assertEquals( 1, response.getContentAsByteArray().length );
+
+		request = new MockHttpServletRequest( "GET", "/view" );
+		request.addHeader( "If-Modified-Since", 1546300800000L );
+		response = new MockHttpServletResponse();
+		controller.view( "id", "context", new ImageAspectRatioDto(), new ImageResolutionDto(), new ImageVariantDto(), null, null, request, response );
+
+		assertEquals( 304, response.getStatus() );
+	}
+
+	@Test
+	public void variantBeingGeneratedIsWrittenWhenRequestIsDispatchedAgain() throws Exception {
+		CompletableFuture<ViewImageResponse> viewImageResponse = new CompletableFuture<>();
+		when( imageRestService.viewImageAsync( any( ViewImageRequest.class ) ) ).thenReturn( viewImageResponse );
+
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		CompletableFuture<ModelAndView> result = controller.view( "id", "context", new ImageAspectRatioDto(), new ImageResolutionDto(),
+		                                                          new ImageVariantDto(), null, null, new MockHttpServletRequest( "GET", "/view" ),
+		                                                          response );
+		assertNotNull( result );
+		assertFalse( result.isDone() );
+		assertEquals( 0, response.getContentAsByteArray().length );
+
+		ViewImageResponse generated = new ViewImageResponse();
+		generated.setImageSource( new SimpleImageSource( ImageType.JPEG, new byte[] { 1, 2 } ) );
+		generated.setETag( "\"1-0-abc\"" );
+		viewImageResponse.complete( generated );
+
+		assertTrue( result.isDone() );
+		MockHttpServletResponse dispatchedResponse = new MockHttpServletResponse();
+		result.get().getView().render( Collections.emptyMap(), new MockHttpServletRequest( "GET", "/view" ), dispatchedResponse );
+
+		assertEquals( 200, dispatchedResponse.getStatus() );
+		assertEquals( "\"1-0-abc\"", dispatchedResponse.getHeader( "ETag" ) );
+		assertEquals( "max-age=30", dispatchedResponse.getHeader( "Cache-Control" ) );
+		assertEquals( 2, dispatchedResponse.getContentAsByteArray().length );
+	}
+
+	@Test
+	public void serviceUnavailableIfAsyncTransformCannotBeStartedInTime() throws Exception {
+		CompletableFuture<ViewImageResponse> renderImageResponse = new CompletableFuture<>();
+		when( imageRestService.renderImageAsync( any( ViewImageRequest.class ) ) ).thenReturn( renderImageResponse );
+
+		CompletableFuture<ModelAndView> result = controller.render( "abc", "id", mock( ImageModificationDto.class ), mock( ImageVariantDto.class ),
+		                                                            new MockHttpServletRequest(), new MockHttpServletResponse() );
+		renderImageResponse.completeExceptionally( new ImageTransformQueueTimeoutException( ImageTransformLane.API, 7 ) );
+
+		MockHttpServletResponse dispatchedResponse = new MockHttpServletResponse();
+		result.get().getView().render( Collections.emptyMap(), new MockHttpServletRequest(), dispatchedResponse );
+
+		assertEquals( 503, dispatchedResponse.getStatus() );
+		assertEquals( "7", dispatchedResponse.getHeader( "Retry-After" ) );
+	}
+
+	@Test
+	public void responseIsWrittenDirectlyIfImageIsAvailable() {
+		ViewImageResponse viewImageResponse = new ViewImageResponse();
+		viewImageResponse.setImageSource( new SimpleImageSource( ImageType.JPEG, new byte[] { 1 } ) );
+		when( imageRestService.viewImageAsync( any( ViewImageRequest.class ) ) ).thenReturn( CompletableFuture.completedFuture( viewImageResponse ) );
+
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		assertNull( controller.view( "id", "context", new ImageAspectRatioDto(), new ImageResolutionDto(), new ImageVariantDto(), null, null,
+		                             new MockHttpServletRequest( "GET", "/view" ), response ) );
+		assertEquals( 1, response.getContentAsByteArray().length );
+	}
+
+	@Test
+	public void acceptedOutputTypesAreRegisteredIfOutputTypeIsNegotiated() {
+		ViewImageResponse viewImageResponse = new ViewImageResponse();
+		viewImageResponse.setImageSource( new SimpleImageSource( ImageType.WEBP, new byte[] { 1 } ) );
+		when( imageRestService.viewImageAsync( any( ViewImageRequest.class ) ) ).thenReturn( CompletableFuture.completedFuture( viewImageResponse ) );
+
+		MockHttpServletRequest request = new MockHttpServletRequest( "GET", "/view" );
+		request.addHeader( "Accept", "image/avif;q=0,image/webp,image/apng,image/*,*/*;q=0.8" );
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		controller.view( "id", "context", new ImageAspectRatioDto(), new ImageResolutionDto(), new ImageVariantDto( ImageTypeDto.AUTO ), null, null,
+		                 request, response );
+
+		ArgumentCaptor<ViewImageRequest> viewImageRequest = ArgumentCaptor.forClass( ViewImageRequest.class );
+		verify( imageRestService ).viewImageAsync( viewImageRequest.capture() );
+		assertEquals( EnumSet.of( ImageTypeDto.WEBP ), viewImageRequest.getValue().getAcceptedOutputTypes() );
+		assertEquals( "Accept", response.getHeader( "Vary" ) );
+		assertEquals( "image/webp", response.getContentType() );
+	}
+
+	@Test
+	public void acceptHeaderIsIgnoredIfOutputTypeIsRequested() {
+		ViewImageResponse viewImageResponse = new ViewImageResponse();
+		viewImageResponse.setImageSource( new SimpleImageSource( ImageType.JPEG, new byte[] { 1 } ) );
+		when( imageRestService.viewImageAsync( any( ViewImageRequest.class ) ) ).thenReturn( CompletableFuture.completedFuture( viewImageResponse ) );
+
+		MockHttpServletRequest request = new MockHttpServletRequest( "GET", "/view" );
+		request.addHeader( "Accept", "image/webp" );
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		controller.view( "id", "context", new ImageAspectRatioDto(), new ImageResolutionDto(), new ImageVariantDto( ImageTypeDto.JPEG ), null, null,
+		                 request, response );
+
+		ArgumentCaptor<ViewImageRequest> viewImageRequest = ArgumentCaptor.forClass( ViewImageRequest.class );
+		verify( imageRestService ).viewImageAsync( viewImageRequest.capture() );
+		assertTrue( viewImageRequest.getValue().getAcceptedOutputTypes().isEmpty() );
+		assertNull( response.getHeader( "Vary" ) );
+	}
+
+	@Test
+	public void largeImageFileIsSentByTheContainer( @TempDir File folder ) throws IOException {
+		File imageFile = imageFile( folder, 64 * 1024 );
+		when( imageRestService.viewImageAsync( any( ViewImageRequest.class ) ) ).thenReturn( CompletableFuture.completedFuture( viewImageResponse( imageFile ) ) );
+
+		MockHttpServletRequest request = new MockHttpServletRequest( "GET", "/view" );
+		request.setAttribute( "org.apache.tomcat.sendfile.support", Boolean.TRUE );
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		controller.view( "id", "context", new ImageAspectRatioDto(), new ImageResolutionDto(), new ImageVariantDto(), null, null, request, response );
+
+		assertEquals( 200, response.getStatus() );
+		assertEquals( 64 * 1024, response.getContentLengthLong() );
+		assertEquals( imageFile.getAbsolutePath(), request.getAttribute( "org.apache.tomcat.sendfile.filename" ) );
+		assertEquals( 0L, request.getAttribute( "org.apache.tomcat.sendfile.start" ) );
+		assertEquals( 64 * 1024L, request.getAttribute( "org.apache.tomcat.sendfile.end" ) );
+		assertEquals( 0, response.getContentAsByteArray().length );
+	}
+
+	@Test
+	public void imageFileIsCopiedIfSendfileIsNotSupported( @TempDir File folder ) throws IOException {
+		File imageFile = imageFile( folder, 64 * 1024 );
+		when( imageRestService.viewImageAsync( any( ViewImageRequest.class ) ) ).thenReturn( CompletableFuture.completedFuture( viewImageResponse( imageFile ) ) );
+
+		MockHttpServletRequest request = new MockHttpServletRequest( "GET", "/view" );
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		controller.view( "id", "context", new ImageAspectRatioDto(), new ImageResolutionDto(), new ImageVariantDto(), null, null, request, response );
+
+		assertEquals( 64 * 1024, response.getContentLengthLong() );
+		assertNull( request.getAttribute( "org.apache.tomcat.sendfile.filename" ) );
+		assertArrayEquals( FileUtils.readFileToByteArray( imageFile ), response.getContentAsByteArray() );
+	}
+
+	@Test
+	public void smallImageFileIsCopied( @TempDir File folder ) throws IOException {
+		File imageFile = imageFile( folder, 1024 );
+		when( imageRestService.viewImageAsync( any( ViewImageRequest.class ) ) ).thenReturn( CompletableFuture.completedFuture( viewImageResponse( imageFile ) ) );
+
+		MockHttpServletRequest request = new MockHttpServletRequest( "GET", "/view" );
+		request.setAttribute( "org.apache.tomcat.sendfile.support", Boolean.TRUE );
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		controller.view( "id", "context", new ImageAspectRatioDto(), new ImageResolutionDto(), new ImageVariantDto(), null, null, request, response );
+
+		assertNull( request.getAttribute( "org.apache.tomcat.sendfile.filename" ) );
+		assertEquals( 1024, response.getContentAsByteArray().length );
+	}
+
+	@Test
+	public void tilePyramidPointsToTilesOfTheImage() throws IOException {
+		Image image = new Image();
+		image.setId( 7L );
+		when( imageService.getByExternalId( "id" ) ).thenReturn( image );
+		ImageTilePyramid pyramid = new ImageTilePyramid( 5000, 3000, 512, ImageType.JPEG );
+		when( imageTileService.getTilePyramid( image ) ).thenReturn( Optional.of( pyramid ) );
+
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		controller.tilePyramid( "abc", "id", new MockHttpServletRequest( "GET", "/api/image/tiles/id.dzi" ), response );
+
+		assertEquals( 200, response.getStatus() );
+		assertEquals( "application/xml", response.getContentType() );
+		assertEquals( pyramid.serialize( "http://localhost/api/image/tiles/id/7_files/" ), response.getContentAsString() );
+		assertEquals( "max-age=30", response.getHeader( "Cache-Control" ) );
+	}
+
+	@Test
+	public void missingTilePyramidIsGeneratedIfImageIsTileable() {
+		Image image = new Image();
+		when( imageService.getByExternalId( "id" ) ).thenReturn( image );
+		when( imageTileService.getTilePyramid( image ) ).thenReturn( Optional.empty() );
+		when( imageTileService.submit( image ) ).thenReturn( true );
+
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		controller.tilePyramid( "abc", "id", new MockHttpServletRequest(), response );
+
+		assertEquals( 503, response.getStatus() );
+		assertNotNull( response.getHeader( "Retry-After" ) );
+		verify( imageTileService ).submit( image );
+
+		when( imageTileService.submit( image ) ).thenReturn( false );
+		response = new MockHttpServletResponse();
+		controller.tilePyramid( "abc", "id", new MockHttpServletRequest(), response );
+		assertEquals( 404, response.getStatus() );
+	}
+
+	@Test
+	public void tilesRequireAccessToken() {
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		controller.tilePyramid( "wrong", "id", new MockHttpServletRequest(), response );
+
+		assertEquals( 403, response.getStatus() );
+		verifyNoInteractions( imageService, imageTileService );
+	}
+
+	@Test
+	public void tileIsServedWithLongCacheHeaders() {
+		Image image = new Image();
+		image.setId( 7L );
+		when( imageService.getByExternalId( "id" ) ).thenReturn( image );
+		when( imageTileService.getTile( image, 12, 3, 1, ImageType.JPEG ) ).thenReturn( new SimpleImageSource( ImageType.JPEG, new byte[] { 1, 2, 3 } ) );
+
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		controller.tile( "abc", "id", 7L, 12, 3, 1, "jpeg", new MockHttpServletRequest(), response );
+
+		assertEquals( 200, response.getStatus() );
+		assertEquals( "image/jpeg", response.getContentType() );
+		assertArrayEquals( new byte[] { 1, 2, 3 }, response.getContentAsByteArray() );
+		assertEquals( "max-age=31536000", response.getHeader( "Cache-Control" ) );
+
+		response = new MockHttpServletResponse();
+		controller.tile( "abc", "id", 7L, 12, 3, 2, "jpeg", new MockHttpServletRequest(), response );
+		assertEquals( 404, response.getStatus() );
+	}
+
+	@Test
+	public void tileOfReplacedImageIsNotServed() {
+		Image image = new Image();
+		image.setId( 8L );
+		when( imageService.getByExternalId( "id" ) ).thenReturn( image );
+		when( imageTileService.getTile( image, 12, 3, 1, ImageType.JPEG ) ).thenReturn( new SimpleImageSource( ImageType.JPEG, new byte[] { 1, 2, 3 } ) );
+
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		controller.tile( "abc", "id", 7L, 12, 3, 1, "jpeg", new MockHttpServletRequest(), response );
+		assertEquals( 404, response.getStatus() );
+
+		// tile urls derived from the descriptor url always return the tiles of the current image
+		response = new MockHttpServletResponse();
+		controller.currentTile( "abc", "id", 12, 3, 1, "jpeg", new MockHttpServletRequest(), response );
+		assertEquals( 200, response.getStatus() );
+		assertEquals( "max-age=30", response.getHeader( "Cache-Control" ) );
+	}
+
+	private File imageFile( File folder, int size ) throws IOException {
+		File imageFile = new File( folder, "variant.jpeg" );
+		byte[] data = new byte[size];
+		Arrays.fill( data, (byte) 7 );
+		FileUtils.writeByteArrayToFile( imageFile, data );
+		return imageFile;
+	}
+
+	private ViewImageResponse viewImageResponse( File imageFile ) {
+		ViewImageResponse viewImageResponse = new ViewImageResponse();
+		viewImageResponse.setImageSource( new SimpleImageSource( ImageType.JPEG, new LocalFile( imageFile ) ) );
+		return viewImageResponse;
+	}
+
+	@RequiredArgsConstructor
+	private static class LocalFile implements InputStreamSource, FileResource.TargetFile
+	{
+		private final File file;
+
+		@Override
+		public InputStream getInputStream() throws IOException {
+			return new FileInputStream( file );
+		}
+
+		@Override
+		public File getTargetFile() {
+			return file;
+		}
+	}
 
 	@Configuration
 	static class Config
@@ -89,5 +453,10 @@ public class TestImageStreamingController
 		public ImageRestService imageRestService() {
 			return mock( ImageRestService.class );
 		}
+
+		@Bean
+		public ImageTileService imageTileService() {
+			return mock( ImageTileService.class );
+		}
 	}
 }
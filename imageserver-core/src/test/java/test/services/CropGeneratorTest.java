@@ -1,6 +1,7 @@
 package test.services;
 
 import com.foreach.imageserver.core.business.*;
+import com.foreach.imageserver.core.managers.ImageContextManager;
 import com.foreach.imageserver.core.managers.ImageModificationManager;
 import com.foreach.imageserver.core.managers.ImageProfileManager;
 import com.foreach.imageserver.core.managers.ImageResolutionManager;
@@ -15,12 +16,18 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.cache.Cache;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
 
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.mockito.Mockito.when;
 
 /**
@@ -48,6 +55,9 @@ public class CropGeneratorTest
 	@Mock
 	private ImageResolutionManager imageResolutionManager;
 
+	@Mock
+	private ImageContextManager imageContextManager;
+
 	@BeforeEach
 	public void before() {
 		imageResolutionService = new ImageResolutionServiceImpl();
@@ -57,6 +67,7 @@ public class CropGeneratorTest
 		cropGenerator.setImageProfileManager( imageProfileManager );
 		cropGenerator.setImageResolutionManager( imageResolutionManager );
 		cropGenerator.setImageResolutionService( imageResolutionService );
+		cropGenerator.setImageContextManager( imageContextManager );
 
 		imageResolutionService.setImageResolutionManager( imageResolutionManager );
 
@@ -205,6 +216,42 @@ public class CropGeneratorTest
 		assertCrop( 1, 2, 3, 4 );
 	}
 
+	@Test
+	public void modificationCacheKeyChangesWithModificationVersion() {
+		ImageResolution resolution = new ImageResolution();
+		resolution.setId( 3L );
+
+		String key = CropGeneratorImpl.modificationKey( image, context, resolution );
+		assertEquals( key, CropGeneratorImpl.modificationKey( image, context, resolution ) );
+
+		image.setModificationVersion( image.getModificationVersion() + 1 );
+		assertNotEquals( key, CropGeneratorImpl.modificationKey( image, context, resolution ) );
+	}
+
+	@Test
+	public void modificationsOfTheImageAreEvicted() {
+		ImageResolution resolution = new ImageResolution();
+		resolution.setId( 3L );
+
+		Image other = new Image();
+		other.setId( 2L );
+
+		ConcurrentMapCacheManager cacheManager = new ConcurrentMapCacheManager( CropGeneratorImpl.CACHE_NAME );
+		cropGenerator.setCacheManager( cacheManager );
+
+		Cache cache = cacheManager.getCache( CropGeneratorImpl.CACHE_NAME );
+		cache.put( CropGeneratorImpl.modificationKey( image, context, resolution ), new ImageModificationDto() );
+		cache.put( CropGeneratorImpl.modificationKey( other, context, resolution ), new ImageModificationDto() );
+
+		when( imageContextManager.getAllContexts() ).thenReturn( Collections.singletonList( context ) );
+		when( imageResolutionManager.getAllResolutions() ).thenReturn( Collections.singletonList( resolution ) );
+
+		cropGenerator.evictModificationDtos( image );
+
+		assertNull( cache.get( CropGeneratorImpl.modificationKey( image, context, resolution ) ) );
+		assertNotNull( cache.get( CropGeneratorImpl.modificationKey( other, context, resolution ) ) );
+	}
+
 	private void assertCrop( int x, int y, int width, int height ) {
 		CropDto crop = new CropDto( x, y, width, height );
 		assertEquals( crop, modification.getCrop() );
@@ -1,6 +1,7 @@
 package test.services;
 
 import com.foreach.imageserver.core.business.ImageResolution;
+import com.foreach.imageserver.core.managers.ImageResolutionIndex;
 import com.foreach.imageserver.core.managers.ImageResolutionManager;
 import com.foreach.imageserver.core.services.ImageContextService;
 import com.foreach.imageserver.core.services.ImageContextServiceImpl;
@@ -57,6 +58,7 @@ public class ImageContextServiceTest
 		imageResolutions.add( createImageResolution( 21L, 640, 480 ) );
 
 		doReturn( imageResolutions ).when( imageResolutionManager ).getForContext( CONTEXT_ID );
+		doReturn( new ImageResolutionIndex( imageResolutions ) ).when( imageResolutionManager ).getIndexForContext( CONTEXT_ID );
 		ReflectionTestUtils.setField( contextService, "imageResolutionManager", imageResolutionManager );
 	}
 
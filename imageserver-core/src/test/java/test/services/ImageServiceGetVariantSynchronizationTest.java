@@ -1,10 +1,13 @@
 package test.services;
 
+import com.foreach.imageserver.core.ImageServerCoreModuleSettings;
 import com.foreach.imageserver.core.business.*;
+import com.foreach.imageserver.core.config.TransformersSettings;
 import com.foreach.imageserver.core.managers.ImageManager;
 import com.foreach.imageserver.core.managers.ImageModificationManager;
 import com.foreach.imageserver.core.managers.ImageResolutionManager;
 import com.foreach.imageserver.core.services.*;
+import com.foreach.imageserver.core.services.exceptions.ImageVariantTimeoutException;
 import com.foreach.imageserver.core.transformers.ImageSource;
 import com.foreach.imageserver.core.transformers.SimpleImageSource;
 import com.foreach.imageserver.dto.ImageModificationDto;
@@ -20,11 +23,15 @@ import org.springframework.test.annotation.DirtiesContext;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Optional;
 import java.util.concurrent.*;
+import java.util.function.Function;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.eq;
@@ -51,6 +58,9 @@ public class ImageServiceGetVariantSynchronizationTest
 	@Autowired
 	private CropGenerator cropGenerator;
 
+	@Autowired
+	private TransformersSettings transformersSettings;
+
 	@Test
 	public void successfulSimultaneousGeneration() throws InterruptedException, ExecutionException, IOException {
 		int threadsPerImage = 30;
@@ -69,8 +79,8 @@ public class ImageServiceGetVariantSynchronizationTest
 			lock.notifyAll();
 		}
 
-		verify( imageTransformService, times( 1 ) ).transform( eq( testResults.getFirstOriginalImageSource() ), any(), any() );
-		verify( imageTransformService, times( 1 ) ).transform( eq( testResults.getSecondOriginalImageSource() ), any(), any() );
+		verify( imageTransformService, times( 1 ) ).transform( eq( testResults.getFirstOriginalImageSource() ), any(), any(), any() );
+		verify( imageTransformService, times( 1 ) ).transform( eq( testResults.getSecondOriginalImageSource() ), any(), any(), any() );
 
 		for ( Future<ImageSource> future : testResults.getFirstImageFutures() ) {
 			try (InputStream is = future.get().getImageStream()) {
@@ -102,8 +112,8 @@ public class ImageServiceGetVariantSynchronizationTest
 			lock.notifyAll();
 		}
 
-		verify( imageTransformService, times( 1 ) ).transform( eq( testResults.getFirstOriginalImageSource() ), any(), any() );
-		verify( imageTransformService, times( 1 ) ).transform( eq( testResults.getSecondOriginalImageSource() ), any(), any() );
+		verify( imageTransformService, times( 1 ) ).transform( eq( testResults.getFirstOriginalImageSource() ), any(), any(), any() );
+		verify( imageTransformService, times( 1 ) ).transform( eq( testResults.getSecondOriginalImageSource() ), any(), any(), any() );
 
 		for ( Future<ImageSource> future : testResults.getFirstImageFutures() ) {
 			try (InputStream is = future.get().getImageStream()) {
@@ -139,8 +149,8 @@ public class ImageServiceGetVariantSynchronizationTest
 			lock.notifyAll();
 		}
 
-		verify( imageTransformService, times( 1 ) ).transform( eq( testResults.getFirstOriginalImageSource() ), any(), any() );
-		verify( imageTransformService, times( 1 ) ).transform( eq( testResults.getSecondOriginalImageSource() ), any(), any() );
+		verify( imageTransformService, times( 1 ) ).transform( eq( testResults.getFirstOriginalImageSource() ), any(), any(), any() );
+		verify( imageTransformService, times( 1 ) ).transform( eq( testResults.getSecondOriginalImageSource() ), any(), any(), any() );
 
 		for ( Future<ImageSource> future : testResults.getFirstImageFutures() ) {
 			try (InputStream is = future.get().getImageStream()) {
@@ -159,6 +169,74 @@ public class ImageServiceGetVariantSynchronizationTest
 		}
 	}
 
+	@Test
+	public void waitForVariantInProgressIsBounded() throws InterruptedException, ExecutionException, IOException {
+		transformersSettings.setMaxVariantWait( 1 );
+
+		Object lock = new Object();
+		TestResults testResults = runTest( 2, new DelayedTransformResult( lock, imageSource( "IMAGE1" ) ),
+		                                   new DelayedTransformResult( lock, imageSource( "IMAGE2" ) ) );
+
+		// Waiting threads give up, the generating threads are still busy.
+		Thread.sleep( 2000 );
+
+		synchronized ( lock ) {
+			lock.notifyAll();
+		}
+
+		int timeouts = 0;
+		for ( Future<ImageSource> future : testResults.getFirstImageFutures() ) {
+			try (InputStream is = future.get().getImageStream()) {
+				assertEquals( "IMAGE1", new String( IOUtils.toByteArray( is ) ) );
+			}
+			catch ( ExecutionException e ) {
+				assertTrue( e.getCause() instanceof ImageVariantTimeoutException );
+				timeouts++;
+			}
+		}
+		assertEquals( 1, timeouts );
+
+		verify( imageTransformService, times( 1 ) ).transform( eq( testResults.getFirstOriginalImageSource() ), any(), any(), any() );
+	}
+
+	@Test
+	public void asyncCallersCanAttachToVariantInProgress() throws InterruptedException, ExecutionException, IOException {
+		Object lock = new Object();
+		TestResults testResults = runTest( 1, new DelayedTransformResult( lock, imageSource( "IMAGE1" ) ),
+		                                   new DelayedTransformResult( lock, imageSource( "IMAGE2" ) ) );
+
+		// Wait for all threads to have started.
+		Thread.sleep( 1000 );
+
+		Optional<CompletableFuture<ImageSource>> inProgress
+				= imageService.getVariantImageInProgress( image( 1L ), context( 10L ), imageResolution( 20L ), imageVariant( ImageType.PNG ) );
+		assertTrue( inProgress.isPresent() );
+		assertFalse( inProgress.get().isDone() );
+
+		// cancelling an attached future does not cancel the generation
+		Optional<CompletableFuture<ImageSource>> cancelled
+				= imageService.getVariantImageInProgress( image( 1L ), context( 10L ), imageResolution( 20L ), imageVariant( ImageType.PNG ) );
+		assertTrue( cancelled.isPresent() );
+		cancelled.get().cancel( true );
+
+		synchronized ( lock ) {
+			lock.notifyAll();
+		}
+
+		try (InputStream is = inProgress.get().get( 5, TimeUnit.SECONDS ).getImageStream()) {
+			assertEquals( "IMAGE1", new String( IOUtils.toByteArray( is ) ) );
+		}
+		catch ( TimeoutException te ) {
+			fail();
+		}
+		try (InputStream is = testResults.getFirstImageFutures().get( 0 ).get().getImageStream()) {
+			assertEquals( "IMAGE1", new String( IOUtils.toByteArray( is ) ) );
+		}
+
+		assertFalse( imageService.getVariantImageInProgress( image( 1L ), context( 10L ), imageResolution( 20L ), imageVariant( ImageType.PNG ) )
+		                         .isPresent() );
+	}
+
 	private TestResults runTest( int threadsPerImage,
 	                             Answer<ImageSource> firstImageAnswer,
 	                             Answer<ImageSource> secondImageAnswer ) throws InterruptedException {
@@ -175,6 +253,10 @@ public class ImageServiceGetVariantSynchronizationTest
 				modificationDto );
 		when( cropGenerator.buildModificationDto( secondImage, context, imageResolution ) ).thenReturn(
 				modificationDto );
+		when( cropGenerator.getModificationDto( firstImage, context, imageResolution ) ).thenReturn( modificationDto );
+		when( cropGenerator.getModificationDto( secondImage, context, imageResolution ) ).thenReturn( modificationDto );
+		when( cropGenerator.refreshModificationDto( firstImage, context, imageResolution ) ).thenReturn( modificationDto );
+		when( cropGenerator.refreshModificationDto( secondImage, context, imageResolution ) ).thenReturn( modificationDto );
 
 		when( imageStoreService.getVariantImage( firstImage, context, imageResolution, imageVariant ) ).thenReturn(
 				null );
@@ -189,8 +271,12 @@ public class ImageServiceGetVariantSynchronizationTest
 		when( imageStoreService.getOriginalImage( firstImage ) ).thenReturn( firstOriginalImageSource );
 		when( imageStoreService.getOriginalImage( secondImage ) ).thenReturn( secondOriginalImageSource );
 
-		when( imageTransformService.transform( eq( firstOriginalImageSource ), any(), any() ) ).thenAnswer( firstImageAnswer );
-		when( imageTransformService.transform( eq( secondOriginalImageSource ), any(), any() ) ).thenAnswer( secondImageAnswer );
+		when( imageTransformService.transform( eq( firstOriginalImageSource ), any(), any(), any() ) ).thenAnswer( firstImageAnswer );
+		when( imageTransformService.transform( eq( secondOriginalImageSource ), any(), any(), any() ) ).thenAnswer( secondImageAnswer );
+
+		// variants are written to the store while they are being created
+		when( imageStoreService.storeVariantImage( any(), any(), any(), any(), any( Function.class ) ) )
+				.thenAnswer( invocation -> invocation.<Function<OutputStream, ?>>getArgument( 4 ).apply( new ByteArrayOutputStream() ) );
 
 		List<Future<ImageSource>> firstImageFutures = new ArrayList<>();
 		List<Future<ImageSource>> secondImageFutures = new ArrayList<>();
@@ -393,6 +479,21 @@ public class ImageServiceGetVariantSynchronizationTest
 			return new ImageServiceImpl();
 		}
 
+		@Bean
+		public TransformersSettings transformersSettings() {
+			return new TransformersSettings();
+		}
+
+		@Bean
+		public ImageServerCoreModuleSettings imageServerCoreModuleSettings() {
+			return new ImageServerCoreModuleSettings();
+		}
+
+		@Bean
+		public ImageTransformExecutor imageTransformExecutor() {
+			return new ImageTransformExecutor( 2 );
+		}
+
 		@Bean
 		public CropGenerator cropGenerator() {
 			return mock( CropGenerator.class );
@@ -438,5 +539,10 @@ public class ImageServiceGetVariantSynchronizationTest
 			return mock( ImageProfileService.class );
 		}
 
+		@Bean
+		public ImageTileService imageTileService() {
+			return mock( ImageTileService.class );
+		}
+
 	}
 }
@@ -0,0 +1,98 @@
+package test.services;
+
+import com.foreach.imageserver.core.ImageServerCoreModuleSettings;
+import com.foreach.imageserver.core.business.Image;
+import com.foreach.imageserver.core.managers.ImageManager;
+import com.foreach.imageserver.core.services.CropGenerator;
+import com.foreach.imageserver.core.services.ImageServiceImpl;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * @author Arne Vandamme
+ * @since 6.3.0
+ */
+public class ImageServiceModificationVersionCheckTest
+{
+	@Mock
+	private ImageManager imageManager;
+
+	@Mock
+	private CropGenerator cropGenerator;
+
+	@InjectMocks
+	private ImageServiceImpl imageService = new ImageServiceImpl();
+
+	private final ImageServerCoreModuleSettings settings = new ImageServerCoreModuleSettings();
+
+	private Image cached, reloaded;
+
+	@BeforeEach
+	public void setUp() {
+		MockitoAnnotations.initMocks( this );
+		ReflectionTestUtils.setField( imageService, "settings", settings );
+
+		cached = image( 3 );
+		reloaded = image( 4 );
+		when( imageManager.getByExternalId( "external" ) ).thenReturn( cached, reloaded );
+		when( imageManager.getById( 1L ) ).thenReturn( Optional.of( cached ), Optional.of( reloaded ) );
+	}
+
+	@Test
+	public void unchangedImageIsOnlyCheckedOncePerInterval() {
+		when( imageManager.getModificationVersion( 1L ) ).thenReturn( 3L );
+
+		assertSame( cached, imageService.getByExternalId( "external" ) );
+		assertSame( reloaded, imageService.getByExternalId( "external" ) );
+
+		verify( imageManager, times( 1 ) ).getModificationVersion( 1L );
+		verify( imageManager, never() ).evict( any() );
+		verifyNoInteractions( cropGenerator );
+	}
+
+	@Test
+	public void changedImageIsEvictedAndFetchedAgain() {
+		when( imageManager.getModificationVersion( 1L ) ).thenReturn( 4L );
+
+		assertSame( reloaded, imageService.getById( 1L ).orElse( null ) );
+
+		verify( imageManager ).evict( cached );
+		verify( cropGenerator ).evictModificationDtos( cached );
+	}
+
+	@Test
+	public void deletedImageIsEvicted() {
+		when( imageManager.getModificationVersion( 1L ) ).thenReturn( null );
+
+		assertSame( reloaded, imageService.getByExternalId( "external" ) );
+
+		verify( imageManager ).evict( cached );
+	}
+
+	@Test
+	public void versionIsNotCheckedIfDisabled() {
+		settings.getStore().setVersionCheckInterval( 0 );
+
+		assertSame( cached, imageService.getByExternalId( "external" ) );
+
+		verify( imageManager, never() ).getModificationVersion( anyLong() );
+	}
+
+	private Image image( long modificationVersion ) {
+		Image image = new Image();
+		image.setId( 1L );
+		image.setExternalId( "external" );
+		image.setModificationVersion( modificationVersion );
+		return image;
+	}
+}
@@ -0,0 +1,156 @@
+package test.services;
+
+import com.foreach.imageserver.core.business.*;
+import com.foreach.imageserver.core.services.CropGenerator;
+import com.foreach.imageserver.core.services.ImageServiceImpl;
+import com.foreach.imageserver.core.services.ImageStoreService;
+import com.foreach.imageserver.core.services.ImageTransformService;
+import com.foreach.imageserver.core.services.exceptions.ImageStoreException;
+import com.foreach.imageserver.core.transformers.ImageSource;
+import com.foreach.imageserver.core.transformers.SimpleImageSource;
+import com.foreach.imageserver.core.transformers.SpillingImageSource;
+import com.foreach.imageserver.dto.DimensionsDto;
+import com.foreach.imageserver.dto.ImageModificationDto;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.io.ByteArrayInputStream;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * @author Arne Vandamme
+ * @since 6.3.0
+ */
+public class ImageServicePregenerateVariantImagesTest
+{
+	@Mock
+	private ImageStoreService imageStoreService;
+
+	@Mock
+	private ImageTransformService imageTransformService;
+
+	@Mock
+	private CropGenerator cropGenerator;
+
+	@InjectMocks
+	private ImageServiceImpl imageService = new ImageServiceImpl();
+
+	private Image image;
+	private ImageResolution resolution;
+	private ImageContext website;
+	private final ImageVariant variant = new ImageVariant();
+
+	@BeforeEach
+	public void setUp() {
+		MockitoAnnotations.initMocks( this );
+
+		image = new Image();
+		image.setId( 1L );
+		image.setImageType( ImageType.JPEG );
+		image.setDimensions( new Dimensions( 2000, 1000 ) );
+		image.setDateCreated( new Date() );
+
+		website = new ImageContext();
+		website.setId( 1L );
+		website.setCode( "website" );
+		ImageContext mobile = new ImageContext();
+		mobile.setId( 2L );
+		mobile.setCode( "mobile" );
+
+		resolution = new ImageResolution();
+		resolution.setId( 1L );
+		resolution.setWidth( 640 );
+		resolution.setHeight( 360 );
+		resolution.setContexts( Arrays.asList( website, mobile ) );
+
+		ImageModificationDto modification = new ImageModificationDto( 640, 360 );
+		modification.setBoundaries( new DimensionsDto( 2000, 1000 ) );
+		when( cropGenerator.getModificationDto( eq( image ), any(), eq( resolution ) ) ).thenReturn( modification );
+		when( cropGenerator.refreshModificationDto( eq( image ), any(), eq( resolution ) ) ).thenReturn( modification );
+		when( imageStoreService.getOriginalImage( image ) ).thenReturn( new SimpleImageSource( ImageType.JPEG, new byte[] { 1, 2, 3 } ) );
+	}
+
+	@Test
+	public void transformedImagesAreReleasedWhenStored() throws Exception {
+		List<ImageSource> variants = Arrays.asList( spilledImage(), spilledImage() );
+		when( imageTransformService.transformBatch( any(), any(), any() ) ).thenReturn( variants );
+
+		assertEquals( 2, imageService.pregenerateVariantImages( image, Collections.singleton( resolution ), variant ) );
+
+		verify( imageStoreService ).storeVariantImage( eq( image ), any(), eq( resolution ), eq( variant ), eq( variants.get( 0 ) ) );
+		verify( imageStoreService ).storeVariantImage( eq( image ), any(), eq( resolution ), eq( variant ), eq( variants.get( 1 ) ) );
+		assertReleased( variants );
+	}
+
+	@Test
+	public void transformedImagesAreReleasedIfStoringFails() throws Exception {
+		List<ImageSource> variants = Arrays.asList( spilledImage(), spilledImage() );
+		when( imageTransformService.transformBatch( any(), any(), any() ) ).thenReturn( variants );
+		doThrow( new ImageStoreException( "disk full" ) )
+				.when( imageStoreService ).storeVariantImage( any(), any(), any(), any(), any( ImageSource.class ) );
+
+		assertThrows( ImageStoreException.class, () -> imageService.pregenerateVariantImages( image, Collections.singleton( resolution ), variant ) );
+		assertReleased( variants );
+	}
+
+	@Test
+	public void variantsAreInProgressWhileTheBatchIsGenerated() throws Exception {
+		ImageSource storedVariant = new SimpleImageSource( ImageType.JPEG, new byte[] { 5, 6 } );
+		when( imageStoreService.getVariantImage( image, website, resolution, variant ) ).thenReturn( null, storedVariant );
+
+		AtomicReference<CompletableFuture<ImageSource>> inProgress = new AtomicReference<>();
+		AtomicInteger generatedByOtherRequest = new AtomicInteger( -1 );
+		when( imageTransformService.transformBatch( any(), any(), any() ) ).thenAnswer( invocation -> {
+			inProgress.set( imageService.getVariantImageInProgress( image, website, resolution, variant ).orElse( null ) );
+			generatedByOtherRequest.set( imageService.pregenerateVariantImages( image, Collections.singleton( resolution ), variant ) );
+			return Arrays.asList( spilledImage(), spilledImage() );
+		} );
+
+		assertEquals( 2, imageService.pregenerateVariantImages( image, Collections.singleton( resolution ), variant ) );
+
+		verify( imageTransformService, times( 1 ) ).transformBatch( any(), any(), any() );
+		assertEquals( 0, generatedByOtherRequest.get() );
+		assertNotNull( inProgress.get() );
+		assertSame( storedVariant, inProgress.get().get() );
+		assertFalse( imageService.getVariantImageInProgress( image, website, resolution, variant ).isPresent() );
+	}
+
+	@Test
+	public void variantsInProgressFailIfTheBatchFails() {
+		AtomicReference<CompletableFuture<ImageSource>> inProgress = new AtomicReference<>();
+		when( imageTransformService.transformBatch( any(), any(), any() ) ).thenAnswer( invocation -> {
+			inProgress.set( imageService.getVariantImageInProgress( image, website, resolution, variant ).orElse( null ) );
+			throw new IllegalStateException( "transform failed" );
+		} );
+
+		assertThrows( IllegalStateException.class, () -> imageService.pregenerateVariantImages( image, Collections.singleton( resolution ), variant ) );
+
+		assertNotNull( inProgress.get() );
+		assertTrue( inProgress.get().isCompletedExceptionally() );
+		assertFalse( imageService.getVariantImageInProgress( image, website, resolution, variant ).isPresent() );
+	}
+
+	private void assertReleased( List<ImageSource> variants ) {
+		for ( ImageSource variantImage : variants ) {
+			assertThrows( Exception.class, variantImage::getImageStream );
+		}
+	}
+
+	private SpillingImageSource spilledImage() throws Exception {
+		return SpillingImageSource.copyOf( ImageType.JPEG, new ByteArrayInputStream( new byte[] { 1, 2, 3, 4 } ), 0 );
+	}
+}
@@ -4,15 +4,19 @@ import com.foreach.imageserver.core.business.Crop;
 import com.foreach.imageserver.core.business.Dimensions;
 import com.foreach.imageserver.core.business.Image;
 import com.foreach.imageserver.core.business.ImageModification;
+import com.foreach.imageserver.core.managers.ImageManager;
 import com.foreach.imageserver.core.managers.ImageModificationManager;
+import com.foreach.imageserver.core.services.CropGenerator;
 import com.foreach.imageserver.core.services.ImageService;
 import com.foreach.imageserver.core.services.ImageServiceImpl;
 import com.foreach.imageserver.core.services.ImageStoreService;
 import com.foreach.imageserver.core.services.exceptions.CropOutsideOfImageBoundsException;
 import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.Arguments;
 import org.junit.jupiter.params.provider.MethodSource;
+import org.mockito.InOrder;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
@@ -20,14 +24,25 @@ import org.mockito.MockitoAnnotations;
 import java.util.Arrays;
 import java.util.stream.Stream;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.verify;
+
 public class ImageServiceSaveImageModificationTest
 {
+	@Mock(name = "imageManager")
+	private ImageManager imageManager;
+
 	@Mock(name = "imageModificationManager")
 	private ImageModificationManager imageModificationManager;
 
 	@Mock(name = "imageStoreService")
 	private ImageStoreService imageStoreService;
 
+	@Mock(name = "cropGenerator")
+	private CropGenerator cropGenerator;
+
 	@InjectMocks
 	private ImageService imageService = new ImageServiceImpl();
 
@@ -98,6 +113,29 @@ public class ImageServiceSaveImageModificationTest
 		}
 	}
 
+	@Test
+	public void modificationVersionIsIncremented() {
+		Image image = createImage( 50, 100 );
+		image.setModificationVersion( 3 );
+
+		imageService.saveImageModification( createModification( 0, 0, 50, 100 ), image );
+
+		assertEquals( 4, image.getModificationVersion() );
+		assertNotNull( image.getDateModified() );
+		verify( imageManager ).update( image );
+	}
+
+	@Test
+	public void cachedModificationsAreEvictedBeforeTheVersionChanges() {
+		Image image = createImage( 50, 100 );
+
+		imageService.saveImageModification( createModification( 0, 0, 50, 100 ), image );
+
+		InOrder inOrder = inOrder( cropGenerator, imageManager );
+		inOrder.verify( cropGenerator ).evictModificationDtos( image );
+		inOrder.verify( imageManager ).update( image );
+	}
+
 	private Image createImage( int width, int height ) {
 		Image image = new Image();
 		image.setDimensions( new Dimensions( width, height ) );
@@ -0,0 +1,219 @@
+package test.services;
+
+import com.foreach.imageserver.core.ImageServerCoreModuleSettings;
+import com.foreach.imageserver.core.business.Dimensions;
+import com.foreach.imageserver.core.business.Image;
+import com.foreach.imageserver.core.business.ImageProfile;
+import com.foreach.imageserver.core.business.ImageType;
+import com.foreach.imageserver.core.managers.ImageManager;
+import com.foreach.imageserver.core.managers.ImageModificationManager;
+import com.foreach.imageserver.core.services.CropGenerator;
+import com.foreach.imageserver.core.services.ImageProfileService;
+import com.foreach.imageserver.core.services.ImageServiceImpl;
+import com.foreach.imageserver.core.services.ImageStoreService;
+import com.foreach.imageserver.core.services.ImageTileService;
+import com.foreach.imageserver.core.services.ImageTransformService;
+import com.foreach.imageserver.core.services.exceptions.ImageStoreException;
+import com.foreach.imageserver.core.transformers.ImageAttributes;
+import com.foreach.imageserver.core.transformers.SimpleImageSource;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
+import org.springframework.core.io.ByteArrayResource;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.util.Date;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+/**
+ * @author Arne Vandamme
+ * @since 6.3.0
+ */
+public class ImageServiceSaveImageTest
+{
+	private static final byte[] DATA = "image data".getBytes();
+
+	@Mock
+	private ImageManager imageManager;
+
+	@Mock
+	private ImageModificationManager imageModificationManager;
+
+	@Mock
+	private ImageStoreService imageStoreService;
+
+	@Mock
+	private ImageTransformService imageTransformService;
+
+	@Mock
+	private ImageProfileService imageProfileService;
+
+	@Mock
+	private ImageTileService imageTileService;
+
+	@Mock
+	private CropGenerator cropGenerator;
+
+	@Spy
+	private ImageServerCoreModuleSettings settings = new ImageServerCoreModuleSettings();
+
+	@InjectMocks
+	private ImageServiceImpl imageService = new ImageServiceImpl();
+
+	@BeforeEach
+	public void setUp() {
+		MockitoAnnotations.initMocks( this );
+
+		ImageProfile profile = new ImageProfile();
+		profile.setId( 1L );
+		when( imageProfileService.getDefaultProfile() ).thenReturn( profile );
+		when( imageTransformService.getAttributes( any( InputStream.class ) ) )
+				.thenReturn( new ImageAttributes( ImageType.PNG, new Dimensions( 100, 200 ), 1 ) );
+	}
+
+	@Test
+	public void unreadableImageDataFailsWithImageStoreException() {
+		ImageStoreException exception = assertThrows(
+				ImageStoreException.class,
+				() -> imageService.saveImage( "one", () -> {
+					throw new IOException( "connection reset" );
+				}, new Date(), false )
+		);
+
+		assertTrue( exception.getCause() instanceof IOException );
+		verify( imageManager, never() ).insert( any() );
+	}
+
+	@Test
+	public void originalIsNotHashedIfDeduplicationIsDisabled() {
+		Image image = imageService.saveImage( "one", new ByteArrayResource( DATA ), new Date(), false );
+
+		assertNull( image.getContentHash() );
+		assertEquals( DATA.length, image.getFileSize() );
+		verify( imageManager, never() ).getByContentHash( anyString() );
+		verify( imageStoreService ).storeOriginalImage( eq( image ), any( InputStream.class ) );
+	}
+
+	@Test
+	public void newOriginalIsStoredWithContentHash() throws Exception {
+		settings.getStore().setDeduplicateOriginals( true );
+
+		Image image = imageService.saveImage( "one", new ByteArrayResource( DATA ), new Date(), false );
+
+		assertEquals( sha256( DATA ), image.getContentHash() );
+		assertEquals( new Dimensions( 100, 200 ), image.getDimensions() );
+		verify( imageManager ).insert( image );
+		verify( imageStoreService ).storeOriginalImage( eq( image ), any( InputStream.class ) );
+		verify( imageTileService ).submit( image );
+	}
+
+	@Test
+	public void identicalOriginalIsShared() throws Exception {
+		settings.getStore().setDeduplicateOriginals( true );
+
+		Image existing = new Image();
+		existing.setId( 5L );
+		existing.setImageType( ImageType.JPEG );
+		existing.setDimensions( new Dimensions( 300, 400 ) );
+		existing.setFileSize( DATA.length );
+		existing.setSceneCount( 1 );
+		existing.setContentHash( sha256( DATA ) );
+		when( imageManager.getByContentHash( sha256( DATA ) ) ).thenReturn( existing );
+		when( imageStoreService.getOriginalImage( any() ) ).thenReturn( new SimpleImageSource( ImageType.JPEG, DATA ) );
+
+		Image image = imageService.saveImage( "two", new ByteArrayResource( DATA ), new Date(), false );
+
+		assertEquals( "two", image.getExternalId() );
+		assertEquals( existing.getContentHash(), image.getContentHash() );
+		assertEquals( ImageType.JPEG, image.getImageType() );
+		assertEquals( new Dimensions( 300, 400 ), image.getDimensions() );
+		assertNotSame( existing.getDimensions(), image.getDimensions() );
+
+		verify( imageTransformService, never() ).getAttributes( any( InputStream.class ) );
+		verify( imageStoreService, never() ).storeOriginalImage( any(), any( InputStream.class ) );
+		assertTrue( image.isVariantsRegistered() );
+	}
+
+	@Test
+	public void missingSharedOriginalIsStoredAgain() throws Exception {
+		settings.getStore().setDeduplicateOriginals( true );
+
+		Image existing = new Image();
+		existing.setImageType( ImageType.JPEG );
+		existing.setDimensions( new Dimensions( 300, 400 ) );
+		when( imageManager.getByContentHash( sha256( DATA ) ) ).thenReturn( existing );
+
+		Image image = imageService.saveImage( "two", new ByteArrayResource( DATA ), new Date(), false );
+
+		verify( imageStoreService ).storeOriginalImage( eq( image ), any( InputStream.class ) );
+	}
+
+	@Test
+	public void sharedOriginalIsOnlyRemovedWithTheLastImage() {
+		Image image = new Image();
+		image.setId( 5L );
+		image.setExternalId( "one" );
+		image.setContentHash( "hash" );
+		when( imageManager.getByExternalId( "one" ) ).thenReturn( image );
+
+		Image other = new Image();
+		other.setId( 6L );
+		other.setContentHash( "hash" );
+
+		when( imageManager.getByContentHash( "hash" ) ).thenReturn( other );
+		assertTrue( imageService.deleteImage( "one" ) );
+		verify( imageStoreService ).removeVariants( image );
+		verify( imageStoreService, never() ).removeOriginal( any() );
+
+		when( imageManager.getByContentHash( "hash" ) ).thenReturn( null );
+		assertTrue( imageService.deleteImage( "one" ) );
+		verify( imageStoreService ).removeOriginal( image );
+	}
+
+	@Test
+	public void originalIsKeptForImageSavedWhileDeleting() {
+		Image image = new Image();
+		image.setId( 5L );
+		image.setExternalId( "one" );
+		image.setContentHash( "hash" );
+		when( imageManager.getByExternalId( "one" ) ).thenReturn( image );
+
+		Image saved = new Image();
+		saved.setId( 6L );
+		saved.setContentHash( "hash" );
+
+		// a concurrent save locked the record of the image: deleting it waits until the saved image is committed
+		AtomicBoolean deleted = new AtomicBoolean();
+		doAnswer( invocation -> {
+			deleted.set( true );
+			return null;
+		} ).when( imageManager ).delete( image );
+		when( imageManager.getByContentHash( "hash" ) ).thenAnswer( invocation -> deleted.get() ? saved : image );
+
+		assertTrue( imageService.deleteImage( "one" ) );
+
+		InOrder inOrder = inOrder( imageManager );
+		inOrder.verify( imageManager ).delete( image );
+		inOrder.verify( imageManager ).getByContentHash( "hash" );
+		verify( imageStoreService, never() ).removeOriginal( any() );
+	}
+
+	private String sha256( byte[] data ) throws Exception {
+		StringBuilder hex = new StringBuilder();
+		for ( byte b : MessageDigest.getInstance( "SHA-256" ).digest( data ) ) {
+			hex.append( String.format( "%02x", b ) );
+		}
+		return hex.toString();
+	}
+}